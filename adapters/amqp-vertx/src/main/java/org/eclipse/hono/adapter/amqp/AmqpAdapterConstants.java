@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2018, 2018 Contributors to the Eclipse Foundation
+ * Copyright (c) 2018, 2019 Contributors to the Eclipse Foundation
  *
  * See the NOTICE file(s) distributed with this work for additional
  * information regarding copyright ownership.
@@ -27,6 +27,11 @@ public final class AmqpAdapterConstants {
      * is stored under in a {@code ProtonConnection}'s attachments.
      */
     public static final String KEY_CURRENT_SPAN = "CURRENT_SPAN";
+    /**
+     * The name of the property in a tenant's adapter configuration that defines the
+     * maximum number of messages that devices of the tenant may have in flight on a link.
+     */
+    public static final String FIELD_MAX_LINK_CREDIT = "max-link-credit";
 
     private AmqpAdapterConstants() {
         // avoid instantiation
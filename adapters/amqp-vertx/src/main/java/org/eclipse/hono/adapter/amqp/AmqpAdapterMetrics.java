@@ -28,6 +28,14 @@ public interface AmqpAdapterMetrics extends Metrics {
 
         private Noop() {
         }
+
+        @Override
+        public void adjustLinkCredit(final String tenantId, final int delta) {
+        }
+
+        @Override
+        public void adjustUnsettledMessages(final String tenantId, final int delta) {
+        }
     }
 
     /**
@@ -35,5 +43,23 @@ public interface AmqpAdapterMetrics extends Metrics {
      */
     AmqpAdapterMetrics NOOP = new Noop();
 
-    // empty for now
+    /**
+     * Adjusts the credit that is currently granted to devices of a tenant
+     * on links for uploading messages.
+     *
+     * @param tenantId The tenant that the devices belong to.
+     * @param delta The number of messages to add to (or subtract from) the credit.
+     * @throws NullPointerException if tenant is {@code null}.
+     */
+    void adjustLinkCredit(String tenantId, int delta);
+
+    /**
+     * Adjusts the number of messages that have been received from devices of a tenant
+     * but have not been settled yet.
+     *
+     * @param tenantId The tenant that the devices belong to.
+     * @param delta The number of messages to add to (or subtract from) the count.
+     * @throws NullPointerException if tenant is {@code null}.
+     */
+    void adjustUnsettledMessages(String tenantId, int delta);
 }
@@ -1,5 +1,5 @@
 /**
- * Copyright (c) 2018 Contributors to the Eclipse Foundation
+ * Copyright (c) 2018, 2019 Contributors to the Eclipse Foundation
  *
  * See the NOTICE file(s) distributed with this work for additional
  * information regarding copyright ownership.
@@ -31,9 +31,19 @@ public class AmqpAdapterProperties extends ProtocolAdapterProperties {
      * The default maximum number of frames that can be in flight for an AMQP session.
      */
     public static final int DEFAULT_MAX_SESSION_FRAMES = 30;
+    /**
+     * The default number of messages that a device may initially have in flight on a link.
+     */
+    public static final int DEFAULT_MIN_LINK_CREDIT = 10;
+    /**
+     * The default maximum number of messages that a device may have in flight on a link.
+     */
+    public static final int DEFAULT_MAX_LINK_CREDIT = 300;
 
     private int maxFrameSize = DEFAULT_MAX_FRAME_SIZE_BYTES;
     private int maxSessionFrames = DEFAULT_MAX_SESSION_FRAMES;
+    private int minLinkCredit = DEFAULT_MIN_LINK_CREDIT;
+    private int maxLinkCredit = DEFAULT_MAX_LINK_CREDIT;
 
     /**
      * Gets the maximum number of bytes that can be sent in an AMQP message delivery
@@ -102,4 +112,74 @@ public class AmqpAdapterProperties extends ProtocolAdapterProperties {
     public int getMaxSessionWindowSize() {
         return maxSessionFrames * maxFrameSize;
     }
+
+    /**
+     * Gets the number of messages that a device may initially have in flight on a link
+     * for uploading messages.
+     * <p>
+     * The adapter never grants less credit than this to a device.
+     * <p>
+     * The default value of this property is {@link #DEFAULT_MIN_LINK_CREDIT}.
+     * 
+     * @return The number of messages.
+     */
+    public final int getMinLinkCredit() {
+        return minLinkCredit;
+    }
+
+    /**
+     * Sets the number of messages that a device may initially have in flight on a link
+     * for uploading messages.
+     * <p>
+     * The adapter never grants less credit than this to a device.
+     * <p>
+     * The default value of this property is {@link #DEFAULT_MIN_LINK_CREDIT}.
+     * 
+     * @param minLinkCredit The number of messages.
+     * @throws IllegalArgumentException if the number is less than 1.
+     */
+    public final void setMinLinkCredit(final int minLinkCredit) {
+        if (minLinkCredit < 1) {
+            throw new IllegalArgumentException("link credit must be at least 1");
+        }
+        this.minLinkCredit = minLinkCredit;
+    }
+
+    /**
+     * Gets the maximum number of messages that a device may have in flight on a link
+     * for uploading messages.
+     * <p>
+     * The adapter increases the credit granted to a device up to this value as long as
+     * the device uses up its credit and the messages can be forwarded downstream.
+     * This value is used if the device's tenant does not define a specific limit.
+     * <p>
+     * The default value of this property is {@link #DEFAULT_MAX_LINK_CREDIT}.
+     * 
+     * @return The number of messages.
+     */
+    public final int getMaxLinkCredit() {
+        return maxLinkCredit;
+    }
+
+    /**
+     * Sets the maximum number of messages that a device may have in flight on a link
+     * for uploading messages.
+     * <p>
+     * The adapter increases the credit granted to a device up to this value as long as
+     * the device uses up its credit and the messages can be forwarded downstream.
+     * This value is used if the device's tenant does not define a specific limit.
+     * <p>
+     * The default value of this property is {@link #DEFAULT_MAX_LINK_CREDIT}.
+     * <p>
+     * Values less than the minimum link credit are treated as the minimum link credit.
+     * 
+     * @param maxLinkCredit The number of messages.
+     * @throws IllegalArgumentException if the number is less than 1.
+     */
+    public final void setMaxLinkCredit(final int maxLinkCredit) {
+        if (maxLinkCredit < 1) {
+            throw new IllegalArgumentException("link credit must be at least 1");
+        }
+        this.maxLinkCredit = maxLinkCredit;
+    }
 }
@@ -12,6 +12,7 @@
  *******************************************************************************/
 package org.eclipse.hono.adapter.amqp;
 
+import java.net.HttpURLConnection;
 import java.security.GeneralSecurityException;
 import java.security.cert.Certificate;
 import java.security.cert.TrustAnchor;
@@ -20,6 +21,7 @@ import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Objects;
+import java.util.Optional;
 import java.util.function.Supplier;
 
 import javax.net.ssl.SSLPeerUnverifiedException;
@@ -32,6 +34,7 @@ import org.apache.qpid.proton.engine.Sasl.SaslOutcome;
 import org.apache.qpid.proton.engine.Transport;
 import org.eclipse.hono.auth.Device;
 import org.eclipse.hono.client.HonoClient;
+import org.eclipse.hono.client.ServerErrorException;
 import org.eclipse.hono.config.ProtocolAdapterProperties;
 import org.eclipse.hono.service.auth.DeviceUser;
 import org.eclipse.hono.service.auth.device.DeviceCertificateValidator;
@@ -40,6 +43,7 @@ import org.eclipse.hono.service.auth.device.SubjectDnCredentials;
 import org.eclipse.hono.service.auth.device.UsernamePasswordAuthProvider;
 import org.eclipse.hono.service.auth.device.UsernamePasswordCredentials;
 import org.eclipse.hono.service.auth.device.X509AuthProvider;
+import org.eclipse.hono.service.limiting.ConnectionAdmissionController;
 import org.eclipse.hono.service.limiting.ConnectionLimitManager;
 import org.eclipse.hono.service.plan.ResourceLimitChecks;
 import org.eclipse.hono.tracing.TracingHelper;
@@ -81,6 +85,7 @@ public class AmqpAdapterSaslAuthenticatorFactory implements ProtonSaslAuthentica
     private final Tracer tracer;
     private final Supplier<Span> spanFactory;
     private final ConnectionLimitManager connectionLimitManager;
+    private final ConnectionAdmissionController connectionAdmissionController;
     private final ResourceLimitChecks resourceLimitChecks;
 
     /**
@@ -97,8 +102,10 @@ public class AmqpAdapterSaslAuthenticatorFactory implements ProtonSaslAuthentica
      * @param connectionLimitManager The connection limit manager to use to monitor the number of connections.
      * @param resourceLimitChecks The resource limit checks instance to check if the maximum number of connections are
      *            exceeded or not.
+     * @param connectionAdmissionController The controller to use for limiting the number of devices being
+     *            authenticated concurrently or {@code null} if the number should not be limited.
      *
-     * @throws NullPointerException if any of the parameters are null.
+     * @throws NullPointerException if any of the parameters other than the admission controller are null.
      */
     public AmqpAdapterSaslAuthenticatorFactory(
             final HonoClient tenantServiceClient,
@@ -107,7 +114,8 @@ public class AmqpAdapterSaslAuthenticatorFactory implements ProtonSaslAuthentica
             final Tracer tracer,
             final Supplier<Span> spanFactory,
             final ConnectionLimitManager connectionLimitManager,
-            final ResourceLimitChecks resourceLimitChecks) {
+            final ResourceLimitChecks resourceLimitChecks,
+            final ConnectionAdmissionController connectionAdmissionController) {
 
         this.tenantServiceClient = Objects.requireNonNull(tenantServiceClient, "Tenant client cannot be null");
         this.credentialsServiceClient = Objects.requireNonNull(credentialsServiceClient, "Credentials client cannot be null");
@@ -116,12 +124,13 @@ public class AmqpAdapterSaslAuthenticatorFactory implements ProtonSaslAuthentica
         this.spanFactory = Objects.requireNonNull(spanFactory);
         this.connectionLimitManager = Objects.requireNonNull(connectionLimitManager);
         this.resourceLimitChecks = Objects.requireNonNull(resourceLimitChecks);
+        this.connectionAdmissionController = connectionAdmissionController;
     }
 
     @Override
     public ProtonSaslAuthenticator create() {
         return new AmqpAdapterSaslAuthenticator(tenantServiceClient, credentialsServiceClient, config, tracer,
-                spanFactory.get(), connectionLimitManager, resourceLimitChecks);
+                spanFactory.get(), connectionLimitManager, resourceLimitChecks, connectionAdmissionController);
     }
 
     /**
@@ -138,6 +147,7 @@ public class AmqpAdapterSaslAuthenticatorFactory implements ProtonSaslAuthentica
         private final Span currentSpan;
         private final ConnectionLimitManager connectionLimitManager;
         private final ResourceLimitChecks resourceLimitChecks;
+        private final ConnectionAdmissionController connectionAdmissionController;
 
         private Sasl sasl;
         private boolean succeeded;
@@ -154,7 +164,8 @@ public class AmqpAdapterSaslAuthenticatorFactory implements ProtonSaslAuthentica
                 final Tracer tracer,
                 final Span currentSpan,
                 final ConnectionLimitManager connectionLimitManager,
-                final ResourceLimitChecks resourceLimitChecks) {
+                final ResourceLimitChecks resourceLimitChecks,
+                final ConnectionAdmissionController connectionAdmissionController) {
 
             this.tenantServiceClient = tenantServiceClient;
             this.credentialsServiceClient = credentialsServiceClient;
@@ -163,6 +174,7 @@ public class AmqpAdapterSaslAuthenticatorFactory implements ProtonSaslAuthentica
             this.currentSpan = currentSpan;
             this.connectionLimitManager = connectionLimitManager;
             this.resourceLimitChecks = resourceLimitChecks;
+            this.connectionAdmissionController = connectionAdmissionController;
         }
 
         @Override
@@ -221,8 +233,13 @@ public class AmqpAdapterSaslAuthenticatorFactory implements ProtonSaslAuthentica
                 } else {
                     TracingHelper.logError(currentSpan, outcome.cause());
                     currentSpan.finish();
-                    LOG.debug("validation of credentials failed: {}", outcome.cause().getMessage());
-                    sasl.done(SaslOutcome.PN_SASL_AUTH);
+                    if (isTemporaryFailure(outcome.cause())) {
+                        LOG.debug("cannot validate credentials: {}", outcome.cause().getMessage());
+                        sasl.done(SaslOutcome.PN_SASL_TEMP);
+                    } else {
+                        LOG.debug("validation of credentials failed: {}", outcome.cause().getMessage());
+                        sasl.done(SaslOutcome.PN_SASL_AUTH);
+                    }
 
                 }
                 // invoke the completion handler on the calling context.
@@ -232,12 +249,56 @@ public class AmqpAdapterSaslAuthenticatorFactory implements ProtonSaslAuthentica
             final byte[] saslResponse = new byte[sasl.pending()];
             sasl.recv(saslResponse, 0, saslResponse.length);
 
-            if (AuthenticationConstants.MECHANISM_PLAIN.equals(remoteMechanism)) {
-                verifyPlain(saslResponse, deviceAuthTracker.completer());
-            } else if (AuthenticationConstants.MECHANISM_EXTERNAL.equals(remoteMechanism)) {
-                verifyExternal(deviceAuthTracker.completer());
+            // limit the number of devices of the same tenant being authenticated concurrently
+            admit(getClaimedTenant(remoteMechanism, saslResponse), () -> {
+                final Future<DeviceUser> authAttempt = Future.future();
+                if (AuthenticationConstants.MECHANISM_PLAIN.equals(remoteMechanism)) {
+                    verifyPlain(saslResponse, authAttempt.completer());
+                } else if (AuthenticationConstants.MECHANISM_EXTERNAL.equals(remoteMechanism)) {
+                    verifyExternal(authAttempt.completer());
+                } else {
+                    authAttempt.fail(new CredentialException("unsupported SASL mechanism"));
+                }
+                return authAttempt;
+            }).setHandler(deviceAuthTracker.completer());
+        }
+
+        private Future<DeviceUser> admit(final String tenantId, final Supplier<Future<DeviceUser>> authentication) {
+            if (connectionAdmissionController == null) {
+                return authentication.get();
+            } else {
+                return connectionAdmissionController.admit(
+                        tenantId,
+                        () -> !protonConnection.isDisconnected(),
+                        authentication);
             }
+        }
+
+        /**
+         * Gets the tenant that a device claims to belong to in the username of its SASL PLAIN response.
+         *
+         * @return The tenant or {@code null} if the device does not use SASL PLAIN, e.g. because
+         *         it authenticates by means of a client certificate, or if the response is malformed.
+         */
+        private String getClaimedTenant(final String mechanism, final byte[] saslResponse) {
+
+            if (!AuthenticationConstants.MECHANISM_PLAIN.equals(mechanism)) {
+                return null;
+            }
+            try {
+                final String[] fields = AuthenticationConstants.parseSaslResponse(saslResponse);
+                return Optional.ofNullable(UsernamePasswordCredentials.create(fields[1], fields[2], config.isSingleTenant()))
+                        .map(UsernamePasswordCredentials::getTenantId)
+                        .orElse(null);
+            } catch (final CredentialException e) {
+                // the response is verified again when processing the request
+                return null;
+            }
+        }
 
+        private static boolean isTemporaryFailure(final Throwable error) {
+            return error instanceof ServerErrorException
+                    && ((ServerErrorException) error).getErrorCode() == HttpURLConnection.HTTP_UNAVAILABLE;
         }
 
         @Override
@@ -13,6 +13,11 @@
 
 package org.eclipse.hono.adapter.amqp;
 
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
 import org.eclipse.hono.service.metric.MicrometerBasedMetrics;
 import org.springframework.stereotype.Component;
 
@@ -24,6 +29,18 @@ import io.micrometer.core.instrument.MeterRegistry;
 @Component
 public class MicrometerBasedAmqpAdapterMetrics extends MicrometerBasedMetrics implements AmqpAdapterMetrics {
 
+    /**
+     * The name of the meter for the credit granted to devices on links for uploading messages.
+     */
+    public static final String METER_LINK_CREDIT = "hono.amqp.link.credit";
+    /**
+     * The name of the meter for the messages received from devices that have not been settled yet.
+     */
+    public static final String METER_LINK_UNSETTLED = "hono.amqp.link.unsettled";
+
+    private final Map<String, AtomicLong> linkCredit = new ConcurrentHashMap<>();
+    private final Map<String, AtomicLong> unsettledMessages = new ConcurrentHashMap<>();
+
     /**
      * Create a new metrics instance for the AMQP adapter.
      * 
@@ -34,4 +51,18 @@ public class MicrometerBasedAmqpAdapterMetrics extends MicrometerBasedMetrics im
     public MicrometerBasedAmqpAdapterMetrics(final MeterRegistry registry) {
         super(registry);
     }
+
+    @Override
+    public void adjustLinkCredit(final String tenantId, final int delta) {
+
+        Objects.requireNonNull(tenantId);
+        gaugeForTenant(METER_LINK_CREDIT, linkCredit, tenantId, AtomicLong::new).addAndGet(delta);
+    }
+
+    @Override
+    public void adjustUnsettledMessages(final String tenantId, final int delta) {
+
+        Objects.requireNonNull(tenantId);
+        gaugeForTenant(METER_LINK_UNSETTLED, unsettledMessages, tenantId, AtomicLong::new).addAndGet(delta);
+    }
 }
@@ -44,6 +44,7 @@ public class AmqpContext extends MapBasedExecutionContext {
     private Buffer payload;
     private EndpointType endpoint;
     private Sample timer;
+    private boolean downstreamCreditExhausted;
 
     /**
      * Creates an AmqpContext instance using the specified delivery, message and authenticated device.
@@ -187,6 +188,24 @@ public class AmqpContext extends MapBasedExecutionContext {
         return timer;
     }
 
+    /**
+     * Marks the downstream sender used for forwarding this context's message
+     * as having run out of credit.
+     */
+    void setDownstreamCreditExhausted() {
+        this.downstreamCreditExhausted = true;
+    }
+
+    /**
+     * Checks if the downstream sender used for forwarding this context's message
+     * has run out of credit.
+     * 
+     * @return {@code true} if the sender has no credit left.
+     */
+    boolean isDownstreamCreditExhausted() {
+        return downstreamCreditExhausted;
+    }
+
     /**
      * Creates an AMQP error condition for an throwable.
      * <p>
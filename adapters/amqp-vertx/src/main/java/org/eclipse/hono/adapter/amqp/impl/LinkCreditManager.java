@@ -0,0 +1,195 @@
+/*******************************************************************************
+ * Copyright (c) 2019 Contributors to the Eclipse Foundation
+ *
+ * See the NOTICE file(s) distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *******************************************************************************/
+
+package org.eclipse.hono.adapter.amqp.impl;
+
+import java.util.Objects;
+
+import org.eclipse.hono.adapter.amqp.AmqpAdapterMetrics;
+
+import io.vertx.proton.ProtonReceiver;
+
+/**
+ * Manages the credit that is granted to a device on a link for uploading messages.
+ * <p>
+ * The manager maintains a <em>window</em> of messages that the device may have in flight
+ * at any time, i.e. the sum of the credit granted to the device and the number of messages
+ * that have been received but not yet settled never exceeds the window size.
+ * The window starts at the minimum credit and is doubled (up to the maximum credit) whenever
+ * the device has used up all of its credit, i.e. when the link is saturated. The window is
+ * halved (down to the minimum credit) whenever a message could not be forwarded because the
+ * downstream sender has run out of credit.
+ * <p>
+ * Instances of this class are not thread safe and are expected to be used on the
+ * vert.x context that the receiver has been opened on.
+ */
+final class LinkCreditManager {
+
+    private final ProtonReceiver receiver;
+    private final AmqpAdapterMetrics metrics;
+    private final String tenantId;
+    private final int minCredit;
+    private int maxCredit;
+    private int window;
+    private int unsettled;
+    private boolean closed;
+
+    /**
+     * Creates a new manager for a receiver link.
+     *
+     * @param receiver The link to manage the credit for.
+     * @param minCredit The initial (and minimum) size of the window.
+     * @param maxCredit The maximum size of the window.
+     * @param metrics The metrics to report the granted credit and the number of unsettled messages to.
+     * @param tenantId The tenant that the device belongs to or {@code null} if the device is
+     *                 unauthenticated. No metrics are reported for unauthenticated devices.
+     * @throws NullPointerException if receiver or metrics are {@code null}.
+     * @throws IllegalArgumentException if min credit is &lt; 1 or max credit is &lt; min credit.
+     */
+    LinkCreditManager(
+            final ProtonReceiver receiver,
+            final int minCredit,
+            final int maxCredit,
+            final AmqpAdapterMetrics metrics,
+            final String tenantId) {
+
+        if (minCredit < 1 || maxCredit < minCredit) {
+            throw new IllegalArgumentException("credit must be at least 1 and max credit must not be less than min credit");
+        }
+        this.receiver = Objects.requireNonNull(receiver);
+        this.metrics = Objects.requireNonNull(metrics);
+        this.tenantId = tenantId;
+        this.minCredit = minCredit;
+        this.maxCredit = maxCredit;
+        this.window = minCredit;
+    }
+
+    /**
+     * Disables the receiver's automatic credit replenishment.
+     * <p>
+     * This method must be invoked before the receiver is opened.
+     */
+    void init() {
+        receiver.setPrefetch(0);
+    }
+
+    /**
+     * Grants the initial credit to the device.
+     * <p>
+     * This method must be invoked after the receiver has been opened.
+     */
+    void start() {
+        reportCredit(window);
+        replenish();
+    }
+
+    /**
+     * Gets the current size of the window.
+     *
+     * @return The number of messages.
+     */
+    int getWindow() {
+        return window;
+    }
+
+    /**
+     * Sets the maximum size of the window.
+     * <p>
+     * Values less than the minimum credit are ignored. The window is shrunk to
+     * the new maximum if necessary.
+     *
+     * @param maxCredit The maximum number of messages.
+     */
+    void setMaxCredit(final int maxCredit) {
+        if (maxCredit >= minCredit) {
+            this.maxCredit = maxCredit;
+            if (window > maxCredit) {
+                setWindow(maxCredit);
+            }
+        }
+    }
+
+    /**
+     * Records the reception of a message from the device.
+     * <p>
+     * Grows the window if the device has used up all of its credit.
+     */
+    void onMessageReceived() {
+        if (closed) {
+            return;
+        }
+        unsettled++;
+        reportUnsettled(1);
+        if (receiver.getCredit() <= 0 && window < maxCredit) {
+            setWindow(Math.min(maxCredit, window * 2));
+            replenish();
+        }
+    }
+
+    /**
+     * Records the settlement of a message received from the device.
+     * <p>
+     * Shrinks the window if the message could not be forwarded because of
+     * a lack of downstream credit and replenishes the device's credit.
+     *
+     * @param downstreamCreditExhausted {@code true} if the downstream sender has run out of credit.
+     */
+    void onMessageSettled(final boolean downstreamCreditExhausted) {
+        if (closed) {
+            return;
+        }
+        unsettled--;
+        reportUnsettled(-1);
+        if (downstreamCreditExhausted && window > minCredit) {
+            setWindow(Math.max(minCredit, window / 2));
+        }
+        replenish();
+    }
+
+    /**
+     * Stops managing the link's credit.
+     * <p>
+     * Removes the link's credit and unsettled messages from the metrics.
+     */
+    void close() {
+        if (!closed) {
+            closed = true;
+            reportCredit(-window);
+            reportUnsettled(-unsettled);
+        }
+    }
+
+    private void setWindow(final int newWindow) {
+        reportCredit(newWindow - window);
+        window = newWindow;
+    }
+
+    private void replenish() {
+        final int credit = window - unsettled - receiver.getCredit();
+        if (credit > 0) {
+            receiver.flow(credit);
+        }
+    }
+
+    private void reportCredit(final int delta) {
+        if (tenantId != null && delta != 0) {
+            metrics.adjustLinkCredit(tenantId, delta);
+        }
+    }
+
+    private void reportUnsettled(final int delta) {
+        if (tenantId != null && delta != 0) {
+            metrics.adjustUnsettledMessages(tenantId, delta);
+        }
+    }
+}
@@ -15,9 +15,11 @@ package org.eclipse.hono.adapter.amqp.impl;
 import java.net.HttpURLConnection;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
+import java.util.Set;
 
 import org.apache.qpid.proton.amqp.UnsignedLong;
 import org.apache.qpid.proton.amqp.messaging.Accepted;
@@ -45,7 +47,9 @@ import org.eclipse.hono.service.AbstractProtocolAdapterBase;
 import org.eclipse.hono.service.limiting.ConnectionLimitManager;
 import org.eclipse.hono.service.limiting.MemoryBasedConnectionLimitStrategy;
 import org.eclipse.hono.service.metric.MetricsTags.Direction;
+import org.eclipse.hono.service.metric.MetricsTags.EndpointType;
 import org.eclipse.hono.service.metric.MetricsTags.ProcessingOutcome;
+import org.eclipse.hono.service.metric.MetricsTags.ProcessingStage;
 import org.eclipse.hono.service.metric.MetricsTags.QoS;
 import org.eclipse.hono.tracing.TracingHelper;
 import org.eclipse.hono.util.CommandConstants;
@@ -60,6 +64,7 @@ import org.springframework.beans.factory.annotation.Autowired;
 import io.micrometer.core.instrument.Timer.Sample;
 import io.opentracing.Span;
 import io.opentracing.log.Fields;
+import io.opentracing.noop.NoopSpan;
 import io.opentracing.tag.Tags;
 import io.vertx.core.AsyncResult;
 import io.vertx.core.CompositeFuture;
@@ -136,6 +141,7 @@ public final class VertxBasedAmqpProtocolAdapter extends AbstractProtocolAdapter
      *
      * @return The metrics
      */
+    @Override
     protected AmqpAdapterMetrics getMetrics() {
         return metrics;
     }
@@ -162,7 +168,8 @@ public final class VertxBasedAmqpProtocolAdapter extends AbstractProtocolAdapter
                                     .withTag(Tags.COMPONENT.getKey(), getTypeName())
                                     .start(),
                                 connectionLimitManager,
-                                getResourceLimitChecks());
+                                getResourceLimitChecks(),
+                                getConnectionAdmissionController());
                     }
                     return Future.succeededFuture();
                 }).compose(succcess -> {
@@ -282,11 +289,13 @@ public final class VertxBasedAmqpProtocolAdapter extends AbstractProtocolAdapter
         con.disconnectHandler(lostConnection -> {
             LOG.debug("lost connection to device [container: {}]", con.getRemoteContainer());
             Optional.ofNullable(getConnectionLossHandler(con)).ifPresent(handler -> handler.handle(null));
+            closeLinkCreditManagers(con);
             decrementConnectionCount(con);
         });
         con.closeHandler(remoteClose -> {
             handleRemoteConnectionClose(con, remoteClose);
             Optional.ofNullable(getConnectionLossHandler(con)).ifPresent(handler -> handler.handle(null));
+            closeLinkCreditManagers(con);
             decrementConnectionCount(con);
         });
 
@@ -456,6 +465,10 @@ public final class VertxBasedAmqpProtocolAdapter extends AbstractProtocolAdapter
      * <p>
      * If the attach frame contains a target address, this method simply closes the link,
      * otherwise, it accepts and opens the link.
+     * <p>
+     * The credit granted to the device is adapted to the rate at which the device sends messages
+     * and the availability of downstream credit. The maximum credit can be defined per tenant using
+     * the {@value AmqpAdapterConstants#FIELD_MAX_LINK_CREDIT} property of the tenant's adapter configuration.
      * 
      * @param conn The connection through which the request is initiated.
      * @param receiver The receiver link for receiving the data.
@@ -486,17 +499,35 @@ public final class VertxBasedAmqpProtocolAdapter extends AbstractProtocolAdapter
             receiver.setTarget(receiver.getRemoteTarget());
             receiver.setSource(receiver.getRemoteSource());
             receiver.setQoS(receiver.getRemoteQoS());
-            receiver.setPrefetch(30);
-            // manage disposition handling manually
+            final LinkCreditManager linkCredit = new LinkCreditManager(
+                    receiver,
+                    getConfig().getMinLinkCredit(),
+                    Math.max(getConfig().getMinLinkCredit(), getConfig().getMaxLinkCredit()),
+                    metrics,
+                    Optional.ofNullable(authenticatedDevice).map(Device::getTenantId).orElse(null));
+            // manage credit and disposition handling manually
+            linkCredit.init();
             receiver.setAutoAccept(false);
-            HonoProtonHelper.setCloseHandler(receiver, remoteDetach -> onLinkDetach(receiver));
-            HonoProtonHelper.setDetachHandler(receiver, remoteDetach -> onLinkDetach(receiver));
+            addLinkCreditManager(conn, linkCredit);
+            HonoProtonHelper.setCloseHandler(receiver, remoteDetach -> {
+                removeLinkCreditManager(conn, linkCredit);
+                onLinkDetach(receiver);
+            });
+            HonoProtonHelper.setDetachHandler(receiver, remoteDetach -> {
+                removeLinkCreditManager(conn, linkCredit);
+                onLinkDetach(receiver);
+            });
             receiver.handler((delivery, message) -> {
                 final AmqpContext ctx = AmqpContext.fromMessage(delivery, message, authenticatedDevice);
                 ctx.setTimer(metrics.startTimer());
-                onMessageReceived(ctx);
+                linkCredit.onMessageReceived();
+                onMessageReceived(ctx).setHandler(processing -> linkCredit.onMessageSettled(ctx.isDownstreamCreditExhausted()));
             });
             receiver.open();
+            linkCredit.start();
+            if (authenticatedDevice != null) {
+                applyTenantLinkCredit(authenticatedDevice.getTenantId(), linkCredit, span);
+            }
             if (authenticatedDevice == null) {
                 LOG.debug("established link for receiving messages from device [container: {}]",
                         conn.getRemoteContainer());
@@ -509,6 +540,22 @@ public final class VertxBasedAmqpProtocolAdapter extends AbstractProtocolAdapter
         span.finish();
     }
 
+    private void applyTenantLinkCredit(final String tenantId, final LinkCreditManager linkCredit, final Span span) {
+
+        getTenantConfiguration(tenantId, span.context()).setHandler(lookup -> {
+            if (lookup.succeeded()) {
+                Optional.ofNullable(lookup.result().getAdapterConfiguration(getTypeName()))
+                    .map(conf -> conf.getValue(AmqpAdapterConstants.FIELD_MAX_LINK_CREDIT))
+                    .filter(Integer.class::isInstance)
+                    .ifPresent(maxCredit -> {
+                        LOG.debug("using tenant specific max link credit [tenant: {}, max-link-credit: {}]",
+                                tenantId, maxCredit);
+                        linkCredit.setMaxCredit((Integer) maxCredit);
+                    });
+            }
+        });
+    }
+
     /**
      * Processes an AMQP message received from a device.
      * <p>
@@ -526,8 +573,13 @@ public final class VertxBasedAmqpProtocolAdapter extends AbstractProtocolAdapter
      */
     protected Future<ProtonDelivery> onMessageReceived(final AmqpContext ctx) {
 
-        final Span msgSpan = newSpan("upload message", ctx.getAuthenticatedDevice());
-        msgSpan.log(Collections.singletonMap(Tags.MESSAGE_BUS_DESTINATION.getKey(), ctx.getAddress()));
+        final Span msgSpan;
+        if (isSampled(ctx)) {
+            msgSpan = newSpan("upload message", ctx.getAuthenticatedDevice());
+            msgSpan.log(Collections.singletonMap(Tags.MESSAGE_BUS_DESTINATION.getKey(), ctx.getAddress()));
+        } else {
+            msgSpan = NoopSpan.INSTANCE;
+        }
 
         return validateEndpoint(ctx)
         .compose(validatedEndpoint -> validateAddress(validatedEndpoint.getAddress(), validatedEndpoint.getAuthenticatedDevice()))
@@ -549,6 +601,29 @@ public final class VertxBasedAmqpProtocolAdapter extends AbstractProtocolAdapter
         });
     }
 
+    private boolean isSampled(final AmqpContext ctx) {
+
+        final ResourceIdentifier address = ctx.getAddress();
+        final Device authenticatedDevice = ctx.getAuthenticatedDevice();
+        final String tenantId;
+        final String deviceId;
+        if (address != null && address.getTenantId() != null) {
+            tenantId = address.getTenantId();
+            deviceId = address.getResourceId();
+        } else if (authenticatedDevice != null) {
+            tenantId = authenticatedDevice.getTenantId();
+            deviceId = authenticatedDevice.getDeviceId();
+        } else {
+            tenantId = null;
+            deviceId = null;
+        }
+        return isSampled(
+                tenantId,
+                deviceId,
+                ctx.getEndpoint() == null ? EndpointType.UNKNOWN : ctx.getEndpoint(),
+                ctx.isRemotelySettled() ? QoS.AT_MOST_ONCE : QoS.AT_LEAST_ONCE);
+    }
+
     /**
      * This method is invoked when a device wants to open a link for receiving commands.
      * <p>
@@ -876,14 +951,17 @@ public final class VertxBasedAmqpProtocolAdapter extends AbstractProtocolAdapter
 
                     if (context.isRemotelySettled()) {
                         // client uses AT_MOST_ONCE delivery semantics -> fire and forget
-                        return sender.send(downstreamMessage, currentSpan.context());
+                        return recordProcessingStage(ProcessingStage.DOWNSTREAM_SEND,
+                                () -> sender.send(downstreamMessage, currentSpan.context()));
                     } else {
                         // client uses AT_LEAST_ONCE delivery semantics
-                        return sender.sendAndWaitForOutcome(downstreamMessage, currentSpan.context());
+                        return recordProcessingStage(ProcessingStage.DOWNSTREAM_SEND,
+                                () -> sender.sendAndWaitForOutcome(downstreamMessage, currentSpan.context()));
                     }
 
                 }).recover(t -> {
 
+                    checkDownstreamCredit(context, senderFuture);
                     LOG.debug("cannot process {} message from device [tenant: {}, device-id: {}]",
                             context.getEndpoint().getCanonicalName(),
                             resource.getTenantId(),
@@ -900,6 +978,7 @@ public final class VertxBasedAmqpProtocolAdapter extends AbstractProtocolAdapter
 
                 }).map(delivery -> {
 
+                    checkDownstreamCredit(context, senderFuture);
                     metrics.reportTelemetry(
                             context.getEndpoint(),
                             resource.getTenantId(),
@@ -911,6 +990,13 @@ public final class VertxBasedAmqpProtocolAdapter extends AbstractProtocolAdapter
                 });
     }
 
+    private static void checkDownstreamCredit(final AmqpContext context, final Future<MessageSender> senderFuture) {
+
+        if (senderFuture.succeeded() && senderFuture.result().getCredit() <= 0) {
+            context.setDownstreamCreditExhausted();
+        }
+    }
+
     private Future<ProtonDelivery> doUploadCommandResponseMessage(
             final AmqpContext context,
             final ResourceIdentifier resource,
@@ -1041,6 +1127,33 @@ public final class VertxBasedAmqpProtocolAdapter extends AbstractProtocolAdapter
         return con.attachments().get("connectionLossHandler", Handler.class);
     }
 
+    private static void addLinkCreditManager(final ProtonConnection con, final LinkCreditManager manager) {
+
+        @SuppressWarnings("unchecked")
+        final Set<LinkCreditManager> managers = Optional
+                .ofNullable(con.attachments().get("linkCreditManagers", Set.class))
+                .orElseGet(() -> {
+                    final Set<LinkCreditManager> newManagers = new HashSet<>();
+                    con.attachments().set("linkCreditManagers", Set.class, newManagers);
+                    return newManagers;
+                });
+        managers.add(manager);
+    }
+
+    private static void removeLinkCreditManager(final ProtonConnection con, final LinkCreditManager manager) {
+
+        manager.close();
+        Optional.ofNullable(con.attachments().get("linkCreditManagers", Set.class))
+            .ifPresent(managers -> managers.remove(manager));
+    }
+
+    @SuppressWarnings("unchecked")
+    private static void closeLinkCreditManagers(final ProtonConnection con) {
+
+        Optional.ofNullable(con.attachments().get("linkCreditManagers", Set.class))
+            .ifPresent(managers -> ((Set<LinkCreditManager>) managers).forEach(LinkCreditManager::close));
+    }
+
     private static Device getAuthenticatedDevice(final ProtonConnection con) {
         return Optional.ofNullable(con.attachments())
                 .map(attachments -> attachments.get(AmqpAdapterConstants.KEY_CLIENT_DEVICE, Device.class))
@@ -0,0 +1,160 @@
+/*******************************************************************************
+ * Copyright (c) 2019 Contributors to the Eclipse Foundation
+ *
+ * See the NOTICE file(s) distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *******************************************************************************/
+
+package org.eclipse.hono.adapter.amqp.impl;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.eclipse.hono.adapter.amqp.AmqpAdapterMetrics;
+import org.junit.Before;
+import org.junit.Test;
+
+import io.vertx.proton.ProtonReceiver;
+
+/**
+ * Tests verifying behavior of {@link LinkCreditManager}.
+ *
+ */
+public class LinkCreditManagerTest {
+
+    private ProtonReceiver receiver;
+    private AmqpAdapterMetrics metrics;
+    private AtomicInteger credit;
+
+    /**
+     * Sets up the fixture.
+     */
+    @Before
+    public void setUp() {
+
+        credit = new AtomicInteger();
+        receiver = mock(ProtonReceiver.class);
+        when(receiver.getCredit()).thenAnswer(invocation -> credit.get());
+        when(receiver.flow(anyInt())).thenAnswer(invocation -> {
+            credit.addAndGet(invocation.getArgument(0));
+            return receiver;
+        });
+        metrics = mock(AmqpAdapterMetrics.class);
+    }
+
+    /**
+     * Verifies that the manager disables prefetching and grants the minimum credit initially.
+     */
+    @Test
+    public void testStartGrantsMinimumCredit() {
+
+        final LinkCreditManager manager = new LinkCreditManager(receiver, 10, 100, metrics, "tenant");
+        manager.init();
+        manager.start();
+
+        verify(receiver).setPrefetch(0);
+        assertThat(credit.get(), is(10));
+        verify(metrics).adjustLinkCredit("tenant", 10);
+    }
+
+    /**
+     * Verifies that the window grows up to the maximum credit when the device
+     * uses up all of its credit.
+     */
+    @Test
+    public void testWindowGrowsForSaturatedLink() {
+
+        final LinkCreditManager manager = new LinkCreditManager(receiver, 10, 30, metrics, "tenant");
+        manager.start();
+
+        receiveMessages(manager, 10);
+        assertThat(manager.getWindow(), is(20));
+        // the unsettled messages count against the window
+        assertThat(credit.get(), is(10));
+
+        receiveMessages(manager, 10);
+        assertThat(manager.getWindow(), is(30));
+        assertThat(credit.get(), is(10));
+
+        receiveMessages(manager, 10);
+        assertThat(manager.getWindow(), is(30));
+        assertThat(credit.get(), is(0));
+
+        // settling the messages replenishes the credit
+        manager.onMessageSettled(false);
+        assertThat(credit.get(), is(1));
+    }
+
+    /**
+     * Verifies that the window shrinks down to the minimum credit when the
+     * downstream sender has run out of credit.
+     */
+    @Test
+    public void testWindowShrinksWhenDownstreamCreditIsExhausted() {
+
+        final LinkCreditManager manager = new LinkCreditManager(receiver, 10, 100, metrics, "tenant");
+        manager.start();
+        receiveMessages(manager, 30);
+        assertThat(manager.getWindow(), is(40));
+
+        manager.onMessageSettled(true);
+        assertThat(manager.getWindow(), is(20));
+        manager.onMessageSettled(true);
+        assertThat(manager.getWindow(), is(10));
+        manager.onMessageSettled(true);
+        assertThat(manager.getWindow(), is(10));
+    }
+
+    /**
+     * Verifies that a tenant specific maximum credit limits the window.
+     */
+    @Test
+    public void testSetMaxCreditLimitsWindow() {
+
+        final LinkCreditManager manager = new LinkCreditManager(receiver, 10, 100, metrics, "tenant");
+        manager.start();
+        receiveMessages(manager, 30);
+        assertThat(manager.getWindow(), is(40));
+
+        manager.setMaxCredit(15);
+        assertThat(manager.getWindow(), is(15));
+        // values below the minimum credit are ignored
+        manager.setMaxCredit(5);
+        assertThat(manager.getWindow(), is(15));
+    }
+
+    /**
+     * Verifies that closing the manager removes the link's credit and
+     * unsettled messages from the metrics.
+     */
+    @Test
+    public void testCloseResetsMetrics() {
+
+        final LinkCreditManager manager = new LinkCreditManager(receiver, 10, 100, metrics, "tenant");
+        manager.start();
+        receiveMessages(manager, 3);
+
+        manager.close();
+        verify(metrics).adjustLinkCredit("tenant", -10);
+        verify(metrics).adjustUnsettledMessages("tenant", -3);
+    }
+
+    private void receiveMessages(final LinkCreditManager manager, final int count) {
+        for (int i = 0; i < count; i++) {
+            credit.decrementAndGet();
+            manager.onMessageReceived();
+        }
+    }
+}
@@ -22,6 +22,7 @@ import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Map;
 import java.util.Objects;
+import java.util.Optional;
 import java.util.Set;
 
 import org.apache.qpid.proton.message.Message;
@@ -29,6 +30,7 @@ import org.eclipse.californium.core.CoapServer;
 import org.eclipse.californium.core.coap.CoAP;
 import org.eclipse.californium.core.coap.CoAP.ResponseCode;
 import org.eclipse.californium.core.coap.MediaTypeRegistry;
+import org.eclipse.californium.core.coap.Response;
 import org.eclipse.californium.core.network.CoapEndpoint;
 import org.eclipse.californium.core.network.Endpoint;
 import org.eclipse.californium.core.network.config.NetworkConfig;
@@ -37,33 +39,49 @@ import org.eclipse.californium.scandium.DTLSConnector;
 import org.eclipse.californium.scandium.config.DtlsConnectorConfig;
 import org.eclipse.hono.auth.Device;
 import org.eclipse.hono.client.ClientErrorException;
+import org.eclipse.hono.client.Command;
+import org.eclipse.hono.client.CommandContext;
+import org.eclipse.hono.client.CommandResponse;
+import org.eclipse.hono.client.MessageConsumer;
 import org.eclipse.hono.client.MessageSender;
+import org.eclipse.hono.client.ResourceConflictException;
 import org.eclipse.hono.config.KeyLoader;
 import org.eclipse.hono.service.AbstractProtocolAdapterBase;
 import org.eclipse.hono.service.metric.MetricsTags;
+import org.eclipse.hono.service.metric.MetricsTags.Direction;
+import org.eclipse.hono.service.metric.MetricsTags.ProcessingStage;
+import org.eclipse.hono.service.metric.MetricsTags.TtdStatus;
 import org.eclipse.hono.util.Constants;
+import org.eclipse.hono.util.EventConstants;
 import org.eclipse.hono.util.ResourceIdentifier;
 import org.eclipse.hono.util.TenantObject;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 
+import io.micrometer.core.instrument.Timer.Sample;
+import io.opentracing.SpanContext;
+import io.opentracing.noop.NoopSpan;
 import io.vertx.core.CompositeFuture;
 import io.vertx.core.Future;
 import io.vertx.core.buffer.Buffer;
 import io.vertx.core.json.JsonObject;
+import io.vertx.proton.ProtonDelivery;
 
 /**
  * Base class for a vert.x based Hono protocol adapter that uses CoAP.
  * <p>
  * Provides support for exposing Hono's southbound Telemetry &amp; Event
- * API by means of CoAP resources.
+ * API by means of CoAP resources. Commands are delivered to devices in the
+ * responses to their requests.
  * 
  * @param <T> The type of configuration properties used by this service.
  */
 public abstract class AbstractVertxBasedCoapAdapter<T extends CoapAdapterProperties>
         extends AbstractProtocolAdapterBase<T> {
 
+    private static final String KEY_TIMER_ID = "timerId";
+
     /**
      * A logger shared with subclasses.
      */
@@ -98,6 +116,7 @@ public abstract class AbstractVertxBasedCoapAdapter<T extends CoapAdapterPropert
      * 
      * @return The metrics.
      */
+    @Override
     protected CoapAdapterMetrics getMetrics() {
         return metrics;
     }
@@ -218,7 +237,7 @@ public abstract class AbstractVertxBasedCoapAdapter<T extends CoapAdapterPropert
     private void bindSecureEndpoint(final CoapServer startingServer, final NetworkConfig config) {
 
         final CoapPreSharedKeyHandler pskHandler = new CoapPreSharedKeyHandler(context, getConfig(),
-                getCredentialsServiceClient());
+                getCredentialsServiceClient(), getMetrics());
         authenticationHandlerMap.put(pskHandler.getType(), pskHandler);
 
         final DtlsConnectorConfig.Builder dtlsConfig = new DtlsConnectorConfig.Builder();
@@ -465,6 +484,16 @@ public abstract class AbstractVertxBasedCoapAdapter<T extends CoapAdapterPropert
     /**
      * Forwards a message to the south bound Telemetry or Event API of the AMQP 1.0 Messaging Network.
      * <p>
+     * If the request contains a <em>hono-ttd</em> URI query parameter, the adapter waits for a command
+     * to be sent to the device for the (effective) number of seconds. A confirmable request is
+     * acknowledged by means of an empty ACK while waiting so that the device does not retransmit
+     * the request. A command received in time is then sent to the device in a separate response
+     * to the request. In this case the response contains the command's payload and content format
+     * as well as the command's name and (for request/response commands) request identifier in
+     * <em>hono-command</em> and <em>hono-cmd-req-id</em> Location-Query options. A request
+     * containing a TTD may have an empty payload in which case an empty notification is forwarded
+     * downstream.
+     * <p>
      * Depending on the outcome of the attempt to upload the message, the CaAP response's code is set as
      * follows:
      * <ul>
@@ -499,59 +528,333 @@ public abstract class AbstractVertxBasedCoapAdapter<T extends CoapAdapterPropert
             final Future<MessageSender> senderTracker,
             final MetricsTags.EndpointType endpoint) {
 
+        final Integer ttdParam = context.getTimeUntilDisconnect();
+        final boolean emptyNotification = payload == null || payload.length() == 0;
+
         if (contentType == null) {
             context.respondWithCode(ResponseCode.NOT_ACCEPTABLE);
-        } else if (payload == null || payload.length() == 0) {
+        } else if (emptyNotification && ttdParam == null) {
             context.respondWithCode(ResponseCode.NOT_ACCEPTABLE);
         } else {
 
+            final Buffer body = emptyNotification ? Buffer.buffer() : payload;
+            final MetricsTags.QoS qos = waitForOutcome ? MetricsTags.QoS.AT_LEAST_ONCE : MetricsTags.QoS.AT_MOST_ONCE;
+            // there is no span for the upload (yet), so the messages that should not be traced
+            // are processed in a no-op context which prevents the clients from creating any spans
+            final SpanContext spanContext = isSampled(
+                    device.getTenantId(),
+                    device.getDeviceId(),
+                    endpoint,
+                    qos)
+                    ? null
+                    : NoopSpan.INSTANCE.context();
+            final Future<Void> responseReady = Future.future();
             final Future<JsonObject> tokenTracker = getRegistrationAssertion(
                     device.getTenantId(), device.getDeviceId(),
                     authenticatedDevice,
-                    null);
-            final Future<TenantObject> tenantEnabledTracker = getTenantConfiguration(device.getTenantId(), null)
+                    spanContext);
+            final Future<TenantObject> tenantEnabledTracker = getTenantConfiguration(device.getTenantId(), spanContext)
                     .compose(tenantObject -> isAdapterEnabled(tenantObject));
-            CompositeFuture.all(tokenTracker, senderTracker, tenantEnabledTracker).compose(ok -> {
+
+            // we only need to consider TTD if the device and tenant are enabled and the adapter
+            // is enabled for the tenant
+            final Future<Integer> ttdTracker = CompositeFuture.all(tokenTracker, tenantEnabledTracker)
+                    .compose(ok -> getTimeUntilDisconnect(tenantEnabledTracker.result(), ttdParam));
+            final Future<MessageConsumer> commandConsumerTracker = ttdTracker
+                    .compose(ttd -> createCommandConsumer(ttd, device.getTenantId(), device.getDeviceId(),
+                            context, responseReady, emptyNotification));
+
+            CompositeFuture.all(senderTracker, commandConsumerTracker).compose(ok -> {
                     final MessageSender sender = senderTracker.result();
+                    final Integer ttd = Optional.ofNullable(commandConsumerTracker.result())
+                            .map(c -> ttdTracker.result())
+                            .orElse(null);
                     final Message downstreamMessage = newMessage(
                             ResourceIdentifier.from(endpoint.getCanonicalName(), device.getTenantId(), device.getDeviceId()),
                             "/" + context.getExchange().getRequestOptions().getUriPathString(),
-                            contentType,
-                            payload,
+                            emptyNotification ? EventConstants.CONTENT_TYPE_EMPTY_NOTIFICATION : contentType,
+                            body,
                             tokenTracker.result(),
-                            null);
+                            ttd);
                     customizeDownstreamMessage(downstreamMessage, context);
+                    final Future<ProtonDelivery> deliveryTracker;
                     if (waitForOutcome) {
                         // wait for outcome, ensure message order, if CoAP NSTART-1 is used.
-                        return sender.sendAndWaitForOutcome(downstreamMessage);
+                        deliveryTracker = recordProcessingStage(ProcessingStage.DOWNSTREAM_SEND,
+                                () -> sender.sendAndWaitForOutcome(downstreamMessage, spanContext));
                     } else {
-                        return sender.send(downstreamMessage);
+                        deliveryTracker = recordProcessingStage(ProcessingStage.DOWNSTREAM_SEND,
+                                () -> sender.send(downstreamMessage, spanContext));
                     }
-            }).map(delivery -> {
+                    return CompositeFuture.all(deliveryTracker, responseReady).map(s -> (Void) null);
+            }).recover(t -> {
+                if (t instanceof ResourceConflictException) {
+                    // simply return an empty response
+                    LOG.debug("ignoring empty notification [tenant: {}, device-id: {}], command consumer is already in use",
+                            device.getTenantId(), device.getDeviceId());
+                    return Future.succeededFuture();
+                } else {
+                    return Future.failedFuture(t);
+                }
+            }).map(proceed -> {
                 LOG.trace("successfully processed message for device [tenantId: {}, deviceId: {}, endpoint: {}]",
                         device.getTenantId(), device.getDeviceId(), endpoint.getCanonicalName());
+                final CommandContext commandContext = context.get(CommandContext.KEY_COMMAND_CONTEXT);
                 metrics.reportTelemetry(
                         endpoint,
                         device.getTenantId(),
                         MetricsTags.ProcessingOutcome.FORWARDED,
-                        waitForOutcome ? MetricsTags.QoS.AT_LEAST_ONCE : MetricsTags.QoS.AT_MOST_ONCE,
-                        payload.length(),
+                        qos,
+                        body.length(),
+                        getTtdStatus(context),
                         context.getTimer());
-                context.respondWithCode(ResponseCode.CHANGED);
-                return delivery;
+                if (commandContext == null) {
+                    context.respondWithCode(ResponseCode.CHANGED);
+                } else {
+                    context.respond(newCommandResponse(commandContext.getCommand()));
+                    commandContext.getCurrentSpan().log("forwarded command to device in CoAP response");
+                    commandContext.accept();
+                    metrics.reportCommand(
+                            commandContext.getCommand().isOneWay() ? Direction.ONE_WAY : Direction.REQUEST,
+                            device.getTenantId(),
+                            MetricsTags.ProcessingOutcome.FORWARDED,
+                            commandContext.getCommand().getPayloadSize(),
+                            getMicrometerSample(commandContext));
+                }
+                // the command consumer is used for a single request only
+                // we can close the consumer only AFTER we have accepted a
+                // potential command
+                Optional.ofNullable(commandConsumerTracker.result()).ifPresent(consumer -> consumer.close(null));
+                return proceed;
             }).recover(t -> {
                 LOG.debug("cannot process message for device [tenantId: {}, deviceId: {}, endpoint: {}]",
                         device.getTenantId(), device.getDeviceId(), endpoint.getCanonicalName(), t);
+                final CommandContext commandContext = context.get(CommandContext.KEY_COMMAND_CONTEXT);
+                if (commandContext != null) {
+                    commandContext.release();
+                    metrics.reportCommand(
+                            commandContext.getCommand().isOneWay() ? Direction.ONE_WAY : Direction.REQUEST,
+                            device.getTenantId(),
+                            MetricsTags.ProcessingOutcome.UNDELIVERABLE,
+                            commandContext.getCommand().getPayloadSize(),
+                            getMicrometerSample(commandContext));
+                }
+                cancelCommandReceptionTimer(context);
+                Optional.ofNullable(commandConsumerTracker.result()).ifPresent(consumer -> consumer.close(null));
                 metrics.reportTelemetry(
                         endpoint,
                         device.getTenantId(),
                         ClientErrorException.class.isInstance(t) ? MetricsTags.ProcessingOutcome.UNPROCESSABLE : MetricsTags.ProcessingOutcome.UNDELIVERABLE,
-                        waitForOutcome ? MetricsTags.QoS.AT_LEAST_ONCE : MetricsTags.QoS.AT_MOST_ONCE,
-                        payload.length(),
+                        qos,
+                        body.length(),
+                        getTtdStatus(context),
                         context.getTimer());
                 CoapErrorResponse.respond(context.getExchange(), t);
                 return Future.failedFuture(t);
             });
         }
     }
+
+    /**
+     * Creates a consumer for command messages to be sent to a device.
+     *
+     * @param ttdSecs The number of seconds the device waits for a command.
+     * @param tenantId The tenant that the device belongs to.
+     * @param deviceId The identifier of the device.
+     * @param context The device's currently executing CoAP request.
+     * @param responseReady A future to complete once one of the following conditions are met:
+     *              <ul>
+     *              <li>the request did not include a <em>hono-ttd</em> parameter or</li>
+     *              <li>a command has been received and the response ready future has not yet been
+     *              completed or</li>
+     *              <li>the ttd has expired</li>
+     *              </ul>
+     * @param emptyNotification {@code true} if the request does not contain any payload.
+     * @return A future indicating the outcome of the operation.
+     *         <p>
+     *         The future will be completed with the created message consumer or {@code null}, if
+     *         the response can be sent back to the device without waiting for a command.
+     *         <p>
+     *         The future will be failed with a {@code ServiceInvocationException} if the
+     *         message consumer could not be created.
+     *         The future will be failed with a {@code ResourceConflictException} if the
+     *         message consumer for the device is already in use and the request contains
+     *         an empty notification (which does not need to be forwarded downstream).
+     * @throws NullPointerException if any of the parameters other than TTD are {@code null}.
+     */
+    private Future<MessageConsumer> createCommandConsumer(
+            final Integer ttdSecs,
+            final String tenantId,
+            final String deviceId,
+            final CoapContext context,
+            final Future<Void> responseReady,
+            final boolean emptyNotification) {
+
+        Objects.requireNonNull(tenantId);
+        Objects.requireNonNull(deviceId);
+        Objects.requireNonNull(context);
+        Objects.requireNonNull(responseReady);
+
+        if (ttdSecs == null || ttdSecs <= 0) {
+            // no need to wait for a command
+            responseReady.tryComplete();
+            return Future.succeededFuture();
+        } else {
+            final Sample ttdWaitTimer = getMetrics().startProcessingStageTimer(ProcessingStage.TTD_WAIT);
+            return createCommandConsumer(
+                    tenantId,
+                    deviceId,
+                    createTtdCommandHandler(tenantId, responseReady, ttdWaitTimer, commandContext -> {
+                        context.put(CommandContext.KEY_COMMAND_CONTEXT, commandContext);
+                        cancelCommandReceptionTimer(context);
+                        setTtdStatus(context, TtdStatus.COMMAND);
+                        // we do not issue any new credit because the
+                        // consumer is supposed to deliver a single command
+                        // only per CoAP request
+                    }),
+                    remoteDetach -> {
+                        LOG.debug("peer closed command receiver link [tenant-id: {}, device-id: {}]", tenantId, deviceId);
+                        // command consumer is closed by closeHandler, no explicit close necessary here
+                    }).map(consumer -> {
+                        if (!responseReady.isComplete()) {
+                            // acknowledge a confirmable request right away so that the
+                            // device does not retransmit it while waiting for a command
+                            context.getExchange().accept();
+                            // add a timer for triggering an empty response
+                            final long timerId = addCommandReceptionTimer(ttdSecs, responseReady, ttdWaitTimer,
+                                    expired -> setTtdStatus(context, TtdStatus.EXPIRED));
+                            context.put(KEY_TIMER_ID, timerId);
+                        }
+                        return consumer;
+                    }).recover(t -> recoverFromCommandConsumerConflict(t, emptyNotification, responseReady));
+        }
+    }
+
+    private void cancelCommandReceptionTimer(final CoapContext context) {
+        cancelCommandReceptionTimer((Long) context.get(KEY_TIMER_ID));
+    }
+
+    private static void setTtdStatus(final CoapContext context, final TtdStatus status) {
+        context.put(TtdStatus.class.getName(), status);
+    }
+
+    private static TtdStatus getTtdStatus(final CoapContext context) {
+        return Optional.ofNullable((TtdStatus) context.get(TtdStatus.class.getName()))
+                .orElse(TtdStatus.NONE);
+    }
+
+    private Response newCommandResponse(final Command command) {
+
+        LOG.trace("adding command [name: {}, request-id: {}] to response for device [tenant-id: {}, device-id: {}]",
+                command.getName(), command.getRequestId(), command.getTenant(), command.getDeviceId());
+        final Response response = new Response(ResponseCode.CHANGED);
+        response.getOptions().addLocationQuery(Constants.HEADER_COMMAND + "=" + command.getName());
+        if (!command.isOneWay()) {
+            response.getOptions().addLocationQuery(Constants.HEADER_COMMAND_REQUEST_ID + "=" + command.getRequestId());
+        }
+        final Buffer payload = command.getPayload();
+        if (payload != null && payload.length() > 0) {
+            response.setPayload(payload.getBytes());
+            final String contentType = command.getContentType();
+            if (contentType != null) {
+                final int contentFormat = MediaTypeRegistry.parse(contentType);
+                if (contentFormat != MediaTypeRegistry.UNDEFINED) {
+                    response.getOptions().setContentFormat(contentFormat);
+                }
+            }
+        }
+        return response;
+    }
+
+    /**
+     * Forwards a response to a command to the sender of the command.
+     * <p>
+     * The body of the CoAP request is used as the payload of the command response.
+     * <p>
+     * Depending on the outcome of the attempt to upload the response, the CoAP response's code is set as
+     * follows:
+     * <ul>
+     * <li>2.04 (Changed) - if the response has been forwarded to the application.</li>
+     * <li>4.00 (Bad Request) - if the request id or status code are missing or invalid.</li>
+     * <li>?.?? (Generic mapped HTTP error) - if the response could not be forwarded.
+     * See {@link CoapErrorResponse}.</li>
+     * </ul>
+     * 
+     * @param context The context representing the request to be processed.
+     * @param authenticatedDevice The authenticated device.
+     * @param originDevice The device that the command has been sent to.
+     * @param commandRequestId The id of the command that the response has been sent in reply to.
+     * @param responseStatus The HTTP status code that the device has provided in its request to indicate
+     *                       the outcome of processing the command (may be {@code null}).
+     * @throws NullPointerException if context or any of the devices are {@code null}.
+     */
+    public final void uploadCommandResponseMessage(
+            final CoapContext context,
+            final Device authenticatedDevice,
+            final Device originDevice,
+            final String commandRequestId,
+            final Integer responseStatus) {
+
+        Objects.requireNonNull(context);
+        Objects.requireNonNull(authenticatedDevice);
+        Objects.requireNonNull(originDevice);
+
+        final String tenant = originDevice.getTenantId();
+        final String deviceId = originDevice.getDeviceId();
+        final Buffer payload = Buffer.buffer(context.getExchange().getRequestPayload());
+        final int contentFormat = context.getExchange().getRequestOptions().getContentFormat();
+        final String contentType = contentFormat == MediaTypeRegistry.UNDEFINED ? null
+                : MediaTypeRegistry.toString(contentFormat);
+
+        LOG.debug("processing response to command [tenantId: {}, deviceId: {}, cmd-req-id: {}, status code: {}]",
+                tenant, deviceId, commandRequestId, responseStatus);
+
+        final CommandResponse commandResponse = CommandResponse.from(commandRequestId, tenant, deviceId, payload,
+                contentType, responseStatus);
+
+        if (commandResponse == null) {
+            metrics.reportCommand(
+                    Direction.RESPONSE,
+                    tenant,
+                    MetricsTags.ProcessingOutcome.UNPROCESSABLE,
+                    payload.length(),
+                    context.getTimer());
+            context.respondWithCode(ResponseCode.BAD_REQUEST);
+        } else {
+
+            final Future<JsonObject> deviceRegistrationTracker = getRegistrationAssertion(
+                    tenant,
+                    deviceId,
+                    authenticatedDevice,
+                    null);
+            final Future<Void> tenantEnabledTracker = getTenantConfiguration(tenant, null)
+                    .compose(tenantObject -> isAdapterEnabled(tenantObject).map(ok -> null));
+            CompositeFuture.all(deviceRegistrationTracker, tenantEnabledTracker)
+                    .compose(ok -> sendCommandResponse(tenant, commandResponse, null))
+                    .map(delivery -> {
+                        LOG.trace("delivered command response [command-request-id: {}] to application",
+                                commandRequestId);
+                        metrics.reportCommand(
+                                Direction.RESPONSE,
+                                tenant,
+                                MetricsTags.ProcessingOutcome.FORWARDED,
+                                payload.length(),
+                                context.getTimer());
+                        context.respondWithCode(ResponseCode.CHANGED);
+                        return delivery;
+                    }).otherwise(t -> {
+                        LOG.debug("could not send command response [command-request-id: {}] to application",
+                                commandRequestId, t);
+                        metrics.reportCommand(
+                                Direction.RESPONSE,
+                                tenant,
+                                ClientErrorException.class.isInstance(t) ? MetricsTags.ProcessingOutcome.UNPROCESSABLE
+                                        : MetricsTags.ProcessingOutcome.UNDELIVERABLE,
+                                payload.length(),
+                                context.getTimer());
+                        CoapErrorResponse.respond(context.getExchange(), t);
+                        return null;
+                    });
+        }
+    }
 }
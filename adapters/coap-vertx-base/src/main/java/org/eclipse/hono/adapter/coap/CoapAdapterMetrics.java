@@ -1,5 +1,5 @@
 /**
- * Copyright (c) 2018 Contributors to the Eclipse Foundation
+ * Copyright (c) 2018, 2019 Contributors to the Eclipse Foundation
  *
  * See the NOTICE file(s) distributed with this work for additional
  * information regarding copyright ownership.
@@ -16,6 +16,9 @@ package org.eclipse.hono.adapter.coap;
 import org.eclipse.hono.service.metric.Metrics;
 import org.eclipse.hono.service.metric.NoopBasedMetrics;
 
+import io.micrometer.core.instrument.Tag;
+import io.micrometer.core.instrument.Timer.Sample;
+
 /**
  * Metrics for the COAP based adapters.
  */
@@ -28,6 +31,10 @@ public interface CoapAdapterMetrics extends Metrics {
 
         private Noop() {
         }
+
+        @Override
+        public void reportPreSharedKeyLookup(final PskLookupOutcome outcome, final Sample timer) {
+        }
     }
 
     /**
@@ -35,5 +42,46 @@ public interface CoapAdapterMetrics extends Metrics {
      */
     CoapAdapterMetrics NOOP = new Noop();
 
-    // nothing for now
+    /**
+     * The outcome of looking up the pre-shared key of a device during a DTLS handshake.
+     */
+    enum PskLookupOutcome {
+
+        /**
+         * The key has been found in the cache.
+         */
+        CACHED("cached"),
+        /**
+         * The key has been retrieved from the Credentials service.
+         */
+        RETRIEVED("retrieved"),
+        /**
+         * No key could be retrieved in time.
+         */
+        FAILED("failed");
+
+        private final Tag tag;
+
+        PskLookupOutcome(final String tagValue) {
+            this.tag = Tag.of("outcome", tagValue);
+        }
+
+        /**
+         * Gets a <em>Micrometer</em> tag for the outcome.
+         *
+         * @return The tag.
+         */
+        public Tag asTag() {
+            return tag;
+        }
+    }
+
+    /**
+     * Reports the lookup of a pre-shared key requested by the DTLS stack.
+     *
+     * @param outcome The outcome of the lookup.
+     * @param timer The sample that has been started when the DTLS stack requested the key.
+     * @throws NullPointerException if outcome is {@code null}.
+     */
+    void reportPreSharedKeyLookup(PskLookupOutcome outcome, Sample timer);
 }
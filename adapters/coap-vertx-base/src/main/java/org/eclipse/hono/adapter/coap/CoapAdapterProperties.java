@@ -1,5 +1,5 @@
 /**
- * Copyright (c) 2018 Contributors to the Eclipse Foundation
+ * Copyright (c) 2018, 2019 Contributors to the Eclipse Foundation
  *
  * See the NOTICE file(s) distributed with this work for additional
  * information regarding copyright ownership.
@@ -34,6 +34,14 @@ public class CoapAdapterProperties extends ProtocolAdapterProperties {
      * The default maximum size of device cache.
      */
     public static final long DEFAULT_DEVICE_CACHE_MAX_SIZE = 1000000L;
+    /**
+     * The default number of seconds that pre-shared keys are cached for.
+     */
+    public static final int DEFAULT_PSK_CACHE_TIMEOUT = 300;
+    /**
+     * The default number of milliseconds to wait for the lookup of a pre-shared key.
+     */
+    public static final long DEFAULT_PSK_LOOKUP_TIMEOUT = 10000L;
 
     private String idSplitRegex = DEFAULT_ID_SPLIT_REGEX;
     private String networkConfig = null;
@@ -43,6 +51,8 @@ public class CoapAdapterProperties extends ProtocolAdapterProperties {
     private int coapThreads = 2;
     private int deviceCacheMinSize = DEFAULT_DEVICE_CACHE_MIN_SIZE;
     private long deviceCacheMaxSize = DEFAULT_DEVICE_CACHE_MAX_SIZE;
+    private int pskCacheTimeout = DEFAULT_PSK_CACHE_TIMEOUT;
+    private long pskLookupTimeout = DEFAULT_PSK_LOOKUP_TIMEOUT;
 
     public final String getIdSplitRegex() {
         return idSplitRegex;
@@ -239,4 +249,65 @@ public class CoapAdapterProperties extends ProtocolAdapterProperties {
         this.coapThreads = threads;
     }
 
+    /**
+     * Gets the number of seconds that pre-shared keys retrieved from the
+     * Credentials service are cached for.
+     * <p>
+     * Keys of devices which perform a DTLS handshake after half of this period
+     * has elapsed are refreshed in the background, so that handshakes of active
+     * devices do not need to wait for the Credentials service.
+     * <p>
+     * The default value is {@link #DEFAULT_PSK_CACHE_TIMEOUT}.
+     *
+     * @return The number of seconds.
+     */
+    public final int getPskCacheTimeout() {
+        return pskCacheTimeout;
+    }
+
+    /**
+     * Sets the number of seconds that pre-shared keys retrieved from the
+     * Credentials service are cached for.
+     * <p>
+     * Setting this property to 0 disables caching.
+     * <p>
+     * The default value is {@link #DEFAULT_PSK_CACHE_TIMEOUT}.
+     *
+     * @param timeout The number of seconds.
+     * @throws IllegalArgumentException if timeout is &lt; 0.
+     */
+    public final void setPskCacheTimeout(final int timeout) {
+        if (timeout < 0) {
+            throw new IllegalArgumentException("cache timeout must not be negative");
+        }
+        this.pskCacheTimeout = timeout;
+    }
+
+    /**
+     * Gets the number of milliseconds that a DTLS handshake waits for the
+     * pre-shared key to be retrieved from the Credentials service.
+     * <p>
+     * The default value is {@link #DEFAULT_PSK_LOOKUP_TIMEOUT}.
+     *
+     * @return The number of milliseconds.
+     */
+    public final long getPskLookupTimeout() {
+        return pskLookupTimeout;
+    }
+
+    /**
+     * Sets the number of milliseconds that a DTLS handshake waits for the
+     * pre-shared key to be retrieved from the Credentials service.
+     * <p>
+     * The default value is {@link #DEFAULT_PSK_LOOKUP_TIMEOUT}.
+     *
+     * @param timeout The number of milliseconds.
+     * @throws IllegalArgumentException if timeout is &lt; 1.
+     */
+    public final void setPskLookupTimeout(final long timeout) {
+        if (timeout < 1) {
+            throw new IllegalArgumentException("lookup timeout must be positive");
+        }
+        this.pskLookupTimeout = timeout;
+    }
 }
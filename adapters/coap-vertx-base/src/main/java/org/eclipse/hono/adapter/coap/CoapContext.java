@@ -17,7 +17,9 @@ package org.eclipse.hono.adapter.coap;
 import java.util.Objects;
 
 import org.eclipse.californium.core.coap.CoAP.ResponseCode;
+import org.eclipse.californium.core.coap.Response;
 import org.eclipse.californium.core.server.resources.CoapExchange;
+import org.eclipse.hono.util.Constants;
 import org.eclipse.hono.util.MapBasedExecutionContext;
 
 import io.micrometer.core.instrument.Timer.Sample;
@@ -94,4 +96,36 @@ public final class CoapContext extends MapBasedExecutionContext {
     public void respondWithCode(final ResponseCode responseCode) {
         exchange.respond(responseCode);
     }
+
+    /**
+     * Sends a response to the device.
+     * 
+     * @param response The response to send.
+     * @throws NullPointerException if response is {@code null}.
+     */
+    public void respond(final Response response) {
+        exchange.respond(Objects.requireNonNull(response));
+    }
+
+    /**
+     * Gets the value of the {@link Constants#HEADER_TIME_TIL_DISCONNECT} URI query parameter
+     * of the request.
+     * 
+     * @return The number of seconds the device will wait for a command or {@code null}
+     *         if the request does not contain the parameter or if its value is not a
+     *         non-negative integer.
+     */
+    public Integer getTimeUntilDisconnect() {
+
+        final String value = exchange.getQueryParameter(Constants.HEADER_TIME_TIL_DISCONNECT);
+        if (value == null) {
+            return null;
+        }
+        try {
+            final int ttd = Integer.parseInt(value);
+            return ttd < 0 ? null : ttd;
+        } catch (final NumberFormatException e) {
+            return null;
+        }
+    }
 }
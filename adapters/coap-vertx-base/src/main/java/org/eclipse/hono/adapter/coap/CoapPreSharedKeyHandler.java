@@ -18,9 +18,11 @@ import java.net.InetSocketAddress;
 import java.security.Principal;
 import java.util.Base64;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 import java.util.concurrent.CancellationException;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
@@ -29,6 +31,7 @@ import org.eclipse.californium.core.server.resources.CoapExchange;
 import org.eclipse.californium.elements.auth.PreSharedKeyIdentity;
 import org.eclipse.californium.scandium.dtls.pskstore.PskStore;
 import org.eclipse.californium.scandium.util.ServerNames;
+import org.eclipse.hono.adapter.coap.CoapAdapterMetrics.PskLookupOutcome;
 import org.eclipse.hono.auth.Device;
 import org.eclipse.hono.client.ClientErrorException;
 import org.eclipse.hono.client.HonoClient;
@@ -42,11 +45,19 @@ import org.springframework.beans.factory.annotation.Autowired;
 import com.google.common.cache.Cache;
 import com.google.common.cache.CacheBuilder;
 
+import io.micrometer.core.instrument.Timer.Sample;
 import io.vertx.core.Context;
 import io.vertx.core.Future;
 
 /**
  * A coap pre-shared-key store based on a credentials service client.
+ * <p>
+ * The DTLS stack invokes {@link #getKey(String)} on one of its connector threads
+ * and blocks the handshake until the key is returned. In order to keep the connector
+ * threads available for other handshakes, keys are cached and keys of devices which
+ * perform handshakes regularly are refreshed in the background before they expire.
+ * Concurrent lookups of the same identity share a single request to the Credentials
+ * service.
  */
 public class CoapPreSharedKeyHandler implements PskStore, CoapAuthenticationHandler {
 
@@ -64,39 +75,60 @@ public class CoapPreSharedKeyHandler implements PskStore, CoapAuthenticationHand
      * Cache mapping principal information to hono devices.
      */
     private final Cache<PreSharedKeyDeviceIdentity, Device> devices;
+    /**
+     * Cache mapping principal information to pre-shared keys.
+     */
+    private final Cache<PreSharedKeyDeviceIdentity, SharedKey> sharedKeys;
+    /**
+     * Lookups of pre-shared keys which are currently in progress.
+     */
+    private final Map<PreSharedKeyDeviceIdentity, CompletableFuture<byte[]>> pendingLookups = new ConcurrentHashMap<>();
     /**
      * Configuration used to split identity into authentication id and tenant.
      */
     private final CoapAdapterProperties config;
+    /**
+     * The metrics to report the lookup of keys to.
+     */
+    private final CoapAdapterMetrics metrics;
 
     /**
      * Creates a new coap pre-shared-key for a given configuration.
      * 
      * @param context The vert.x context to run on.
-     * @param config The adapter configuration. Specify the minimum and maximum cache size and the split of the identity
+     * @param config The adapter configuration. Specify the minimum and maximum cache size, the
+     *            timeouts for caching and looking up keys and the split of the identity
      *            into authentication id and tenant
      * @param credentialsServiceClient The credentials service client.
+     * @param metrics The metrics to report the lookup of keys to.
      * @throws NullPointerException if any of the parameters are {@code null}.
      */
     @Autowired
     public CoapPreSharedKeyHandler(final Context context, final CoapAdapterProperties config,
-            final HonoClient credentialsServiceClient) {
+            final HonoClient credentialsServiceClient, final CoapAdapterMetrics metrics) {
         this.context = Objects.requireNonNull(context);
         this.config = Objects.requireNonNull(config);
         this.credentialsServiceClient = Objects.requireNonNull(credentialsServiceClient);
+        this.metrics = Objects.requireNonNull(metrics);
         final CacheBuilder<Object, Object> builder = CacheBuilder.newBuilder()
                 .concurrencyLevel(1)
                 .softValues()
                 .initialCapacity(config.getDeviceCacheMinSize())
                 .maximumSize(config.getDeviceCacheMaxSize());
         this.devices = builder.build();
+        this.sharedKeys = CacheBuilder.newBuilder()
+                .initialCapacity(config.getDeviceCacheMinSize())
+                .maximumSize(config.getPskCacheTimeout() > 0 ? config.getDeviceCacheMaxSize() : 0)
+                .expireAfterWrite(config.getPskCacheTimeout(), TimeUnit.SECONDS)
+                .build();
     }
 
     /**
      * Gets the pre-shared key for an identity used by a device in a PSK based DTLS
      * handshake.
      * <p>
-     * On success, add hono device to cache.
+     * On success, add hono device and key to cache. If the device is not (or no longer)
+     * authorized, the key is removed from the cache.
      * 
      * @param handshakeIdentity The identity used by the device.
      * @return A future completed with the key or failed with a {@link ServiceInvocationException}.
@@ -111,14 +143,48 @@ public class CoapPreSharedKeyHandler implements PskStore, CoapAuthenticationHand
                     if (key != null) {
                         devices.put(handshakeIdentity,
                                 new Device(handshakeIdentity.getTenantId(), credentials.getDeviceId()));
+                        sharedKeys.put(handshakeIdentity, new SharedKey(key, config.getPskCacheTimeout()));
                         return Future.succeededFuture(key);
                     } else {
                         return Future.failedFuture(new ClientErrorException(HttpURLConnection.HTTP_UNAUTHORIZED,
                                 "no shared key registered for identity"));
                     }
+                }).recover(t -> {
+                    if (t instanceof ClientErrorException) {
+                        sharedKeys.invalidate(handshakeIdentity);
+                    }
+                    return Future.failedFuture(t);
                 });
     }
 
+    /**
+     * Looks up the pre-shared key for an identity on the vert.x context.
+     * <p>
+     * Concurrent invocations for the same identity share the same lookup.
+     *
+     * @param handshakeIdentity The identity used by the device.
+     * @return A future completed with the key.
+     */
+    private CompletableFuture<byte[]> lookupKey(final PreSharedKeyDeviceIdentity handshakeIdentity) {
+
+        final CompletableFuture<byte[]> result = new CompletableFuture<>();
+        final CompletableFuture<byte[]> pendingLookup = pendingLookups.putIfAbsent(handshakeIdentity, result);
+        if (pendingLookup != null) {
+            return pendingLookup;
+        }
+        context.runOnContext((v) -> {
+            getSharedKeyForDevice(handshakeIdentity).setHandler((getAttempt) -> {
+                pendingLookups.remove(handshakeIdentity, result);
+                if (getAttempt.succeeded()) {
+                    result.complete(getAttempt.result());
+                } else {
+                    result.completeExceptionally(getAttempt.cause());
+                }
+            });
+        });
+        return result;
+    }
+
     /**
      * Extracts the (pre-shared) key from the candidate secret(s) on record for the device.
      * 
@@ -162,24 +228,29 @@ public class CoapPreSharedKeyHandler implements PskStore, CoapAuthenticationHand
             return null;
         }
 
-        final CompletableFuture<byte[]> secret = new CompletableFuture<>();
-        context.runOnContext((v) -> {
-            getSharedKeyForDevice(handshakeIdentity).setHandler((getAttempt) -> {
-                if (getAttempt.succeeded()) {
-                    secret.complete(getAttempt.result());
-                } else {
-                    secret.completeExceptionally(getAttempt.cause());
-                }
-            });
-        });
+        final Sample timer = metrics.startTimer();
+        final SharedKey cachedKey = sharedKeys.getIfPresent(handshakeIdentity);
+        if (cachedKey != null) {
+            if (cachedKey.isDueForRefresh()) {
+                // refresh in the background, the handshake can proceed with the cached key
+                lookupKey(handshakeIdentity);
+            }
+            metrics.reportPreSharedKeyLookup(PskLookupOutcome.CACHED, timer);
+            return cachedKey.key;
+        }
+
         try {
             // timeout, don't block handshake too long
-            return secret.get(10000, TimeUnit.MILLISECONDS);
+            final byte[] key = lookupKey(handshakeIdentity).get(config.getPskLookupTimeout(), TimeUnit.MILLISECONDS);
+            metrics.reportPreSharedKeyLookup(PskLookupOutcome.RETRIEVED, timer);
+            return key;
         } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
         } catch (TimeoutException e) {
         } catch (CancellationException e) {
         } catch (ExecutionException e) {
         }
+        metrics.reportPreSharedKeyLookup(PskLookupOutcome.FAILED, timer);
         LOG.debug("no candidate PSK secret found for identity [{}]", identity);
         return null;
     }
@@ -239,4 +310,22 @@ public class CoapPreSharedKeyHandler implements PskStore, CoapAuthenticationHand
         }
         return Future.failedFuture(new IllegalArgumentException("Principal not supported by this handler!"));
     }
+
+    /**
+     * A cached pre-shared key.
+     */
+    private static final class SharedKey {
+
+        private final byte[] key;
+        private final long refreshAfter;
+
+        SharedKey(final byte[] key, final int cacheTimeoutSeconds) {
+            this.key = key;
+            this.refreshAfter = System.nanoTime() + TimeUnit.SECONDS.toNanos(cacheTimeoutSeconds) / 2;
+        }
+
+        boolean isDueForRefresh() {
+            return System.nanoTime() - refreshAfter >= 0;
+        }
+    }
 }
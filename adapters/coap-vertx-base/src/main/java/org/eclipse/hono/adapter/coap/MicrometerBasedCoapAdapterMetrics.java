@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2018 Contributors to the Eclipse Foundation
+ * Copyright (c) 2018, 2019 Contributors to the Eclipse Foundation
  *
  * See the NOTICE file(s) distributed with this work for additional
  * information regarding copyright ownership.
@@ -13,10 +13,14 @@
 
 package org.eclipse.hono.adapter.coap;
 
+import java.util.Objects;
+
 import org.eclipse.hono.service.metric.MicrometerBasedMetrics;
 import org.springframework.stereotype.Component;
 
 import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer.Sample;
 
 /**
  * Metrics for the COAP based adapters.
@@ -24,6 +28,11 @@ import io.micrometer.core.instrument.MeterRegistry;
 @Component
 public class MicrometerBasedCoapAdapterMetrics extends MicrometerBasedMetrics implements CoapAdapterMetrics {
 
+    /**
+     * The name of the meter for recording the time it takes to look up pre-shared keys.
+     */
+    public static final String METER_PSK_LOOKUP = "hono.dtls.psk.lookup";
+
     /**
      * Create a new metrics instance for COAP adapters.
      * 
@@ -34,4 +43,11 @@ public class MicrometerBasedCoapAdapterMetrics extends MicrometerBasedMetrics im
     public MicrometerBasedCoapAdapterMetrics(final MeterRegistry registry) {
         super(registry);
     }
+
+    @Override
+    public void reportPreSharedKeyLookup(final PskLookupOutcome outcome, final Sample timer) {
+
+        Objects.requireNonNull(outcome);
+        timer.stop(this.registry.timer(METER_PSK_LOOKUP, Tags.of(outcome.asTag())));
+    }
 }
@@ -17,6 +17,7 @@ import static org.hamcrest.CoreMatchers.is;
 import static org.junit.Assert.assertThat;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.doNothing;
 import static org.mockito.Mockito.doThrow;
 import static org.mockito.Mockito.mock;
@@ -25,9 +26,13 @@ import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 import java.net.HttpURLConnection;
+import java.nio.charset.StandardCharsets;
 import java.util.Collections;
 import java.util.concurrent.Executor;
 
+import org.apache.qpid.proton.amqp.Binary;
+import org.apache.qpid.proton.amqp.messaging.Accepted;
+import org.apache.qpid.proton.amqp.messaging.Data;
 import org.apache.qpid.proton.message.Message;
 import org.eclipse.californium.core.CoapResource;
 import org.eclipse.californium.core.CoapServer;
@@ -43,11 +48,18 @@ import org.eclipse.californium.core.server.resources.CoapExchange;
 import org.eclipse.californium.core.server.resources.Resource;
 import org.eclipse.hono.auth.Device;
 import org.eclipse.hono.client.ClientErrorException;
+import org.eclipse.hono.client.Command;
 import org.eclipse.hono.client.CommandConsumerFactory;
+import org.eclipse.hono.client.CommandContext;
+import org.eclipse.hono.client.CommandResponse;
+import org.eclipse.hono.client.CommandResponseSender;
 import org.eclipse.hono.client.HonoClient;
+import org.eclipse.hono.client.MessageConsumer;
 import org.eclipse.hono.client.MessageSender;
 import org.eclipse.hono.client.RegistrationClient;
 import org.eclipse.hono.client.TenantClient;
+import org.eclipse.hono.util.Constants;
+import org.eclipse.hono.util.EventConstants;
 import org.eclipse.hono.util.RegistrationConstants;
 import org.eclipse.hono.util.TenantConstants;
 import org.eclipse.hono.util.TenantObject;
@@ -59,6 +71,8 @@ import org.junit.rules.Timeout;
 import org.junit.runner.RunWith;
 import org.mockito.ArgumentCaptor;
 
+import io.opentracing.Span;
+import io.opentracing.SpanContext;
 import io.vertx.core.Context;
 import io.vertx.core.Future;
 import io.vertx.core.Handler;
@@ -69,6 +83,8 @@ import io.vertx.ext.unit.Async;
 import io.vertx.ext.unit.TestContext;
 import io.vertx.ext.unit.junit.VertxUnitRunner;
 import io.vertx.proton.ProtonDelivery;
+import io.vertx.proton.ProtonHelper;
+import io.vertx.proton.ProtonReceiver;
 
 /**
  * Verifies behavior of {@link AbstractVertxBasedCoapAdapter}.
@@ -77,6 +93,7 @@ import io.vertx.proton.ProtonDelivery;
 public class AbstractVertxBasedCoapAdapterTest {
 
     private static final String ADAPTER_TYPE = "coap";
+    private static final String CMD_REQ_ID = "12fcmd-client-c925910f-ea2a-455c-a3f9-a339171f335474f48a55-c60d-4b99-8950-a2fbb9e8f1b6";
 
     private static final Vertx vertx = Vertx.vertx();
 
@@ -337,7 +354,7 @@ public class AbstractVertxBasedCoapAdapterTest {
         assertThat("response with forbidden", captor.getValue().getCode(), is(ResponseCode.FORBIDDEN));
 
         // and the message has not been forwarded downstream
-        verify(sender, never()).send(any(Message.class));
+        verify(sender, never()).send(any(Message.class), (SpanContext) any());
     }
 
     /**
@@ -460,6 +477,213 @@ public class AbstractVertxBasedCoapAdapterTest {
         verify(coapExchange).respond(ResponseCode.CHANGED);
     }
 
+    /**
+     * Verifies that the adapter includes a command for the device in the response
+     * to a telemetry message which contains a TTD.
+     */
+    @SuppressWarnings("unchecked")
+    @Test
+    public void testUploadTelemetryWithTtdIncludesCommandInResponse() {
+
+        // GIVEN an adapter with a downstream telemetry consumer attached
+        givenATelemetrySender(Future.succeededFuture(mock(ProtonDelivery.class)));
+        final MessageConsumer commandConsumer = mock(MessageConsumer.class);
+        when(commandConsumerFactory.createCommandConsumer(eq("tenant"), eq("device"), any(Handler.class), any()))
+            .thenReturn(Future.succeededFuture(commandConsumer));
+        final CoapServer server = getCoapServer(false);
+        final AbstractVertxBasedCoapAdapter<CoapAdapterProperties> adapter = getAdapter(server, true, null);
+
+        // WHEN a device publishes a telemetry message indicating that it waits for a command
+        final CoapExchange coapExchange = newCoapExchange(Buffer.buffer("some payload"));
+        when(coapExchange.getQueryParameter(Constants.HEADER_TIME_TIL_DISCONNECT)).thenReturn("20");
+        final Device authenticatedDevice = new Device("tenant", "device");
+        final CoapContext ctx = CoapContext.fromRequest(coapExchange);
+
+        adapter.uploadTelemetryMessage(ctx, authenticatedDevice, authenticatedDevice, false);
+
+        // THEN the request is acknowledged but the device does not get a response
+        verify(coapExchange).accept();
+        verify(coapExchange, never()).respond(any(Response.class));
+
+        // until a command for the device has been received
+        final ArgumentCaptor<Handler<CommandContext>> commandHandler = ArgumentCaptor.forClass(Handler.class);
+        verify(commandConsumerFactory).createCommandConsumer(eq("tenant"), eq("device"), commandHandler.capture(), any());
+        final ProtonDelivery commandDelivery = mock(ProtonDelivery.class);
+        commandHandler.getValue().handle(newCommandContext(commandDelivery));
+
+        final ArgumentCaptor<Response> captor = ArgumentCaptor.forClass(Response.class);
+        verify(coapExchange).respond(captor.capture());
+        final Response response = captor.getValue();
+        assertThat(response.getCode(), is(ResponseCode.CHANGED));
+        assertThat(response.getPayloadString(), is("on"));
+        assertThat(response.getOptions().getContentFormat(), is(MediaTypeRegistry.TEXT_PLAIN));
+        assertThat(response.getOptions().getLocationQuery(), is(Collections.singletonList("hono-command=switch")));
+        // and the command has been accepted
+        verify(commandDelivery).disposition(any(Accepted.class), eq(true));
+        // and the command consumer has been closed
+        verify(commandConsumer).close(any());
+    }
+
+    /**
+     * Verifies that the adapter forwards an empty notification downstream if a device
+     * sends a request without payload but containing a TTD.
+     */
+    @SuppressWarnings("unchecked")
+    @Test
+    public void testUploadEmptyNotificationWithTtdSucceeds() {
+
+        // GIVEN an adapter with a downstream telemetry consumer attached
+        final MessageSender sender = givenATelemetrySender(Future.succeededFuture(mock(ProtonDelivery.class)));
+        // and a tenant which does not allow devices to wait for commands
+        final TenantObject tenantConfig = TenantObject.from("tenant", true);
+        tenantConfig.addAdapterConfiguration(new JsonObject()
+                .put(TenantConstants.FIELD_ADAPTERS_TYPE, ADAPTER_TYPE)
+                .put(TenantConstants.FIELD_ENABLED, true)
+                .put(TenantConstants.FIELD_MAX_TTD, 0));
+        when(tenantClient.get("tenant", null)).thenReturn(Future.succeededFuture(tenantConfig));
+        final CoapServer server = getCoapServer(false);
+        final AbstractVertxBasedCoapAdapter<CoapAdapterProperties> adapter = getAdapter(server, true, null);
+
+        // WHEN a device sends an empty notification indicating that it waits for a command
+        final CoapExchange coapExchange = newCoapExchange(Buffer.buffer());
+        when(coapExchange.getQueryParameter(Constants.HEADER_TIME_TIL_DISCONNECT)).thenReturn("20");
+        final Device authenticatedDevice = new Device("tenant", "device");
+        final CoapContext ctx = CoapContext.fromRequest(coapExchange);
+
+        adapter.uploadTelemetryMessage(ctx, authenticatedDevice, authenticatedDevice, false);
+
+        // THEN an empty notification has been forwarded downstream
+        final ArgumentCaptor<Message> message = ArgumentCaptor.forClass(Message.class);
+        verify(sender).send(message.capture(), (SpanContext) any());
+        assertThat(message.getValue().getContentType(), is(EventConstants.CONTENT_TYPE_EMPTY_NOTIFICATION));
+        // and the device gets a response right away
+        verify(coapExchange).respond(ResponseCode.CHANGED);
+        verify(commandConsumerFactory, never()).createCommandConsumer(anyString(), anyString(), any(Handler.class), any());
+    }
+
+    /**
+     * Verifies that the adapter waits for a command response being accepted by the application
+     * before responding with a 2.04 status to an authenticated device.
+     */
+    @Test
+    public void testUploadCommandResponseWaitsForAcceptedOutcome() {
+
+        // GIVEN an adapter with a downstream application attached
+        final Future<ProtonDelivery> outcome = Future.future();
+        final CommandResponseSender sender = givenACommandResponseSenderForOutcome(outcome);
+        final CoapServer server = getCoapServer(false);
+        final AbstractVertxBasedCoapAdapter<CoapAdapterProperties> adapter = getAdapter(server, true, null);
+
+        // WHEN an authenticated device publishes a command response
+        final Buffer payload = Buffer.buffer("some payload");
+        final CoapExchange coapExchange = newCoapExchange(payload);
+        final Device authenticatedDevice = new Device("tenant", "device");
+        final CoapContext ctx = CoapContext.fromRequest(coapExchange);
+
+        adapter.uploadCommandResponseMessage(ctx, authenticatedDevice, authenticatedDevice, CMD_REQ_ID, 200);
+
+        // THEN the response is forwarded to the application
+        verify(sender).sendCommandResponse(any(CommandResponse.class), (SpanContext) any());
+        // but the device does not get a response
+        verify(coapExchange, never()).respond(ResponseCode.CHANGED);
+
+        // until the command response has been accepted by the application
+        outcome.complete(mock(ProtonDelivery.class));
+        verify(coapExchange).respond(ResponseCode.CHANGED);
+    }
+
+    /**
+     * Verifies that the adapter asserts the registration of the device that a gateway
+     * publishes a command response for.
+     */
+    @Test
+    public void testUploadCommandResponseOfGatewayAssertsRegistrationOfDevice() {
+
+        // GIVEN an adapter with a downstream application attached
+        givenACommandResponseSenderForOutcome(Future.succeededFuture(mock(ProtonDelivery.class)));
+        final CoapServer server = getCoapServer(false);
+        final AbstractVertxBasedCoapAdapter<CoapAdapterProperties> adapter = getAdapter(server, true, null);
+
+        // WHEN an authenticated gateway publishes a command response on behalf of a device
+        final CoapExchange coapExchange = newCoapExchange(Buffer.buffer("some payload"));
+        final CoapContext ctx = CoapContext.fromRequest(coapExchange);
+
+        adapter.uploadCommandResponseMessage(ctx, new Device("tenant", "gw"), new Device("tenant", "device"),
+                CMD_REQ_ID, 200);
+
+        // THEN the registration of the device is asserted using the gateway
+        verify(regClient).assertRegistration(eq("device"), eq("gw"), any());
+        // and the gateway gets a 2.04
+        verify(coapExchange).respond(ResponseCode.CHANGED);
+    }
+
+    /**
+     * Verifies that the adapter fails the upload of a command response of an unauthenticated
+     * device with a 4.04 if the device is not registered.
+     */
+    @Test
+    public void testUploadCommandResponseOfUnauthenticatedDeviceFailsForUnknownDevice() {
+
+        // GIVEN an adapter with a downstream application attached
+        final CommandResponseSender sender = givenACommandResponseSenderForOutcome(
+                Future.succeededFuture(mock(ProtonDelivery.class)));
+        final CoapServer server = getCoapServer(false);
+        final AbstractVertxBasedCoapAdapter<CoapAdapterProperties> adapter = getAdapter(server, true, null);
+
+        // WHEN an unauthenticated device that is not registered publishes a command response
+        when(regClient.assertRegistration(eq("unknown-device"), any(), any())).thenReturn(
+                Future.failedFuture(new ClientErrorException(HttpURLConnection.HTTP_NOT_FOUND)));
+        final CoapExchange coapExchange = newCoapExchange(Buffer.buffer("some payload"));
+        final Device device = new Device("tenant", "unknown-device");
+        final CoapContext ctx = CoapContext.fromRequest(coapExchange);
+
+        adapter.uploadCommandResponseMessage(ctx, device, device, CMD_REQ_ID, 200);
+
+        // THEN the device gets a 4.04
+        final ArgumentCaptor<Response> captor = ArgumentCaptor.forClass(Response.class);
+        verify(coapExchange).respond(captor.capture());
+        assertThat(captor.getValue().getCode(), is(ResponseCode.NOT_FOUND));
+        // and the response has not been forwarded to the application
+        verify(sender, never()).sendCommandResponse(any(CommandResponse.class), (SpanContext) any());
+    }
+
+    /**
+     * Verifies that the adapter fails the upload of a command response of an unauthenticated
+     * device with a 4.00 if the request ID is invalid.
+     */
+    @Test
+    public void testUploadCommandResponseOfUnauthenticatedDeviceFailsForInvalidRequestId() {
+
+        // GIVEN an adapter with a downstream application attached
+        final CommandResponseSender sender = givenACommandResponseSenderForOutcome(
+                Future.succeededFuture(mock(ProtonDelivery.class)));
+        final CoapServer server = getCoapServer(false);
+        final AbstractVertxBasedCoapAdapter<CoapAdapterProperties> adapter = getAdapter(server, true, null);
+
+        // WHEN an unauthenticated device publishes a command response with an invalid request ID
+        final CoapExchange coapExchange = newCoapExchange(Buffer.buffer("some payload"));
+        final Device device = new Device("tenant", "device");
+        final CoapContext ctx = CoapContext.fromRequest(coapExchange);
+
+        adapter.uploadCommandResponseMessage(ctx, device, device, "x", 200);
+
+        // THEN the device gets a 4.00
+        verify(coapExchange).respond(ResponseCode.BAD_REQUEST);
+        // and the response has not been forwarded to the application
+        verify(regClient, never()).assertRegistration(anyString(), any(), any());
+        verify(sender, never()).sendCommandResponse(any(CommandResponse.class), (SpanContext) any());
+    }
+
+    private static CommandContext newCommandContext(final ProtonDelivery delivery) {
+        final Message msg = ProtonHelper.message();
+        msg.setMessageId("message-id");
+        msg.setSubject("switch");
+        msg.setContentType("text/plain");
+        msg.setBody(new Data(new Binary("on".getBytes(StandardCharsets.UTF_8))));
+        final Command command = Command.from(msg, "tenant", "device");
+        return CommandContext.from(command, delivery, mock(ProtonReceiver.class), mock(Span.class));
+    }
+
     private static CoapExchange newCoapExchange(final Buffer payload) {
 
         final OptionSet options = new OptionSet().setContentFormat(MediaTypeRegistry.TEXT_PLAIN);
@@ -528,7 +752,7 @@ public class AbstractVertxBasedCoapAdapterTest {
     private void givenAnEventSenderForOutcome(final Future<ProtonDelivery> outcome) {
 
         final MessageSender sender = mock(MessageSender.class);
-        when(sender.sendAndWaitForOutcome(any(Message.class))).thenReturn(outcome);
+        when(sender.sendAndWaitForOutcome(any(Message.class), (SpanContext) any())).thenReturn(outcome);
 
         when(messagingClient.getOrCreateEventSender(anyString())).thenReturn(Future.succeededFuture(sender));
     }
@@ -536,17 +760,28 @@ public class AbstractVertxBasedCoapAdapterTest {
     private void givenATelemetrySenderForOutcome(final Future<ProtonDelivery> outcome) {
 
         final MessageSender sender = mock(MessageSender.class);
-        when(sender.sendAndWaitForOutcome(any(Message.class))).thenReturn(outcome);
+        when(sender.sendAndWaitForOutcome(any(Message.class), (SpanContext) any())).thenReturn(outcome);
 
         when(messagingClient.getOrCreateTelemetrySender(anyString())).thenReturn(Future.succeededFuture(sender));
     }
 
-    private void givenATelemetrySender(final Future<ProtonDelivery> outcome) {
+    private CommandResponseSender givenACommandResponseSenderForOutcome(final Future<ProtonDelivery> outcome) {
+
+        final CommandResponseSender sender = mock(CommandResponseSender.class);
+        when(sender.sendCommandResponse(any(CommandResponse.class), (SpanContext) any())).thenReturn(outcome);
+
+        when(commandConsumerFactory.getCommandResponseSender(anyString(), anyString()))
+                .thenReturn(Future.succeededFuture(sender));
+        return sender;
+    }
+
+    private MessageSender givenATelemetrySender(final Future<ProtonDelivery> outcome) {
 
         final MessageSender sender = mock(MessageSender.class);
-        when(sender.send(any(Message.class))).thenReturn(outcome);
+        when(sender.send(any(Message.class), (SpanContext) any())).thenReturn(outcome);
 
         when(messagingClient.getOrCreateTelemetrySender(anyString())).thenReturn(Future.succeededFuture(sender));
+        return sender;
     }
 
 }
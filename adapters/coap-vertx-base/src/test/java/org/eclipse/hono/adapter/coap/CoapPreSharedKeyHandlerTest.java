@@ -0,0 +1,138 @@
+/**
+ * Copyright (c) 2019 Contributors to the Eclipse Foundation
+ *
+ * See the NOTICE file(s) distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ */
+
+package org.eclipse.hono.adapter.coap;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.net.HttpURLConnection;
+import java.nio.charset.StandardCharsets;
+
+import org.eclipse.hono.adapter.coap.CoapAdapterMetrics.PskLookupOutcome;
+import org.eclipse.hono.client.ClientErrorException;
+import org.eclipse.hono.client.CredentialsClient;
+import org.eclipse.hono.client.HonoClient;
+import org.eclipse.hono.util.CredentialsConstants;
+import org.eclipse.hono.util.CredentialsObject;
+import org.junit.Before;
+import org.junit.Test;
+
+import io.vertx.core.Context;
+import io.vertx.core.Future;
+import io.vertx.core.Handler;
+
+/**
+ * Verifies behavior of {@link CoapPreSharedKeyHandler}.
+ */
+public class CoapPreSharedKeyHandlerTest {
+
+    private static final byte[] KEY = "secret".getBytes(StandardCharsets.UTF_8);
+
+    private CoapAdapterProperties config;
+    private CredentialsClient credentialsClient;
+    private CoapAdapterMetrics metrics;
+    private CoapPreSharedKeyHandler handler;
+
+    /**
+     * Sets up the fixture.
+     */
+    @Before
+    public void setUp() {
+
+        credentialsClient = mock(CredentialsClient.class);
+        config = new CoapAdapterProperties();
+        metrics = mock(CoapAdapterMetrics.class);
+        handler = new CoapPreSharedKeyHandler(mockContext(), config, mockCredentialsServiceClient(), metrics);
+    }
+
+    /**
+     * Verifies that a key that has been retrieved from the Credentials service
+     * is served from the cache for subsequent handshakes.
+     */
+    @Test
+    public void testGetKeyUsesCachedKey() {
+
+        givenCredentialsOnRecord();
+
+        assertArrayEquals(KEY, handler.getKey("device@tenant"));
+        assertArrayEquals(KEY, handler.getKey("device@tenant"));
+
+        verify(credentialsClient, times(1)).get(CredentialsConstants.SECRETS_TYPE_PRESHARED_KEY, "device");
+        verify(metrics).reportPreSharedKeyLookup(eq(PskLookupOutcome.RETRIEVED), any());
+        verify(metrics).reportPreSharedKeyLookup(eq(PskLookupOutcome.CACHED), any());
+        assertThat(handler.getCachedDevice("device@tenant").getDeviceId(), is("4711"));
+    }
+
+    /**
+     * Verifies that keys are not cached if the cache timeout is 0.
+     */
+    @Test
+    public void testGetKeyDoesNotCacheKeysIfDisabled() {
+
+        config.setPskCacheTimeout(0);
+        handler = new CoapPreSharedKeyHandler(mockContext(), config, mockCredentialsServiceClient(), metrics);
+        givenCredentialsOnRecord();
+
+        assertArrayEquals(KEY, handler.getKey("device@tenant"));
+        assertArrayEquals(KEY, handler.getKey("device@tenant"));
+
+        verify(credentialsClient, times(2)).get(CredentialsConstants.SECRETS_TYPE_PRESHARED_KEY, "device");
+    }
+
+    /**
+     * Verifies that a failed lookup is reported and yields no key.
+     */
+    @Test
+    public void testGetKeyFailsForUnknownIdentity() {
+
+        when(credentialsClient.get(anyString(), anyString())).thenReturn(
+                Future.failedFuture(new ClientErrorException(HttpURLConnection.HTTP_NOT_FOUND)));
+
+        assertNull(handler.getKey("unknown@tenant"));
+        verify(metrics).reportPreSharedKeyLookup(eq(PskLookupOutcome.FAILED), any());
+    }
+
+    private void givenCredentialsOnRecord() {
+        when(credentialsClient.get(CredentialsConstants.SECRETS_TYPE_PRESHARED_KEY, "device")).thenReturn(
+                Future.succeededFuture(CredentialsObject.fromPresharedKey("4711", "device", KEY, null, null)));
+    }
+
+    @SuppressWarnings("unchecked")
+    private Context mockContext() {
+        final Context context = mock(Context.class);
+        doAnswer(invocation -> {
+            final Handler<Void> action = invocation.getArgument(0);
+            action.handle(null);
+            return null;
+        }).when(context).runOnContext(any(Handler.class));
+        return context;
+    }
+
+    private HonoClient mockCredentialsServiceClient() {
+        final HonoClient credentialsServiceClient = mock(HonoClient.class);
+        when(credentialsServiceClient.getOrCreateCredentialsClient(anyString()))
+            .thenReturn(Future.succeededFuture(credentialsClient));
+        return credentialsServiceClient;
+    }
+}
@@ -17,9 +17,11 @@ import java.net.HttpURLConnection;
 import java.security.Principal;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Optional;
 import java.util.Set;
 
 import org.eclipse.californium.core.CoapResource;
+import org.eclipse.californium.core.coap.CoAP.ResponseCode;
 import org.eclipse.californium.core.server.resources.CoapExchange;
 import org.eclipse.californium.core.server.resources.Resource;
 import org.eclipse.hono.adapter.coap.AbstractVertxBasedCoapAdapter;
@@ -30,6 +32,7 @@ import org.eclipse.hono.adapter.coap.CoapErrorResponse;
 import org.eclipse.hono.auth.Device;
 import org.eclipse.hono.client.ClientErrorException;
 import org.eclipse.hono.client.ServerErrorException;
+import org.eclipse.hono.util.CommandConstants;
 import org.eclipse.hono.util.Constants;
 import org.eclipse.hono.util.EventConstants;
 import org.eclipse.hono.util.ResourceIdentifier;
@@ -40,7 +43,7 @@ import io.vertx.core.Future;
 
 /**
  * A vert.x based Hono protocol adapter providing access to Hono's southbound
- * Telemetry &amp; Event API by means of CoAP resources.
+ * Telemetry, Event and Command &amp; Control API by means of CoAP resources.
  */
 public final class VertxBasedCoapAdapter extends AbstractVertxBasedCoapAdapter<CoapAdapterProperties> {
 
@@ -192,7 +195,68 @@ public final class VertxBasedCoapAdapter extends AbstractVertxBasedCoapAdapter<C
                 }
             }
         });
+
+        result.add(new CoapResource(CommandConstants.COMMAND_ENDPOINT) {
+
+            @Override
+            public Resource getChild(final String name) {
+                return this;
+            }
+
+            @Override
+            public void handlePOST(final CoapExchange exchange) {
+                // control/res/${commandRequestId}
+                final List<String> pathList = exchange.getRequestOptions().getUriPath();
+                if (pathList.size() != 3 || !CommandConstants.COMMAND_RESPONSE_RESPONSE_PART.equals(pathList.get(1))) {
+                    exchange.respond(ResponseCode.NOT_FOUND);
+                } else {
+                    getAuthenticatedExtendedDevice(null, exchange)
+                    .setHandler(authAttempt -> upload(exchange, pathList.get(2), authAttempt));
+                }
+            }
+
+            @Override
+            public void handlePUT(final CoapExchange exchange) {
+                // control/res/${tenantId}/${deviceId}/${commandRequestId}
+                final List<String> pathList = exchange.getRequestOptions().getUriPath();
+                if (pathList.size() != 5 || !CommandConstants.COMMAND_RESPONSE_RESPONSE_PART.equals(pathList.get(1))) {
+                    exchange.respond(ResponseCode.NOT_FOUND);
+                } else {
+                    final Device device = new Device(pathList.get(2), pathList.get(3));
+                    final Principal peer = exchange.advanced().getRequest().getSourceContext().getPeerIdentity();
+                    final Future<ExtendedDevice> deviceTracker = peer == null
+                            ? Future.succeededFuture(new ExtendedDevice(device, device))
+                            : getAuthenticatedExtendedDevice(device, exchange);
+                    deviceTracker.setHandler(authAttempt -> upload(exchange, pathList.get(4), authAttempt));
+                }
+            }
+
+            private void upload(
+                    final CoapExchange exchange,
+                    final String commandRequestId,
+                    final AsyncResult<ExtendedDevice> authAttempt) {
+
+                if (authAttempt.succeeded()) {
+                    final ExtendedDevice device = authAttempt.result();
+                    final CoapContext ctx = CoapContext.fromRequest(exchange, getMetrics().startTimer());
+                    uploadCommandResponseMessage(ctx, device.authenticatedDevice, device.originDevice,
+                            commandRequestId, getCommandResponseStatus(exchange));
+                } else {
+                    CoapErrorResponse.respond(exchange, authAttempt.cause());
+                }
+            }
+        });
         setResources(result);
         return Future.succeededFuture();
     }
+
+    private static Integer getCommandResponseStatus(final CoapExchange exchange) {
+        try {
+            return Optional.ofNullable(exchange.getQueryParameter(Constants.HEADER_COMMAND_RESPONSE_STATUS))
+                    .map(Integer::valueOf)
+                    .orElse(null);
+        } catch (final NumberFormatException e) {
+            return null;
+        }
+    }
 }
@@ -21,13 +21,13 @@ import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
 
-import org.apache.qpid.proton.amqp.transport.ErrorCondition;
 import org.apache.qpid.proton.message.Message;
 import org.eclipse.hono.auth.Device;
 import org.eclipse.hono.client.ClientErrorException;
 import org.eclipse.hono.client.Command;
 import org.eclipse.hono.client.CommandContext;
 import org.eclipse.hono.client.CommandResponse;
+import org.eclipse.hono.client.HonoClient;
 import org.eclipse.hono.client.MessageConsumer;
 import org.eclipse.hono.client.MessageSender;
 import org.eclipse.hono.client.ResourceConflictException;
@@ -40,10 +40,12 @@ import org.eclipse.hono.service.metric.MetricsTags;
 import org.eclipse.hono.service.metric.MetricsTags.Direction;
 import org.eclipse.hono.service.metric.MetricsTags.EndpointType;
 import org.eclipse.hono.service.metric.MetricsTags.ProcessingOutcome;
+import org.eclipse.hono.service.metric.MetricsTags.ProcessingStage;
 import org.eclipse.hono.service.metric.MetricsTags.QoS;
 import org.eclipse.hono.service.metric.MetricsTags.TtdStatus;
 import org.eclipse.hono.tracing.TracingHelper;
 import org.eclipse.hono.util.Constants;
+import org.eclipse.hono.util.EventConstants;
 import org.eclipse.hono.util.MessageHelper;
 import org.eclipse.hono.util.ResourceIdentifier;
 import org.eclipse.hono.util.TenantObject;
@@ -53,17 +55,22 @@ import io.micrometer.core.instrument.Timer.Sample;
 import io.opentracing.Span;
 import io.opentracing.contrib.vertx.ext.web.TracingHandler;
 import io.opentracing.contrib.vertx.ext.web.WebSpanDecorator;
+import io.opentracing.noop.NoopSpan;
 import io.opentracing.tag.Tags;
 import io.vertx.core.CompositeFuture;
 import io.vertx.core.Future;
+import io.vertx.core.Handler;
 import io.vertx.core.buffer.Buffer;
+import io.vertx.core.http.Http2Settings;
+import io.vertx.core.http.HttpConnection;
 import io.vertx.core.http.HttpServer;
 import io.vertx.core.http.HttpServerOptions;
+import io.vertx.core.http.HttpServerRequest;
 import io.vertx.core.http.HttpServerResponse;
+import io.vertx.core.http.HttpVersion;
 import io.vertx.core.json.JsonObject;
 import io.vertx.ext.web.Router;
 import io.vertx.ext.web.RoutingContext;
-import io.vertx.ext.web.handler.BodyHandler;
 
 /**
  * Base class for a Vert.x based Hono protocol adapter that uses the HTTP protocol.
@@ -75,7 +82,11 @@ public abstract class AbstractVertxBasedHttpProtocolAdapter<T extends HttpProtoc
 
     /**
      * Default file uploads directory used by Vert.x Web.
+     *
+     * @deprecated Request bodies are read by means of a {@link StreamingBodyHandler}
+     *             which never writes uploaded data to the file system.
      */
+    @Deprecated
     protected static final String DEFAULT_UPLOADS_DIRECTORY = "/tmp";
 
     private static final String KEY_TIMER_ID = "timerId";
@@ -83,6 +94,8 @@ public abstract class AbstractVertxBasedHttpProtocolAdapter<T extends HttpProtoc
     private HttpServer server;
     private HttpServer insecureServer;
     private HttpAdapterMetrics metrics = HttpAdapterMetrics.NOOP;
+    private CommandMailbox commandMailbox;
+    private StreamingBodyHandler bodyHandler;
 
     /**
      * Sets the metrics for this service.
@@ -99,6 +112,7 @@ public abstract class AbstractVertxBasedHttpProtocolAdapter<T extends HttpProtoc
      *
      * @return The metrics
      */
+    @Override
     protected final HttpAdapterMetrics getMetrics() {
         return metrics;
     }
@@ -284,7 +298,9 @@ public abstract class AbstractVertxBasedHttpProtocolAdapter<T extends HttpProtoc
      * <p>
      * This method creates a router instance with the following routes:
      * <ol>
-     * <li>A default route limiting the body size of requests to the maximum payload size set in the <em>config</em> properties.</li>
+     * <li>A default route rejecting requests which announce a body exceeding the maximum payload size
+     * set in the <em>config</em> properties and pausing all other requests until their body is read
+     * by means of the handler returned by {@link #getBodyHandler()}.</li>
      * </ol>
      *
      * @return The newly created router (never {@code null}).
@@ -293,7 +309,7 @@ public abstract class AbstractVertxBasedHttpProtocolAdapter<T extends HttpProtoc
 
         final Router router = Router.router(vertx);
         LOG.info("limiting size of inbound request body to {} bytes", getConfig().getMaxPayloadSize());
-        router.route().handler(BodyHandler.create(DEFAULT_UPLOADS_DIRECTORY).setBodyLimit(getConfig().getMaxPayloadSize()));
+        router.route().handler(getBodyHandler()::pauseRequest);
         addTracingHandler(router, -5);
         // add default handler for failed routes
         router.route().order(-1).failureHandler(new DefaultFailureHandler());
@@ -301,6 +317,24 @@ public abstract class AbstractVertxBasedHttpProtocolAdapter<T extends HttpProtoc
         return router;
     }
 
+    /**
+     * Gets the handler for reading the body of requests.
+     * <p>
+     * The handler limits the body size of requests to the maximum payload size set in the
+     * <em>config</em> properties. Subclasses should register the handler for routes that
+     * need to access the request body by means of {@link RoutingContext#getBody()}
+     * <em>after</em> the request has been authenticated. The {@code upload*} methods
+     * of this class read the request body on their own if it has not been read yet.
+     *
+     * @return The handler.
+     */
+    protected final StreamingBodyHandler getBodyHandler() {
+        if (bodyHandler == null) {
+            bodyHandler = new StreamingBodyHandler(getConfig().getMaxPayloadSize());
+        }
+        return bodyHandler;
+    }
+
     /**
      * Adds custom routes for handling requests.
      * <p>
@@ -318,6 +352,7 @@ public abstract class AbstractVertxBasedHttpProtocolAdapter<T extends HttpProtoc
      * <p>
      * This method returns default options with the host and port being set to the corresponding values
      * from the <em>config</em> properties and using a maximum chunk size of 4096 bytes.
+     * HTTP/2 is negotiated by means of ALPN if enabled in the <em>config</em> properties.
      *
      * @return The http server options.
      */
@@ -326,6 +361,8 @@ public abstract class AbstractVertxBasedHttpProtocolAdapter<T extends HttpProtoc
         final HttpServerOptions options = new HttpServerOptions();
         options.setHost(getConfig().getBindAddress()).setPort(getConfig().getPort(getPortDefaultValue()))
             .setMaxChunkSize(4096);
+        options.setUseAlpn(getConfig().isHttp2Enabled());
+        addConnectionOptions(options);
         addTlsKeyCertOptions(options);
         addTlsTrustOptions(options);
         return options;
@@ -338,6 +375,7 @@ public abstract class AbstractVertxBasedHttpProtocolAdapter<T extends HttpProtoc
      * <p>
      * This method returns default options with the host and port being set to the corresponding values
      * from the <em>config</em> properties and using a maximum chunk size of 4096 bytes.
+     * Devices may switch to HTTP/2 by means of the <em>h2c</em> upgrade mechanism.
      *
      * @return The http server options.
      */
@@ -345,9 +383,19 @@ public abstract class AbstractVertxBasedHttpProtocolAdapter<T extends HttpProtoc
 
         final HttpServerOptions options = new HttpServerOptions();
         options.setHost(getConfig().getInsecurePortBindAddress()).setPort(getConfig().getInsecurePort(getInsecurePortDefaultValue())).setMaxChunkSize(4096);
+        addConnectionOptions(options);
         return options;
     }
 
+    private void addConnectionOptions(final HttpServerOptions options) {
+
+        options.setIdleTimeout(getConfig().getIdleTimeout());
+        options.setInitialSettings(new Http2Settings()
+                .setMaxConcurrentStreams(getConfig().getHttp2MaxConcurrentStreams())
+                .setInitialWindowSize(getConfig().getHttp2InitialWindowSize()));
+        options.setHttp2ConnectionWindowSize(getConfig().getHttp2ConnectionWindowSize());
+    }
+
     /**
      * Invoked before the message is sent to the downstream peer.
      * <p>
@@ -378,6 +426,37 @@ public abstract class AbstractVertxBasedHttpProtocolAdapter<T extends HttpProtoc
         }).orElse(null);
     }
 
+    /**
+     * Wraps a router into a handler which counts the requests received on
+     * each connection of a server.
+     * <p>
+     * The number of requests is reported to the metrics when the connection
+     * is closed.
+     */
+    private Handler<HttpServerRequest> trackRequestsPerConnection(final HttpServer httpServer, final Router router) {
+
+        // all handlers of the server are run on this adapter's event loop
+        final Map<HttpConnection, ConnectionStats> connections = new HashMap<>();
+        httpServer.connectionHandler(connection -> {
+            final ConnectionStats stats = new ConnectionStats();
+            connections.put(connection, stats);
+            connection.closeHandler(closed -> {
+                connections.remove(connection);
+                if (stats.version != null) {
+                    metrics.reportRequestsPerConnection(stats.version, stats.requests);
+                }
+            });
+        });
+        return request -> {
+            final ConnectionStats stats = connections.get(request.connection());
+            if (stats != null) {
+                stats.version = request.version();
+                stats.requests++;
+            }
+            router.handle(request);
+        };
+    }
+
     private Future<HttpServer> bindSecureHttpServer(final Router router) {
 
         if (isSecurePortEnabled()) {
@@ -386,7 +465,7 @@ public abstract class AbstractVertxBasedHttpProtocolAdapter<T extends HttpProtoc
             if (server == null) {
                 server = vertx.createHttpServer(getHttpServerOptions());
             }
-            server.requestHandler(router).listen(done -> {
+            server.requestHandler(trackRequestsPerConnection(server, router)).listen(done -> {
                 if (done.succeeded()) {
                     LOG.info("secure http server listening on {}:{}", bindAddress, server.actualPort());
                     result.complete(done.result());
@@ -409,7 +488,7 @@ public abstract class AbstractVertxBasedHttpProtocolAdapter<T extends HttpProtoc
             if (insecureServer == null) {
                 insecureServer = vertx.createHttpServer(getInsecureHttpServerOptions());
             }
-            insecureServer.requestHandler(router).listen(done -> {
+            insecureServer.requestHandler(trackRequestsPerConnection(insecureServer, router)).listen(done -> {
                 if (done.succeeded()) {
                     LOG.info("insecure http server listening on {}:{}", bindAddress, insecureServer.actualPort());
                     result.complete(done.result());
@@ -424,6 +503,18 @@ public abstract class AbstractVertxBasedHttpProtocolAdapter<T extends HttpProtoc
         }
     }
 
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Removes all command consumers from the command mailbox.
+     */
+    @Override
+    protected void onCommandConnectionLost(final HonoClient commandConnection) {
+        if (commandMailbox != null) {
+            commandMailbox.clear();
+        }
+    }
+
     @Override
     public final void doStop(final Future<Void> stopFuture) {
 
@@ -473,7 +564,8 @@ public abstract class AbstractVertxBasedHttpProtocolAdapter<T extends HttpProtoc
     /**
      * Uploads the body of an HTTP request as a telemetry message to Hono.
      * <p>
-     * This method simply invokes {@link #uploadTelemetryMessage(RoutingContext, String, String, Buffer, String)}
+     * This method verifies the request's headers, reads the request body (if not already read)
+     * and then invokes {@link #uploadTelemetryMessage(RoutingContext, String, String, Buffer, String)}
      * with objects retrieved from the routing context.
      *
      * @param ctx The context to retrieve the message payload and content type from.
@@ -483,12 +575,20 @@ public abstract class AbstractVertxBasedHttpProtocolAdapter<T extends HttpProtoc
      */
     public final void uploadTelemetryMessage(final RoutingContext ctx, final String tenant, final String deviceId) {
 
-        uploadTelemetryMessage(
-                Objects.requireNonNull(ctx),
-                Objects.requireNonNull(tenant),
-                Objects.requireNonNull(deviceId),
-                ctx.getBody(),
-                HttpUtils.getContentType(ctx));
+        Objects.requireNonNull(ctx);
+        Objects.requireNonNull(tenant);
+        Objects.requireNonNull(deviceId);
+
+        if (!isValidUploadRequest(ctx, MetricsTags.EndpointType.TELEMETRY)) {
+            return;
+        }
+        getBodyHandler().readBody(ctx).setHandler(read -> {
+            if (read.succeeded()) {
+                uploadTelemetryMessage(ctx, tenant, deviceId, read.result(), HttpUtils.getContentType(ctx));
+            } else {
+                ctx.fail(read.cause());
+            }
+        });
     }
 
     /**
@@ -522,7 +622,8 @@ public abstract class AbstractVertxBasedHttpProtocolAdapter<T extends HttpProtoc
     /**
      * Uploads the body of an HTTP request as an event message to Hono.
      * <p>
-     * This method simply invokes {@link #uploadEventMessage(RoutingContext, String, String, Buffer, String)}
+     * This method verifies the request's headers, reads the request body (if not already read)
+     * and then invokes {@link #uploadEventMessage(RoutingContext, String, String, Buffer, String)}
      * with objects retrieved from the routing context.
      *
      * @param ctx The context to retrieve the message payload and content type from.
@@ -532,12 +633,20 @@ public abstract class AbstractVertxBasedHttpProtocolAdapter<T extends HttpProtoc
      */
     public final void uploadEventMessage(final RoutingContext ctx, final String tenant, final String deviceId) {
 
-        uploadEventMessage(
-                Objects.requireNonNull(ctx),
-                Objects.requireNonNull(tenant),
-                Objects.requireNonNull(deviceId),
-                ctx.getBody(),
-                HttpUtils.getContentType(ctx));
+        Objects.requireNonNull(ctx);
+        Objects.requireNonNull(tenant);
+        Objects.requireNonNull(deviceId);
+
+        if (!isValidUploadRequest(ctx, MetricsTags.EndpointType.EVENT)) {
+            return;
+        }
+        getBodyHandler().readBody(ctx).setHandler(read -> {
+            if (read.succeeded()) {
+                uploadEventMessage(ctx, tenant, deviceId, read.result(), HttpUtils.getContentType(ctx));
+            } else {
+                ctx.fail(read.cause());
+            }
+        });
     }
 
     /**
@@ -587,16 +696,21 @@ public abstract class AbstractVertxBasedHttpProtocolAdapter<T extends HttpProtoc
             } else {
 
                 final Device authenticatedDevice = getAuthenticatedDevice(ctx);
-                final Span currentSpan = tracer.buildSpan("upload " + endpoint.getCanonicalName())
-                        .asChildOf(TracingHandler.serverSpanContext(ctx))
-                        .ignoreActiveSpan()
-                        .withTag(Tags.COMPONENT.getKey(), getTypeName())
-                        .withTag(Tags.SPAN_KIND.getKey(), Tags.SPAN_KIND_CLIENT)
-                        .withTag(MessageHelper.APP_PROPERTY_TENANT_ID, tenant)
-                        .withTag(MessageHelper.APP_PROPERTY_DEVICE_ID, deviceId)
-                        .withTag(TracingHelper.TAG_AUTHENTICATED.getKey(), authenticatedDevice != null)
-                        .withTag(Constants.HEADER_QOS_LEVEL, qos.asTag().getValue())
-                        .start();
+                final Span currentSpan;
+                if (isSampled(tenant, deviceId, endpoint, qos)) {
+                    currentSpan = tracer.buildSpan("upload " + endpoint.getCanonicalName())
+                            .asChildOf(TracingHandler.serverSpanContext(ctx))
+                            .ignoreActiveSpan()
+                            .withTag(Tags.COMPONENT.getKey(), getTypeName())
+                            .withTag(Tags.SPAN_KIND.getKey(), Tags.SPAN_KIND_CLIENT)
+                            .withTag(MessageHelper.APP_PROPERTY_TENANT_ID, tenant)
+                            .withTag(MessageHelper.APP_PROPERTY_DEVICE_ID, deviceId)
+                            .withTag(TracingHelper.TAG_AUTHENTICATED.getKey(), authenticatedDevice != null)
+                            .withTag(Constants.HEADER_QOS_LEVEL, qos.asTag().getValue())
+                            .start();
+                } else {
+                    currentSpan = NoopSpan.INSTANCE;
+                }
 
                 final Future<Void> responseReady = Future.future();
                 final Future<JsonObject> tokenTracker = getRegistrationAssertion(
@@ -642,13 +756,15 @@ public abstract class AbstractVertxBasedHttpProtocolAdapter<T extends HttpProtoc
 
                         if (MetricsTags.QoS.AT_MOST_ONCE.equals(qos)) {
                             return CompositeFuture.all(
-                                    sender.send(downstreamMessage, currentSpan.context()),
+                                    recordProcessingStage(ProcessingStage.DOWNSTREAM_SEND,
+                                            () -> sender.send(downstreamMessage, currentSpan.context())),
                                     responseReady)
                                     .map(s -> (Void) null);
                         } else {
                             // unsettled
                             return CompositeFuture.all(
-                                    sender.sendAndWaitForOutcome(downstreamMessage, currentSpan.context()),
+                                    recordProcessingStage(ProcessingStage.DOWNSTREAM_SEND,
+                                            () -> sender.sendAndWaitForOutcome(downstreamMessage, currentSpan.context())),
                                     responseReady)
                                     .map(s -> (Void) null);
                         }
@@ -813,6 +929,10 @@ public abstract class AbstractVertxBasedHttpProtocolAdapter<T extends HttpProtoc
 
     /**
      * Creates a consumer for command messages to be sent to a device.
+     * <p>
+     * The request is parked in the adapter's command mailbox which keeps the device's
+     * command consumer open across consecutive requests of the device. Closing the
+     * returned consumer releases the request from the mailbox.
      *
      * @param ttdSecs The number of seconds the device waits for a command.
      * @param tenantId The tenant that the device belongs to.
@@ -859,71 +979,49 @@ public abstract class AbstractVertxBasedHttpProtocolAdapter<T extends HttpProtoc
             return Future.succeededFuture();
         } else {
             currentSpan.setTag(MessageHelper.APP_PROPERTY_DEVICE_TTD, ttdSecs);
-            return getCommandConsumerFactory().createCommandConsumer(
+            final Sample ttdWaitTimer = getMetrics().startProcessingStageTimer(ProcessingStage.TTD_WAIT);
+            return getCommandMailbox().park(
                     tenantId,
                     deviceId,
-                    commandContext -> {
-
-                        Tags.COMPONENT.set(commandContext.getCurrentSpan(), getTypeName());
-                        final Command command = commandContext.getCommand();
-                        final Sample commandSample = getMetrics().startTimer();
-                        if (command.isValid()) {
-                            if (responseReady.isComplete()) {
-                                // the timer has already fired, release the command
-                                getMetrics().reportCommand(
-                                        command.isOneWay() ? Direction.ONE_WAY : Direction.REQUEST,
-                                        tenantId,
-                                        ProcessingOutcome.UNDELIVERABLE,
-                                        command.getPayloadSize(),
-                                        commandSample);
-                                commandContext.release();
-                            } else {
-                                addMicrometerSample(commandContext, commandSample);
-                                // put command context to routing context and notify
-                                ctx.put(CommandContext.KEY_COMMAND_CONTEXT, commandContext);
-                                cancelCommandReceptionTimer(ctx);
-                                setTtdStatus(ctx, TtdStatus.COMMAND);
-                                responseReady.tryComplete();
-                            }
-                        } else {
-                            getMetrics().reportCommand(
-                                    command.isOneWay() ? Direction.ONE_WAY : Direction.REQUEST,
-                                    tenantId,
-                                    ProcessingOutcome.UNPROCESSABLE,
-                                    command.getPayloadSize(),
-                                    commandSample);
-                            commandContext.reject(new ErrorCondition(Constants.AMQP_BAD_REQUEST, "malformed command message"));
-                        }
+                    createTtdCommandHandler(tenantId, responseReady, ttdWaitTimer, commandContext -> {
+                        // put command context to routing context and notify
+                        ctx.put(CommandContext.KEY_COMMAND_CONTEXT, commandContext);
+                        cancelCommandReceptionTimer(ctx);
+                        setTtdStatus(ctx, TtdStatus.COMMAND);
                         // we do not issue any new credit because the
-                        // consumer is supposed to deliver a single command
-                        // only per HTTP request
-                    },
-                    remoteDetach -> {
-                        LOG.debug("peer closed command receiver link [tenant-id: {}, device-id: {}]", tenantId, deviceId);
-                        // command consumer is closed by closeHandler, no explicit close necessary here
-                    }).map(consumer -> {
+                        // mailbox issues credit for each parked request
+                    })).map(consumer -> {
                         if (!responseReady.isComplete()) {
                             // if the request was not responded already, add a timer for triggering an empty response
-                            addCommandReceptionTimer(ctx, responseReady, ttdSecs);
+                            addCommandReceptionTimer(ctx, responseReady, ttdSecs, ttdWaitTimer);
                         }
                         return consumer;
-                    }).recover(t -> {
-                        if (t instanceof ResourceConflictException) {
-                            // another request from the same device that contains
-                            // a TTD value is already being processed
-                            if (HttpUtils.isEmptyNotification(ctx)) {
-                                // no need to forward message downstream
-                                return Future.failedFuture(t);
-                            } else {
-                                // let the other request handle the command (if any)
-                                responseReady.tryComplete();
-                                return Future.succeededFuture();
-                            }
-                        } else {
-                            return Future.failedFuture(t);
-                        }
+                    }).recover(t -> recoverFromCommandConsumerConflict(t, HttpUtils.isEmptyNotification(ctx), responseReady));
+        }
+    }
+
+    private CommandMailbox getCommandMailbox() {
+        if (commandMailbox == null) {
+            commandMailbox = new CommandMailbox(
+                    vertx,
+                    getCommandConsumerFactory(),
+                    getConfig().getCommandConsumerIdleTimeout(),
+                    // start measuring the processing time as soon as the command has been received
+                    commandContext -> addMicrometerSample(commandContext, getMetrics().startTimer()),
+                    commandContext -> {
+                        // no request of the device is waiting for the command
+                        final Command command = commandContext.getCommand();
+                        Tags.COMPONENT.set(commandContext.getCurrentSpan(), getTypeName());
+                        getMetrics().reportCommand(
+                                command.isOneWay() ? Direction.ONE_WAY : Direction.REQUEST,
+                                command.getTenant(),
+                                ProcessingOutcome.UNDELIVERABLE,
+                                command.getPayloadSize(),
+                                getMicrometerSample(commandContext));
+                        commandContext.release();
                     });
         }
+        return commandMailbox;
     }
 
     /**
@@ -936,46 +1034,28 @@ public abstract class AbstractVertxBasedHttpProtocolAdapter<T extends HttpProtoc
      * @param ctx The device's currently executing HTTP request.
      * @param responseReady The future to complete when the time has expired.
      * @param delaySecs The number of seconds to wait for a command.
+     * @param ttdWaitTimer The timer to stop when the time has expired or {@code null}
+     *                     if the time spent waiting for a command is not being recorded.
      */
     private void addCommandReceptionTimer(
             final RoutingContext ctx,
             final Future<Void> responseReady,
-            final long delaySecs) {
-
-        final Long timerId = ctx.vertx().setTimer(delaySecs * 1000L, id -> {
-
-            LOG.trace("time to wait [{}s] for command expired [timer id: {}]", delaySecs, id);
-
-            if (responseReady.isComplete()) {
-                // a command has been sent to the device already
-                LOG.trace("response already sent, nothing to do ...");
-            } else {
-                // no command to be sent,
-                // send empty response
-                setTtdStatus(ctx, TtdStatus.EXPIRED);
-                responseReady.complete();
-            }
-        });
-
-        LOG.trace("adding command reception timer [id: {}]", timerId);
+            final long delaySecs,
+            final Sample ttdWaitTimer) {
 
+        final long timerId = addCommandReceptionTimer(delaySecs, responseReady, ttdWaitTimer,
+                expired -> setTtdStatus(ctx, TtdStatus.EXPIRED));
         ctx.put(KEY_TIMER_ID, timerId);
     }
 
     private void cancelCommandReceptionTimer(final RoutingContext ctx) {
-
-        final Long timerId = ctx.get(KEY_TIMER_ID);
-        if (timerId != null && timerId >= 0) {
-            if (ctx.vertx().cancelTimer(timerId)) {
-                LOG.trace("Cancelled timer id {}", timerId);
-            } else {
-                LOG.debug("Could not cancel timer id {}", timerId);
-            }
-        }
+        cancelCommandReceptionTimer((Long) ctx.get(KEY_TIMER_ID));
     }
 
     /**
      * Uploads a command response message to Hono.
+     * <p>
+     * The payload of the response is read from the request body (if not already read).
      *
      * @param ctx The routing context of the HTTP request.
      * @param tenant The tenant of the device from which the command response was received.
@@ -996,7 +1076,37 @@ public abstract class AbstractVertxBasedHttpProtocolAdapter<T extends HttpProtoc
         Objects.requireNonNull(tenant);
         Objects.requireNonNull(deviceId);
 
-        final Buffer payload = ctx.getBody();
+        if (CommandResponse.from(commandRequestId, tenant, deviceId, null, null, responseStatus) == null) {
+            // reject the request before reading the body
+            metrics.reportCommand(
+                    Direction.RESPONSE,
+                    tenant,
+                    ProcessingOutcome.UNPROCESSABLE,
+                    0,
+                    getMicrometerSample(ctx));
+            HttpUtils.badRequest(
+                    ctx,
+                    String.format("command-request-id [%s] or status code [%s] is missing/invalid",
+                            commandRequestId, responseStatus));
+            return;
+        }
+        getBodyHandler().readBody(ctx).setHandler(read -> {
+            if (read.succeeded()) {
+                doUploadCommandResponseMessage(ctx, tenant, deviceId, commandRequestId, responseStatus, read.result());
+            } else {
+                ctx.fail(read.cause());
+            }
+        });
+    }
+
+    private void doUploadCommandResponseMessage(
+            final RoutingContext ctx,
+            final String tenant,
+            final String deviceId,
+            final String commandRequestId,
+            final Integer responseStatus,
+            final Buffer payload) {
+
         final String contentType = HttpUtils.getContentType(ctx);
 
         LOG.debug("processing response to command [tenantId: {}, deviceId: {}, cmd-req-id: {}, status code: {}]",
@@ -1071,6 +1181,33 @@ public abstract class AbstractVertxBasedHttpProtocolAdapter<T extends HttpProtoc
         }
     }
 
+    /**
+     * Verifies the headers of a request for uploading a telemetry message or event
+     * before the request body is read.
+     * <p>
+     * The request is rejected with a 400 status code if it contains an unsupported
+     * QoS level or if its announced content length does not match its content type.
+     *
+     * @param ctx The routing context of the request.
+     * @param endpoint The endpoint that the message is uploaded to.
+     * @return {@code true} if the request may be processed.
+     */
+    private boolean isValidUploadRequest(final RoutingContext ctx, final MetricsTags.EndpointType endpoint) {
+
+        final String contentType = HttpUtils.getContentType(ctx);
+        final long contentLength = StreamingBodyHandler.getContentLength(ctx.request());
+        final boolean isEmptyNotification = EventConstants.CONTENT_TYPE_EMPTY_NOTIFICATION.equals(contentType);
+        if (contentLength >= 0 && isEmptyNotification != (contentLength == 0)) {
+            HttpUtils.badRequest(ctx, String.format("content type [%s] does not match payload", contentType));
+            return false;
+        } else if (getQoSLevel(endpoint, ctx.request().getHeader(Constants.HEADER_QOS_LEVEL)) == MetricsTags.QoS.UNKNOWN) {
+            HttpUtils.badRequest(ctx, "unsupported QoS-Level header value");
+            return false;
+        } else {
+            return true;
+        }
+    }
+
     private static MetricsTags.QoS getQoSLevel(final EndpointType endpoint, final String qosValue) {
 
         if (endpoint == EndpointType.EVENT) {
@@ -1085,4 +1222,13 @@ public abstract class AbstractVertxBasedHttpProtocolAdapter<T extends HttpProtoc
             }
         }
     }
+
+    /**
+     * Statistics of a connection to a device.
+     */
+    private static final class ConnectionStats {
+
+        private HttpVersion version;
+        private int requests;
+    }
 }
@@ -0,0 +1,316 @@
+/*******************************************************************************
+ * Copyright (c) 2019 Contributors to the Eclipse Foundation
+ *
+ * See the NOTICE file(s) distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *******************************************************************************/
+
+package org.eclipse.hono.adapter.http;
+
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.eclipse.hono.auth.Device;
+import org.eclipse.hono.client.CommandConsumerFactory;
+import org.eclipse.hono.client.CommandContext;
+import org.eclipse.hono.client.MessageConsumer;
+import org.eclipse.hono.client.ResourceConflictException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import io.vertx.core.AsyncResult;
+import io.vertx.core.Future;
+import io.vertx.core.Handler;
+import io.vertx.core.Vertx;
+
+/**
+ * A mailbox for commands to be sent to devices in the responses to their HTTP requests.
+ * <p>
+ * HTTP requests which indicate that the device waits for a command are <em>parked</em>
+ * in the mailbox until a command is received or the request is released again.
+ * The mailbox creates a command consumer for a device when the first request of the device
+ * is parked and keeps the consumer open for a configurable amount of time after the request
+ * has been released. Subsequent requests of the device can thus be parked without attaching
+ * a new receiver link to the AMQP Messaging Network.
+ * <p>
+ * At most one request per device can be parked at any given time.
+ */
+final class CommandMailbox {
+
+    private static final Logger LOG = LoggerFactory.getLogger(CommandMailbox.class);
+
+    private final Map<String, DeviceMailbox> mailboxes = new ConcurrentHashMap<>();
+    private final Vertx vertx;
+    private final CommandConsumerFactory commandConsumerFactory;
+    private final long idleTimeoutMillis;
+    private final Handler<CommandContext> receivedCommandHandler;
+    private final Handler<CommandContext> undeliverableCommandHandler;
+
+    /**
+     * Creates a new mailbox.
+     *
+     * @param vertx The vert.x instance to use for running timers.
+     * @param commandConsumerFactory The factory to use for creating command consumers.
+     * @param idleTimeout The number of seconds after which a command consumer is closed if
+     *                    no request of the device is parked in the mailbox.
+     * @param receivedCommandHandler The handler to invoke with each command as soon as it has been
+     *                    received, before it is passed to a parked request or to the undeliverable
+     *                    command handler.
+     * @param undeliverableCommandHandler The handler to invoke with commands that are received
+     *                    while no request of the device is parked in the mailbox. The handler
+     *                    is responsible for settling the command message.
+     * @throws NullPointerException if any of the parameters is {@code null}.
+     * @throws IllegalArgumentException if idle timeout is negative.
+     */
+    CommandMailbox(
+            final Vertx vertx,
+            final CommandConsumerFactory commandConsumerFactory,
+            final int idleTimeout,
+            final Handler<CommandContext> receivedCommandHandler,
+            final Handler<CommandContext> undeliverableCommandHandler) {
+
+        if (idleTimeout < 0) {
+            throw new IllegalArgumentException("idle timeout must be >= 0");
+        }
+        this.vertx = Objects.requireNonNull(vertx);
+        this.commandConsumerFactory = Objects.requireNonNull(commandConsumerFactory);
+        this.idleTimeoutMillis = idleTimeout * 1000L;
+        this.receivedCommandHandler = Objects.requireNonNull(receivedCommandHandler);
+        this.undeliverableCommandHandler = Objects.requireNonNull(undeliverableCommandHandler);
+    }
+
+    /**
+     * Parks a request of a device waiting for a command.
+     * <p>
+     * The given command handler will be invoked with the first command that is received for the
+     * device while the request is parked. The request is released from the mailbox when a
+     * command has been passed to the handler or when the {@code close} method of the
+     * returned consumer is invoked, whatever comes first.
+     *
+     * @param tenantId The tenant that the device belongs to.
+     * @param deviceId The identifier of the device.
+     * @param commandHandler The handler to invoke with the command.
+     * @return A future indicating the outcome of the operation.
+     *         <p>
+     *         The future will be completed with a consumer that needs to be closed once the
+     *         request no longer waits for a command.
+     *         <p>
+     *         The future will be failed with a {@link ResourceConflictException} if
+     *         another request of the device is already parked or with a
+     *         {@code ServiceInvocationException} if the command consumer for the device
+     *         could not be created.
+     * @throws NullPointerException if any of the parameters is {@code null}.
+     */
+    Future<MessageConsumer> park(
+            final String tenantId,
+            final String deviceId,
+            final Handler<CommandContext> commandHandler) {
+
+        Objects.requireNonNull(tenantId);
+        Objects.requireNonNull(deviceId);
+        Objects.requireNonNull(commandHandler);
+
+        final String key = Device.asAddress(tenantId, deviceId);
+        Future<MessageConsumer> result = null;
+        while (result == null) {
+            // the mailbox may have been closed concurrently
+            result = mailboxes.computeIfAbsent(key, k -> new DeviceMailbox(key, tenantId, deviceId))
+                    .park(commandHandler);
+        }
+        return result;
+    }
+
+    /**
+     * Removes all mailboxes without closing their command consumers.
+     * <p>
+     * This method should be invoked when the connection that the command
+     * consumers have been created on has been lost.
+     */
+    void clear() {
+        mailboxes.values().forEach(DeviceMailbox::invalidate);
+    }
+
+    /**
+     * Gets the number of devices that currently have a command consumer.
+     *
+     * @return The number of devices.
+     */
+    int size() {
+        return mailboxes.size();
+    }
+
+    /**
+     * The mailbox of a single device.
+     * <p>
+     * All state is guarded by the mailbox's intrinsic lock.
+     */
+    private final class DeviceMailbox {
+
+        private final String key;
+        private final String tenantId;
+        private final String deviceId;
+        private Future<MessageConsumer> consumerTracker;
+        private Handler<CommandContext> parkedRequest;
+        private boolean creditAvailable = true;
+        private boolean closed = false;
+        private long idleGeneration = 0;
+
+        DeviceMailbox(final String key, final String tenantId, final String deviceId) {
+            this.key = key;
+            this.tenantId = tenantId;
+            this.deviceId = deviceId;
+        }
+
+        synchronized Future<MessageConsumer> park(final Handler<CommandContext> commandHandler) {
+
+            if (closed) {
+                return null;
+            } else if (parkedRequest != null) {
+                LOG.debug("cannot park concurrent request [tenant: {}, device-id: {}]", tenantId, deviceId);
+                return Future.failedFuture(new ResourceConflictException("message consumer already in use"));
+            }
+
+            parkedRequest = commandHandler;
+            // prevent pending idle timer from closing the consumer
+            idleGeneration++;
+
+            if (consumerTracker == null) {
+                LOG.debug("creating command consumer [tenant: {}, device-id: {}]", tenantId, deviceId);
+                consumerTracker = Future.future();
+                commandConsumerFactory.createCommandConsumer(
+                        tenantId,
+                        deviceId,
+                        this::handleCommand,
+                        remoteDetach -> onRemoteClose())
+                .setHandler(attempt -> {
+                    if (attempt.failed()) {
+                        invalidate();
+                    }
+                    consumerTracker.handle(attempt);
+                });
+            } else if (consumerTracker.succeeded() && !creditAvailable) {
+                // allow sender to send the next command
+                consumerTracker.result().flow(1);
+                creditAvailable = true;
+            }
+            return consumerTracker.map(consumer -> new ParkedRequest(this, commandHandler));
+        }
+
+        private void handleCommand(final CommandContext commandContext) {
+
+            receivedCommandHandler.handle(commandContext);
+            final Handler<CommandContext> handler;
+            synchronized (this) {
+                creditAvailable = false;
+                handler = parkedRequest;
+                parkedRequest = null;
+                if (handler == null) {
+                    startIdleTimer();
+                }
+            }
+            if (handler == null) {
+                LOG.debug("no request parked for command [tenant: {}, device-id: {}]", tenantId, deviceId);
+                undeliverableCommandHandler.handle(commandContext);
+            } else {
+                handler.handle(commandContext);
+            }
+        }
+
+        synchronized void release(final Handler<CommandContext> commandHandler) {
+
+            if (parkedRequest == commandHandler) {
+                parkedRequest = null;
+            }
+            if (parkedRequest == null) {
+                startIdleTimer();
+            }
+        }
+
+        private void startIdleTimer() {
+
+            if (closed) {
+                return;
+            }
+            final long generation = ++idleGeneration;
+            if (idleTimeoutMillis == 0) {
+                closeConsumer();
+            } else {
+                vertx.setTimer(idleTimeoutMillis, tid -> {
+                    synchronized (DeviceMailbox.this) {
+                        if (generation == idleGeneration && parkedRequest == null) {
+                            closeConsumer();
+                        }
+                    }
+                });
+            }
+        }
+
+        private void closeConsumer() {
+
+            LOG.debug("closing idle command consumer [tenant: {}, device-id: {}]", tenantId, deviceId);
+            invalidate();
+            if (consumerTracker != null && consumerTracker.succeeded()) {
+                consumerTracker.result().close(null);
+            }
+        }
+
+        private synchronized void onRemoteClose() {
+            LOG.debug("peer closed command receiver link [tenant-id: {}, device-id: {}]", tenantId, deviceId);
+            invalidate();
+        }
+
+        synchronized boolean hasCredit() {
+            return creditAvailable;
+        }
+
+        synchronized void invalidate() {
+            closed = true;
+            mailboxes.remove(key, this);
+        }
+    }
+
+    /**
+     * A handle for a request that has been parked in a device's mailbox.
+     */
+    private static final class ParkedRequest implements MessageConsumer {
+
+        private final DeviceMailbox mailbox;
+        private final Handler<CommandContext> commandHandler;
+
+        ParkedRequest(final DeviceMailbox mailbox, final Handler<CommandContext> commandHandler) {
+            this.mailbox = mailbox;
+            this.commandHandler = commandHandler;
+        }
+
+        /**
+         * Releases the request from the mailbox.
+         * <p>
+         * The underlying command consumer is closed only after it has not
+         * been used for the configured idle timeout.
+         */
+        @Override
+        public void close(final Handler<AsyncResult<Void>> closeHandler) {
+            mailbox.release(commandHandler);
+            if (closeHandler != null) {
+                closeHandler.handle(Future.succeededFuture());
+            }
+        }
+
+        @Override
+        public void flow(final int credits) {
+            throw new IllegalStateException("credit is managed by the mailbox");
+        }
+
+        @Override
+        public int getRemainingCredit() {
+            return mailbox.hasCredit() ? 1 : 0;
+        }
+    }
+}
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2016, 2018 Contributors to the Eclipse Foundation
+ * Copyright (c) 2016, 2019 Contributors to the Eclipse Foundation
  *
  * See the NOTICE file(s) distributed with this work for additional
  * information regarding copyright ownership.
@@ -16,6 +16,8 @@ package org.eclipse.hono.adapter.http;
 import org.eclipse.hono.service.metric.Metrics;
 import org.eclipse.hono.service.metric.NoopBasedMetrics;
 
+import io.vertx.core.http.HttpVersion;
+
 /**
  * Metrics for the HTTP based adapters.
  */
@@ -35,5 +37,20 @@ public interface HttpAdapterMetrics extends Metrics {
      */
     HttpAdapterMetrics NOOP = new Noop();
 
-    // empty for now
+    /**
+     * Reports the number of requests that have been received on a connection
+     * that has been closed.
+     * <p>
+     * For HTTP/2 connections this is the number of streams that devices
+     * have opened on the connection.
+     * <p>
+     * This default implementation does nothing.
+     *
+     * @param version The HTTP version that the connection has been used with.
+     * @param requests The number of requests.
+     * @throws NullPointerException if version is {@code null}.
+     */
+    default void reportRequestsPerConnection(final HttpVersion version, final int requests) {
+        // do nothing
+    }
 }
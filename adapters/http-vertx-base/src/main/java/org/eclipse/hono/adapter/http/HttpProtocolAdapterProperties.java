@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2016, 2018 Contributors to the Eclipse Foundation
+ * Copyright (c) 2016, 2019 Contributors to the Eclipse Foundation
  *
  * See the NOTICE file(s) distributed with this work for additional
  * information regarding copyright ownership.
@@ -28,8 +28,31 @@ public class HttpProtocolAdapterProperties extends ProtocolAdapterProperties {
      * The default name of the realm that devices need to authenticate to.
      */
     public static final String DEFAULT_REALM = "Hono";
+    /**
+     * The default number of seconds after which an unused command consumer is closed.
+     */
+    public static final int DEFAULT_COMMAND_CONSUMER_IDLE_TIMEOUT = 60;
+    /**
+     * The default maximum number of concurrent streams per HTTP/2 connection.
+     */
+    public static final int DEFAULT_HTTP2_MAX_CONCURRENT_STREAMS = 100;
+    /**
+     * The default initial flow-control window size (bytes) of HTTP/2 streams.
+     */
+    public static final int DEFAULT_HTTP2_INITIAL_WINDOW_SIZE = 65_535;
+    /**
+     * The default number of seconds after which idle connections are closed.
+     */
+    public static final int DEFAULT_IDLE_TIMEOUT = 0;
+
     private String realm = DEFAULT_REALM;
     private String corsAllowedOrigin = "*";
+    private int commandConsumerIdleTimeout = DEFAULT_COMMAND_CONSUMER_IDLE_TIMEOUT;
+    private boolean http2Enabled = false;
+    private int http2MaxConcurrentStreams = DEFAULT_HTTP2_MAX_CONCURRENT_STREAMS;
+    private int http2InitialWindowSize = DEFAULT_HTTP2_INITIAL_WINDOW_SIZE;
+    private int http2ConnectionWindowSize = -1;
+    private int idleTimeout = DEFAULT_IDLE_TIMEOUT;
 
     /**
      * Gets the name of the realm that unauthenticated devices are prompted to provide credentials for.
@@ -90,4 +113,194 @@ public class HttpProtocolAdapterProperties extends ProtocolAdapterProperties {
         this.corsAllowedOrigin = Objects.requireNonNull(corsAllowedOrigin);
     }
 
+    /**
+     * Gets the number of seconds after which the command consumer of a device is closed
+     * if the device has not sent another request indicating that it waits for a command.
+     * <p>
+     * Keeping the consumer open allows subsequent requests of the device to wait for a command
+     * without attaching a new receiver link to the AMQP Messaging Network.
+     * <p>
+     * The default value is {@link #DEFAULT_COMMAND_CONSUMER_IDLE_TIMEOUT}.
+     *
+     * @return The number of seconds.
+     */
+    public final int getCommandConsumerIdleTimeout() {
+        return commandConsumerIdleTimeout;
+    }
+
+    /**
+     * Sets the number of seconds after which the command consumer of a device is closed
+     * if the device has not sent another request indicating that it waits for a command.
+     * <p>
+     * Keeping the consumer open allows subsequent requests of the device to wait for a command
+     * without attaching a new receiver link to the AMQP Messaging Network. A value of 0
+     * results in the consumer being closed as soon as the request has been responded to.
+     * <p>
+     * The default value is {@link #DEFAULT_COMMAND_CONSUMER_IDLE_TIMEOUT}.
+     *
+     * @param timeout The number of seconds.
+     * @throws IllegalArgumentException if the timeout is negative.
+     */
+    public final void setCommandConsumerIdleTimeout(final int timeout) {
+        if (timeout < 0) {
+            throw new IllegalArgumentException("idle timeout must be >= 0");
+        }
+        this.commandConsumerIdleTimeout = timeout;
+    }
+
+    /**
+     * Checks whether devices may use HTTP/2 for connecting to the secure port.
+     * <p>
+     * If enabled, the protocol is negotiated by means of ALPN on the secure port.
+     * Devices may always use the <em>h2c</em> upgrade mechanism on the insecure port.
+     * <p>
+     * The default value is {@code false}.
+     *
+     * @return {@code true} if HTTP/2 is supported.
+     */
+    public final boolean isHttp2Enabled() {
+        return http2Enabled;
+    }
+
+    /**
+     * Sets whether devices may use HTTP/2 for connecting to the secure port.
+     * <p>
+     * If enabled, the protocol is negotiated by means of ALPN on the secure port.
+     * Devices may always use the <em>h2c</em> upgrade mechanism on the insecure port.
+     * <p>
+     * The default value is {@code false}.
+     *
+     * @param enabled {@code true} if HTTP/2 should be supported.
+     */
+    public final void setHttp2Enabled(final boolean enabled) {
+        this.http2Enabled = enabled;
+    }
+
+    /**
+     * Gets the maximum number of concurrent streams that a device may open on
+     * a single HTTP/2 connection.
+     * <p>
+     * The default value is {@link #DEFAULT_HTTP2_MAX_CONCURRENT_STREAMS}.
+     *
+     * @return The number of streams.
+     */
+    public final int getHttp2MaxConcurrentStreams() {
+        return http2MaxConcurrentStreams;
+    }
+
+    /**
+     * Sets the maximum number of concurrent streams that a device may open on
+     * a single HTTP/2 connection.
+     * <p>
+     * The default value is {@link #DEFAULT_HTTP2_MAX_CONCURRENT_STREAMS}.
+     *
+     * @param streams The number of streams.
+     * @throws IllegalArgumentException if the number is &lt; 1.
+     */
+    public final void setHttp2MaxConcurrentStreams(final int streams) {
+        if (streams < 1) {
+            throw new IllegalArgumentException("max concurrent streams must be > 0");
+        }
+        this.http2MaxConcurrentStreams = streams;
+    }
+
+    /**
+     * Gets the initial flow-control window size of HTTP/2 streams.
+     * <p>
+     * The window limits the number of bytes that a device may send on a stream
+     * before the adapter needs to grant more credit.
+     * <p>
+     * The default value is {@link #DEFAULT_HTTP2_INITIAL_WINDOW_SIZE}.
+     *
+     * @return The window size in bytes.
+     */
+    public final int getHttp2InitialWindowSize() {
+        return http2InitialWindowSize;
+    }
+
+    /**
+     * Sets the initial flow-control window size of HTTP/2 streams.
+     * <p>
+     * The window limits the number of bytes that a device may send on a stream
+     * before the adapter needs to grant more credit.
+     * <p>
+     * The default value is {@link #DEFAULT_HTTP2_INITIAL_WINDOW_SIZE}.
+     *
+     * @param size The window size in bytes.
+     * @throws IllegalArgumentException if the size is &lt; 1.
+     */
+    public final void setHttp2InitialWindowSize(final int size) {
+        if (size < 1) {
+            throw new IllegalArgumentException("window size must be > 0");
+        }
+        this.http2InitialWindowSize = size;
+    }
+
+    /**
+     * Gets the flow-control window size of HTTP/2 connections.
+     * <p>
+     * The window limits the number of bytes that a device may send on all streams
+     * of a connection before the adapter needs to grant more credit.
+     * <p>
+     * The default value is -1, meaning that the window size defined by the
+     * HTTP/2 specification is used.
+     *
+     * @return The window size in bytes.
+     */
+    public final int getHttp2ConnectionWindowSize() {
+        return http2ConnectionWindowSize;
+    }
+
+    /**
+     * Sets the flow-control window size of HTTP/2 connections.
+     * <p>
+     * The window limits the number of bytes that a device may send on all streams
+     * of a connection before the adapter needs to grant more credit.
+     * <p>
+     * The default value is -1, meaning that the window size defined by the
+     * HTTP/2 specification is used.
+     *
+     * @param size The window size in bytes or -1 to use the default size.
+     * @throws IllegalArgumentException if the size is neither -1 nor &gt; 0.
+     */
+    public final void setHttp2ConnectionWindowSize(final int size) {
+        if (size != -1 && size < 1) {
+            throw new IllegalArgumentException("window size must be -1 or > 0");
+        }
+        this.http2ConnectionWindowSize = size;
+    }
+
+    /**
+     * Gets the number of seconds after which a connection is closed if no data
+     * has been sent or received on it.
+     * <p>
+     * The timeout applies to HTTP/1.1 keep-alive connections as well as to HTTP/2 connections.
+     * <p>
+     * The default value is {@link #DEFAULT_IDLE_TIMEOUT}, meaning that idle connections
+     * are never closed by the adapter.
+     *
+     * @return The number of seconds.
+     */
+    public final int getIdleTimeout() {
+        return idleTimeout;
+    }
+
+    /**
+     * Sets the number of seconds after which a connection is closed if no data
+     * has been sent or received on it.
+     * <p>
+     * The timeout applies to HTTP/1.1 keep-alive connections as well as to HTTP/2 connections.
+     * <p>
+     * The default value is {@link #DEFAULT_IDLE_TIMEOUT}, meaning that idle connections
+     * are never closed by the adapter.
+     *
+     * @param timeout The number of seconds.
+     * @throws IllegalArgumentException if the timeout is negative.
+     */
+    public final void setIdleTimeout(final int timeout) {
+        if (timeout < 0) {
+            throw new IllegalArgumentException("idle timeout must be >= 0");
+        }
+        this.idleTimeout = timeout;
+    }
 }
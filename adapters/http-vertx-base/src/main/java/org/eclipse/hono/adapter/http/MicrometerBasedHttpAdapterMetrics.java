@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2018 Contributors to the Eclipse Foundation
+ * Copyright (c) 2018, 2019 Contributors to the Eclipse Foundation
  *
  * See the NOTICE file(s) distributed with this work for additional
  * information regarding copyright ownership.
@@ -13,10 +13,17 @@
 
 package org.eclipse.hono.adapter.http;
 
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+
 import org.eclipse.hono.service.metric.MicrometerBasedMetrics;
 import org.springframework.stereotype.Component;
 
+import io.micrometer.core.instrument.DistributionSummary;
 import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.vertx.core.http.HttpVersion;
 
 /**
  * Metrics for the HTTP based adapters.
@@ -24,6 +31,13 @@ import io.micrometer.core.instrument.MeterRegistry;
 @Component
 public class MicrometerBasedHttpAdapterMetrics extends MicrometerBasedMetrics implements HttpAdapterMetrics {
 
+    /**
+     * The name of the meter for recording the number of requests per connection.
+     */
+    public static final String METER_CONNECTIONS_REQUESTS = "hono.connections.requests";
+
+    private final Map<HttpVersion, DistributionSummary> requestsPerConnection = new ConcurrentHashMap<>();
+
     /**
      * Create a new metrics instance for HTTP adapters.
      * 
@@ -34,4 +48,15 @@ public class MicrometerBasedHttpAdapterMetrics extends MicrometerBasedMetrics im
     public MicrometerBasedHttpAdapterMetrics(final MeterRegistry registry) {
         super(registry);
     }
+
+    @Override
+    public void reportRequestsPerConnection(final HttpVersion version, final int requests) {
+
+        Objects.requireNonNull(version);
+        requestsPerConnection.computeIfAbsent(version, v -> DistributionSummary.builder(METER_CONNECTIONS_REQUESTS)
+                .minimumExpectedValue(1L)
+                .tags(Tags.of("version", v.name()))
+                .register(this.registry))
+            .record(requests);
+    }
 }
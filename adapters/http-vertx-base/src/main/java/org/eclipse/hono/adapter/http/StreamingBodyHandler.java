@@ -0,0 +1,210 @@
+/*******************************************************************************
+ * Copyright (c) 2019 Contributors to the Eclipse Foundation
+ *
+ * See the NOTICE file(s) distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *******************************************************************************/
+
+package org.eclipse.hono.adapter.http;
+
+import java.net.HttpURLConnection;
+import java.util.Objects;
+
+import org.eclipse.hono.client.ClientErrorException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import io.vertx.core.Future;
+import io.vertx.core.Handler;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.http.HttpHeaders;
+import io.vertx.core.http.HttpServerRequest;
+import io.vertx.ext.web.RoutingContext;
+
+/**
+ * A handler for reading the body of an HTTP request into memory.
+ * <p>
+ * In contrast to vert.x web's standard {@code BodyHandler}, this handler does not
+ * support multipart form uploads and never spills data to the file system. It is
+ * intended to be used in two steps:
+ * <ol>
+ * <li>{@link #pauseRequest(RoutingContext)} is registered as the first route of the router.
+ * It rejects requests which announce a body that exceeds the maximum size by means of the
+ * <em>content-length</em> header and pauses the request so that no data is read from the
+ * connection before the request has been authenticated.</li>
+ * <li>The handler itself (or {@link #readBody(RoutingContext)}) is invoked once the
+ * request has been authenticated. It reads the body into a single buffer which is pre-sized
+ * according to the <em>content-length</em> header and fails the request as soon as the
+ * number of bytes received exceeds the maximum size.</li>
+ * </ol>
+ */
+public final class StreamingBodyHandler implements Handler<RoutingContext> {
+
+    private static final Logger LOG = LoggerFactory.getLogger(StreamingBodyHandler.class);
+    private static final int DEFAULT_INITIAL_BUFFER_SIZE = 1024;
+
+    private final int maxBodySize;
+
+    /**
+     * Creates a new handler for a maximum body size.
+     *
+     * @param maxBodySize The maximum number of bytes that a request body may contain.
+     * @throws IllegalArgumentException if the size is &lt; 0.
+     */
+    public StreamingBodyHandler(final int maxBodySize) {
+        if (maxBodySize < 0) {
+            throw new IllegalArgumentException("max body size must be >= 0");
+        }
+        this.maxBodySize = maxBodySize;
+    }
+
+    /**
+     * Gets the maximum number of bytes that a request body may contain.
+     *
+     * @return The number of bytes.
+     */
+    public int getMaxBodySize() {
+        return maxBodySize;
+    }
+
+    /**
+     * Checks the announced size of a request's body and pauses the request.
+     * <p>
+     * The routing context is failed with a status code of 413 if the value of the request's
+     * <em>content-length</em> header exceeds the maximum body size. Otherwise the request is
+     * paused and the context is passed on to the next handler. Any part of the body that has
+     * not been read once the response has been sent is discarded.
+     *
+     * @param ctx The routing context of the request.
+     * @throws NullPointerException if context is {@code null}.
+     */
+    public void pauseRequest(final RoutingContext ctx) {
+
+        Objects.requireNonNull(ctx);
+        final HttpServerRequest request = ctx.request();
+        if (getContentLength(request) > maxBodySize) {
+            LOG.debug("rejecting request with body exceeding max size [URI: {}]", request.uri());
+            ctx.fail(newBodyTooLargeException());
+        } else {
+            if (!request.isEnded()) {
+                request.pause();
+                ctx.addBodyEndHandler(sent -> {
+                    if (!request.isEnded()) {
+                        // drain the remaining data so that the connection can be reused
+                        request.handler(null);
+                        request.resume();
+                    }
+                });
+            }
+            ctx.next();
+        }
+    }
+
+    /**
+     * Reads the request body and passes the context on to the next handler.
+     * <p>
+     * The routing context is failed if the body could not be read.
+     *
+     * @param ctx The routing context of the request.
+     * @throws NullPointerException if context is {@code null}.
+     */
+    @Override
+    public void handle(final RoutingContext ctx) {
+
+        readBody(ctx).setHandler(read -> {
+            if (read.succeeded()) {
+                ctx.next();
+            } else {
+                ctx.fail(read.cause());
+            }
+        });
+    }
+
+    /**
+     * Reads the request body.
+     * <p>
+     * The body is also set on the routing context so that it can be retrieved by means
+     * of {@link RoutingContext#getBody()} afterwards. This method simply returns the
+     * context's body if it has already been read.
+     *
+     * @param ctx The routing context of the request.
+     * @return A future indicating the outcome of the operation.
+     *         <p>
+     *         The future will be completed with the request body.
+     *         <p>
+     *         The future will be failed with a {@link ClientErrorException} having a
+     *         status code of 413 if the body exceeds the maximum size or with the exception
+     *         thrown by the underlying request if the body could not be read.
+     * @throws NullPointerException if context is {@code null}.
+     */
+    public Future<Buffer> readBody(final RoutingContext ctx) {
+
+        Objects.requireNonNull(ctx);
+
+        if (ctx.getBody() != null) {
+            return Future.succeededFuture(ctx.getBody());
+        }
+
+        final HttpServerRequest request = ctx.request();
+        final long contentLength = getContentLength(request);
+        if (contentLength > maxBodySize) {
+            return Future.failedFuture(newBodyTooLargeException());
+        } else if (request.isEnded()) {
+            final Buffer emptyBody = Buffer.buffer(0);
+            ctx.setBody(emptyBody);
+            return Future.succeededFuture(emptyBody);
+        }
+
+        final Future<Buffer> result = Future.future();
+        final Buffer body = Buffer.buffer(contentLength >= 0 ? (int) contentLength : DEFAULT_INITIAL_BUFFER_SIZE);
+        request.handler(chunk -> {
+            if (result.isComplete()) {
+                // discard remaining data of a failed request
+                return;
+            } else if (body.length() + chunk.length() > maxBodySize) {
+                LOG.debug("request body exceeds max size [URI: {}]", request.uri());
+                result.tryFail(newBodyTooLargeException());
+            } else {
+                body.appendBuffer(chunk);
+            }
+        });
+        request.endHandler(end -> {
+            if (!result.isComplete()) {
+                ctx.setBody(body);
+                result.complete(body);
+            }
+        });
+        request.exceptionHandler(result::tryFail);
+        request.resume();
+        return result;
+    }
+
+    /**
+     * Gets the value of a request's <em>content-length</em> header.
+     *
+     * @param request The request.
+     * @return The number of bytes or -1 if the request does not contain a valid header.
+     */
+    static long getContentLength(final HttpServerRequest request) {
+
+        final String value = request.getHeader(HttpHeaders.CONTENT_LENGTH);
+        if (value == null) {
+            return -1;
+        }
+        try {
+            return Long.parseLong(value);
+        } catch (final NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    private static ClientErrorException newBodyTooLargeException() {
+        return new ClientErrorException(HttpURLConnection.HTTP_ENTITY_TOO_LARGE, "request body exceeds maximum payload size");
+    }
+}
@@ -71,9 +71,14 @@ import io.vertx.core.Future;
 import io.vertx.core.Handler;
 import io.vertx.core.Vertx;
 import io.vertx.core.buffer.Buffer;
+import io.vertx.core.http.CaseInsensitiveHeaders;
+import io.vertx.core.http.HttpConnection;
+import io.vertx.core.http.HttpHeaders;
+import io.vertx.core.http.HttpMethod;
 import io.vertx.core.http.HttpServer;
 import io.vertx.core.http.HttpServerRequest;
 import io.vertx.core.http.HttpServerResponse;
+import io.vertx.core.http.HttpVersion;
 import io.vertx.core.json.JsonObject;
 import io.vertx.ext.unit.Async;
 import io.vertx.ext.unit.TestContext;
@@ -198,6 +203,52 @@ public class AbstractVertxBasedHttpProtocolAdapterTest {
         verify(server).listen(any(Handler.class));
     }
 
+    /**
+     * Verifies that the number of requests received on a connection is reported
+     * when the connection is closed.
+     *
+     * @param ctx The helper to use for running async tests on vertx.
+     */
+    @SuppressWarnings("unchecked")
+    @Test
+    public void testStartTracksRequestsPerConnection(final TestContext ctx) {
+
+        // GIVEN a started adapter
+        final HttpServer server = getHttpServer(false);
+        final AbstractVertxBasedHttpProtocolAdapter<HttpProtocolAdapterProperties> adapter = getAdapter(server, null);
+        final Future<Void> startupTracker = Future.future();
+        startupTracker.setHandler(ctx.asyncAssertSuccess());
+        adapter.start(startupTracker);
+        final ArgumentCaptor<Handler<HttpConnection>> connectionHandler = ArgumentCaptor.forClass(Handler.class);
+        final ArgumentCaptor<Handler<HttpServerRequest>> requestHandler = ArgumentCaptor.forClass(Handler.class);
+        verify(server).connectionHandler(connectionHandler.capture());
+        verify(server).requestHandler(requestHandler.capture());
+
+        // WHEN a device opens a connection
+        final HttpConnection connection = mock(HttpConnection.class);
+        connectionHandler.getValue().handle(connection);
+        final ArgumentCaptor<Handler<Void>> closeHandler = ArgumentCaptor.forClass(Handler.class);
+        verify(connection).closeHandler(closeHandler.capture());
+
+        // and sends two requests on it
+        for (int i = 0; i < 2; i++) {
+            final HttpServerRequest request = mock(HttpServerRequest.class);
+            when(request.connection()).thenReturn(connection);
+            when(request.version()).thenReturn(HttpVersion.HTTP_2);
+            when(request.method()).thenReturn(HttpMethod.GET);
+            when(request.path()).thenReturn("/unknown");
+            when(request.uri()).thenReturn("/unknown");
+            when(request.headers()).thenReturn(new CaseInsensitiveHeaders());
+            when(request.response()).thenReturn(mock(HttpServerResponse.class));
+            requestHandler.getValue().handle(request);
+        }
+
+        // THEN the number of requests is reported once the connection is closed
+        verify(metrics, never()).reportRequestsPerConnection(any(HttpVersion.class), anyInt());
+        closeHandler.getValue().handle(null);
+        verify(metrics).reportRequestsPerConnection(HttpVersion.HTTP_2, 2);
+    }
+
     /**
      * Verifies that the <em>onStartupSuccess</em> method is invoked if the
      * HTTP server has been started successfully.
@@ -691,6 +742,8 @@ public class AbstractVertxBasedHttpProtocolAdapterTest {
         final HttpServerResponse response = mock(HttpServerResponse.class);
         final HttpServerRequest request = mock(HttpServerRequest.class);
         when(request.getHeader(eq(Constants.HEADER_TIME_TIL_DISCONNECT))).thenReturn("10");
+        // without a body
+        when(request.isEnded()).thenReturn(true);
         final RoutingContext ctx = newRoutingContext(null, EventConstants.CONTENT_TYPE_EMPTY_NOTIFICATION, request, response);
         // and the Command consumer for the device is already in use
         when(commandConsumerFactory.createCommandConsumer(eq("tenant"), eq("device"), any(Handler.class), any()))
@@ -747,6 +800,89 @@ public class AbstractVertxBasedHttpProtocolAdapterTest {
         assertThat(MessageHelper.getTimeUntilDisconnect(messageCaptor.getValue()), is(20));
     }
 
+    /**
+     * Verifies that the adapter rejects a telemetry message containing an unsupported
+     * QoS level before the request body is read.
+     */
+    @Test
+    public void testUploadTelemetryRejectsUnsupportedQoSBeforeReadingBody() {
+
+        // GIVEN an adapter
+        final HttpServer server = getHttpServer(false);
+        final MessageSender sender = givenATelemetrySenderForOutcome(Future.succeededFuture());
+        final AbstractVertxBasedHttpProtocolAdapter<HttpProtocolAdapterProperties> adapter = getAdapter(server, null);
+
+        // WHEN a device publishes a telemetry message with an unsupported QoS level
+        final HttpServerRequest request = mock(HttpServerRequest.class);
+        when(request.getHeader(eq(Constants.HEADER_QOS_LEVEL))).thenReturn("2");
+        final RoutingContext ctx = newRoutingContext(null, "text/plain", request, mock(HttpServerResponse.class));
+
+        adapter.uploadTelemetryMessage(ctx, "tenant", "device");
+
+        // THEN the device gets a 400
+        assertContextFailedWithClientError(ctx, HttpURLConnection.HTTP_BAD_REQUEST);
+        // without the request body having been read
+        verify(request, never()).resume();
+        // and the message has not been forwarded downstream
+        verify(sender, never()).send(any(Message.class), any(SpanContext.class));
+    }
+
+    /**
+     * Verifies that the adapter rejects an event with an announced content length
+     * that does not match its content type before the request body is read.
+     */
+    @Test
+    public void testUploadEventRejectsEmptyBodyWithoutEmptyNotificationTypeBeforeReadingBody() {
+
+        // GIVEN an adapter
+        final HttpServer server = getHttpServer(false);
+        final AbstractVertxBasedHttpProtocolAdapter<HttpProtocolAdapterProperties> adapter = getAdapter(server, null);
+
+        // WHEN a device publishes an event with an empty body that is not an empty notification
+        final HttpServerRequest request = mock(HttpServerRequest.class);
+        when(request.getHeader(eq(HttpHeaders.CONTENT_LENGTH))).thenReturn("0");
+        final RoutingContext ctx = newRoutingContext(null, "text/plain", request, mock(HttpServerResponse.class));
+
+        adapter.uploadEventMessage(ctx, "tenant", "device");
+
+        // THEN the device gets a 400
+        assertContextFailedWithClientError(ctx, HttpURLConnection.HTTP_BAD_REQUEST);
+        // without the request body having been read
+        verify(request, never()).resume();
+        // and the event has not been forwarded downstream
+        verify(tenantClient, never()).get(anyString(), any(SpanContext.class));
+    }
+
+    /**
+     * Verifies that the adapter rejects a command response with a malformed request ID
+     * before the request body is read.
+     */
+    @Test
+    public void testUploadCommandResponseRejectsMalformedRequestIdBeforeReadingBody() {
+
+        // GIVEN an adapter
+        final HttpServer server = getHttpServer(false);
+        final AbstractVertxBasedHttpProtocolAdapter<HttpProtocolAdapterProperties> adapter = getAdapter(server, null);
+
+        // WHEN a device publishes a response to a command with a malformed request ID
+        final HttpServerRequest request = mock(HttpServerRequest.class);
+        final RoutingContext ctx = newRoutingContext(null, "text/plain", request, mock(HttpServerResponse.class));
+
+        adapter.uploadCommandResponseMessage(ctx, "tenant", "device", "x", 200);
+
+        // THEN the device gets a 400
+        assertContextFailedWithClientError(ctx, HttpURLConnection.HTTP_BAD_REQUEST);
+        // without the request body having been read
+        verify(request, never()).resume();
+        // and the response has been reported as unprocessable
+        verify(metrics).reportCommand(
+                eq(Direction.RESPONSE),
+                eq("tenant"),
+                eq(ProcessingOutcome.UNPROCESSABLE),
+                eq(0),
+                any());
+    }
+
     private RoutingContext newRoutingContext(final Buffer payload) {
         return newRoutingContext(payload, mock(HttpServerResponse.class));
     }
@@ -0,0 +1,178 @@
+/*******************************************************************************
+ * Copyright (c) 2019 Contributors to the Eclipse Foundation
+ *
+ * See the NOTICE file(s) distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *******************************************************************************/
+
+package org.eclipse.hono.adapter.http;
+
+import static org.hamcrest.CoreMatchers.instanceOf;
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import org.apache.qpid.proton.message.Message;
+import org.eclipse.hono.client.Command;
+import org.eclipse.hono.client.CommandConsumer;
+import org.eclipse.hono.client.CommandConsumerFactory;
+import org.eclipse.hono.client.CommandContext;
+import org.eclipse.hono.client.MessageConsumer;
+import org.eclipse.hono.client.ResourceConflictException;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
+
+import io.opentracing.Span;
+import io.vertx.core.Future;
+import io.vertx.core.Handler;
+import io.vertx.core.Vertx;
+import io.vertx.proton.ProtonDelivery;
+import io.vertx.proton.ProtonHelper;
+import io.vertx.proton.ProtonReceiver;
+
+/**
+ * Tests verifying behavior of {@link CommandMailbox}.
+ *
+ */
+public class CommandMailboxTest {
+
+    private Vertx vertx;
+    private CommandConsumerFactory factory;
+    private CommandConsumer consumer;
+    private Handler<CommandContext> receivedCommandHandler;
+    private Handler<CommandContext> undeliverableCommandHandler;
+    private CommandMailbox mailbox;
+
+    /**
+     * Sets up the fixture.
+     */
+    @SuppressWarnings("unchecked")
+    @Before
+    public void setUp() {
+        vertx = mock(Vertx.class);
+        consumer = mock(CommandConsumer.class);
+        factory = mock(CommandConsumerFactory.class);
+        when(factory.createCommandConsumer(anyString(), anyString(), any(Handler.class), any(Handler.class)))
+            .thenReturn(Future.succeededFuture(consumer));
+        receivedCommandHandler = mock(Handler.class);
+        undeliverableCommandHandler = mock(Handler.class);
+        mailbox = new CommandMailbox(vertx, factory, 60, receivedCommandHandler, undeliverableCommandHandler);
+    }
+
+    /**
+     * Verifies that consecutive requests of a device share the same command consumer
+     * and that credit is issued for each request after a command has been delivered.
+     */
+    @SuppressWarnings("unchecked")
+    @Test
+    public void testParkReusesCommandConsumer() {
+
+        // GIVEN a request which has been parked in the mailbox
+        final Handler<CommandContext> firstRequest = mock(Handler.class);
+        final MessageConsumer firstHandle = mailbox.park("tenant", "device", firstRequest).result();
+        final ArgumentCaptor<Handler<CommandContext>> commandHandler = ArgumentCaptor.forClass(Handler.class);
+        verify(factory).createCommandConsumer(
+                any(String.class), any(String.class), commandHandler.capture(), any(Handler.class));
+
+        // WHEN a command is received and the request is released
+        final CommandContext command = newCommandContext();
+        commandHandler.getValue().handle(command);
+        firstHandle.close(null);
+
+        // THEN the command has been passed to the parked request
+        verify(firstRequest).handle(command);
+
+        // and a subsequent request of the device uses the same consumer
+        final Handler<CommandContext> secondRequest = mock(Handler.class);
+        assertTrue(mailbox.park("tenant", "device", secondRequest).succeeded());
+        verify(factory, times(1)).createCommandConsumer(anyString(), anyString(), any(Handler.class), any(Handler.class));
+        // and the sender is allowed to send the next command
+        verify(consumer).flow(1);
+        verify(consumer, never()).close(any());
+    }
+
+    /**
+     * Verifies that a request cannot be parked if another request of the same
+     * device is already waiting for a command.
+     */
+    @SuppressWarnings("unchecked")
+    @Test
+    public void testParkFailsForConcurrentRequest() {
+
+        mailbox.park("tenant", "device", mock(Handler.class));
+        final Future<MessageConsumer> result = mailbox.park("tenant", "device", mock(Handler.class));
+        assertTrue(result.failed());
+        assertThat(result.cause(), instanceOf(ResourceConflictException.class));
+    }
+
+    /**
+     * Verifies that the command consumer is closed once it has not been used
+     * for the configured idle timeout.
+     */
+    @SuppressWarnings("unchecked")
+    @Test
+    public void testCommandConsumerIsClosedAfterIdleTimeout() {
+
+        // GIVEN a request that has been parked and released again
+        final Handler<CommandContext> request = mock(Handler.class);
+        mailbox.park("tenant", "device", request).result().close(null);
+        final ArgumentCaptor<Handler<Long>> timer = ArgumentCaptor.forClass(Handler.class);
+        verify(vertx).setTimer(anyLong(), timer.capture());
+        verify(consumer, never()).close(any());
+
+        // WHEN the idle timeout expires
+        timer.getValue().handle(1L);
+
+        // THEN the consumer is closed
+        verify(consumer).close(any());
+        assertThat(mailbox.size(), is(0));
+    }
+
+    /**
+     * Verifies that a command that is received while no request of the device is parked
+     * is passed to the handler for received commands and then to the handler for
+     * undeliverable commands.
+     */
+    @SuppressWarnings("unchecked")
+    @Test
+    public void testCommandWithoutParkedRequestIsUndeliverable() {
+
+        final Handler<CommandContext> request = mock(Handler.class);
+        mailbox.park("tenant", "device", request).result().close(null);
+        final ArgumentCaptor<Handler<CommandContext>> commandHandler = ArgumentCaptor.forClass(Handler.class);
+        verify(factory).createCommandConsumer(
+                any(String.class), any(String.class), commandHandler.capture(), any(Handler.class));
+
+        final CommandContext command = newCommandContext();
+        commandHandler.getValue().handle(command);
+
+        final InOrder order = inOrder(receivedCommandHandler, undeliverableCommandHandler);
+        order.verify(receivedCommandHandler).handle(command);
+        order.verify(undeliverableCommandHandler).handle(command);
+        verify(request, never()).handle(any(CommandContext.class));
+    }
+
+    private static CommandContext newCommandContext() {
+        final Message msg = ProtonHelper.message();
+        msg.setSubject("doThis");
+        final Command command = Command.from(msg, "tenant", "device");
+        return CommandContext.from(command, mock(ProtonDelivery.class), mock(ProtonReceiver.class), mock(Span.class));
+    }
+}
@@ -0,0 +1,64 @@
+/*******************************************************************************
+ * Copyright (c) 2019 Contributors to the Eclipse Foundation
+ *
+ * See the NOTICE file(s) distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *******************************************************************************/
+
+package org.eclipse.hono.adapter.http;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.vertx.core.http.HttpVersion;
+
+/**
+ * Verifies behavior of {@link MicrometerBasedHttpAdapterMetrics}.
+ *
+ */
+public class MicrometerBasedHttpAdapterMetricsTest {
+
+    private MeterRegistry registry;
+    private MicrometerBasedHttpAdapterMetrics metrics;
+
+    /**
+     * Sets up the fixture.
+     */
+    @Before
+    public void setUp() {
+        registry = new SimpleMeterRegistry();
+        metrics = new MicrometerBasedHttpAdapterMetrics(registry);
+    }
+
+    /**
+     * Verifies that the number of requests per connection is recorded
+     * in a separate summary for each HTTP version.
+     */
+    @Test
+    public void testReportRequestsPerConnectionUsesSummaryPerVersion() {
+
+        metrics.reportRequestsPerConnection(HttpVersion.HTTP_1_1, 3);
+        metrics.reportRequestsPerConnection(HttpVersion.HTTP_1_1, 5);
+        metrics.reportRequestsPerConnection(HttpVersion.HTTP_2, 10);
+
+        final DistributionSummary http11 = registry.find(MicrometerBasedHttpAdapterMetrics.METER_CONNECTIONS_REQUESTS)
+                .tag("version", HttpVersion.HTTP_1_1.name()).summary();
+        assertThat(http11.count(), is(2L));
+        assertThat(http11.totalAmount(), is(8.0));
+        final DistributionSummary http2 = registry.find(MicrometerBasedHttpAdapterMetrics.METER_CONNECTIONS_REQUESTS)
+                .tag("version", HttpVersion.HTTP_2.name()).summary();
+        assertThat(http2.count(), is(1L));
+    }
+}
@@ -0,0 +1,136 @@
+/*******************************************************************************
+ * Copyright (c) 2019 Contributors to the Eclipse Foundation
+ *
+ * See the NOTICE file(s) distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *******************************************************************************/
+
+package org.eclipse.hono.adapter.http;
+
+import static org.hamcrest.CoreMatchers.instanceOf;
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.net.HttpURLConnection;
+
+import org.eclipse.hono.client.ClientErrorException;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+
+import io.vertx.core.Future;
+import io.vertx.core.Handler;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.http.HttpHeaders;
+import io.vertx.core.http.HttpServerRequest;
+import io.vertx.ext.web.RoutingContext;
+
+/**
+ * Tests verifying behavior of {@link StreamingBodyHandler}.
+ *
+ */
+public class StreamingBodyHandlerTest {
+
+    private HttpServerRequest request;
+    private RoutingContext ctx;
+    private StreamingBodyHandler handler;
+
+    /**
+     * Sets up the fixture.
+     */
+    @Before
+    public void setUp() {
+        request = mock(HttpServerRequest.class);
+        ctx = mock(RoutingContext.class);
+        when(ctx.request()).thenReturn(request);
+        handler = new StreamingBodyHandler(10);
+    }
+
+    /**
+     * Verifies that a request announcing a body that exceeds the maximum size
+     * is rejected without reading any data.
+     */
+    @Test
+    public void testPauseRequestRejectsTooLargeContentLength() {
+
+        when(request.getHeader(HttpHeaders.CONTENT_LENGTH)).thenReturn("11");
+        handler.pauseRequest(ctx);
+
+        final ArgumentCaptor<Throwable> failure = ArgumentCaptor.forClass(Throwable.class);
+        verify(ctx).fail(failure.capture());
+        assertThat(((ClientErrorException) failure.getValue()).getErrorCode(), is(HttpURLConnection.HTTP_ENTITY_TOO_LARGE));
+        verify(request, never()).resume();
+        verify(ctx, never()).next();
+    }
+
+    /**
+     * Verifies that a request is paused until its body is read.
+     */
+    @Test
+    public void testPauseRequestPausesRequest() {
+
+        when(request.getHeader(HttpHeaders.CONTENT_LENGTH)).thenReturn("10");
+        handler.pauseRequest(ctx);
+
+        verify(request).pause();
+        verify(ctx).next();
+    }
+
+    /**
+     * Verifies that the chunks of a request body are assembled into a single buffer
+     * which is also set on the routing context.
+     */
+    @SuppressWarnings("unchecked")
+    @Test
+    public void testReadBodyAssemblesChunks() {
+
+        final Future<Buffer> result = handler.readBody(ctx);
+        final ArgumentCaptor<Handler<Buffer>> dataHandler = ArgumentCaptor.forClass(Handler.class);
+        final ArgumentCaptor<Handler<Void>> endHandler = ArgumentCaptor.forClass(Handler.class);
+        verify(request).handler(dataHandler.capture());
+        verify(request).endHandler(endHandler.capture());
+        verify(request).resume();
+
+        dataHandler.getValue().handle(Buffer.buffer("hello "));
+        dataHandler.getValue().handle(Buffer.buffer("you"));
+        endHandler.getValue().handle(null);
+
+        assertThat(result.result().toString(), is("hello you"));
+        verify(ctx).setBody(result.result());
+    }
+
+    /**
+     * Verifies that reading a chunked body fails as soon as the maximum
+     * size is exceeded.
+     */
+    @SuppressWarnings("unchecked")
+    @Test
+    public void testReadBodyFailsForTooLargeChunkedBody() {
+
+        final Future<Buffer> result = handler.readBody(ctx);
+        final ArgumentCaptor<Handler<Buffer>> dataHandler = ArgumentCaptor.forClass(Handler.class);
+        final ArgumentCaptor<Handler<Void>> endHandler = ArgumentCaptor.forClass(Handler.class);
+        verify(request).handler(dataHandler.capture());
+        verify(request).endHandler(endHandler.capture());
+
+        dataHandler.getValue().handle(Buffer.buffer("hello "));
+        dataHandler.getValue().handle(Buffer.buffer("world"));
+
+        assertTrue(result.failed());
+        assertThat(result.cause(), instanceOf(ClientErrorException.class));
+        endHandler.getValue().handle(null);
+        verify(ctx, never()).setBody(any(Buffer.class));
+    }
+}
@@ -175,6 +175,8 @@ public class VertxBasedHttpProtocolAdapterTest {
         config.setInsecurePort(0);
         config.setInsecurePortBindAddress(HOST);
         config.setAuthenticationRequired(true);
+        // close command consumers as soon as a request has been responded to
+        config.setCommandConsumerIdleTimeout(0);
 
         httpAdapter = new VertxBasedHttpProtocolAdapter();
         httpAdapter.setConfig(config);
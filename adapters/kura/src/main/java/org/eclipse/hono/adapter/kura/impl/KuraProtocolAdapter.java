@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2016, 2018 Contributors to the Eclipse Foundation
+ * Copyright (c) 2016, 2019 Contributors to the Eclipse Foundation
  *
  * See the NOTICE file(s) distributed with this work for additional
  * information regarding copyright ownership.
@@ -15,9 +15,13 @@ package org.eclipse.hono.adapter.kura.impl;
 
 import java.net.HttpURLConnection;
 import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
 
 import org.eclipse.hono.adapter.mqtt.AbstractVertxBasedMqttProtocolAdapter;
 import org.eclipse.hono.adapter.mqtt.MqttContext;
+import org.eclipse.hono.auth.Device;
 import org.eclipse.hono.client.ClientErrorException;
 import org.eclipse.hono.util.Constants;
 import org.eclipse.hono.util.EventConstants;
@@ -26,6 +30,8 @@ import org.eclipse.hono.util.TelemetryConstants;
 
 import io.netty.handler.codec.mqtt.MqttQoS;
 import io.vertx.core.Future;
+import io.vertx.mqtt.MqttEndpoint;
+import io.vertx.mqtt.messages.MqttPublishMessage;
 
 /**
  * A Vert.x based Hono protocol adapter for publishing messages to Hono's Telemetry and Event APIs from
@@ -33,6 +39,19 @@ import io.vertx.core.Future;
  */
 public final class KuraProtocolAdapter extends AbstractVertxBasedMqttProtocolAdapter<KuraAdapterProperties> {
 
+    /**
+     * The maximum number of topics per connection to cache the mapped addresses for.
+     */
+    private static final int MAX_CACHED_ROUTES_PER_CONNECTION = 100;
+
+    /**
+     * The addresses that the topics published to by the connected gateways are mapped to.
+     * <p>
+     * Kura gateways usually publish messages to a small, fixed set of topics. Caching the
+     * mapped addresses per connection avoids parsing and mapping the topic for each message.
+     */
+    private final Map<MqttEndpoint, Map<String, Route>> routes = new HashMap<>();
+
     /**
      * Gets this adapter's type name.
      * 
@@ -56,48 +75,117 @@ public final class KuraProtocolAdapter extends AbstractVertxBasedMqttProtocolAda
                 }).compose(targetAddress -> uploadMessage(ctx, targetAddress, ctx.message()));
     }
 
+    /**
+     * Releases the addresses cached for the gateway's topics.
+     */
+    @Override
+    protected void onClose(final MqttEndpoint endpoint) {
+        routes.remove(endpoint);
+    }
+
+    /**
+     * Creates a context which reuses the topic that has been parsed for a previous
+     * message published to the same topic on the same connection.
+     */
+    @Override
+    protected MqttContext createPublishContext(
+            final MqttPublishMessage message,
+            final MqttEndpoint endpoint,
+            final Device authenticatedDevice) {
+
+        final Route route = Optional.ofNullable(routes.get(endpoint))
+                .map(connectionRoutes -> connectionRoutes.get(message.topicName()))
+                .orElse(null);
+        return MqttContext.fromPublishPacket(message, endpoint, authenticatedDevice, route == null ? null : route.topic);
+    }
+
     Future<ResourceIdentifier> mapTopic(final MqttContext ctx) {
 
-        final Future<ResourceIdentifier> result = Future.future();
-        final ResourceIdentifier topic = ctx.topic();
-        ResourceIdentifier mappedTopic = null;
+        final String topicName = ctx.message().topicName();
+        final Map<String, Route> connectionRoutes = routes.computeIfAbsent(ctx.deviceEndpoint(), k -> new HashMap<>());
+        Route route = connectionRoutes.get(topicName);
+
+        if (route == null) {
+            if (ctx.topic() == null) {
+                return Future.failedFuture(new ClientErrorException(HttpURLConnection.HTTP_BAD_REQUEST, "malformed topic name"));
+            }
+            route = newRoute(ctx.topic());
+            if (route == null) {
+                // topic does not contain account_name and client_id
+                return Future.failedFuture(new ClientErrorException(HttpURLConnection.HTTP_BAD_REQUEST, "topic does not comply with Kura format"));
+            }
+            if (connectionRoutes.size() < MAX_CACHED_ROUTES_PER_CONNECTION) {
+                connectionRoutes.put(topicName, route);
+            }
+        }
+
+        final ResourceIdentifier mappedTopic = route.getAddress(ctx.message().qosLevel());
+        ctx.setContentType(route.contentType);
+        LOG.trace("mapped Kura message [topic: {}, QoS: {}] to Hono message [to: {}, device_id: {}, content-type: {}]",
+                topicName, ctx.message().qosLevel(), mappedTopic.getBasePath(), mappedTopic.getResourceId(), ctx.contentType());
+        return Future.succeededFuture(mappedTopic);
+    }
+
+    private Route newRoute(final ResourceIdentifier topic) {
+
+        final String[] mappedPath;
+        final String contentType;
 
         if (getConfig().getControlPrefix().equals(topic.getEndpoint())) {
 
             // this is a "control" message
-            ctx.setContentType(getConfig().getCtrlMsgContentType());
-            final String[] mappedPath = Arrays.copyOf(topic.getResourcePath(), topic.getResourcePath().length);
-            mappedPath[0] = getEndpoint(ctx.message().qosLevel());
-            mappedTopic = ResourceIdentifier.fromPath(mappedPath);
+            contentType = getConfig().getCtrlMsgContentType();
+            mappedPath = Arrays.copyOf(topic.getResourcePath(), topic.getResourcePath().length);
 
         } else {
 
             // map "data" messages based on QoS
-            ctx.setContentType(getConfig().getDataMsgContentType());
-            final String[] mappedPath = new String[topic.getResourcePath().length + 1];
+            contentType = getConfig().getDataMsgContentType();
+            mappedPath = new String[topic.getResourcePath().length + 1];
             System.arraycopy(topic.getResourcePath(), 0, mappedPath, 1, topic.getResourcePath().length);
-            mappedPath[0] = getEndpoint(ctx.message().qosLevel());
-            mappedTopic = ResourceIdentifier.fromPath(mappedPath);
         }
 
-        if (mappedTopic.getResourcePath().length < 3) {
-            // topic does not contain account_name and client_id
-            result.fail(new ClientErrorException(HttpURLConnection.HTTP_BAD_REQUEST, "topic does not comply with Kura format"));
-        } else {
-            LOG.debug("mapped Kura message [topic: {}, QoS: {}] to Hono message [to: {}, device_id: {}, content-type: {}]",
-                    topic, ctx.message().qosLevel(), mappedTopic.getBasePath(), mappedTopic.getResourceId(), ctx.contentType());
-            result.complete(mappedTopic);
+        mappedPath[0] = TelemetryConstants.TELEMETRY_ENDPOINT;
+        final ResourceIdentifier telemetryAddress = ResourceIdentifier.fromPath(mappedPath);
+        if (telemetryAddress.getResourcePath().length < 3) {
+            return null;
         }
-        return result;
+        mappedPath[0] = EventConstants.EVENT_ENDPOINT;
+        final ResourceIdentifier eventAddress = ResourceIdentifier.fromPath(mappedPath);
+        LOG.debug("mapping Kura topic [{}] to Hono address [telemetry: {}, event: {}, content-type: {}]",
+                topic, telemetryAddress, eventAddress, contentType);
+        return new Route(topic, telemetryAddress, eventAddress, contentType);
     }
 
-    private static String getEndpoint(final MqttQoS level) {
+    /**
+     * The addresses and content type that messages published to a topic are mapped to.
+     */
+    private static final class Route {
+
+        private final ResourceIdentifier topic;
+        private final ResourceIdentifier telemetryAddress;
+        private final ResourceIdentifier eventAddress;
+        private final String contentType;
+
+        private Route(
+                final ResourceIdentifier topic,
+                final ResourceIdentifier telemetryAddress,
+                final ResourceIdentifier eventAddress,
+                final String contentType) {
+            this.topic = topic;
+            this.telemetryAddress = telemetryAddress;
+            this.eventAddress = eventAddress;
+            this.contentType = contentType;
+        }
+
+        private ResourceIdentifier getAddress(final MqttQoS level) {
 
-        switch(level) {
-        case AT_MOST_ONCE:
-            return TelemetryConstants.TELEMETRY_ENDPOINT;
-        default:
-            return EventConstants.EVENT_ENDPOINT;
+            switch (level) {
+            case AT_MOST_ONCE:
+                return telemetryAddress;
+            default:
+                return eventAddress;
+            }
         }
     }
 }
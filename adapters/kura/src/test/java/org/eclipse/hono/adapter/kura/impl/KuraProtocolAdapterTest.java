@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2016, 2018 Contributors to the Eclipse Foundation
+ * Copyright (c) 2016, 2019 Contributors to the Eclipse Foundation
  *
  * See the NOTICE file(s) distributed with this work for additional
  * information regarding copyright ownership.
@@ -13,8 +13,11 @@
 
 package org.eclipse.hono.adapter.kura.impl;
 
+import static org.hamcrest.CoreMatchers.instanceOf;
 import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.sameInstance;
 import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.when;
 
@@ -22,6 +25,7 @@ import org.eclipse.hono.adapter.kura.impl.KuraAdapterProperties;
 import org.eclipse.hono.adapter.kura.impl.KuraProtocolAdapter;
 import org.eclipse.hono.adapter.mqtt.MqttContext;
 import org.eclipse.hono.auth.Device;
+import org.eclipse.hono.client.ClientErrorException;
 import org.eclipse.hono.util.EventConstants;
 import org.eclipse.hono.util.ResourceIdentifier;
 import org.eclipse.hono.util.TelemetryConstants;
@@ -200,6 +204,65 @@ public class KuraProtocolAdapterTest {
         assertThat(context.contentType(), is(config.getDataMsgContentType()));
     }
 
+    /**
+     * Verifies that the adapter maps subsequent messages published to the same topic
+     * on the same connection to the same address while still taking into account the
+     * messages' QoS.
+     */
+    @Test
+    public void testMapTopicReusesMappedAddressForSameTopic() {
+
+        // GIVEN a gateway connected to the adapter
+        final MqttEndpoint endpoint = mock(MqttEndpoint.class);
+
+        // WHEN the gateway publishes multiple messages to the same topic
+        final ResourceIdentifier first = adapter.mapTopic(newContext(newMessage(MqttQoS.AT_MOST_ONCE, "my-scope/4711"), endpoint)).result();
+        final ResourceIdentifier second = adapter.mapTopic(newContext(newMessage(MqttQoS.AT_MOST_ONCE, "my-scope/4711"), endpoint)).result();
+        final MqttContext context = newContext(newMessage(MqttQoS.AT_LEAST_ONCE, "my-scope/4711"), endpoint);
+        final ResourceIdentifier third = adapter.mapTopic(context).result();
+
+        // THEN the messages are mapped to the same address
+        assertThat(second, sameInstance(first));
+        assertAddress(first, TelemetryConstants.TELEMETRY_ENDPOINT, "my-scope", "4711");
+        // unless they are published using a different QoS
+        assertAddress(third, EventConstants.EVENT_ENDPOINT, "my-scope", "4711");
+        assertThat(context.contentType(), is(config.getDataMsgContentType()));
+    }
+
+    /**
+     * Verifies that the adapter reuses the topic that has been parsed for a previous
+     * message published to the same topic on the same connection.
+     */
+    @Test
+    public void testCreatePublishContextReusesParsedTopic() {
+
+        // GIVEN a gateway that has published a message to a topic
+        final MqttEndpoint endpoint = mock(MqttEndpoint.class);
+        final MqttContext first = adapter.createPublishContext(newMessage(MqttQoS.AT_MOST_ONCE, "my-scope/4711"), endpoint, null);
+        adapter.mapTopic(first);
+
+        // WHEN the gateway publishes another message to the same topic
+        final MqttContext second = adapter.createPublishContext(newMessage(MqttQoS.AT_MOST_ONCE, "my-scope/4711"), endpoint, null);
+
+        // THEN the context uses the topic that has already been parsed
+        assertThat(second.topic(), sameInstance(first.topic()));
+    }
+
+    /**
+     * Verifies that the adapter rejects messages published to a topic that
+     * does not contain the account name and client ID.
+     */
+    @Test
+    public void testMapTopicFailsForTopicWithoutClientId() {
+
+        // WHEN a message is published to a control topic that does not contain a client ID
+        final Future<ResourceIdentifier> result = adapter.mapTopic(newContext(MqttQoS.AT_LEAST_ONCE, "$EDC/my-scope"));
+
+        // THEN the message is rejected
+        assertTrue(result.failed());
+        assertThat(result.cause(), instanceOf(ClientErrorException.class));
+    }
+
     private void assertAddress(final ResourceIdentifier address, final String endpoint, final String tenantId, final String deviceId) {
         assertThat(address.getEndpoint(), is(endpoint));
         assertThat(address.getTenantId(), is(tenantId));
@@ -232,4 +295,8 @@ public class KuraProtocolAdapterTest {
     private static MqttContext newContext(final MqttPublishMessage message, final Device authenticatedDevice) {
         return MqttContext.fromPublishPacket(message, mock(MqttEndpoint.class), authenticatedDevice);
     }
+
+    private static MqttContext newContext(final MqttPublishMessage message, final MqttEndpoint endpoint) {
+        return MqttContext.fromPublishPacket(message, endpoint, null);
+    }
 }
@@ -21,7 +21,23 @@ import java.util.List;
  */
 public class LoraCommandProperties {
 
+    /**
+     * The default number of seconds that the gateway mapping of a LoRa device is cached for.
+     */
+    public static final int DEFAULT_GATEWAY_CACHE_TIMEOUT = 300;
+    /**
+     * The default maximum number of connections kept open to a single LoRa network server.
+     */
+    public static final int DEFAULT_MAX_CONNECTIONS_PER_ENDPOINT = 10;
+    /**
+     * The default number of seconds after which an unused connection to a LoRa network server is closed.
+     */
+    public static final int DEFAULT_CONNECTION_IDLE_TIMEOUT = 60;
+
     private final List<String> commandEnabledTenants = new LinkedList<>();
+    private int gatewayCacheTimeout = DEFAULT_GATEWAY_CACHE_TIMEOUT;
+    private int maxConnectionsPerEndpoint = DEFAULT_MAX_CONNECTIONS_PER_ENDPOINT;
+    private int connectionIdleTimeout = DEFAULT_CONNECTION_IDLE_TIMEOUT;
 
     /**
      * Returns all tenants who are allowed to send commands. These have to be set explicitly in the properties file.
@@ -31,4 +47,88 @@ public class LoraCommandProperties {
     public List<String> getCommandEnabledTenants() {
         return commandEnabledTenants;
     }
+
+    /**
+     * Gets the number of seconds that the gateway, and the gateway's credentials, that a
+     * command for a LoRa device is sent through are cached for.
+     * <p>
+     * The default value of this property is {@link #DEFAULT_GATEWAY_CACHE_TIMEOUT}.
+     *
+     * @return The number of seconds. A value of 0 indicates that the gateway is looked up
+     *         for each command.
+     */
+    public int getGatewayCacheTimeout() {
+        return gatewayCacheTimeout;
+    }
+
+    /**
+     * Sets the number of seconds that the gateway, and the gateway's credentials, that a
+     * command for a LoRa device is sent through are cached for.
+     * <p>
+     * The default value of this property is {@link #DEFAULT_GATEWAY_CACHE_TIMEOUT}.
+     *
+     * @param timeout The number of seconds. A value of 0 disables caching.
+     * @throws IllegalArgumentException if timeout is negative.
+     */
+    public void setGatewayCacheTimeout(final int timeout) {
+        if (timeout < 0) {
+            throw new IllegalArgumentException("timeout must not be negative");
+        }
+        this.gatewayCacheTimeout = timeout;
+    }
+
+    /**
+     * Gets the maximum number of connections that are kept open to a single
+     * LoRa network server for sending commands.
+     * <p>
+     * The default value of this property is {@link #DEFAULT_MAX_CONNECTIONS_PER_ENDPOINT}.
+     *
+     * @return The number of connections.
+     */
+    public int getMaxConnectionsPerEndpoint() {
+        return maxConnectionsPerEndpoint;
+    }
+
+    /**
+     * Sets the maximum number of connections that are kept open to a single
+     * LoRa network server for sending commands.
+     * <p>
+     * The default value of this property is {@link #DEFAULT_MAX_CONNECTIONS_PER_ENDPOINT}.
+     *
+     * @param maxConnections The number of connections.
+     * @throws IllegalArgumentException if the number is smaller than 1.
+     */
+    public void setMaxConnectionsPerEndpoint(final int maxConnections) {
+        if (maxConnections < 1) {
+            throw new IllegalArgumentException("maximum number of connections must be > 0");
+        }
+        this.maxConnectionsPerEndpoint = maxConnections;
+    }
+
+    /**
+     * Gets the number of seconds after which an unused connection to a LoRa network server is closed.
+     * <p>
+     * The default value of this property is {@link #DEFAULT_CONNECTION_IDLE_TIMEOUT}.
+     *
+     * @return The number of seconds. A value of 0 indicates that connections are never closed
+     *         because of inactivity.
+     */
+    public int getConnectionIdleTimeout() {
+        return connectionIdleTimeout;
+    }
+
+    /**
+     * Sets the number of seconds after which an unused connection to a LoRa network server is closed.
+     * <p>
+     * The default value of this property is {@link #DEFAULT_CONNECTION_IDLE_TIMEOUT}.
+     *
+     * @param timeout The number of seconds. A value of 0 disables the timeout.
+     * @throws IllegalArgumentException if timeout is negative.
+     */
+    public void setConnectionIdleTimeout(final int timeout) {
+        if (timeout < 0) {
+            throw new IllegalArgumentException("timeout must not be negative");
+        }
+        this.connectionIdleTimeout = timeout;
+    }
 }
@@ -36,6 +36,17 @@ public class LoraConstants {
     public static final String FIELD_LORA_DOWNLINK_PAYLOAD = "payload";
     public static final String EMPTY = "";
 
+    /**
+     * The suffix to append to a provider's path prefix for uploading a batch of messages.
+     */
+    public static final String BATCH_PATH_SUFFIX = "/batch";
+    public static final String FIELD_BATCH_ACCEPTED = "accepted";
+    public static final String FIELD_BATCH_REJECTED = "rejected";
+    public static final String FIELD_BATCH_RESULTS = "results";
+    public static final String FIELD_BATCH_INDEX = "index";
+    public static final String FIELD_BATCH_STATUS = "status";
+    public static final String FIELD_BATCH_ERROR = "error";
+
     private LoraConstants() {
         // prevent instantiation
     }
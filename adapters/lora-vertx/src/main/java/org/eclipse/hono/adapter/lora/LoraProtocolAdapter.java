@@ -15,11 +15,18 @@ package org.eclipse.hono.adapter.lora;
 
 import static java.net.HttpURLConnection.*;
 
+import java.time.Duration;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.Deque;
 import java.util.List;
 import java.util.Objects;
 import java.util.Optional;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
 
 import org.apache.qpid.proton.amqp.transport.ErrorCondition;
 import org.apache.qpid.proton.message.Message;
@@ -27,44 +34,61 @@ import org.eclipse.hono.adapter.http.AbstractVertxBasedHttpProtocolAdapter;
 import org.eclipse.hono.adapter.http.HonoBasicAuthHandler;
 import org.eclipse.hono.adapter.http.HttpProtocolAdapterProperties;
 import org.eclipse.hono.adapter.http.X509AuthHandler;
+import org.eclipse.hono.adapter.lora.providers.JsonFieldExtractor;
+import org.eclipse.hono.adapter.lora.providers.JsonFieldLoraProvider;
 import org.eclipse.hono.adapter.lora.providers.LoraProvider;
 import org.eclipse.hono.adapter.lora.providers.LoraProviderMalformedPayloadException;
 import org.eclipse.hono.adapter.lora.providers.LoraUtils;
 import org.eclipse.hono.auth.Device;
+import org.eclipse.hono.client.ClientErrorException;
 import org.eclipse.hono.client.Command;
 import org.eclipse.hono.client.CommandContext;
 import org.eclipse.hono.client.CommandResponse;
 import org.eclipse.hono.client.MessageConsumer;
+import org.eclipse.hono.client.MessageSender;
+import org.eclipse.hono.client.ServiceInvocationException;
 import org.eclipse.hono.service.auth.device.HonoClientBasedAuthProvider;
 import org.eclipse.hono.service.auth.device.SubjectDnCredentials;
 import org.eclipse.hono.service.auth.device.TenantServiceBasedX509Authentication;
 import org.eclipse.hono.service.auth.device.UsernamePasswordAuthProvider;
 import org.eclipse.hono.service.auth.device.UsernamePasswordCredentials;
 import org.eclipse.hono.service.auth.device.X509AuthProvider;
+import org.eclipse.hono.service.cache.SpringBasedExpiringValueCache;
 import org.eclipse.hono.service.http.HttpUtils;
+import org.eclipse.hono.service.metric.MetricsTags;
+import org.eclipse.hono.service.metric.MetricsTags.ProcessingOutcome;
+import org.eclipse.hono.service.metric.MetricsTags.TtdStatus;
 import org.eclipse.hono.tracing.TracingHelper;
 import org.eclipse.hono.util.Constants;
 import org.eclipse.hono.util.CredentialsObject;
 import org.eclipse.hono.util.MessageHelper;
 import org.eclipse.hono.util.RegistrationConstants;
+import org.eclipse.hono.util.ResourceIdentifier;
+import org.eclipse.hono.util.TenantObject;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.cache.CacheManager;
 
+import io.micrometer.core.instrument.Timer.Sample;
 import io.opentracing.References;
 import io.opentracing.Span;
 import io.opentracing.SpanContext;
 import io.opentracing.contrib.vertx.ext.web.TracingHandler;
 import io.opentracing.noop.NoopSpan;
 import io.opentracing.tag.Tags;
+import io.vertx.core.CompositeFuture;
 import io.vertx.core.Future;
+import io.vertx.core.Handler;
 import io.vertx.core.MultiMap;
 import io.vertx.core.buffer.Buffer;
 import io.vertx.core.http.HttpMethod;
+import io.vertx.core.http.HttpServerRequest;
 import io.vertx.core.http.HttpVersion;
 import io.vertx.core.json.DecodeException;
 import io.vertx.core.json.JsonArray;
 import io.vertx.core.json.JsonObject;
+import io.vertx.core.parsetools.JsonParser;
 import io.vertx.ext.web.Router;
 import io.vertx.ext.web.RoutingContext;
 import io.vertx.ext.web.client.HttpResponse;
@@ -81,14 +105,21 @@ public final class LoraProtocolAdapter extends AbstractVertxBasedHttpProtocolAda
     private static final int LORA_COMMAND_CONSUMER_RETRY_INTERVAL = 2_000;
     private static final String TAG_LORA_DEVICE_ID = "lora_device_id";
     private static final String TAG_LORA_PROVIDER = "lora_provider";
+    private static final String TAG_LORA_BATCH_SIZE = "lora_batch_size";
     private static final String JSON_MISSING_REQUIRED_FIELDS = "JSON Body does not contain required fields";
     private static final String INVALID_PAYLOAD = "Invalid payload";
+    /**
+     * The maximum number of items of a batch that are uploaded concurrently.
+     */
+    private static final int MAX_BATCH_ITEMS_IN_FLIGHT = 100;
 
     private final List<LoraProvider> loraProviders = new ArrayList<>();
 
     private HonoClientBasedAuthProvider<UsernamePasswordCredentials> usernamePasswordAuthProvider;
     private HonoClientBasedAuthProvider<SubjectDnCredentials> clientCertAuthProvider;
     private LoraCommandProperties loraCommandProperties;
+    private SpringBasedExpiringValueCache<String, String> deviceGatewayCache;
+    private SpringBasedExpiringValueCache<String, GatewayMapping> gatewayCache;
 
     /**
      * Sets the LoRa providers that this adapter should support.
@@ -113,6 +144,25 @@ public final class LoraProtocolAdapter extends AbstractVertxBasedHttpProtocolAda
         this.loraCommandProperties = Objects.requireNonNull(properties);
     }
 
+    /**
+     * Sets the cache manager to use for caching the gateways that commands for LoRa devices
+     * are sent through.
+     * <p>
+     * The caches are shared by all adapter instances created from the same application context.
+     * If not set, the gateway and its credentials are looked up for each command.
+     *
+     * @param cacheManager The cache manager.
+     * @throws NullPointerException if cache manager is {@code null}.
+     */
+    @Autowired
+    public void setCacheManager(final CacheManager cacheManager) {
+        Objects.requireNonNull(cacheManager);
+        this.deviceGatewayCache = new SpringBasedExpiringValueCache<>(
+                cacheManager.getCache(LoraProtocolAdapter.class.getName() + ".devices"));
+        this.gatewayCache = new SpringBasedExpiringValueCache<>(
+                cacheManager.getCache(LoraProtocolAdapter.class.getName() + ".gateways"));
+    }
+
     /**
      * Sets the provider to use for authenticating devices based on a username and password.
      * <p>
@@ -146,6 +196,23 @@ public final class LoraProtocolAdapter extends AbstractVertxBasedHttpProtocolAda
     protected void addRoutes(final Router router) {
         setupAuthorization(router);
 
+        // batches are parsed while the request body is being read
+        for (final LoraProvider current : loraProviders) {
+            if (current.supportsBatchedUplinks()) {
+                final String batchPath = current.pathPrefix() + LoraConstants.BATCH_PATH_SUFFIX;
+                router.route(current.acceptedHttpMethod(), batchPath).consumes(current.acceptedContentType())
+                        .handler(ctx -> this.handleBatchedProviderRoute(ctx, current));
+                router.route(current.acceptedHttpMethod(), batchPath).handler(ctx -> {
+                    TracingHelper.logError(getCurrentSpan(ctx), "Incoming request does not contain proper content type");
+                    LOG.debug("Incoming batch request does not contain proper content type. Will return 400.");
+                    handle400(ctx, ERROR_MSG_MISSING_OR_UNSUPPORTED_CONTENT_TYPE);
+                });
+            }
+        }
+
+        // read the body only after the request has been authenticated
+        router.route().handler(getBodyHandler());
+
         for (final LoraProvider current : loraProviders) {
             router.route(HttpMethod.OPTIONS, current.pathPrefix()).handler(this::handleOptionsRoute);
 
@@ -188,21 +255,40 @@ public final class LoraProtocolAdapter extends AbstractVertxBasedHttpProtocolAda
 
         if (ctx.user() instanceof Device) {
             final Device gatewayDevice = (Device) ctx.user();
-            final JsonObject loraMessage = ctx.getBodyAsJson();
             currentSpan.setTag(MessageHelper.APP_PROPERTY_TENANT_ID, gatewayDevice.getTenantId());
 
             LoraMessageType type = LoraMessageType.UNKNOWN;
             try {
-                type = provider.extractMessageType(loraMessage);
-                final String deviceId = provider.extractDeviceId(loraMessage);
+                final String deviceId;
+                final String payloadBase64;
+                if (provider instanceof JsonFieldLoraProvider) {
+                    // extract the fields in a single pass without decoding the whole message
+                    final JsonFieldLoraProvider fieldProvider = (JsonFieldLoraProvider) provider;
+                    final String[] fields = JsonFieldExtractor.extract(
+                            ctx.getBody(),
+                            fieldProvider.messageTypePath(),
+                            fieldProvider.deviceIdPath(),
+                            fieldProvider.payloadPath());
+                    type = fieldProvider.getMessageType(fields[0]);
+                    deviceId = fields[1];
+                    payloadBase64 = LoraMessageType.UPLINK.equals(type) && fields[2] != null
+                            ? fieldProvider.getPayloadEncodedInBase64(fields[2])
+                            : null;
+                } else {
+                    final JsonObject loraMessage = ctx.getBodyAsJson();
+                    type = provider.extractMessageType(loraMessage);
+                    deviceId = provider.extractDeviceId(loraMessage);
+                    payloadBase64 = LoraMessageType.UPLINK.equals(type)
+                            ? provider.extractPayloadEncodedInBase64(loraMessage)
+                            : null;
+                }
                 currentSpan.setTag(TAG_LORA_DEVICE_ID, deviceId);
                 currentSpan.setTag(MessageHelper.APP_PROPERTY_DEVICE_ID, deviceId);
 
                 if (LoraMessageType.UPLINK.equals(type)) {
-                    final String payloadBase64 = provider.extractPayloadEncodedInBase64(loraMessage);
                     doUpload(ctx, gatewayDevice, deviceId, payloadBase64);
                 } else {
-                    LOG.debug("Received message '{}' of type [{}] for device [{}], will discard message.", loraMessage,
+                    LOG.debug("Received message of type [{}] for device [{}], will discard message.",
                             type, deviceId);
                     currentSpan.log(
                             "Received message of type '" + type + "' for device '" + deviceId + "' will be discarded.");
@@ -210,7 +296,7 @@ public final class LoraProtocolAdapter extends AbstractVertxBasedHttpProtocolAda
                     handle202(ctx);
                 }
             } catch (final ClassCastException | LoraProviderMalformedPayloadException e) {
-                LOG.debug("Got invalid payload '{}' which leads to exception: {}", loraMessage, e);
+                LOG.debug("Got invalid payload '{}' which leads to exception: {}", ctx.getBody(), e);
                 TracingHelper.logError(currentSpan,
                         "Received message of type '" + type + "' has invalid payload; error: " + e);
                 handle400(ctx, INVALID_PAYLOAD);
@@ -222,6 +308,342 @@ public final class LoraProtocolAdapter extends AbstractVertxBasedHttpProtocolAda
         }
     }
 
+    /**
+     * Handles a request containing a JSON array of messages in the provider's format.
+     * <p>
+     * The tenant configuration and the downstream sender are looked up once for the whole batch.
+     * The request body is then parsed incrementally while it is being read from the connection
+     * and each uplink message is forwarded downstream as soon as it has been parsed. Reading of the
+     * request body is paused while the maximum number of messages is being forwarded concurrently.
+     * The response contains a summary of the outcome of processing each message of the batch.
+     * A request body that does not contain a JSON array is rejected with a 400 status code.
+     *
+     * @param ctx The routing context of the request.
+     * @param provider The provider that the request has been received for.
+     */
+    void handleBatchedProviderRoute(final RoutingContext ctx, final LoraProvider provider) {
+        LOG.debug("Handling batch route for provider with path: [{}]", provider.pathPrefix());
+        final Span currentSpan = getCurrentSpan(ctx);
+        ctx.put(LoraConstants.APP_PROPERTY_ORIG_LORA_PROVIDER, provider.getProviderName());
+        currentSpan.setTag(TAG_LORA_PROVIDER, provider.getProviderName());
+
+        if (!(ctx.user() instanceof Device)) {
+            LOG.debug("Supplied credentials are not an instance of the user. Returning 401");
+            TracingHelper.logError(currentSpan, "Supplied credentials are not an instance of the user");
+            handle401(ctx);
+            return;
+        }
+
+        final Device gatewayDevice = (Device) ctx.user();
+        final String tenantId = gatewayDevice.getTenantId();
+        currentSpan.setTag(MessageHelper.APP_PROPERTY_TENANT_ID, tenantId);
+
+        final MetricsTags.QoS qos = getBatchQoSLevel(ctx);
+        if (qos == MetricsTags.QoS.UNKNOWN) {
+            handle400(ctx, "unsupported QoS-Level header value");
+            return;
+        }
+
+        final Future<TenantObject> tenantTracker = getTenantConfiguration(tenantId, currentSpan.context())
+                .compose(tenantObject -> isAdapterEnabled(tenantObject));
+        final Future<MessageSender> senderTracker = getTelemetrySender(tenantId);
+
+        CompositeFuture.all(tenantTracker, senderTracker).setHandler(lookup -> {
+            if (lookup.failed()) {
+                LOG.debug("cannot process batch of messages from gateway [tenant: {}, device-id: {}]",
+                        tenantId, gatewayDevice.getDeviceId(), lookup.cause());
+                TracingHelper.logError(currentSpan, lookup.cause());
+                if (lookup.cause() instanceof ClientErrorException) {
+                    ctx.fail(lookup.cause());
+                } else {
+                    HttpUtils.serviceUnavailable(ctx, 2, "temporarily unavailable");
+                }
+            } else {
+                parseAndUploadBatch(ctx, provider, gatewayDevice, senderTracker.result(), qos, currentSpan);
+            }
+        });
+    }
+
+    private void parseAndUploadBatch(
+            final RoutingContext ctx,
+            final LoraProvider provider,
+            final Device gatewayDevice,
+            final MessageSender sender,
+            final MetricsTags.QoS qos,
+            final Span currentSpan) {
+
+        final HttpServerRequest request = ctx.request();
+        final List<Future<JsonObject>> results = new ArrayList<>();
+        final BatchItemUploads uploads = new BatchItemUploads(request);
+        final AtomicInteger depth = new AtomicInteger();
+        final AtomicBoolean arrayFound = new AtomicBoolean();
+        final AtomicLong bytesRead = new AtomicLong();
+        final Future<Void> bodyTracker = Future.future();
+
+        final JsonParser parser = JsonParser.newParser().objectValueMode();
+        parser.exceptionHandler(t -> bodyTracker.tryFail(new ClientErrorException(HTTP_BAD_REQUEST, INVALID_PAYLOAD, t)));
+        parser.handler(event -> {
+            switch (event.type()) {
+            case START_ARRAY:
+                arrayFound.set(true);
+                if (depth.getAndIncrement() == 1) {
+                    results.add(Future.succeededFuture(
+                            createBatchItemResult(results.size(), null, HTTP_BAD_REQUEST, INVALID_PAYLOAD)));
+                }
+                break;
+            case END_ARRAY:
+                depth.decrementAndGet();
+                break;
+            case VALUE:
+                if (depth.get() == 0) {
+                    bodyTracker.tryFail(new ClientErrorException(HTTP_BAD_REQUEST, INVALID_PAYLOAD,
+                            new DecodeException("request body must contain a JSON array")));
+                } else if (depth.get() == 1) {
+                    final int index = results.size();
+                    if (event.isObject()) {
+                        final JsonObject loraMessage = event.objectValue();
+                        results.add(uploads.add(() -> uploadBatchItem(ctx, provider, gatewayDevice, sender, qos,
+                                loraMessage, index, currentSpan)));
+                    } else {
+                        results.add(Future.succeededFuture(
+                                createBatchItemResult(index, null, HTTP_BAD_REQUEST, INVALID_PAYLOAD)));
+                    }
+                }
+                break;
+            default:
+                break;
+            }
+        });
+
+        final Handler<Void> endOfBody = end -> {
+            parser.end();
+            if (!arrayFound.get()) {
+                bodyTracker.tryFail(new ClientErrorException(HTTP_BAD_REQUEST, INVALID_PAYLOAD,
+                        new DecodeException("request body must contain a JSON array")));
+            }
+            bodyTracker.tryComplete();
+        };
+        final int maxBodySize = getBodyHandler().getMaxBodySize();
+        if (request.isEnded()) {
+            endOfBody.handle(null);
+        } else {
+            request.handler(chunk -> {
+                if (bodyTracker.isComplete()) {
+                    // discard remaining data of a rejected batch
+                    return;
+                } else if (bytesRead.addAndGet(chunk.length()) > maxBodySize) {
+                    bodyTracker.tryFail(new ClientErrorException(HTTP_ENTITY_TOO_LARGE,
+                            "request body exceeds maximum payload size"));
+                } else {
+                    parser.handle(chunk);
+                }
+            });
+            request.endHandler(end -> {
+                if (!bodyTracker.isComplete()) {
+                    endOfBody.handle(null);
+                }
+            });
+            request.exceptionHandler(bodyTracker::tryFail);
+            request.resume();
+        }
+
+        bodyTracker.setHandler(read -> {
+            @SuppressWarnings("rawtypes")
+            final List<Future> resultFutures = new ArrayList<>(results);
+            CompositeFuture.join(resultFutures).setHandler(done -> {
+                int accepted = 0;
+                final JsonArray items = new JsonArray();
+                for (final Future<JsonObject> result : results) {
+                    final JsonObject item = result.result();
+                    if (LoraUtils.isHttpSuccessStatusCode(item.getInteger(LoraConstants.FIELD_BATCH_STATUS))) {
+                        accepted++;
+                    }
+                    items.add(item);
+                }
+                final JsonObject summary = new JsonObject()
+                        .put(LoraConstants.FIELD_BATCH_ACCEPTED, accepted)
+                        .put(LoraConstants.FIELD_BATCH_REJECTED, items.size() - accepted)
+                        .put(LoraConstants.FIELD_BATCH_RESULTS, items);
+                currentSpan.setTag(TAG_LORA_BATCH_SIZE, items.size());
+
+                final int status;
+                if (read.failed()) {
+                    LOG.debug("cannot read batch request body", read.cause());
+                    TracingHelper.logError(currentSpan, "Received batch cannot be processed; error: " + read.cause());
+                    summary.put(LoraConstants.FIELD_BATCH_ERROR, read.cause().getMessage());
+                    status = ServiceInvocationException.extractStatusCode(read.cause());
+                } else {
+                    status = HTTP_OK;
+                }
+                Tags.HTTP_STATUS.set(currentSpan, status);
+                if (ctx.response().closed()) {
+                    LOG.debug("cannot send batch response, connection to gateway [tenant: {}, device-id: {}] has been closed",
+                            gatewayDevice.getTenantId(), gatewayDevice.getDeviceId());
+                } else {
+                    ctx.response().setStatusCode(status);
+                    HttpUtils.setResponseBody(ctx.response(), summary);
+                    ctx.response().end();
+                }
+            });
+        });
+    }
+
+    private Future<JsonObject> uploadBatchItem(
+            final RoutingContext ctx,
+            final LoraProvider provider,
+            final Device gatewayDevice,
+            final MessageSender sender,
+            final MetricsTags.QoS qos,
+            final JsonObject loraMessage,
+            final int index,
+            final Span currentSpan) {
+
+        final Sample sample = getMetrics().startTimer();
+        final String tenantId = gatewayDevice.getTenantId();
+        final String deviceId;
+        final String payloadBase64;
+        try {
+            final LoraMessageType type = provider.extractMessageType(loraMessage);
+            deviceId = provider.extractDeviceId(loraMessage);
+            if (!LoraMessageType.UPLINK.equals(type)) {
+                LOG.debug("Received batched message of type [{}] for device [{}], will discard message.", type, deviceId);
+                return Future.succeededFuture(createBatchItemResult(index, deviceId, HTTP_ACCEPTED, null));
+            }
+            payloadBase64 = provider.extractPayloadEncodedInBase64(loraMessage);
+        } catch (final ClassCastException | LoraProviderMalformedPayloadException e) {
+            LOG.debug("Got invalid batched payload '{}' which leads to exception: {}", loraMessage, e);
+            return Future.succeededFuture(createBatchItemResult(index, null, HTTP_BAD_REQUEST, INVALID_PAYLOAD));
+        }
+
+        if (deviceId == null || payloadBase64 == null) {
+            return Future.succeededFuture(
+                    createBatchItemResult(index, deviceId, HTTP_BAD_REQUEST, JSON_MISSING_REQUIRED_FIELDS));
+        }
+
+        invalidateStaleGatewayMapping(tenantId, deviceId, gatewayDevice.getDeviceId());
+        final Buffer payload = createDownstreamJson(payloadBase64).toBuffer();
+        return getRegistrationAssertion(tenantId, deviceId, gatewayDevice, currentSpan.context())
+                .compose(assertion -> {
+                    final Message downstreamMessage = newMessage(
+                            ResourceIdentifier.from(MetricsTags.EndpointType.TELEMETRY.getCanonicalName(), tenantId, deviceId),
+                            ctx.request().uri(),
+                            HttpUtils.CONTENT_TYPE_JSON,
+                            payload,
+                            assertion,
+                            null);
+                    customizeDownstreamMessage(downstreamMessage, ctx);
+                    if (MetricsTags.QoS.AT_MOST_ONCE.equals(qos)) {
+                        return sender.send(downstreamMessage, currentSpan.context());
+                    } else {
+                        return sender.sendAndWaitForOutcome(downstreamMessage, currentSpan.context());
+                    }
+                }).map(delivery -> {
+                    reportBatchItem(tenantId, ProcessingOutcome.FORWARDED, qos, payload, sample);
+                    return createBatchItemResult(index, deviceId, HTTP_ACCEPTED, null);
+                }).otherwise(t -> {
+                    LOG.debug("cannot process batched message from device [tenant: {}, device-id: {}]",
+                            tenantId, deviceId, t);
+                    TracingHelper.logError(currentSpan, "cannot process message from device '" + deviceId + "': " + t);
+                    reportBatchItem(tenantId, ProcessingOutcome.from(t), qos, payload, sample);
+                    return createBatchItemResult(index, deviceId, ServiceInvocationException.extractStatusCode(t),
+                            t.getMessage());
+                });
+    }
+
+    private void reportBatchItem(final String tenantId, final ProcessingOutcome outcome,
+            final MetricsTags.QoS qos, final Buffer payload, final Sample sample) {
+        getMetrics().reportTelemetry(
+                MetricsTags.EndpointType.TELEMETRY,
+                tenantId,
+                outcome,
+                qos,
+                payload.length(),
+                TtdStatus.NONE,
+                sample);
+    }
+
+    /**
+     * Limits the number of items of a batch that are being uploaded concurrently.
+     * <p>
+     * Reading of the request body is paused while the limit is reached and is
+     * resumed once uploads of previous items have completed.
+     */
+    private static final class BatchItemUploads {
+
+        private final Deque<Runnable> pendingUploads = new ArrayDeque<>();
+        private final HttpServerRequest request;
+        private int uploadsInFlight;
+        private boolean processing;
+        private boolean paused;
+
+        private BatchItemUploads(final HttpServerRequest request) {
+            this.request = request;
+        }
+
+        /**
+         * Uploads an item as soon as the number of items in flight is below the limit.
+         *
+         * @param upload The supplier starting the upload of the item.
+         * @return A future indicating the outcome of the upload.
+         */
+        private Future<JsonObject> add(final Supplier<Future<JsonObject>> upload) {
+            final Future<JsonObject> result = Future.future();
+            pendingUploads.add(() -> upload.get().setHandler(done -> {
+                uploadsInFlight--;
+                result.handle(done);
+                processPendingUploads();
+            }));
+            processPendingUploads();
+            return result;
+        }
+
+        private void processPendingUploads() {
+            if (processing) {
+                // uploads that complete synchronously are picked up by the loop below
+                return;
+            }
+            processing = true;
+            while (uploadsInFlight < MAX_BATCH_ITEMS_IN_FLIGHT && !pendingUploads.isEmpty()) {
+                uploadsInFlight++;
+                pendingUploads.poll().run();
+            }
+            processing = false;
+            if (!paused && uploadsInFlight >= MAX_BATCH_ITEMS_IN_FLIGHT) {
+                paused = true;
+                request.pause();
+            } else if (paused && pendingUploads.isEmpty() && uploadsInFlight < MAX_BATCH_ITEMS_IN_FLIGHT) {
+                paused = false;
+                request.resume();
+            }
+        }
+    }
+
+    private static JsonObject createBatchItemResult(final int index, final String deviceId, final int status,
+            final String error) {
+        final JsonObject result = new JsonObject()
+                .put(LoraConstants.FIELD_BATCH_INDEX, index)
+                .put(LoraConstants.FIELD_BATCH_STATUS, status);
+        if (deviceId != null) {
+            result.put(MessageHelper.APP_PROPERTY_DEVICE_ID, deviceId);
+        }
+        if (error != null) {
+            result.put(LoraConstants.FIELD_BATCH_ERROR, error);
+        }
+        return result;
+    }
+
+    private static MetricsTags.QoS getBatchQoSLevel(final RoutingContext ctx) {
+        final String qosValue = ctx.request().getHeader(Constants.HEADER_QOS_LEVEL);
+        if (qosValue == null) {
+            return MetricsTags.QoS.AT_MOST_ONCE;
+        }
+        try {
+            return MetricsTags.QoS.from(Integer.parseInt(qosValue));
+        } catch (final NumberFormatException e) {
+            return MetricsTags.QoS.UNKNOWN;
+        }
+    }
+
     private Span getCurrentSpan(final RoutingContext ctx) {
         return (ctx.get(TracingHandler.CURRENT_SPAN) instanceof Span) ? ctx.get(TracingHandler.CURRENT_SPAN)
                 : NoopSpan.INSTANCE;
@@ -245,6 +667,7 @@ public final class LoraProtocolAdapter extends AbstractVertxBasedHttpProtocolAda
             final String payloadBase64) {
         LOG.trace("Got push message for tenant '{}' and device '{}'", device.getTenantId(), deviceId);
         if (deviceId != null && payloadBase64 != null) {
+            invalidateStaleGatewayMapping(device.getTenantId(), deviceId, device.getDeviceId());
             uploadTelemetryMessage(ctx, device.getTenantId(), deviceId, createDownstreamJson(payloadBase64).toBuffer(),
                     HttpUtils.CONTENT_TYPE_JSON);
         } else {
@@ -351,24 +774,16 @@ public final class LoraProtocolAdapter extends AbstractVertxBasedHttpProtocolAda
                 commandData.setTargetDeviceId(loraDeviceId);
                 LOG.debug("Got valid command {} for an actual lora device [{}]", command, loraDeviceId);
 
-                final Future<JsonObject> loraGatewayFuture = getLoraDeviceGateway(tenantId, loraDeviceId);
-
-                loraGatewayFuture
-                        .compose(loraGateway -> getRegistrationAssertion(tenantId, loraDeviceId,
-                                new Device(tenantId, loraGateway.getString("device-id")),
+                getGatewayMapping(tenantId, loraDeviceId)
+                        .compose(gatewayMapping -> getRegistrationAssertion(tenantId, loraDeviceId,
+                                new Device(tenantId, gatewayMapping.getGateway().getString("device-id")),
                                 receivedCommandContext.getCurrentSpan().context())
                                         .compose(registrationAssertion -> {
                                             LOG.debug("Lora device {} registered and enabled for the Lora gateway.",
                                                     loraDeviceId);
-                                            commandData.setGatewayAndExtractLoraNetworkData(loraGatewayFuture.result())
-                                                    .compose(loraNetworkData -> getGatewayCredentials(tenantId,
-                                                            loraNetworkData))
-                                                    .compose(loraGatewayCredentials -> {
-                                                        LOG.debug(
-                                                                "Successfully received gateway credentials for lora device "
-                                                                        + "'{}'",
-                                                                commandData.getTargetDeviceId());
-                                                        commandData.setGatewayCredentials(loraGatewayCredentials);
+                                            commandData.setGatewayAndExtractLoraNetworkData(gatewayMapping.getGateway())
+                                                    .compose(loraNetworkData -> {
+                                                        commandData.setGatewayCredentials(gatewayMapping.getCredentials());
                                                         return sendCommandToDevice(commandData);
                                                     }).compose(httpResponse -> {
                                                         LOG.debug(
@@ -387,6 +802,7 @@ public final class LoraProtocolAdapter extends AbstractVertxBasedHttpProtocolAda
                                                                 commandData.getTargetDeviceId(),
                                                                 HTTP_INTERNAL_ERROR, sendCommandFailure);
 
+                                                        invalidateGatewayMapping(tenantId, loraDeviceId);
                                                         TracingHelper.logError(receivedCommandContext.getCurrentSpan(),
                                                                 sendCommandFailure);
                                                         sendResponseToApplication(command, loraDeviceId,
@@ -400,6 +816,7 @@ public final class LoraProtocolAdapter extends AbstractVertxBasedHttpProtocolAda
                                             LOG.error("Error asserting device registration. Sending error response to "
                                                     + "application with code [{}]", HTTP_FORBIDDEN,
                                                     registrationAssertionFailure);
+                                            invalidateGatewayMapping(tenantId, loraDeviceId);
                                             TracingHelper.logError(receivedCommandContext.getCurrentSpan(),
                                                     registrationAssertionFailure);
                                             sendResponseToApplication(command, loraDeviceId,
@@ -513,10 +930,124 @@ public final class LoraProtocolAdapter extends AbstractVertxBasedHttpProtocolAda
         }
     }
 
-    private Future<JsonObject> getLoraDeviceGateway(final String tenantId, final String loraDeviceId) {
-        return getRegistrationClient(tenantId).compose(registrationClient -> registrationClient.get(loraDeviceId))
-                .compose(this::extractGatewayId).compose(gatewayId -> getRegistrationClient(tenantId)
-                        .compose(registrationClient -> registrationClient.get(gatewayId)));
+    /**
+     * Gets the gateway that a LoRa device is connected to along with the gateway's credentials.
+     * <p>
+     * The identifier of the device's gateway and the gateway along with its credentials are cached
+     * separately, the latter keyed by the gateway's identifier. The LoRa device is looked up in the
+     * Device Registration service only if the cache does not contain the identifier of its gateway.
+     * The gateway and its credentials are retrieved from the Device Registration and Credentials services
+     * only if the cache does not contain the gateway, e.g. for the first command sent to any of
+     * the devices connected to the gateway.
+     *
+     * @param tenantId The tenant that the LoRa device belongs to.
+     * @param loraDeviceId The LoRa device.
+     * @return A future indicating the outcome of the operation.
+     */
+    Future<GatewayMapping> getGatewayMapping(final String tenantId, final String loraDeviceId) {
+
+        final String cachedGatewayId = isGatewayMappingCacheEnabled()
+                ? deviceGatewayCache.get(getCacheKey(tenantId, loraDeviceId))
+                : null;
+        final Future<String> gatewayIdTracker;
+        if (cachedGatewayId != null) {
+            LOG.debug("using cached gateway for lora device [tenant: {}, device-id: {}]", tenantId, loraDeviceId);
+            gatewayIdTracker = Future.succeededFuture(cachedGatewayId);
+        } else {
+            gatewayIdTracker = getRegistrationClient(tenantId)
+                    .compose(registrationClient -> registrationClient.get(loraDeviceId))
+                    .compose(this::extractGatewayId)
+                    .map(gatewayId -> {
+                        if (isGatewayMappingCacheEnabled()) {
+                            deviceGatewayCache.put(getCacheKey(tenantId, loraDeviceId), gatewayId, getGatewayCacheTimeout());
+                        }
+                        return gatewayId;
+                    });
+        }
+        return gatewayIdTracker.compose(gatewayId -> getGateway(tenantId, gatewayId));
+    }
+
+    private Future<GatewayMapping> getGateway(final String tenantId, final String gatewayId) {
+
+        final String cacheKey = getCacheKey(tenantId, gatewayId);
+        final GatewayMapping cachedMapping = isGatewayMappingCacheEnabled() ? gatewayCache.get(cacheKey) : null;
+        if (cachedMapping != null) {
+            LOG.debug("using cached lora gateway [tenant: {}, device-id: {}]", tenantId, gatewayId);
+            return Future.succeededFuture(cachedMapping);
+        }
+
+        final Future<JsonObject> gatewayTracker = getRegistrationClient(tenantId)
+                .compose(registrationClient -> registrationClient.get(gatewayId));
+        return gatewayTracker.compose(gateway -> {
+            if (LoraUtils.isValidLoraGateway(gateway)) {
+                return getGatewayCredentials(tenantId, LoraUtils.getLoraConfigFromLoraGatewayDevice(gateway));
+            } else {
+                LOG.debug("Not a valid lora gateway configuration");
+                return Future.failedFuture("Not a valid lora gateway configuration");
+            }
+        }).map(credentials -> {
+            final GatewayMapping mapping = new GatewayMapping(gatewayTracker.result(), credentials);
+            if (isGatewayMappingCacheEnabled()) {
+                gatewayCache.put(cacheKey, mapping, getGatewayCacheTimeout());
+            }
+            return mapping;
+        });
+    }
+
+    /**
+     * Removes the gateway that a LoRa device is connected to from the gateway mapping cache.
+     * <p>
+     * The next command for the device will then be sent using the gateway and credentials
+     * currently registered for the device.
+     *
+     * @param tenantId The tenant that the LoRa device belongs to.
+     * @param loraDeviceId The LoRa device.
+     */
+    void invalidateGatewayMapping(final String tenantId, final String loraDeviceId) {
+        if (gatewayCache != null) {
+            final String deviceKey = getCacheKey(tenantId, loraDeviceId);
+            final String gatewayId = deviceGatewayCache.get(deviceKey);
+            deviceGatewayCache.remove(deviceKey);
+            if (gatewayId != null) {
+                gatewayCache.remove(getCacheKey(tenantId, gatewayId));
+            }
+        }
+    }
+
+    /**
+     * Removes the cached gateway identifier of a LoRa device if the device's uplink messages
+     * are forwarded by a gateway other than the cached one.
+     * <p>
+     * An uplink message being received from another gateway indicates that the device's
+     * registration has been changed after the gateway identifier has been cached.
+     *
+     * @param tenantId The tenant that the LoRa device belongs to.
+     * @param loraDeviceId The LoRa device.
+     * @param gatewayId The gateway that has forwarded an uplink message of the device.
+     */
+    void invalidateStaleGatewayMapping(final String tenantId, final String loraDeviceId, final String gatewayId) {
+        if (isGatewayMappingCacheEnabled()) {
+            final String deviceKey = getCacheKey(tenantId, loraDeviceId);
+            final String cachedGatewayId = deviceGatewayCache.get(deviceKey);
+            if (cachedGatewayId != null && !gatewayId.equals(cachedGatewayId)) {
+                LOG.debug("gateway of lora device has changed, removing cached gateway [tenant: {}, device-id: {}]",
+                        tenantId, loraDeviceId);
+                deviceGatewayCache.remove(deviceKey);
+            }
+        }
+    }
+
+    private boolean isGatewayMappingCacheEnabled() {
+        return gatewayCache != null && loraCommandProperties != null
+                && loraCommandProperties.getGatewayCacheTimeout() > 0;
+    }
+
+    private Duration getGatewayCacheTimeout() {
+        return Duration.ofSeconds(loraCommandProperties.getGatewayCacheTimeout());
+    }
+
+    private static String getCacheKey(final String tenantId, final String deviceId) {
+        return tenantId + "/" + deviceId;
     }
 
     private Future<CredentialsObject> getGatewayCredentials(final String tenantId, final JsonObject data) {
@@ -598,6 +1129,28 @@ public final class LoraProtocolAdapter extends AbstractVertxBasedHttpProtocolAda
         };
     }
 
+    /**
+     * The gateway that a LoRa device is connected to along with the gateway's credentials.
+     */
+    static final class GatewayMapping {
+
+        private final JsonObject gateway;
+        private final CredentialsObject credentials;
+
+        GatewayMapping(final JsonObject gateway, final CredentialsObject credentials) {
+            this.gateway = Objects.requireNonNull(gateway);
+            this.credentials = Objects.requireNonNull(credentials);
+        }
+
+        JsonObject getGateway() {
+            return gateway;
+        }
+
+        CredentialsObject getCredentials() {
+            return credentials;
+        }
+    }
+
     /**
      * Data sent as command.
      */
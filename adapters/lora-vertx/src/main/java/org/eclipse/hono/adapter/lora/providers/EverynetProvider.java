@@ -13,25 +13,21 @@
 
 package org.eclipse.hono.adapter.lora.providers;
 
-import org.eclipse.hono.adapter.lora.LoraConstants;
 import org.eclipse.hono.adapter.lora.LoraMessageType;
 import org.eclipse.hono.service.http.HttpUtils;
 import org.springframework.stereotype.Component;
 
 import io.vertx.core.http.HttpMethod;
-import io.vertx.core.json.JsonObject;
 
 /**
  * A LoRaWAN provider with API for Everynet.
  */
 @Component
-public class EverynetProvider implements LoraProvider {
+public class EverynetProvider implements JsonFieldLoraProvider {
 
-    private static final String FIELD_EVERYNET_ROOT_PARAMS_OBJECT = "params";
-    private static final String FIELD_EVERYNET_ROOT_META_OBJECT = "meta";
-    private static final String FIELD_EVERYNET_DEVICE_EUI = "device";
-    private static final String FIELD_EVERYNET_PAYLOAD = "payload";
-    private static final String FIELD_EVERYNET_TYPE = "type";
+    private static final String[] PATH_EVERYNET_DEVICE_EUI = { "meta", "device" };
+    private static final String[] PATH_EVERYNET_PAYLOAD = { "params", "payload" };
+    private static final String[] PATH_EVERYNET_TYPE = { "type" };
 
     @Override
     public String getProviderName() {
@@ -54,20 +50,22 @@ public class EverynetProvider implements LoraProvider {
     }
 
     @Override
-    public String extractDeviceId(final JsonObject loraMessage) {
-        return loraMessage.getJsonObject(FIELD_EVERYNET_ROOT_META_OBJECT, new JsonObject())
-                .getString(FIELD_EVERYNET_DEVICE_EUI);
+    public String[] deviceIdPath() {
+        return PATH_EVERYNET_DEVICE_EUI;
     }
 
     @Override
-    public String extractPayloadEncodedInBase64(final JsonObject loraMessage) {
-        return loraMessage.getJsonObject(FIELD_EVERYNET_ROOT_PARAMS_OBJECT, new JsonObject())
-                .getString(FIELD_EVERYNET_PAYLOAD);
+    public String[] payloadPath() {
+        return PATH_EVERYNET_PAYLOAD;
     }
 
     @Override
-    public LoraMessageType extractMessageType(final JsonObject loraMessage) {
-        final String type = loraMessage.getString(FIELD_EVERYNET_TYPE, LoraConstants.EMPTY);
-        return "uplink".equals(type) ? LoraMessageType.UPLINK : LoraMessageType.UNKNOWN;
+    public String[] messageTypePath() {
+        return PATH_EVERYNET_TYPE;
+    }
+
+    @Override
+    public LoraMessageType getMessageType(final String value) {
+        return "uplink".equals(value) ? LoraMessageType.UPLINK : LoraMessageType.UNKNOWN;
     }
 }
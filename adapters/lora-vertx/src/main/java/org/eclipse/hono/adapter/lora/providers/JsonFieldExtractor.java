@@ -0,0 +1,138 @@
+/*******************************************************************************
+ * Copyright (c) 2019 Contributors to the Eclipse Foundation
+ *
+ * See the NOTICE file(s) distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *******************************************************************************/
+
+package org.eclipse.hono.adapter.lora.providers;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+
+import io.netty.buffer.ByteBufInputStream;
+import io.vertx.core.buffer.Buffer;
+
+/**
+ * A utility for extracting the string values of a set of properties from a JSON document
+ * in a single pass.
+ * <p>
+ * The document is not decoded into an object tree. Instead, the parser skips over all
+ * objects and arrays which do not contain any of the requested properties. The whole
+ * document is still parsed in order to make sure that it is well formed.
+ */
+public final class JsonFieldExtractor {
+
+    private static final JsonFactory FACTORY = new JsonFactory();
+
+    private JsonFieldExtractor() {
+        // prevent instantiation
+    }
+
+    /**
+     * Extracts the string values of properties from a JSON object.
+     *
+     * @param json The JSON object.
+     * @param paths The paths to the properties to extract. Each path consists of the names of the properties
+     *              to follow from the root object. Individual paths may be {@code null}.
+     * @return The values of the properties in the same order as the paths. A value will be {@code null}
+     *         if the corresponding path is {@code null} or if the document does not contain the property.
+     * @throws NullPointerException if json or paths is {@code null}.
+     * @throws LoraProviderMalformedPayloadException if the document is not a single well formed JSON object,
+     *         if any of the properties on a path but the last one does not contain a JSON object or
+     *         if the last property on a path does not contain a string value.
+     */
+    public static String[] extract(final Buffer json, final String[]... paths) {
+
+        Objects.requireNonNull(json);
+        Objects.requireNonNull(paths);
+
+        final String[] result = new String[paths.length];
+
+        try (InputStream in = new ByteBufInputStream(json.getByteBuf());
+                JsonParser parser = FACTORY.createParser(in)) {
+
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                throw new LoraProviderMalformedPayloadException("message is not a JSON object");
+            }
+            final List<String> currentPath = new ArrayList<>();
+
+            boolean endOfRootObject = false;
+            while (!endOfRootObject) {
+                final JsonToken token = parser.nextToken();
+                if (token == null) {
+                    throw new LoraProviderMalformedPayloadException("unexpected end of message");
+                } else if (token == JsonToken.END_OBJECT) {
+                    if (currentPath.isEmpty()) {
+                        endOfRootObject = true;
+                    } else {
+                        currentPath.remove(currentPath.size() - 1);
+                    }
+                } else if (token == JsonToken.FIELD_NAME) {
+                    final String name = parser.getCurrentName();
+                    final JsonToken value = parser.nextToken();
+                    final int depth = currentPath.size();
+                    boolean descend = false;
+                    for (int i = 0; i < paths.length; i++) {
+                        final String[] path = paths[i];
+                        if (!isOnPath(path, currentPath, name)) {
+                            continue;
+                        }
+                        if (path.length == depth + 1) {
+                            if (value == JsonToken.VALUE_STRING) {
+                                result[i] = parser.getText();
+                            } else if (value == JsonToken.VALUE_NULL) {
+                                result[i] = null;
+                            } else {
+                                throw new LoraProviderMalformedPayloadException(
+                                        "property [" + name + "] does not contain a string value");
+                            }
+                        } else if (value == JsonToken.START_OBJECT) {
+                            descend = true;
+                        } else if (value != JsonToken.VALUE_NULL) {
+                            throw new LoraProviderMalformedPayloadException(
+                                    "property [" + name + "] does not contain a JSON object");
+                        }
+                    }
+                    if (descend) {
+                        currentPath.add(name);
+                    } else if (value.isStructStart()) {
+                        parser.skipChildren();
+                    }
+                }
+            }
+            if (parser.nextToken() != null) {
+                throw new LoraProviderMalformedPayloadException("message contains content after the root object");
+            }
+            return result;
+        } catch (final IOException e) {
+            throw new LoraProviderMalformedPayloadException("message is not well formed JSON", e);
+        }
+    }
+
+    private static boolean isOnPath(final String[] path, final List<String> currentPath, final String name) {
+        final int depth = currentPath.size();
+        if (path == null || path.length <= depth || !path[depth].equals(name)) {
+            return false;
+        }
+        for (int i = 0; i < depth; i++) {
+            if (!path[i].equals(currentPath.get(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
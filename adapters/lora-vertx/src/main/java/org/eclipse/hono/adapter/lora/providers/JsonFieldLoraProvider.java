@@ -0,0 +1,93 @@
+/*******************************************************************************
+ * Copyright (c) 2019 Contributors to the Eclipse Foundation
+ *
+ * See the NOTICE file(s) distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *******************************************************************************/
+
+package org.eclipse.hono.adapter.lora.providers;
+
+import org.eclipse.hono.adapter.lora.LoraMessageType;
+
+import io.vertx.core.json.JsonObject;
+
+/**
+ * A LoRaWAN provider which declares the location of the fields it needs within the messages it receives.
+ * <p>
+ * The adapter uses the declared paths to extract the values of these fields in a single pass over the
+ * raw request body, without decoding the whole message into a {@code JsonObject}.
+ * <p>
+ * A path consists of the names of the properties to follow from the message's root object, e.g.
+ * <code>{"meta", "device"}</code> refers to the <em>device</em> property of the object contained
+ * in the message's <em>meta</em> property. The last property of a path is expected to contain
+ * a string value.
+ */
+public interface JsonFieldLoraProvider extends LoraProvider {
+
+    /**
+     * Gets the path to the property containing the device identifier.
+     *
+     * @return The path.
+     */
+    String[] deviceIdPath();
+
+    /**
+     * Gets the path to the property containing the payload.
+     *
+     * @return The path.
+     */
+    String[] payloadPath();
+
+    /**
+     * Gets the path to the property that determines the type of message.
+     *
+     * @return The path or {@code null} if the message type is not contained in the message.
+     *         This default implementation returns {@code null}.
+     */
+    default String[] messageTypePath() {
+        return null;
+    }
+
+    /**
+     * Maps the value of the property referred to by {@link #messageTypePath()} to a message type.
+     *
+     * @param value The property value or {@code null} if the message does not contain the property.
+     * @return The message type. This default implementation always returns {@link LoraMessageType#UPLINK}.
+     */
+    default LoraMessageType getMessageType(final String value) {
+        return LoraMessageType.UPLINK;
+    }
+
+    /**
+     * Converts the value of the property referred to by {@link #payloadPath()} to Base64 encoding.
+     *
+     * @param value The property value.
+     * @return The Base64 encoded payload. This default implementation returns the value as is.
+     * @throws LoraProviderMalformedPayloadException if the value cannot be converted.
+     */
+    default String getPayloadEncodedInBase64(final String value) {
+        return value;
+    }
+
+    @Override
+    default LoraMessageType extractMessageType(final JsonObject loraMessage) {
+        return getMessageType(LoraUtils.getString(loraMessage, messageTypePath()));
+    }
+
+    @Override
+    default String extractDeviceId(final JsonObject loraMessage) {
+        return LoraUtils.getString(loraMessage, deviceIdPath());
+    }
+
+    @Override
+    default String extractPayloadEncodedInBase64(final JsonObject loraMessage) {
+        final String value = LoraUtils.getString(loraMessage, payloadPath());
+        return value == null ? null : getPayloadEncodedInBase64(value);
+    }
+}
@@ -24,9 +24,9 @@ import java.time.Instant;
 import java.util.Base64;
 import java.util.List;
 
+import org.eclipse.hono.adapter.lora.LoraCommandProperties;
 import org.eclipse.hono.adapter.lora.LoraConstants;
 import org.eclipse.hono.adapter.lora.LoraProtocolAdapter;
-import org.eclipse.hono.cache.ExpiringValueCache;
 import org.eclipse.hono.client.Command;
 import org.eclipse.hono.service.cache.SpringBasedExpiringValueCache;
 import org.eclipse.hono.util.CredentialsObject;
@@ -50,7 +50,7 @@ import io.vertx.ext.web.client.WebClientOptions;
  * A LoRaWAN provider with API for Kerlink.
  */
 @Component
-public class KerlinkProvider implements LoraProvider {
+public class KerlinkProvider implements JsonFieldLoraProvider {
 
     private static final String FIELD_KERLINK_CLUSTER_ID = "cluster-id";
     private static final String FIELD_KERLINK_CUSTOMER_ID = "customer-id";
@@ -66,9 +66,8 @@ public class KerlinkProvider implements LoraProvider {
     private static final String API_PATH_GET_TOKEN = "/oss/application/login";
     private static final String API_PATH_TX_MESSAGE = "/oss/application/customers/{0}/clusters/{1}/endpoints/{2}/txMessages";
 
-    private static final String FIELD_UPLINK_DEVICE_EUI = "devEui";
-    private static final String FIELD_UPLINK_USER_DATA = "userdata";
-    private static final String FIELD_UPLINK_PAYLOAD = "payload";
+    private static final String[] PATH_UPLINK_DEVICE_EUI = { "devEui" };
+    private static final String[] PATH_UPLINK_PAYLOAD = { "userdata", "payload" };
 
     private static final String FIELD_DOWNLINK_PORT = "port";
     private static final String FIELD_DOWNLINK_PAYLOAD = "payload";
@@ -84,9 +83,7 @@ public class KerlinkProvider implements LoraProvider {
     private static final String FIELD_KERLINK_EXPIRY_DATE = "expiredDate";
     private static final String FIELD_KERLINK_TOKEN = "token";
 
-    private final CacheManager cacheManager;
-
-    private final ExpiringValueCache<String, String> sessionsCache;
+    private final SpringBasedExpiringValueCache<String, String> sessionsCache;
     private int tokenPreemptiveInvalidationTimeInMs = DEFAULT_DOWNLINK_TOKEN_PREEMPTIVE_INVALIDATION_TIME_IN_MS;
 
     private final WebClient webClient;
@@ -97,14 +94,30 @@ public class KerlinkProvider implements LoraProvider {
      * @param vertx the vertx instance this provider should run on
      * @param cacheManager the cache manager this provider should use
      */
-    @Autowired
     public KerlinkProvider(final Vertx vertx, final CacheManager cacheManager) {
-        this.cacheManager = cacheManager;
+        this(vertx, cacheManager, new LoraCommandProperties());
+    }
 
+    /**
+     * Creates a Kerlink provider with the given vertx instance, cache manager and command properties.
+     * <p>
+     * Connections to the Kerlink API are kept alive and are pooled per API endpoint so that
+     * sending a command does not require a new TCP (and TLS) connection to be established.
+     *
+     * @param vertx the vertx instance this provider should run on
+     * @param cacheManager the cache manager this provider should use
+     * @param commandProperties the properties defining the connection pool
+     */
+    @Autowired
+    public KerlinkProvider(final Vertx vertx, final CacheManager cacheManager,
+            final LoraCommandProperties commandProperties) {
         sessionsCache = new SpringBasedExpiringValueCache<>(cacheManager.getCache(KerlinkProvider.class.getName()));
 
         final WebClientOptions options = new WebClientOptions();
         options.setTrustAll(true);
+        options.setKeepAlive(true);
+        options.setMaxPoolSize(commandProperties.getMaxConnectionsPerEndpoint());
+        options.setIdleTimeout(commandProperties.getConnectionIdleTimeout());
 
         this.webClient = WebClient.create(vertx, options);
     }
@@ -125,13 +138,13 @@ public class KerlinkProvider implements LoraProvider {
     }
 
     @Override
-    public String extractDeviceId(final JsonObject loraMessage) {
-        return loraMessage.getString(FIELD_UPLINK_DEVICE_EUI);
+    public String[] deviceIdPath() {
+        return PATH_UPLINK_DEVICE_EUI;
     }
 
     @Override
-    public String extractPayloadEncodedInBase64(final JsonObject loraMessage) {
-        return loraMessage.getJsonObject(FIELD_UPLINK_USER_DATA, new JsonObject()).getString(FIELD_UPLINK_PAYLOAD);
+    public String[] payloadPath() {
+        return PATH_UPLINK_PAYLOAD;
     }
 
     @Override
@@ -316,8 +329,7 @@ public class KerlinkProvider implements LoraProvider {
     private void invalidateCacheForGatewayDevice(final JsonObject gatewayDevice) {
         final String cacheId = getCacheIdForGatewayDevice(gatewayDevice);
         LOG.debug("Invalidating item in cache with id '{}'", cacheId);
-        // Ugly to directly remove it from the underlaying cache, but Hono cache does not implement evict method yet.
-        cacheManager.getCache(KerlinkProvider.class.getName()).evict(cacheId);
+        sessionsCache.remove(cacheId);
     }
 
     private String getCacheIdForGatewayDevice(final JsonObject gatwayDevice) {
@@ -70,6 +70,21 @@ public interface LoraProvider {
         return HttpMethod.POST;
     }
 
+    /**
+     * Checks if this provider supports uploading multiple messages in a single request.
+     * <p>
+     * If {@code true}, the adapter will additionally accept requests at
+     * <em>pathPrefix()</em> + {@link org.eclipse.hono.adapter.lora.LoraConstants#BATCH_PATH_SUFFIX}
+     * containing a JSON array of messages, each of which is in the format that this provider
+     * accepts for single messages.
+     *
+     * @return {@code true} if batched uploads are supported. This default implementation
+     *         returns {@code false}.
+     */
+    default boolean supportsBatchedUplinks() {
+        return false;
+    }
+
     /**
      * Extracts the device id from an incoming message of the LoRa Provider.
      * 
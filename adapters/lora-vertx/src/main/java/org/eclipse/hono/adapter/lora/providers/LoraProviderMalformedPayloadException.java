@@ -20,6 +20,15 @@ public class LoraProviderMalformedPayloadException extends RuntimeException {
 
     private static final long serialVersionUID = 1L;
 
+    /**
+     * Create the Exception with the given message.
+     *
+     * @param message the Exception message
+     */
+    public LoraProviderMalformedPayloadException(final String message) {
+        super(message);
+    }
+
     /**
      * Create the Exception with the given message and cause.
      *
@@ -138,6 +138,26 @@ public class LoraUtils {
                 .getJsonObject(LoraConstants.FIELD_LORA_CONFIG);
     }
 
+    /**
+     * Gets the string value of a (nested) property of a JSON object.
+     *
+     * @param json The JSON object.
+     * @param path The names of the properties to follow from the given object.
+     * @return The value or {@code null} if the path is {@code null} or if any of the properties does not exist.
+     * @throws ClassCastException if any of the properties but the last one does not contain a JSON object
+     *                            or if the last property does not contain a string.
+     */
+    public static String getString(final JsonObject json, final String[] path) {
+        if (path == null || path.length == 0) {
+            return null;
+        }
+        JsonObject current = json;
+        for (int i = 0; i < path.length - 1 && current != null; i++) {
+            current = current.getJsonObject(path[i]);
+        }
+        return current == null ? null : current.getString(path[path.length - 1]);
+    }
+
     /**
      * Checks the status code for success. A status of 2xx is defined as successful.
      *
@@ -17,18 +17,15 @@ import org.eclipse.hono.adapter.lora.LoraConstants;
 import org.eclipse.hono.adapter.lora.LoraMessageType;
 import org.springframework.stereotype.Component;
 
-import io.vertx.core.json.JsonObject;
-
 /**
  * A LoRaWAN provider with API for Objenious.
  */
 @Component
-public class ObjeniousProvider implements LoraProvider {
+public class ObjeniousProvider implements JsonFieldLoraProvider {
 
-    private static final String FIELD_DEVICE_PROPERTIES = "device_properties";
-    private static final String FIELD_DEVICE_ID = "deveui";
-    private static final String FIELD_PAYLOAD = "payload_cleartext";
-    private static final String FIELD_TYPE = "type";
+    private static final String[] PATH_DEVICE_ID = { "device_properties", "deveui" };
+    private static final String[] PATH_PAYLOAD = { "payload_cleartext" };
+    private static final String[] PATH_TYPE = { "type" };
 
     @Override
     public String getProviderName() {
@@ -41,20 +38,28 @@ public class ObjeniousProvider implements LoraProvider {
     }
 
     @Override
-    public String extractDeviceId(final JsonObject loraMessage) {
-        return loraMessage.getJsonObject(FIELD_DEVICE_PROPERTIES, new JsonObject()).getString(FIELD_DEVICE_ID);
+    public String[] deviceIdPath() {
+        return PATH_DEVICE_ID;
+    }
+
+    @Override
+    public String[] payloadPath() {
+        return PATH_PAYLOAD;
     }
 
     @Override
-    public String extractPayloadEncodedInBase64(final JsonObject loraMessage) {
-        final String hexPayload = loraMessage.getString(FIELD_PAYLOAD);
+    public String[] messageTypePath() {
+        return PATH_TYPE;
+    }
 
+    @Override
+    public String getPayloadEncodedInBase64(final String hexPayload) {
         return LoraUtils.convertFromHexToBase64(hexPayload);
     }
 
     @Override
-    public LoraMessageType extractMessageType(final JsonObject loraMessage) {
-        final String type = loraMessage.getString(FIELD_TYPE, LoraConstants.EMPTY);
+    public LoraMessageType getMessageType(final String value) {
+        final String type = value == null ? LoraConstants.EMPTY : value;
 
         switch (type) {
         case "join":
@@ -15,16 +15,14 @@ package org.eclipse.hono.adapter.lora.providers;
 
 import org.springframework.stereotype.Component;
 
-import io.vertx.core.json.JsonObject;
-
 /**
  * A LoRaWAN provider with API for Proximus.
  */
 @Component
-public class ProximusProvider implements LoraProvider {
+public class ProximusProvider implements JsonFieldLoraProvider {
 
-    private static final String FIELD_PROXIMUS_DEVICE_EUI = "DevEUI";
-    private static final String FIELD_PROXIMUS_PAYLOAD = "payload";
+    private static final String[] PATH_PROXIMUS_DEVICE_EUI = { "DevEUI" };
+    private static final String[] PATH_PROXIMUS_PAYLOAD = { "payload" };
 
     @Override
     public String getProviderName() {
@@ -37,12 +35,12 @@ public class ProximusProvider implements LoraProvider {
     }
 
     @Override
-    public String extractDeviceId(final JsonObject loraMessage) {
-        return loraMessage.getString(FIELD_PROXIMUS_DEVICE_EUI);
+    public String[] deviceIdPath() {
+        return PATH_PROXIMUS_DEVICE_EUI;
     }
 
     @Override
-    public String extractPayloadEncodedInBase64(final JsonObject loraMessage) {
-        return loraMessage.getString(FIELD_PROXIMUS_PAYLOAD);
+    public String[] payloadPath() {
+        return PATH_PROXIMUS_PAYLOAD;
     }
 }
@@ -15,16 +15,14 @@ package org.eclipse.hono.adapter.lora.providers;
 
 import org.springframework.stereotype.Component;
 
-import io.vertx.core.json.JsonObject;
-
 /**
  * A LoRaWAN provider with API for Things Network.
  */
 @Component
-public class ThingsNetworkProvider implements LoraProvider {
+public class ThingsNetworkProvider implements JsonFieldLoraProvider {
 
-    private static final String FIELD_TTN_DEVICE_EUI = "hardware_serial";
-    private static final String FIELD_TTN_PAYLOAD_RAW = "payload_raw";
+    private static final String[] PATH_TTN_DEVICE_EUI = { "hardware_serial" };
+    private static final String[] PATH_TTN_PAYLOAD_RAW = { "payload_raw" };
 
     @Override
     public String getProviderName() {
@@ -36,14 +34,24 @@ public class ThingsNetworkProvider implements LoraProvider {
         return "/ttn";
     }
 
+    /**
+     * {@inheritDoc}
+     *
+     * @return {@code true}.
+     */
+    @Override
+    public boolean supportsBatchedUplinks() {
+        return true;
+    }
+
     @Override
-    public String extractDeviceId(final JsonObject loraMessage) {
-        return loraMessage.getString(FIELD_TTN_DEVICE_EUI);
+    public String[] deviceIdPath() {
+        return PATH_TTN_DEVICE_EUI;
     }
 
     @Override
-    public String extractPayloadEncodedInBase64(final JsonObject loraMessage) {
-        return loraMessage.getString(FIELD_TTN_PAYLOAD_RAW);
+    public String[] payloadPath() {
+        return PATH_TTN_PAYLOAD_RAW;
     }
 
 }
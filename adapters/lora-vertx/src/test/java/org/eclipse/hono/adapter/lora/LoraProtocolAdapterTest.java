@@ -14,23 +14,51 @@
 package org.eclipse.hono.adapter.lora;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.Mockito.*;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
 import org.apache.qpid.proton.message.Message;
 import org.eclipse.hono.adapter.http.HttpProtocolAdapterProperties;
+import org.eclipse.hono.adapter.lora.providers.ActilityProvider;
+import org.eclipse.hono.adapter.lora.providers.EverynetProvider;
 import org.eclipse.hono.adapter.lora.providers.LoraProvider;
 import org.eclipse.hono.adapter.lora.providers.LoraProviderMalformedPayloadException;
+import org.eclipse.hono.adapter.lora.providers.LoraTestUtil;
 import org.eclipse.hono.client.ClientErrorException;
+import org.eclipse.hono.client.CredentialsClient;
+import org.eclipse.hono.client.HonoClient;
+import org.eclipse.hono.client.MessageSender;
+import org.eclipse.hono.client.RegistrationClient;
+import org.eclipse.hono.client.TenantClient;
 import org.eclipse.hono.service.auth.DeviceUser;
 import org.eclipse.hono.service.http.HttpUtils;
+import org.eclipse.hono.util.CredentialsObject;
+import org.eclipse.hono.util.RegistrationConstants;
+import org.eclipse.hono.util.TenantObject;
 import org.junit.Before;
 import org.junit.Test;
 import org.mockito.ArgumentCaptor;
+import org.springframework.cache.concurrent.ConcurrentMapCacheManager;
 
 import io.netty.handler.codec.http.HttpResponseStatus;
+import io.opentracing.SpanContext;
+import io.vertx.core.Future;
+import io.vertx.core.Handler;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.http.HttpServerRequest;
 import io.vertx.core.http.HttpServerResponse;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
 import io.vertx.ext.web.RoutingContext;
+import io.vertx.proton.ProtonDelivery;
 
 /**
  * Verifies behavior of {@link LoraProtocolAdapter}.
@@ -44,6 +72,7 @@ public class LoraProtocolAdapterTest {
     private static final String TEST_PROVIDER = "bumlux";
 
     private LoraProtocolAdapter adapter;
+    private RegistrationClient regClient;
 
     /**
      * Sets up the fixture.
@@ -80,6 +109,87 @@ public class LoraProtocolAdapterTest {
         verify(routingContextMock.response()).setStatusCode(HttpResponseStatus.ACCEPTED.code());
     }
 
+    /**
+     * Verifies that the fields of an uplink message are extracted from the raw request body
+     * for providers declaring the paths to the fields they need.
+     */
+    @Test
+    public void handleProviderRouteExtractsFieldsFromRawBody() {
+        final RoutingContext routingContextMock = getRoutingContextMock();
+        when(routingContextMock.getBody()).thenReturn(LoraTestUtil.loadTestFile("everynet.uplink").toBuffer());
+
+        adapter.handleProviderRoute(routingContextMock, new EverynetProvider());
+
+        verify(routingContextMock, never()).getBodyAsJson();
+        verify(adapter).uploadTelemetryMessage(any(), eq(TEST_TENANT_ID), eq("85f5ab9ebc636142"),
+                argThat(buffer -> buffer.toJsonObject().getString("payload").equals("YnVtbHV4")),
+                eq(HttpUtils.CONTENT_TYPE_JSON));
+    }
+
+    /**
+     * Verifies that the provider route rejects a raw request body with a malformed field with bad request.
+     */
+    @Test
+    public void handleProviderRouteCausesBadRequestForMalformedRawBody() {
+        final RoutingContext routingContextMock = getRoutingContextMock();
+        when(routingContextMock.getBody()).thenReturn(new JsonObject().put("meta", "device").toBuffer());
+
+        adapter.handleProviderRoute(routingContextMock, new EverynetProvider());
+
+        verify(adapter, never()).uploadTelemetryMessage(any(), any(), any(), any(), any());
+        verifyBadRequest(routingContextMock);
+    }
+
+    /**
+     * Verifies that the provider route rejects a raw request body containing content
+     * after the message with bad request.
+     */
+    @Test
+    public void handleProviderRouteCausesBadRequestForTrailingContent() {
+        final RoutingContext routingContextMock = getRoutingContextMock();
+        final Buffer body = LoraTestUtil.loadTestFile("everynet.uplink").toBuffer().appendString(" {}");
+        when(routingContextMock.getBody()).thenReturn(body);
+
+        adapter.handleProviderRoute(routingContextMock, new EverynetProvider());
+
+        verify(adapter, never()).uploadTelemetryMessage(any(), any(), any(), any(), any());
+        verifyBadRequest(routingContextMock);
+    }
+
+    /**
+     * Verifies that the provider route rejects a raw request body containing a
+     * numeric device identifier with bad request.
+     */
+    @Test
+    public void handleProviderRouteCausesBadRequestForNonStringField() {
+        final RoutingContext routingContextMock = getRoutingContextMock();
+        final JsonObject message = LoraTestUtil.loadTestFile("everynet.uplink");
+        message.getJsonObject("meta").put("device", 4711);
+        when(routingContextMock.getBody()).thenReturn(message.toBuffer());
+
+        adapter.handleProviderRoute(routingContextMock, new EverynetProvider());
+
+        verify(adapter, never()).uploadTelemetryMessage(any(), any(), any(), any(), any());
+        verifyBadRequest(routingContextMock);
+    }
+
+    /**
+     * Verifies that the provider route rejects an Actility uplink message which does not
+     * contain the device identifier with bad request.
+     */
+    @Test
+    public void handleProviderRouteCausesBadRequestForActilityUplinkWithoutDeviceId() {
+        final RoutingContext routingContextMock = getRoutingContextMock();
+        final JsonObject message = LoraTestUtil.loadTestFile("actility.uplink");
+        message.getJsonObject("DevEUI_uplink").remove("DevEUI");
+        when(routingContextMock.getBodyAsJson()).thenReturn(message);
+
+        adapter.handleProviderRoute(routingContextMock, new ActilityProvider());
+
+        verify(adapter, never()).uploadTelemetryMessage(any(), any(), any(), any(), any());
+        verifyBadRequest(routingContextMock);
+    }
+
     /**
      * Verifies that an options request is routed to a provider correctly.
      */
@@ -233,6 +343,363 @@ public class LoraProtocolAdapterTest {
                 .equals(properties.getValue().get(LoraConstants.APP_PROPERTY_ORIG_LORA_PROVIDER))));
     }
 
+    /**
+     * Verifies that the batch route forwards each uplink message of the batch
+     * and reports the outcome of each message in the response.
+     */
+    @Test
+    public void handleBatchedProviderRouteUploadsAllUplinkMessages() {
+        final LoraProvider providerMock = getLoraProviderMock();
+        final MessageSender sender = givenATelemetrySender();
+        final RoutingContext routingContextMock = getRoutingContextMock();
+        givenARequestBody(routingContextMock, new JsonArray()
+                .add(new JsonObject().put("id", 1))
+                .add(new JsonObject().put("id", 2))
+                .toBuffer());
+
+        adapter.handleBatchedProviderRoute(routingContextMock, providerMock);
+
+        verify(routingContextMock).put(LoraConstants.APP_PROPERTY_ORIG_LORA_PROVIDER, TEST_PROVIDER);
+        verify(regClient, times(2)).assertRegistration(eq(TEST_DEVICE_ID), eq(TEST_GATEWAY_ID), (SpanContext) any());
+        verify(sender, times(2)).send(any(Message.class), (SpanContext) any());
+        verify(routingContextMock.response()).setStatusCode(HttpResponseStatus.OK.code());
+        final JsonObject summary = getResponseBody(routingContextMock);
+        assertEquals(2, summary.getInteger(LoraConstants.FIELD_BATCH_ACCEPTED).intValue());
+        assertEquals(0, summary.getInteger(LoraConstants.FIELD_BATCH_REJECTED).intValue());
+        assertEquals(2, summary.getJsonArray(LoraConstants.FIELD_BATCH_RESULTS).size());
+    }
+
+    /**
+     * Verifies that the batch route reports malformed items of a batch as rejected
+     * while still forwarding the valid uplink messages.
+     */
+    @Test
+    public void handleBatchedProviderRouteRejectsMalformedItems() {
+        final LoraProvider providerMock = getLoraProviderMock();
+        final MessageSender sender = givenATelemetrySender();
+        final RoutingContext routingContextMock = getRoutingContextMock();
+        givenARequestBody(routingContextMock, new JsonArray()
+                .add(new JsonObject().put("id", 1))
+                .add("not an object")
+                .toBuffer());
+
+        adapter.handleBatchedProviderRoute(routingContextMock, providerMock);
+
+        verify(sender).send(any(Message.class), (SpanContext) any());
+        verify(routingContextMock.response()).setStatusCode(HttpResponseStatus.OK.code());
+        final JsonObject summary = getResponseBody(routingContextMock);
+        assertEquals(1, summary.getInteger(LoraConstants.FIELD_BATCH_ACCEPTED).intValue());
+        assertEquals(1, summary.getInteger(LoraConstants.FIELD_BATCH_REJECTED).intValue());
+        assertEquals(HttpResponseStatus.BAD_REQUEST.code(), summary.getJsonArray(LoraConstants.FIELD_BATCH_RESULTS)
+                .getJsonObject(1).getInteger(LoraConstants.FIELD_BATCH_STATUS).intValue());
+    }
+
+    /**
+     * Verifies that the batch route rejects a request body that does not contain a JSON array.
+     */
+    @Test
+    public void handleBatchedProviderRouteCausesBadRequestForNonArrayBody() {
+        final LoraProvider providerMock = getLoraProviderMock();
+        final MessageSender sender = givenATelemetrySender();
+        final RoutingContext routingContextMock = getRoutingContextMock();
+        givenARequestBody(routingContextMock, new JsonObject().put("id", 1).toBuffer());
+
+        adapter.handleBatchedProviderRoute(routingContextMock, providerMock);
+
+        verify(sender, never()).send(any(Message.class), (SpanContext) any());
+        verify(routingContextMock.response()).setStatusCode(HttpResponseStatus.BAD_REQUEST.code());
+    }
+
+    /**
+     * Verifies that the batch route rejects an empty request body.
+     */
+    @Test
+    public void handleBatchedProviderRouteCausesBadRequestForEmptyBody() {
+        final LoraProvider providerMock = getLoraProviderMock();
+        givenATelemetrySender();
+        final RoutingContext routingContextMock = getRoutingContextMock();
+        givenARequestBody(routingContextMock, Buffer.buffer(" \n "));
+
+        adapter.handleBatchedProviderRoute(routingContextMock, providerMock);
+
+        verify(routingContextMock.response()).setStatusCode(HttpResponseStatus.BAD_REQUEST.code());
+    }
+
+    /**
+     * Verifies that the batch route pauses reading the request body while the maximum
+     * number of messages is being forwarded and resumes once the messages have been forwarded.
+     */
+    @Test
+    public void handleBatchedProviderRoutePausesRequestWhileMaxItemsAreInFlight() {
+        final LoraProvider providerMock = getLoraProviderMock();
+        final MessageSender sender = givenATelemetrySender();
+        final List<Future<ProtonDelivery>> deliveries = new ArrayList<>();
+        when(sender.send(any(Message.class), (SpanContext) any())).thenAnswer(invocation -> {
+            final Future<ProtonDelivery> delivery = Future.future();
+            deliveries.add(delivery);
+            return delivery;
+        });
+        final RoutingContext routingContextMock = getRoutingContextMock();
+        final JsonArray batch = new JsonArray();
+        for (int i = 0; i < 150; i++) {
+            batch.add(new JsonObject().put("id", i));
+        }
+        final String body = batch.encode();
+        final int split = body.length() / 2;
+        givenARequestBody(routingContextMock,
+                Buffer.buffer(body.substring(0, split)),
+                Buffer.buffer(body.substring(split)));
+
+        adapter.handleBatchedProviderRoute(routingContextMock, providerMock);
+
+        // THEN no more than 100 messages are being forwarded concurrently
+        assertEquals(100, deliveries.size());
+        verify(routingContextMock.request()).pause();
+        verify(routingContextMock.response(), never()).end();
+
+        // and the remaining messages are forwarded once the first messages have been forwarded
+        for (int i = 0; i < 100; i++) {
+            deliveries.get(i).complete(mock(ProtonDelivery.class));
+        }
+        assertEquals(150, deliveries.size());
+        deliveries.subList(100, 150).forEach(delivery -> delivery.complete(mock(ProtonDelivery.class)));
+        verify(routingContextMock.response()).setStatusCode(HttpResponseStatus.OK.code());
+        final JsonObject summary = getResponseBody(routingContextMock);
+        assertEquals(150, summary.getInteger(LoraConstants.FIELD_BATCH_ACCEPTED).intValue());
+    }
+
+    /**
+     * Verifies that the batch route does not try to send a response if the
+     * connection to the gateway has been closed.
+     */
+    @Test
+    public void handleBatchedProviderRouteDoesNotRespondOnClosedConnection() {
+        final LoraProvider providerMock = getLoraProviderMock();
+        givenATelemetrySender();
+        final RoutingContext routingContextMock = getRoutingContextMock();
+        when(routingContextMock.response().closed()).thenReturn(true);
+        givenARequestBody(routingContextMock, new JsonArray().add(new JsonObject().put("id", 1)).toBuffer());
+
+        adapter.handleBatchedProviderRoute(routingContextMock, providerMock);
+
+        verify(routingContextMock.response(), never()).end();
+    }
+
+    /**
+     * Verifies that the batch route stops reading a request body that exceeds
+     * the maximum payload size and only forwards the messages parsed up to that point.
+     */
+    @Test
+    public void handleBatchedProviderRouteRejectsBodyExceedingMaxPayloadSize() {
+        final HttpProtocolAdapterProperties config = new HttpProtocolAdapterProperties();
+        config.setMaxPayloadSize(200);
+        when(adapter.getConfig()).thenReturn(config);
+        final LoraProvider providerMock = getLoraProviderMock();
+        final MessageSender sender = givenATelemetrySender();
+        final RoutingContext routingContextMock = getRoutingContextMock();
+        givenARequestBody(routingContextMock,
+                Buffer.buffer("[{\"id\": 1},"),
+                new JsonObject().put("id", 2).put("data", new String(new char[200])).toBuffer());
+
+        adapter.handleBatchedProviderRoute(routingContextMock, providerMock);
+
+        verify(sender).send(any(Message.class), (SpanContext) any());
+        verify(routingContextMock.response()).setStatusCode(HttpResponseStatus.REQUEST_ENTITY_TOO_LARGE.code());
+        final JsonObject summary = getResponseBody(routingContextMock);
+        assertEquals(1, summary.getInteger(LoraConstants.FIELD_BATCH_ACCEPTED).intValue());
+    }
+
+    /**
+     * Verifies that the gateway of a LoRa device and the gateway's credentials are
+     * looked up only once while the mapping is cached.
+     */
+    @Test
+    public void getGatewayMappingUsesCachedMapping() {
+        final CredentialsClient credentialsClient = givenARegisteredGateway();
+
+        final Future<LoraProtocolAdapter.GatewayMapping> first = adapter.getGatewayMapping(TEST_TENANT_ID, TEST_DEVICE_ID);
+        final Future<LoraProtocolAdapter.GatewayMapping> second = adapter.getGatewayMapping(TEST_TENANT_ID, TEST_DEVICE_ID);
+
+        assertTrue(first.succeeded());
+        assertSame(first.result(), second.result());
+        assertEquals(TEST_GATEWAY_ID, second.result().getGateway().getString("device-id"));
+        verify(regClient).get(TEST_DEVICE_ID);
+        verify(regClient).get(TEST_GATEWAY_ID);
+        verify(credentialsClient).get(LoraConstants.FIELD_PSK, "lora-secret");
+    }
+
+    /**
+     * Verifies that the gateway and the gateway's credentials are looked up only once
+     * for multiple LoRa devices connected to the same gateway.
+     */
+    @Test
+    public void getGatewayMappingUsesCachedGatewayForOtherDevices() {
+        final CredentialsClient credentialsClient = givenARegisteredGateway();
+        when(regClient.get("otherLoraDevice")).thenReturn(Future.succeededFuture(new JsonObject()
+                .put("device-id", "otherLoraDevice")
+                .put(RegistrationConstants.FIELD_DATA, new JsonObject().put(LoraConstants.FIELD_VIA, TEST_GATEWAY_ID))));
+
+        final Future<LoraProtocolAdapter.GatewayMapping> first = adapter.getGatewayMapping(TEST_TENANT_ID, TEST_DEVICE_ID);
+        final Future<LoraProtocolAdapter.GatewayMapping> second = adapter.getGatewayMapping(TEST_TENANT_ID, "otherLoraDevice");
+
+        assertTrue(second.succeeded());
+        assertSame(first.result(), second.result());
+        verify(regClient).get(TEST_DEVICE_ID);
+        verify(regClient).get("otherLoraDevice");
+        verify(regClient).get(TEST_GATEWAY_ID);
+        verify(credentialsClient).get(LoraConstants.FIELD_PSK, "lora-secret");
+    }
+
+    /**
+     * Verifies that the gateway of a LoRa device is looked up again after the
+     * mapping has been invalidated.
+     */
+    @Test
+    public void getGatewayMappingLooksUpGatewayAfterInvalidation() {
+        final CredentialsClient credentialsClient = givenARegisteredGateway();
+
+        adapter.getGatewayMapping(TEST_TENANT_ID, TEST_DEVICE_ID);
+        adapter.invalidateGatewayMapping(TEST_TENANT_ID, TEST_DEVICE_ID);
+        final Future<LoraProtocolAdapter.GatewayMapping> result = adapter.getGatewayMapping(TEST_TENANT_ID, TEST_DEVICE_ID);
+
+        assertTrue(result.succeeded());
+        verify(regClient, times(2)).get(TEST_DEVICE_ID);
+        verify(credentialsClient, times(2)).get(LoraConstants.FIELD_PSK, "lora-secret");
+    }
+
+    /**
+     * Verifies that the cached gateway of a LoRa device is invalidated when an uplink message
+     * of the device is received from another gateway.
+     */
+    @Test
+    public void handleProviderRouteInvalidatesGatewayMappingIfGatewayHasChanged() {
+        givenARegisteredGateway();
+        adapter.getGatewayMapping(TEST_TENANT_ID, TEST_DEVICE_ID);
+
+        // WHEN an uplink message of the device is received from the gateway that has been cached
+        final RoutingContext routingContextMock = getRoutingContextMock();
+        adapter.handleProviderRoute(routingContextMock, getLoraProviderMock());
+        adapter.getGatewayMapping(TEST_TENANT_ID, TEST_DEVICE_ID);
+
+        // THEN the cached gateway is still used
+        verify(regClient).get(TEST_DEVICE_ID);
+
+        // WHEN an uplink message of the device is received from another gateway
+        when(routingContextMock.user()).thenReturn(new DeviceUser(TEST_TENANT_ID, "otherGateway"));
+        adapter.handleProviderRoute(routingContextMock, getLoraProviderMock());
+        adapter.getGatewayMapping(TEST_TENANT_ID, TEST_DEVICE_ID);
+
+        // THEN the gateway is looked up again
+        verify(regClient, times(2)).get(TEST_DEVICE_ID);
+    }
+
+    /**
+     * Verifies that the gateway of a LoRa device is looked up for each command
+     * if caching is disabled.
+     */
+    @Test
+    public void getGatewayMappingDoesNotCacheMappingIfDisabled() {
+        givenARegisteredGateway();
+        final LoraCommandProperties props = new LoraCommandProperties();
+        props.setGatewayCacheTimeout(0);
+        adapter.setLoraCommandProperties(props);
+
+        adapter.getGatewayMapping(TEST_TENANT_ID, TEST_DEVICE_ID);
+        adapter.getGatewayMapping(TEST_TENANT_ID, TEST_DEVICE_ID);
+
+        verify(regClient, times(2)).get(TEST_GATEWAY_ID);
+    }
+
+    private CredentialsClient givenARegisteredGateway() {
+        givenATelemetrySender();
+        adapter.setLoraCommandProperties(new LoraCommandProperties());
+        adapter.setCacheManager(new ConcurrentMapCacheManager());
+
+        final JsonObject loraConfig = new JsonObject()
+                .put(LoraConstants.FIELD_LORA_PROVIDER, TEST_PROVIDER)
+                .put(LoraConstants.FIELD_AUTH_ID, "lora-secret")
+                .put(LoraConstants.FIELD_LORA_DEVICE_PORT, 23)
+                .put(LoraConstants.FIELD_LORA_URL, "https://lns.example.com/");
+        when(regClient.get(TEST_DEVICE_ID)).thenReturn(Future.succeededFuture(new JsonObject()
+                .put("device-id", TEST_DEVICE_ID)
+                .put(RegistrationConstants.FIELD_DATA, new JsonObject().put(LoraConstants.FIELD_VIA, TEST_GATEWAY_ID))));
+        when(regClient.get(TEST_GATEWAY_ID)).thenReturn(Future.succeededFuture(new JsonObject()
+                .put("device-id", TEST_GATEWAY_ID)
+                .put(RegistrationConstants.FIELD_DATA, new JsonObject().put(LoraConstants.FIELD_LORA_CONFIG, loraConfig))));
+
+        final CredentialsClient credentialsClient = mock(CredentialsClient.class);
+        when(credentialsClient.get(anyString(), anyString())).thenReturn(Future.succeededFuture(
+                new CredentialsObject(TEST_GATEWAY_ID, "lora-secret", LoraConstants.FIELD_PSK)));
+        final HonoClient credentialsServiceClient = mock(HonoClient.class);
+        when(credentialsServiceClient.getOrCreateCredentialsClient(anyString()))
+                .thenReturn(Future.succeededFuture(credentialsClient));
+        adapter.setCredentialsServiceClient(credentialsServiceClient);
+        return credentialsClient;
+    }
+
+    private MessageSender givenATelemetrySender() {
+        final MessageSender sender = mock(MessageSender.class);
+        when(sender.send(any(Message.class), (SpanContext) any())).thenReturn(Future.succeededFuture(mock(ProtonDelivery.class)));
+        final HonoClient messagingClient = mock(HonoClient.class);
+        when(messagingClient.getOrCreateTelemetrySender(anyString())).thenReturn(Future.succeededFuture(sender));
+        adapter.setHonoMessagingClient(messagingClient);
+
+        final TenantClient tenantClient = mock(TenantClient.class);
+        when(tenantClient.get(anyString(), (SpanContext) any())).thenAnswer(invocation -> {
+            return Future.succeededFuture(TenantObject.from(invocation.getArgument(0), true));
+        });
+        final HonoClient tenantServiceClient = mock(HonoClient.class);
+        when(tenantServiceClient.getOrCreateTenantClient()).thenReturn(Future.succeededFuture(tenantClient));
+        adapter.setTenantServiceClient(tenantServiceClient);
+
+        final RegistrationClient regClient = mock(RegistrationClient.class);
+        when(regClient.assertRegistration(anyString(), any(), (SpanContext) any())).thenReturn(
+                Future.succeededFuture(new JsonObject().put(RegistrationConstants.FIELD_ASSERTION, "token")));
+        final HonoClient registrationServiceClient = mock(HonoClient.class);
+        when(registrationServiceClient.getOrCreateRegistrationClient(anyString())).thenReturn(Future.succeededFuture(regClient));
+        adapter.setRegistrationServiceClient(registrationServiceClient);
+        this.regClient = regClient;
+        return sender;
+    }
+
+    private void givenARequestBody(final RoutingContext routingContextMock, final Buffer... chunks) {
+        final HttpServerRequest request = routingContextMock.request();
+        final AtomicReference<Handler<Buffer>> dataHandler = new AtomicReference<>();
+        final AtomicReference<Handler<Void>> endHandler = new AtomicReference<>();
+        when(request.handler(any())).thenAnswer(invocation -> {
+            dataHandler.set(invocation.getArgument(0));
+            return request;
+        });
+        when(request.endHandler(any())).thenAnswer(invocation -> {
+            endHandler.set(invocation.getArgument(0));
+            return request;
+        });
+        final AtomicBoolean paused = new AtomicBoolean();
+        final AtomicInteger nextChunk = new AtomicInteger();
+        when(request.pause()).thenAnswer(invocation -> {
+            paused.set(true);
+            return request;
+        });
+        when(request.resume()).thenAnswer(invocation -> {
+            if (paused.getAndSet(false) || nextChunk.get() == 0) {
+                while (!paused.get() && nextChunk.get() < chunks.length) {
+                    dataHandler.get().handle(chunks[nextChunk.getAndIncrement()]);
+                }
+                if (!paused.get() && nextChunk.get() == chunks.length) {
+                    nextChunk.incrementAndGet();
+                    endHandler.get().handle(null);
+                }
+            }
+            return request;
+        });
+    }
+
+    private JsonObject getResponseBody(final RoutingContext routingContextMock) {
+        final ArgumentCaptor<Buffer> bodyCaptor = ArgumentCaptor.forClass(Buffer.class);
+        verify(routingContextMock.response()).write(bodyCaptor.capture());
+        return bodyCaptor.getValue().toJsonObject();
+    }
+
     private LoraProvider getLoraProviderMock() {
         final LoraProvider provider = mock(LoraProvider.class);
         when(provider.getProviderName()).thenReturn(TEST_PROVIDER);
@@ -248,6 +715,7 @@ public class LoraProtocolAdapterTest {
         final RoutingContext context = mock(RoutingContext.class);
         when(context.user()).thenReturn(new DeviceUser(TEST_TENANT_ID, TEST_GATEWAY_ID));
         when(context.response()).thenReturn(mock(HttpServerResponse.class));
+        when(context.request()).thenReturn(mock(HttpServerRequest.class));
         when(context.get(LoraConstants.APP_PROPERTY_ORIG_LORA_PROVIDER)).thenReturn(TEST_PROVIDER);
 
         return context;
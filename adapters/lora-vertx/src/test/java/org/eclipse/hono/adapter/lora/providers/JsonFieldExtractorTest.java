@@ -0,0 +1,142 @@
+/*******************************************************************************
+ * Copyright (c) 2019 Contributors to the Eclipse Foundation
+ *
+ * See the NOTICE file(s) distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *******************************************************************************/
+
+package org.eclipse.hono.adapter.lora.providers;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import org.junit.Test;
+
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+
+/**
+ * Verifies behavior of {@link JsonFieldExtractor}.
+ */
+public class JsonFieldExtractorTest {
+
+    /**
+     * Verifies that values of top level and nested properties are extracted
+     * while unrelated objects and arrays are skipped.
+     */
+    @Test
+    public void testExtractFindsNestedProperties() {
+        final Buffer json = new JsonObject()
+                .put("skipped", new JsonObject().put("device", "wrong").put("list", new JsonArray().add(1).add("two")))
+                .put("meta", new JsonObject().put("other", new JsonArray().add(new JsonObject().put("device", "x")))
+                        .put("device", "my-device"))
+                .put("type", "uplink")
+                .put("params", new JsonObject().put("payload", "YnVtbHV4"))
+                .toBuffer();
+
+        final String[] values = JsonFieldExtractor.extract(json,
+                new String[] { "type" },
+                new String[] { "meta", "device" },
+                new String[] { "params", "payload" });
+
+        assertArrayEquals(new String[] { "uplink", "my-device", "YnVtbHV4" }, values);
+    }
+
+    /**
+     * Verifies that missing properties and {@code null} paths result in {@code null} values.
+     */
+    @Test
+    public void testExtractReturnsNullForMissingProperties() {
+        final Buffer json = new JsonObject().put("meta", new JsonObject()).put("payload", (String) null).toBuffer();
+
+        final String[] values = JsonFieldExtractor.extract(json,
+                null,
+                new String[] { "meta", "device" },
+                new String[] { "payload" },
+                new String[] { "other", "device" });
+
+        assertEquals(4, values.length);
+        for (final String value : values) {
+            assertNull(value);
+        }
+    }
+
+    /**
+     * Verifies that the extractor yields the same values as the JSON object based
+     * extraction for each of the provider test messages.
+     */
+    @Test
+    public void testExtractMatchesJsonObjectBasedExtraction() {
+        assertSameValues(new EverynetProvider(), "everynet.uplink");
+        assertSameValues(new ThingsNetworkProvider(), "ttn.uplink");
+        assertSameValues(new ProximusProvider(), "proximus.uplink");
+        assertSameValues(new ObjeniousProvider(), "objenious.uplink");
+        assertSameValues(new ObjeniousProvider(), "objenious.join");
+    }
+
+    /**
+     * Verifies that a message that is not a JSON object is rejected.
+     */
+    @Test(expected = LoraProviderMalformedPayloadException.class)
+    public void testExtractFailsForNonObject() {
+        JsonFieldExtractor.extract(new JsonArray().add("device").toBuffer(), new String[] { "device" });
+    }
+
+    /**
+     * Verifies that a message that is not well formed JSON is rejected.
+     */
+    @Test(expected = LoraProviderMalformedPayloadException.class)
+    public void testExtractFailsForMalformedJson() {
+        JsonFieldExtractor.extract(Buffer.buffer("{\"meta\": {\"device\": "), new String[] { "meta", "device" });
+    }
+
+    /**
+     * Verifies that a message containing a scalar value where an object is expected is rejected.
+     */
+    @Test(expected = LoraProviderMalformedPayloadException.class)
+    public void testExtractFailsForScalarOnPath() {
+        JsonFieldExtractor.extract(new JsonObject().put("meta", "device").toBuffer(), new String[] { "meta", "device" });
+    }
+
+    /**
+     * Verifies that a message containing an object where a scalar value is expected is rejected.
+     */
+    @Test(expected = LoraProviderMalformedPayloadException.class)
+    public void testExtractFailsForObjectAsValue() {
+        JsonFieldExtractor.extract(new JsonObject().put("device", new JsonObject()).toBuffer(), new String[] { "device" });
+    }
+
+    /**
+     * Verifies that a message containing a number where a string value is expected is rejected.
+     */
+    @Test(expected = LoraProviderMalformedPayloadException.class)
+    public void testExtractFailsForNumberAsValue() {
+        JsonFieldExtractor.extract(new JsonObject().put("device", 4711).toBuffer(), new String[] { "device" });
+    }
+
+    /**
+     * Verifies that a message containing content after the root object is rejected
+     * even if all properties have been found before.
+     */
+    @Test(expected = LoraProviderMalformedPayloadException.class)
+    public void testExtractFailsForTrailingContent() {
+        JsonFieldExtractor.extract(Buffer.buffer("{\"device\": \"4711\"} garbage"), new String[] { "device" });
+    }
+
+    private static void assertSameValues(final JsonFieldLoraProvider provider, final String testFile) {
+        final JsonObject message = LoraTestUtil.loadTestFile(testFile);
+        final String[] values = JsonFieldExtractor.extract(message.toBuffer(),
+                provider.messageTypePath(), provider.deviceIdPath(), provider.payloadPath());
+        assertEquals(provider.extractMessageType(message), provider.getMessageType(values[0]));
+        assertEquals(provider.extractDeviceId(message), values[1]);
+        assertEquals(LoraUtils.getString(message, provider.payloadPath()), values[2]);
+    }
+}
@@ -57,4 +57,12 @@ public class ThingsNetworkProviderTest {
         final LoraMessageType type = provider.extractMessageType(loraMessage);
         Assert.assertEquals(LoraMessageType.UPLINK, type);
     }
+
+    /**
+     * Verifies that the provider accepts batches of uplink messages.
+     */
+    @Test
+    public void supportsBatchedUplinks() {
+        Assert.assertTrue(provider.supportsBatchedUplinks());
+    }
 }
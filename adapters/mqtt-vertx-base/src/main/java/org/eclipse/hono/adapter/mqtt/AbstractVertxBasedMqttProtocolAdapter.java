@@ -14,6 +14,7 @@
 package org.eclipse.hono.adapter.mqtt;
 
 import java.net.HttpURLConnection;
+import java.time.Instant;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.LinkedHashMap;
@@ -21,9 +22,13 @@ import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.function.BiConsumer;
 import java.util.stream.Collectors;
 
+import org.apache.qpid.proton.amqp.transport.AmqpError;
 import org.apache.qpid.proton.amqp.transport.ErrorCondition;
 import org.apache.qpid.proton.message.Message;
 import org.eclipse.hono.auth.Device;
@@ -48,6 +53,7 @@ import org.eclipse.hono.service.metric.MetricsTags;
 import org.eclipse.hono.service.metric.MetricsTags.Direction;
 import org.eclipse.hono.service.metric.MetricsTags.EndpointType;
 import org.eclipse.hono.service.metric.MetricsTags.ProcessingOutcome;
+import org.eclipse.hono.service.metric.MetricsTags.ProcessingStage;
 import org.eclipse.hono.tracing.TracingHelper;
 import org.eclipse.hono.util.CommandConstants;
 import org.eclipse.hono.util.Constants;
@@ -61,10 +67,12 @@ import io.netty.handler.codec.mqtt.MqttConnectReturnCode;
 import io.netty.handler.codec.mqtt.MqttQoS;
 import io.opentracing.Span;
 import io.opentracing.log.Fields;
+import io.opentracing.noop.NoopSpan;
 import io.opentracing.tag.Tags;
 import io.vertx.core.AsyncResult;
 import io.vertx.core.CompositeFuture;
 import io.vertx.core.Future;
+import io.vertx.core.Handler;
 import io.vertx.core.buffer.Buffer;
 import io.vertx.core.json.JsonObject;
 import io.vertx.mqtt.MqttConnectionException;
@@ -94,6 +102,7 @@ public abstract class AbstractVertxBasedMqttProtocolAdapter<T extends MqttProtoc
      */
     protected static final int MEMORY_PER_CONNECTION = 20_000; // 20KB: expected avg. memory consumption per connection
 
+    private static final long QUEUED_COMMANDS_RETRY_DELAY_MILLIS = 1000L;
     private static final int IANA_MQTT_PORT = 1883;
     private static final int IANA_SECURE_MQTT_PORT = 8883;
 
@@ -102,7 +111,10 @@ public abstract class AbstractVertxBasedMqttProtocolAdapter<T extends MqttProtoc
     private MqttServer server;
     private MqttServer insecureServer;
     private AuthHandler<MqttContext> authHandler;
+    private OfflineCommandQueue offlineCommandQueue;
     private final BiConsumer<CommandSubscription, CommandContext> afterCommandPubAckedConsumer = this::afterCommandPublished;
+    // <device address> of connected devices for which publishing queued commands is to be retried
+    private final Set<String> queuedCommandsRetries = ConcurrentHashMap.newKeySet();
 
     /**
      * Sets the authentication handler to use for authenticating devices.
@@ -144,11 +156,30 @@ public abstract class AbstractVertxBasedMqttProtocolAdapter<T extends MqttProtoc
         this.metrics = metrics;
     }
 
+    /**
+     * Sets the queue to use for commands for disconnected devices.
+     * <p>
+     * The queue should be shared by all instances of the adapter so that devices
+     * can re-connect to any instance in order to retrieve their queued commands.
+     * <p>
+     * Commands are only queued if the <em>offlineCommandQueueSize</em> configuration
+     * property is &gt; 0. If no queue is set in that case, a queue backed by an
+     * {@link InMemoryCommandStore} that is used by this instance only is created.
+     *
+     * @param offlineCommandQueue The queue.
+     * @throws NullPointerException if queue is {@code null}.
+     */
+    @Autowired(required = false)
+    public final void setOfflineCommandQueue(final OfflineCommandQueue offlineCommandQueue) {
+        this.offlineCommandQueue = Objects.requireNonNull(offlineCommandQueue);
+    }
+
     /**
      * Gets the metrics for this service.
      *
      * @return The metrics
      */
+    @Override
     protected final MqttAdapterMetrics getMetrics() {
         return metrics;
     }
@@ -283,6 +314,16 @@ public abstract class AbstractVertxBasedMqttProtocolAdapter<T extends MqttProtoc
                 getConnectionLimitManager()).orElse(createConnectionLimitManager());
         setConnectionLimitManager(connectionLimitManager);
 
+        if (getConfig().getOfflineCommandQueueSize() > 0) {
+            LOG.info("queuing up to {} commands for disconnected devices", getConfig().getOfflineCommandQueueSize());
+            if (offlineCommandQueue == null) {
+                offlineCommandQueue = new OfflineCommandQueue(
+                        new InMemoryCommandStore(getConfig().getOfflineCommandQueueSize()));
+            }
+        } else {
+            offlineCommandQueue = null;
+        }
+
         checkPortConfiguration()
             .compose(ok -> {
                 return CompositeFuture.all(bindSecureMqttServer(), bindInsecureMqttServer());
@@ -317,6 +358,10 @@ public abstract class AbstractVertxBasedMqttProtocolAdapter<T extends MqttProtoc
             insecureServerTracker.complete();
         }
 
+        if (offlineCommandQueue != null) {
+            offlineCommandQueue.closeConsumers(context);
+        }
+
         CompositeFuture.all(serverTracker, insecureServerTracker)
                 .compose(d -> stopFuture.complete(), stopFuture);
     }
@@ -339,7 +384,11 @@ public abstract class AbstractVertxBasedMqttProtocolAdapter<T extends MqttProtoc
                 .start();
 
         if (!endpoint.isCleanSession()) {
-            span.log("ignoring client's intent to resume existing session");
+            if (offlineCommandQueue == null) {
+                span.log("ignoring client's intent to resume existing session");
+            } else {
+                span.log("commands will be queued while client is disconnected");
+            }
         }
         if (endpoint.will() != null) {
             span.log("ignoring client's last will");
@@ -361,12 +410,36 @@ public abstract class AbstractVertxBasedMqttProtocolAdapter<T extends MqttProtoc
         }
 
         if (getConfig().isAuthenticationRequired()) {
-            return handleEndpointConnectionWithAuthentication(endpoint, currentSpan);
+            // the endpoint is not considered connected before the CONNACK has been sent,
+            // so we need to keep track of the device closing the connection while its
+            // connection request is queued
+            final AtomicBoolean connectionOpen = new AtomicBoolean(true);
+            if (getConnectionAdmissionController() != null) {
+                // the handler is replaced once the connection has been accepted
+                endpoint.closeHandler(v -> connectionOpen.set(false));
+            }
+            // limit the number of devices being authenticated concurrently
+            return admitConnectionRequest(
+                    getClaimedTenant(endpoint),
+                    connectionOpen::get,
+                    () -> handleEndpointConnectionWithAuthentication(endpoint, currentSpan));
         } else {
             return handleEndpointConnectionWithoutAuthentication(endpoint);
         }
     }
 
+    /**
+     * Gets the tenant that a device claims to belong to in the username of its CONNECT packet.
+     *
+     * @return The tenant or {@code null} if the device has not provided a username and password,
+     *         e.g. because it authenticates by means of a client certificate.
+     */
+    private String getClaimedTenant(final MqttEndpoint endpoint) {
+        // the credentials are extracted from the CONNECT packet synchronously
+        final Future<UsernamePasswordCredentials> credentials = getCredentials(endpoint);
+        return credentials.succeeded() ? credentials.result().getTenantId() : null;
+    }
+
     private void handleConnectionRequestResult(final MqttEndpoint endpoint,
             final Span currentSpan,
             final AsyncResult<Device> authenticationAttempt) {
@@ -458,7 +531,7 @@ public abstract class AbstractVertxBasedMqttProtocolAdapter<T extends MqttProtoc
 
     private Future<DeviceUser> authenticate(final MqttContext connectContext, final Span currentSpan) {
 
-        return authHandler.authenticateDevice(connectContext);
+        return recordProcessingStage(ProcessingStage.AUTHENTICATION, () -> authHandler.authenticateDevice(connectContext));
     }
 
     /**
@@ -522,7 +595,7 @@ public abstract class AbstractVertxBasedMqttProtocolAdapter<T extends MqttProtoc
                     // we do not support subscribing to commands using QoS 2
                     result = Future.failedFuture(new IllegalArgumentException("QoS 2 not supported for command subscription"));
                 } else {
-                    result = createCommandConsumer(endpoint, cmdSub, cmdHandler).map(consumer -> {
+                    result = closeOfflineCommandConsumer(cmdSub).compose(ok -> createCommandConsumer(endpoint, cmdSub, cmdHandler)).map(consumer -> {
                         final Map<String, Object> items = new HashMap<>(4);
                         items.put(Fields.EVENT, "accepting subscription");
                         items.put("filter", subscription.topicName());
@@ -572,6 +645,7 @@ public abstract class AbstractVertxBasedMqttProtocolAdapter<T extends MqttProtoc
                 if (f.succeeded() && f.result() instanceof CommandSubscription) {
                     final CommandSubscription s = (CommandSubscription) f.result();
                     sendConnectedTtdEvent(s.getTenant(), s.getDeviceId(), authenticatedDevice, span.context());
+                    publishQueuedCommands(endpoint, s, cmdHandler);
                 }
             });
             span.finish();
@@ -662,7 +736,11 @@ public abstract class AbstractVertxBasedMqttProtocolAdapter<T extends MqttProtoc
                     final Command command = commandContext.getCommand();
                     if (command.isValid()) {
                         addMicrometerSample(commandContext, timer);
-                        onCommandReceived(mqttEndpoint, sub, commandContext, cmdHandler);
+                        if (offlineCommandQueue != null && offlineCommandQueue.isKept(sub)) {
+                            queueCommand(sub, commandContext);
+                        } else {
+                            onCommandReceived(mqttEndpoint, sub, commandContext, cmdHandler);
+                        }
                     } else {
                         // issue credit so that application(s) can send the next command
                         commandContext.reject(new ErrorCondition(Constants.AMQP_BAD_REQUEST, "malformed command message"), 1);
@@ -678,18 +756,267 @@ public abstract class AbstractVertxBasedMqttProtocolAdapter<T extends MqttProtoc
                 livenessCheckInterval);
     }
 
+    private Future<Void> closeOfflineCommandConsumer(final CommandSubscription sub) {
+
+        if (offlineCommandQueue == null) {
+            return Future.succeededFuture();
+        }
+        // the consumer may have been kept open by another adapter instance
+        return offlineCommandQueue.closeConsumer(sub.getTenant(), sub.getDeviceId());
+    }
+
+    /**
+     * Keeps a command consumer open for a device that has disconnected.
+     * <p>
+     * Commands received for the device are added to the command store until either
+     * the device subscribes to commands again or the offline command TTL has elapsed.
+     * In the latter case the consumer is closed and the queued commands are discarded.
+     */
+    private void keepCommandConsumerForOfflineDevice(final CommandSubscription sub, final MessageConsumer consumer) {
+
+        offlineCommandQueue.keepConsumer(sub, consumer);
+        LOG.debug("queuing commands for disconnected device [tenant-id: {}, device-id: {}]",
+                sub.getTenant(), sub.getDeviceId());
+        vertx.setTimer(getConfig().getOfflineCommandTtl() * 1000L, tid -> {
+            if (offlineCommandQueue.release(sub)) {
+                LOG.debug("device [tenant-id: {}, device-id: {}] has not re-connected, discarding queued commands",
+                        sub.getTenant(), sub.getDeviceId());
+                consumer.close(null);
+                offlineCommandQueue.getStore().removeAll(sub.getTenant(), sub.getDeviceId());
+            }
+        });
+    }
+
+    private void queueCommand(final CommandSubscription sub, final CommandContext commandContext) {
+
+        final Command command = commandContext.getCommand();
+        final Instant expirationTime = Instant.now().plusSeconds(getConfig().getOfflineCommandTtl());
+        offlineCommandQueue.getStore().add(sub.getTenant(), sub.getDeviceId(), QueuedCommand.from(command, expirationTime))
+            .setHandler(addAttempt -> {
+                if (addAttempt.succeeded() && addAttempt.result()) {
+                    LOG.debug("queued command for disconnected device [tenant-id: {}, device-id: {}]",
+                            sub.getTenant(), sub.getDeviceId());
+                    commandContext.getCurrentSpan().log("queued command for disconnected device");
+                    commandContext.accept(1);
+                } else {
+                    final String reason = addAttempt.succeeded() ? "command queue is full" : addAttempt.cause().getMessage();
+                    LOG.debug("cannot queue command for disconnected device [tenant-id: {}, device-id: {}]: {}",
+                            sub.getTenant(), sub.getDeviceId(), reason);
+                    TracingHelper.logError(commandContext.getCurrentSpan(), "cannot queue command: " + reason);
+                    metrics.reportCommand(
+                            command.isOneWay() ? Direction.ONE_WAY : Direction.REQUEST,
+                            sub.getTenant(),
+                            ProcessingOutcome.UNDELIVERABLE,
+                            command.getPayloadSize(),
+                            getMicrometerSample(commandContext));
+                    // do not issue credit, the application would otherwise immediately
+                    // send the next command which cannot be queued either
+                    commandContext.reject(new ErrorCondition(
+                            addAttempt.succeeded() ? AmqpError.RESOURCE_LIMIT_EXCEEDED : AmqpError.INTERNAL_ERROR,
+                            "cannot queue command: " + reason), 0);
+                }
+            });
+    }
+
+    private void publishQueuedCommands(
+            final MqttEndpoint endpoint,
+            final CommandSubscription sub,
+            final CommandHandler<T> cmdHandler) {
+
+        if (offlineCommandQueue == null) {
+            return;
+        }
+        if (endpoint.isCleanSession()) {
+            // the device has started a new session, so commands that have
+            // been queued during a previous session are discarded
+            offlineCommandQueue.getStore().removeAll(sub.getTenant(), sub.getDeviceId()).setHandler(commands -> {
+                if (commands.succeeded() && !commands.result().isEmpty()) {
+                    LOG.debug("discarding {} commands queued for device [tenant-id: {}, device-id: {}] during previous session",
+                            commands.result().size(), sub.getTenant(), sub.getDeviceId());
+                }
+            });
+            return;
+        }
+        offlineCommandQueue.getStore().removeAll(sub.getTenant(), sub.getDeviceId()).setHandler(commands -> {
+            if (commands.failed()) {
+                LOG.debug("cannot retrieve queued commands for device [tenant-id: {}, device-id: {}]",
+                        sub.getTenant(), sub.getDeviceId(), commands.cause());
+            } else if (!commands.result().isEmpty()) {
+                LOG.debug("publishing {} queued commands to device [tenant-id: {}, device-id: {}, MQTT client-id: {}]",
+                        commands.result().size(), sub.getTenant(), sub.getDeviceId(), sub.getClientId());
+                commands.result().forEach(command -> publishQueuedCommand(endpoint, sub, command, cmdHandler));
+            }
+        });
+    }
+
+    /**
+     * Publishes a command that has been queued while the device was disconnected.
+     * <p>
+     * The command is published in the same way as commands received while the device
+     * is connected, i.e. commands published with QoS 1 are subject to the limit of
+     * in-flight commands and are tracked until the device acknowledges them.
+     * Commands that cannot be published or that are not acknowledged are put back
+     * to the command store. Publishing them is retried after a delay if the device
+     * is still connected.
+     */
+    private void publishQueuedCommand(
+            final MqttEndpoint endpoint,
+            final CommandSubscription sub,
+            final QueuedCommand command,
+            final CommandHandler<T> cmdHandler) {
+
+        if (command.isExpired()) {
+            LOG.debug("discarding expired command [name: {}] for device [tenant-id: {}, device-id: {}]",
+                    command.getName(), sub.getTenant(), sub.getDeviceId());
+            return;
+        }
+        final Span span = tracer.buildSpan("publish queued command")
+                .ignoreActiveSpan()
+                .withTag(Tags.SPAN_KIND.getKey(), Tags.SPAN_KIND_PRODUCER)
+                .withTag(Tags.COMPONENT.getKey(), getTypeName())
+                .withTag(MessageHelper.APP_PROPERTY_TENANT_ID, sub.getTenant())
+                .withTag(MessageHelper.APP_PROPERTY_DEVICE_ID, sub.getDeviceId())
+                .withTag(TracingHelper.TAG_CLIENT_ID.getKey(), sub.getClientId())
+                .withTag(TracingHelper.TAG_QOS.getKey(), sub.getQos().toString())
+                .start();
+
+        if (MqttQoS.AT_LEAST_ONCE.equals(sub.getQos())) {
+            // limit the number of commands waiting for a PUBACK from the device
+            cmdHandler.reserveInFlightSlot(
+                    span,
+                    slotReserved -> publishQueuedCommand(endpoint, sub, command, span, cmdHandler),
+                    released -> requeueCommand(endpoint, sub, command, span, cmdHandler));
+        } else {
+            publishQueuedCommand(endpoint, sub, command, span, cmdHandler);
+        }
+    }
+
+    private void publishQueuedCommand(
+            final MqttEndpoint endpoint,
+            final CommandSubscription sub,
+            final QueuedCommand command,
+            final Span span,
+            final CommandHandler<T> cmdHandler) {
+
+        final boolean qos1 = MqttQoS.AT_LEAST_ONCE.equals(sub.getQos());
+        if (!endpoint.isConnected()) {
+            span.log("connection to device has been closed");
+            requeueCommand(endpoint, sub, command, span, cmdHandler);
+            if (qos1) {
+                cmdHandler.releaseInFlightSlot();
+            }
+            return;
+        }
+
+        final Direction direction = command.getRequestId().isEmpty() ? Direction.ONE_WAY : Direction.REQUEST;
+        final Buffer payload = Optional.ofNullable(command.getPayload()).orElseGet(Buffer::buffer);
+        final Sample timer = metrics.startTimer();
+        final Handler<Void> publishedHandler = published -> {
+            metrics.reportCommand(direction, sub.getTenant(), ProcessingOutcome.FORWARDED, payload.length(), timer);
+            LOG.debug("Published queued command to device [tenant-id: {}, device-id: {}, MQTT client-id: {}, QoS: {}]",
+                    sub.getTenant(), sub.getDeviceId(), sub.getClientId(), sub.getQos());
+            span.log("Published command to device");
+            span.finish();
+        };
+
+        endpoint.publish(
+                sub.getCommandPublishTopic(command.getRequestId(), command.getName()),
+                payload,
+                sub.getQos(),
+                false,
+                false,
+                sentHandler -> {
+                    if (sentHandler.succeeded()) {
+                        if (qos1) {
+                            cmdHandler.addToWaitingForAcknowledgement(
+                                    sentHandler.result(),
+                                    sub,
+                                    span,
+                                    publishedHandler,
+                                    released -> requeueCommand(endpoint, sub, command, span, cmdHandler));
+                        } else {
+                            publishedHandler.handle(null);
+                        }
+                    } else {
+                        LOG.debug(
+                                "Error publishing queued command to device [tenant-id: {}, device-id: {}, MQTT client-id: {}, QoS: {}]",
+                                sub.getTenant(), sub.getDeviceId(), sub.getClientId(), sub.getQos(),
+                                sentHandler.cause());
+                        TracingHelper.logError(span, sentHandler.cause());
+                        metrics.reportCommand(direction, sub.getTenant(), ProcessingOutcome.from(sentHandler.cause()),
+                                payload.length(), timer);
+                        requeueCommand(endpoint, sub, command, span, cmdHandler);
+                        if (qos1) {
+                            cmdHandler.releaseInFlightSlot();
+                        }
+                    }
+                });
+    }
+
+    private void requeueCommand(
+            final MqttEndpoint endpoint,
+            final CommandSubscription sub,
+            final QueuedCommand command,
+            final Span span,
+            final CommandHandler<T> cmdHandler) {
+
+        offlineCommandQueue.getStore().requeue(sub.getTenant(), sub.getDeviceId(), command).setHandler(requeueAttempt -> {
+            if (requeueAttempt.succeeded()) {
+                LOG.debug("queued command [name: {}] for device [tenant-id: {}, device-id: {}] again",
+                        command.getName(), sub.getTenant(), sub.getDeviceId());
+                span.log("queued command again");
+                retryPublishingQueuedCommands(endpoint, sub, cmdHandler);
+            } else {
+                LOG.debug("cannot queue command [name: {}] for device [tenant-id: {}, device-id: {}] again",
+                        command.getName(), sub.getTenant(), sub.getDeviceId(), requeueAttempt.cause());
+                TracingHelper.logError(span, "cannot queue command again");
+            }
+            span.finish();
+        });
+    }
+
+    /**
+     * Publishes the commands queued for a device again after a delay.
+     * <p>
+     * Commands that have been put back to the queue while the device is still connected
+     * would otherwise only be published once the device re-connects. Retries for the
+     * same device are coalesced.
+     */
+    private void retryPublishingQueuedCommands(
+            final MqttEndpoint endpoint,
+            final CommandSubscription sub,
+            final CommandHandler<T> cmdHandler) {
+
+        final String key = Device.asAddress(sub.getTenant(), sub.getDeviceId());
+        if (endpoint.isConnected() && cmdHandler.hasSubscription(sub) && queuedCommandsRetries.add(key)) {
+            vertx.setTimer(QUEUED_COMMANDS_RETRY_DELAY_MILLIS, tid -> {
+                queuedCommandsRetries.remove(key);
+                if (endpoint.isConnected() && cmdHandler.hasSubscription(sub)) {
+                    LOG.debug("retrying to publish queued commands to device [tenant-id: {}, device-id: {}]",
+                            sub.getTenant(), sub.getDeviceId());
+                    publishQueuedCommands(endpoint, sub, cmdHandler);
+                }
+            });
+        }
+    }
+
     void handlePublishedMessage(final MqttContext context) {
         // there is no way to extract a SpanContext from an MQTT 3.1 message
         // so we start a new one for every message
         final MqttQoS qos = context.message().qosLevel();
-        final Span span = tracer.buildSpan("PUBLISH")
-            .ignoreActiveSpan()
-            .withTag(Tags.SPAN_KIND.getKey(), Tags.SPAN_KIND_SERVER)
-            .withTag(Tags.MESSAGE_BUS_DESTINATION.getKey(), context.message().topicName())
-            .withTag(TracingHelper.TAG_QOS.getKey(), qos.toString())
-            .withTag(Tags.COMPONENT.getKey(), getTypeName())
-            .withTag(TracingHelper.TAG_CLIENT_ID.getKey(), context.deviceEndpoint().clientIdentifier())
-            .start();
+        final Span span;
+        if (isSampled(context)) {
+            span = tracer.buildSpan("PUBLISH")
+                .ignoreActiveSpan()
+                .withTag(Tags.SPAN_KIND.getKey(), Tags.SPAN_KIND_SERVER)
+                .withTag(Tags.MESSAGE_BUS_DESTINATION.getKey(), context.message().topicName())
+                .withTag(TracingHelper.TAG_QOS.getKey(), qos.toString())
+                .withTag(Tags.COMPONENT.getKey(), getTypeName())
+                .withTag(TracingHelper.TAG_CLIENT_ID.getKey(), context.deviceEndpoint().clientIdentifier())
+                .start();
+        } else {
+            span = NoopSpan.INSTANCE;
+        }
         context.setTracingContext(span.context());
         context.setTimer(getMetrics().startTimer());
 
@@ -716,6 +1043,24 @@ public abstract class AbstractVertxBasedMqttProtocolAdapter<T extends MqttProtoc
             });
     }
 
+    private boolean isSampled(final MqttContext context) {
+
+        final ResourceIdentifier topic = context.topic();
+        final String deviceId;
+        if (topic != null && topic.getResourceId() != null) {
+            deviceId = topic.getResourceId();
+        } else if (context.authenticatedDevice() != null) {
+            deviceId = context.authenticatedDevice().getDeviceId();
+        } else {
+            deviceId = null;
+        }
+        return isSampled(
+                context.tenant(),
+                deviceId,
+                context.endpoint() == null ? MetricsTags.EndpointType.UNKNOWN : context.endpoint(),
+                MetricsTags.QoS.from(context.message().qosLevel().value()));
+    }
+
     private Future<Void> checkTopic(final MqttContext context) {
         if (context.topic() == null) {
             return Future.failedFuture(new ClientErrorException(HttpURLConnection.HTTP_BAD_REQUEST, "malformed topic name"));
@@ -989,15 +1334,20 @@ public abstract class AbstractVertxBasedMqttProtocolAdapter<T extends MqttProtoc
                     String.format("Content-Type %s does not match payload", ctx.contentType())));
         } else {
 
-            final Span currentSpan = tracer.buildSpan("upload " + endpoint)
-                    .asChildOf(ctx.getTracingContext())
-                    .ignoreActiveSpan()
-                    .withTag(Tags.COMPONENT.getKey(), getTypeName())
-                    .withTag(Tags.SPAN_KIND.getKey(), Tags.SPAN_KIND_CLIENT)
-                    .withTag(MessageHelper.APP_PROPERTY_TENANT_ID, tenant)
-                    .withTag(MessageHelper.APP_PROPERTY_DEVICE_ID, deviceId)
-                    .withTag(TracingHelper.TAG_AUTHENTICATED.getKey(), ctx.authenticatedDevice() != null)
-                    .start();
+            final Span currentSpan;
+            if (!TracingHelper.isNoop(ctx.getTracingContext())) {
+                currentSpan = tracer.buildSpan("upload " + endpoint)
+                        .asChildOf(ctx.getTracingContext())
+                        .ignoreActiveSpan()
+                        .withTag(Tags.COMPONENT.getKey(), getTypeName())
+                        .withTag(Tags.SPAN_KIND.getKey(), Tags.SPAN_KIND_CLIENT)
+                        .withTag(MessageHelper.APP_PROPERTY_TENANT_ID, tenant)
+                        .withTag(MessageHelper.APP_PROPERTY_DEVICE_ID, deviceId)
+                        .withTag(TracingHelper.TAG_AUTHENTICATED.getKey(), ctx.authenticatedDevice() != null)
+                        .start();
+            } else {
+                currentSpan = NoopSpan.INSTANCE;
+            }
 
             final Future<JsonObject> tokenTracker = getRegistrationAssertion(tenant, deviceId,
                     ctx.authenticatedDevice(), currentSpan.context());
@@ -1019,9 +1369,11 @@ public abstract class AbstractVertxBasedMqttProtocolAdapter<T extends MqttProtoc
                     customizeDownstreamMessage(downstreamMessage, ctx);
 
                     if (ctx.isAtLeastOnce()) {
-                        return sender.sendAndWaitForOutcome(downstreamMessage, currentSpan.context());
+                        return recordProcessingStage(ProcessingStage.DOWNSTREAM_SEND,
+                                () -> sender.sendAndWaitForOutcome(downstreamMessage, currentSpan.context()));
                     } else {
-                        return sender.send(downstreamMessage, currentSpan.context());
+                        return recordProcessingStage(ProcessingStage.DOWNSTREAM_SEND,
+                                () -> sender.send(downstreamMessage, currentSpan.context()));
                     }
             }).compose(delivery -> {
 
@@ -1062,11 +1414,21 @@ public abstract class AbstractVertxBasedMqttProtocolAdapter<T extends MqttProtoc
     protected final void close(final MqttEndpoint endpoint, final Device authenticatedDevice, final CommandHandler<T> cmdHandler) {
         final Span span = newSpan("CLOSE", endpoint, authenticatedDevice);
         onClose(endpoint);
-        cmdHandler.removeAllSubscriptions((tenant, device) -> {
-            final Span closeHandlerSpan = newSpan("Send Disconnected Event", endpoint, authenticatedDevice);
-            sendDisconnectedTtdEvent(tenant, device, authenticatedDevice, span.context())
-                    .setHandler(sendAttempt -> closeHandlerSpan.finish());
-        });
+        cmdHandler.releasePendingCommands();
+        if (offlineCommandQueue != null && !endpoint.isCleanSession()) {
+            cmdHandler.releaseAllSubscriptions((subscription, commandConsumer) -> {
+                final Span closeHandlerSpan = newSpan("Send Disconnected Event", endpoint, authenticatedDevice);
+                sendDisconnectedTtdEvent(subscription.getTenant(), subscription.getDeviceId(), authenticatedDevice, span.context())
+                        .setHandler(sendAttempt -> closeHandlerSpan.finish());
+                keepCommandConsumerForOfflineDevice(subscription, commandConsumer);
+            });
+        } else {
+            cmdHandler.removeAllSubscriptions((tenant, device) -> {
+                final Span closeHandlerSpan = newSpan("Send Disconnected Event", endpoint, authenticatedDevice);
+                sendDisconnectedTtdEvent(tenant, device, authenticatedDevice, span.context())
+                        .setHandler(sendAttempt -> closeHandlerSpan.finish());
+            });
+        }
         sendDisconnectedEvent(endpoint.clientIdentifier(), authenticatedDevice);
         if (authenticatedDevice == null) {
             LOG.debug("connection to anonymous device [clientId: {}] closed", endpoint.clientIdentifier());
@@ -1097,6 +1459,28 @@ public abstract class AbstractVertxBasedMqttProtocolAdapter<T extends MqttProtoc
     protected void onClose(final MqttEndpoint endpoint) {
     }
 
+    /**
+     * Creates the context for processing a message that a device has published.
+     * <p>
+     * This default implementation creates a context which parses the message's topic name
+     * on first access.
+     * <p>
+     * Subclasses may override this method in order to provide a topic that has already been
+     * parsed for a previous message published to the same topic.
+     * 
+     * @param message The published message.
+     * @param endpoint The connection over which the message has been published.
+     * @param authenticatedDevice The authenticated identity of the device or {@code null}
+     *                            if the device has not been authenticated.
+     * @return The context.
+     */
+    protected MqttContext createPublishContext(
+            final MqttPublishMessage message,
+            final MqttEndpoint endpoint,
+            final Device authenticatedDevice) {
+        return MqttContext.fromPublishPacket(message, endpoint, authenticatedDevice);
+    }
+
     /**
      * Extracts credentials from a client's MQTT <em>CONNECT</em> packet.
      * <p>
@@ -1223,26 +1607,37 @@ public abstract class AbstractVertxBasedMqttProtocolAdapter<T extends MqttProtoc
         final Command command = commandContext.getCommand();
         // example: control/DEFAULT_TENANT/4711/req/xyz/light
         // one-way commands have an empty requestId, like control/DEFAULT_TENANT/4711/req//light
-        final String commandRequestId = (command.isOneWay() ? "" : command.getRequestId());
-        final String topic = String.format("%s/%s/%s/%s/%s/%s",
-                subscription.getEndpoint(),
-                // no need to include tenant and device ID in topic
-                // if device is authenticated,
-                // i.e. publish to control///req/xyz/light
-                subscription.isAuthenticated() ? "" : subscription.getTenant(),
-                subscription.isAuthenticated() ? "" : subscription.getDeviceId(),
-                subscription.getRequestPart(),
-                commandRequestId,
+        final String topic = subscription.getCommandPublishTopic(
+                command.isOneWay() ? null : command.getRequestId(),
                 command.getName());
         LOG.debug("Publishing command to device [tenant-id: {}, device-id: {}, MQTT client-id: {}, QoS: {}]",
                 subscription.getTenant(), subscription.getDeviceId(), subscription.getClientId(),
                 subscription.getQos());
-        final Map<String, String> items = new HashMap<>(3);
-        items.put(Fields.EVENT, "Publishing command to device");
-        items.put(TracingHelper.TAG_CLIENT_ID.getKey(), subscription.getClientId());
-        items.put(TracingHelper.TAG_QOS.getKey(), subscription.getQos().toString());
-        commandContext.getCurrentSpan().log(items);
+        if (!TracingHelper.isNoop(commandContext.getCurrentSpan().context())) {
+            final Map<String, String> items = new HashMap<>(3);
+            items.put(Fields.EVENT, "Publishing command to device");
+            items.put(TracingHelper.TAG_CLIENT_ID.getKey(), subscription.getClientId());
+            items.put(TracingHelper.TAG_QOS.getKey(), subscription.getQos().toString());
+            commandContext.getCurrentSpan().log(items);
+        }
+
+        if (MqttQoS.AT_LEAST_ONCE.equals(subscription.getQos())) {
+            // limit the number of commands waiting for a PUBACK from the device
+            cmdHandler.reserveInFlightSlot(commandContext,
+                    slotReserved -> publishCommand(endpoint, topic, subscription, commandContext, cmdHandler));
+        } else {
+            publishCommand(endpoint, topic, subscription, commandContext, cmdHandler);
+        }
+    }
 
+    private void publishCommand(
+            final MqttEndpoint endpoint,
+            final String topic,
+            final CommandSubscription subscription,
+            final CommandContext commandContext,
+            final CommandHandler<T> cmdHandler) {
+
+        final Command command = commandContext.getCommand();
         endpoint.publish(topic, command.getPayload(), subscription.getQos(), false, false, sentHandler -> {
             if (sentHandler.succeeded()) {
                 if (MqttQoS.AT_LEAST_ONCE.equals(subscription.getQos())) {
@@ -1264,6 +1659,9 @@ public abstract class AbstractVertxBasedMqttProtocolAdapter<T extends MqttProtoc
                         command.getPayloadSize(),
                         getMicrometerSample(commandContext));
                 commandContext.release(1);
+                if (MqttQoS.AT_LEAST_ONCE.equals(subscription.getQos())) {
+                    cmdHandler.releaseInFlightSlot();
+                }
             }
         });
     }
@@ -1281,12 +1679,14 @@ public abstract class AbstractVertxBasedMqttProtocolAdapter<T extends MqttProtoc
         LOG.debug("Published command to device [tenant-id: {}, device-id: {}, MQTT client-id: {}, QoS: {}]",
                 subscription.getTenant(), subscription.getDeviceId(), subscription.getClientId(),
                 subscription.getQos());
-        final Map<String, String> items = new HashMap<>(4);
-        items.put(Fields.EVENT, "Published command to device");
-        items.put(Tags.MESSAGE_BUS_DESTINATION.getKey(), subscription.getTopic());
-        items.put(TracingHelper.TAG_CLIENT_ID.getKey(), subscription.getClientId());
-        items.put(TracingHelper.TAG_QOS.getKey(), subscription.getQos().toString());
-        commandContext.getCurrentSpan().log(items);
+        if (!TracingHelper.isNoop(commandContext.getCurrentSpan().context())) {
+            final Map<String, String> items = new HashMap<>(4);
+            items.put(Fields.EVENT, "Published command to device");
+            items.put(Tags.MESSAGE_BUS_DESTINATION.getKey(), subscription.getTopic());
+            items.put(TracingHelper.TAG_CLIENT_ID.getKey(), subscription.getClientId());
+            items.put(TracingHelper.TAG_QOS.getKey(), subscription.getQos().toString());
+            commandContext.getCurrentSpan().log(items);
+        }
         commandContext.accept(1);
     }
 
@@ -1320,7 +1720,7 @@ public abstract class AbstractVertxBasedMqttProtocolAdapter<T extends MqttProtoc
         final CommandHandler<T> cmdHandler = new CommandHandler<>(vertx, getConfig());
         endpoint.closeHandler(v -> close(endpoint, authenticatedDevice, cmdHandler));
         endpoint.publishHandler(
-                message -> handlePublishedMessage(MqttContext.fromPublishPacket(message, endpoint, authenticatedDevice)));
+                message -> handlePublishedMessage(createPublishContext(message, endpoint, authenticatedDevice)));
         endpoint.publishAcknowledgeHandler(msgId -> cmdHandler.handlePubAck(msgId, afterCommandPubAckedConsumer));
         endpoint.subscribeHandler(subscribeMsg -> onSubscribe(endpoint, authenticatedDevice, subscribeMsg, cmdHandler));
         endpoint.unsubscribeHandler(unsubscribeMsg -> onUnsubscribe(endpoint, authenticatedDevice, unsubscribeMsg, cmdHandler));
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2016, 2018 Contributors to the Eclipse Foundation
+ * Copyright (c) 2016, 2019 Contributors to the Eclipse Foundation
  *
  * See the NOTICE file(s) distributed with this work for additional
  * information regarding copyright ownership.
@@ -13,7 +13,9 @@
 
 package org.eclipse.hono.adapter.mqtt;
 
+import io.opentracing.Span;
 import io.opentracing.log.Fields;
+import io.vertx.core.Handler;
 import io.vertx.core.Vertx;
 import org.eclipse.hono.client.CommandContext;
 import org.eclipse.hono.client.MessageConsumer;
@@ -22,24 +24,45 @@ import org.eclipse.hono.util.TriTuple;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.function.BiConsumer;
 
 /**
  * A class that tracks command subscriptions, unsubscriptions and handles PUBACKs.
+ * <p>
+ * The number of commands published with QoS 1 that are waiting for a PUBACK is limited
+ * to the configured maximum number of in-flight commands. Further commands are queued
+ * and published in the order of their arrival once the device has acknowledged
+ * (or failed to acknowledge) a previously published command. Commands that have not been
+ * acknowledged in time are detected by a single periodic scan per connection.
+ * <p>
+ * Besides commands received from an application, the handler also tracks commands that
+ * have been queued while the device was disconnected. Such commands have already been
+ * settled with the application and are therefore handed back to the caller by means of
+ * handlers instead of being released.
  * 
  * @param <T> The type of configuration properties the mqtt adapter supports/requires.
  */
 public final class CommandHandler<T extends MqttProtocolAdapterProperties> {
     private static final Logger LOG = LoggerFactory.getLogger(CommandHandler.class);
     private final Map<String, TriTuple<CommandSubscription, MessageConsumer, Object>> subscriptions = new ConcurrentHashMap<>();
-    private final Map<Integer, TriTuple<Long, CommandSubscription, CommandContext>> waitingForAcknowledgement = new ConcurrentHashMap<>();
+    // <msg ID, command>
+    private final Map<Integer, InFlightCommand> waitingForAcknowledgement = new ConcurrentHashMap<>();
+    private final Deque<PendingCommand> waitingForInFlightSlot = new ArrayDeque<>();
+    private final AtomicBoolean ackTimeoutScanActive = new AtomicBoolean(false);
     private final Vertx vertx;
     private final T config;
+    private int inFlightCommands;
 
     /**
      * Creates a new CommandHandler instance.
@@ -64,12 +87,12 @@ public final class CommandHandler<T extends MqttProtocolAdapterProperties> {
         Objects.requireNonNull(msgId);
         LOG.trace("Acknowledgement received for command [Msg-id: {}] that has been sent to device.", msgId);
         Optional.ofNullable(removeFromWaitingForAcknowledgement(msgId)).ifPresent(value -> {
-            cancelTimer(value.one());
 
-            final CommandSubscription subscription = value.two();
-            final CommandContext commandContext = value.three();
-            if (consumer != null) {
-                consumer.accept(subscription, commandContext);
+            final CommandSubscription subscription = value.subscription;
+            if (value.commandContext == null) {
+                value.acknowledgedHandler.handle(null);
+            } else if (consumer != null) {
+                consumer.accept(subscription, value.commandContext);
             }
             LOG.debug(
                     "Acknowledged [Msg-id: {}] command to device [tenant-id: {}, device-id: {}, MQTT client-id: {}, QoS: {}]",
@@ -79,7 +102,108 @@ public final class CommandHandler<T extends MqttProtocolAdapterProperties> {
             items.put(Fields.EVENT, "Published command has been acknowledged");
             items.put(TracingHelper.TAG_CLIENT_ID.getKey(), subscription.getClientId());
             items.put(TracingHelper.TAG_QOS.getKey(), subscription.getQos().toString());
-            commandContext.getCurrentSpan().log(items);
+            value.span.log(items);
+            releaseInFlightSlot();
+        });
+    }
+
+    /**
+     * Reserves a slot in the connection's window of commands that have been published
+     * with QoS 1 but have not been acknowledged yet.
+     * <p>
+     * If the window is exhausted, the command is queued until a slot becomes available.
+     * The slot is released again when the device acknowledges the command, when the
+     * acknowledgement times out or by means of {@link #releaseInFlightSlot()}.
+     *
+     * @param commandContext The command to be published.
+     * @param publishHandler The handler to invoke once the slot has been reserved.
+     * @throws NullPointerException if any of the parameters are {@code null}.
+     */
+    public void reserveInFlightSlot(final CommandContext commandContext, final Handler<Void> publishHandler) {
+
+        Objects.requireNonNull(commandContext);
+        Objects.requireNonNull(publishHandler);
+
+        reserveInFlightSlot(commandContext.getCurrentSpan(), publishHandler, released -> commandContext.release(1));
+    }
+
+    /**
+     * Reserves a slot in the connection's window of commands that have been published
+     * with QoS 1 but have not been acknowledged yet.
+     * <p>
+     * This method is intended for commands that have been queued while the device was
+     * disconnected. If the window is exhausted, the command is queued until a slot becomes
+     * available.
+     *
+     * @param span The OpenTracing span to use for tracking the publishing of the command.
+     * @param publishHandler The handler to invoke once the slot has been reserved.
+     * @param releaseHandler The handler to invoke if the connection is closed before a slot
+     *                       has become available.
+     * @throws NullPointerException if any of the parameters are {@code null}.
+     */
+    public void reserveInFlightSlot(
+            final Span span,
+            final Handler<Void> publishHandler,
+            final Handler<Void> releaseHandler) {
+
+        Objects.requireNonNull(span);
+        Objects.requireNonNull(publishHandler);
+        Objects.requireNonNull(releaseHandler);
+
+        final boolean slotAvailable;
+        synchronized (waitingForInFlightSlot) {
+            slotAvailable = inFlightCommands < config.getMaxInFlightCommands();
+            if (slotAvailable) {
+                inFlightCommands++;
+            } else {
+                waitingForInFlightSlot.addLast(new PendingCommand(span, publishHandler, releaseHandler));
+            }
+        }
+        if (slotAvailable) {
+            publishHandler.handle(null);
+        } else {
+            LOG.trace("maximum number of in-flight commands reached, queuing command");
+            span.log("maximum number of in-flight commands reached, queuing command");
+        }
+    }
+
+    /**
+     * Releases a slot in the connection's window of commands that have been published
+     * with QoS 1 but have not been acknowledged yet.
+     * <p>
+     * If commands are waiting for a slot, the slot is handed over to the command
+     * that has been queued first.
+     */
+    public void releaseInFlightSlot() {
+
+        final PendingCommand nextCommand;
+        synchronized (waitingForInFlightSlot) {
+            nextCommand = waitingForInFlightSlot.pollFirst();
+            if (nextCommand == null && inFlightCommands > 0) {
+                inFlightCommands--;
+            }
+        }
+        if (nextCommand != null) {
+            nextCommand.publishHandler.handle(null);
+        }
+    }
+
+    /**
+     * Releases all commands that are waiting for a slot in the connection's window of
+     * in-flight commands.
+     * <p>
+     * This method should be invoked when the connection to the device is closed.
+     */
+    public void releasePendingCommands() {
+
+        final List<PendingCommand> pendingCommands;
+        synchronized (waitingForInFlightSlot) {
+            pendingCommands = new ArrayList<>(waitingForInFlightSlot);
+            waitingForInFlightSlot.clear();
+        }
+        pendingCommands.forEach(pendingCommand -> {
+            pendingCommand.span.log("connection to device has been closed");
+            pendingCommand.releaseHandler.handle(null);
         });
     }
 
@@ -99,16 +223,54 @@ public final class CommandHandler<T extends MqttProtocolAdapterProperties> {
         Objects.requireNonNull(subscription);
         Objects.requireNonNull(commandContext);
 
-        waitingForAcknowledgement.put(msgId, TriTuple.of(startTimer(msgId), subscription, commandContext));
+        addToWaitingForAcknowledgement(msgId, new InFlightCommand(getAckDeadline(), subscription, commandContext,
+                commandContext.getCurrentSpan(), null, released -> commandContext.release(1)));
+    }
+
+    /**
+     * Stores the published message id of a command that has been queued while the device
+     * was disconnected.
+     *
+     * @param msgId The id of the command (message) that has been published.
+     * @param subscription The device's command subscription.
+     * @param span The OpenTracing span to use for tracking the publishing of the command.
+     * @param acknowledgedHandler The handler to invoke when the device has acknowledged the command.
+     * @param releaseHandler The handler to invoke if the device does not acknowledge the command in time.
+     * @throws NullPointerException if any of the parameters are {@code null}.
+     */
+    public void addToWaitingForAcknowledgement(
+            final Integer msgId,
+            final CommandSubscription subscription,
+            final Span span,
+            final Handler<Void> acknowledgedHandler,
+            final Handler<Void> releaseHandler) {
+
+        Objects.requireNonNull(msgId);
+        Objects.requireNonNull(subscription);
+        Objects.requireNonNull(span);
+        Objects.requireNonNull(acknowledgedHandler);
+        Objects.requireNonNull(releaseHandler);
+
+        addToWaitingForAcknowledgement(msgId,
+                new InFlightCommand(getAckDeadline(), subscription, null, span, acknowledgedHandler, releaseHandler));
+    }
+
+    private long getAckDeadline() {
+        return System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(config.getCommandAckTimeout());
+    }
+
+    private void addToWaitingForAcknowledgement(final Integer msgId, final InFlightCommand command) {
+        waitingForAcknowledgement.put(msgId, command);
+        startAckTimeoutScan();
     }
 
     /**
      * Removes the entry from the waitingForAcknowledgement map for the given msgId.
      *
      * @param msgId The id of the command (message) that has been published.
-     * @return The trituple object containing timer-id, commandSubscription and commandContext for the given msgId.
+     * @return The command published with the given msgId.
      */
-    private TriTuple<Long, CommandSubscription, CommandContext> removeFromWaitingForAcknowledgement(
+    private InFlightCommand removeFromWaitingForAcknowledgement(
             final Integer msgId) {
         return waitingForAcknowledgement.remove(msgId);
     }
@@ -127,6 +289,20 @@ public final class CommandHandler<T extends MqttProtocolAdapterProperties> {
         subscriptions.put(subscription.getTopic(), TriTuple.of(subscription, commandConsumer, null));
     }
 
+    /**
+     * Checks if a command subscription is still active.
+     *
+     * @param subscription The device's command subscription.
+     * @return {@code true} if the subscription has been added and not been removed or released since.
+     * @throws NullPointerException if subscription is {@code null}.
+     */
+    public boolean hasSubscription(final CommandSubscription subscription) {
+        Objects.requireNonNull(subscription);
+        return Optional.ofNullable(subscriptions.get(subscription.getTopic()))
+                .map(value -> value.one() == subscription)
+                .orElse(false);
+    }
+
     /**
      * Closes the command consumer and removes the subscription entry for the given topic.
      *
@@ -154,6 +330,20 @@ public final class CommandHandler<T extends MqttProtocolAdapterProperties> {
         subscriptions.keySet().forEach(topic -> removeSubscription(topic, consumer));
     }
 
+    /**
+     * Removes all the subscription entries without closing the command consumers.
+     *
+     * @param consumer The consumer to be invoked with each removed subscription and its command consumer.
+     *                 The consumer is responsible for eventually closing the command consumer.
+     * @throws NullPointerException if consumer is {@code null}.
+     **/
+    public void releaseAllSubscriptions(final BiConsumer<CommandSubscription, MessageConsumer> consumer) {
+        Objects.requireNonNull(consumer);
+        subscriptions.keySet().forEach(topic -> {
+            Optional.ofNullable(subscriptions.remove(topic)).ifPresent(value -> consumer.accept(value.one(), value.two()));
+        });
+    }
+
     /**
      * Stores the command subscription along with the command consumer.
      *
@@ -173,13 +363,22 @@ public final class CommandHandler<T extends MqttProtocolAdapterProperties> {
         });
     }
 
-    private long startTimer(final Integer msgId) {
+    private void startAckTimeoutScan() {
 
-        return vertx.setTimer(config.getCommandAckTimeout(), timerId -> {
+        if (ackTimeoutScanActive.compareAndSet(false, true)) {
+            // scan twice per timeout period so that a command is released
+            // at the latest 1.5 times the timeout after it has been published
+            final long interval = Math.max(1, config.getCommandAckTimeout() / 2);
+            vertx.setPeriodic(interval, this::releaseTimedOutCommands);
+        }
+    }
+
+    private void releaseTimedOutCommands(final Long timerId) {
 
-            Optional.ofNullable(removeFromWaitingForAcknowledgement(msgId)).ifPresent(value -> {
-                final CommandSubscription subscription = value.two();
-                final CommandContext commandContext = value.three();
+        final long now = System.nanoTime();
+        waitingForAcknowledgement.forEach((msgId, value) -> {
+            if (now - value.deadline >= 0 && waitingForAcknowledgement.remove(msgId, value)) {
+                final CommandSubscription subscription = value.subscription;
                 LOG.debug(
                         "Timed out waiting for acknowledgment for command sent to device [tenant-id: {}, device-id: {}, MQTT client-id: {}, QoS: {}]",
                         subscription.getTenant(), subscription.getDeviceId(), subscription.getClientId(),
@@ -188,14 +387,67 @@ public final class CommandHandler<T extends MqttProtocolAdapterProperties> {
                 items.put(Fields.EVENT, "Timed out waiting for acknowledgment for command sent to device");
                 items.put(TracingHelper.TAG_CLIENT_ID.getKey(), subscription.getClientId());
                 items.put(TracingHelper.TAG_QOS.getKey(), subscription.getQos().toString());
-                commandContext.getCurrentSpan().log(items);
-                commandContext.release(1);
-            });
+                value.span.log(items);
+                value.releaseHandler.handle(null);
+                releaseInFlightSlot();
+            }
         });
+        if (waitingForAcknowledgement.isEmpty()) {
+            vertx.cancelTimer(timerId);
+            ackTimeoutScanActive.set(false);
+            LOG.trace("no more commands waiting for acknowledgement, stopped scan [timer-id: {}]", timerId);
+            // a command might have been published in the meantime
+            if (!waitingForAcknowledgement.isEmpty()) {
+                startAckTimeoutScan();
+            }
+        }
     }
 
-    private void cancelTimer(final Long timerId) {
-        vertx.cancelTimer(timerId);
-        LOG.trace("Canceled Timer [timer-id: {}}", timerId);
+    /**
+     * A command waiting for a slot in the window of in-flight commands.
+     */
+    private static final class PendingCommand {
+
+        private final Span span;
+        private final Handler<Void> publishHandler;
+        private final Handler<Void> releaseHandler;
+
+        private PendingCommand(
+                final Span span,
+                final Handler<Void> publishHandler,
+                final Handler<Void> releaseHandler) {
+            this.span = span;
+            this.publishHandler = publishHandler;
+            this.releaseHandler = releaseHandler;
+        }
+    }
+
+    /**
+     * A command that has been published with QoS 1 and that is waiting for a PUBACK.
+     */
+    private static final class InFlightCommand {
+
+        private final long deadline;
+        private final CommandSubscription subscription;
+        // null for commands that have been queued while the device was disconnected
+        private final CommandContext commandContext;
+        private final Span span;
+        private final Handler<Void> acknowledgedHandler;
+        private final Handler<Void> releaseHandler;
+
+        private InFlightCommand(
+                final long deadline,
+                final CommandSubscription subscription,
+                final CommandContext commandContext,
+                final Span span,
+                final Handler<Void> acknowledgedHandler,
+                final Handler<Void> releaseHandler) {
+            this.deadline = deadline;
+            this.subscription = subscription;
+            this.commandContext = commandContext;
+            this.span = span;
+            this.acknowledgedHandler = acknowledgedHandler;
+            this.releaseHandler = releaseHandler;
+        }
     }
 }
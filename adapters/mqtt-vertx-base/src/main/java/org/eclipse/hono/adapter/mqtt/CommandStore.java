@@ -0,0 +1,72 @@
+/*******************************************************************************
+ * Copyright (c) 2019 Contributors to the Eclipse Foundation
+ *
+ * See the NOTICE file(s) distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *******************************************************************************/
+
+package org.eclipse.hono.adapter.mqtt;
+
+import java.util.List;
+
+import io.vertx.core.Future;
+
+/**
+ * A store for commands that have been received for devices which are not connected.
+ * <p>
+ * The MQTT adapter uses the store to keep commands for devices that have connected
+ * with the <em>clean session</em> flag set to {@code false} and that have lost their
+ * connection. The commands are published to the device once it re-connects and subscribes
+ * to commands again.
+ */
+public interface CommandStore {
+
+    /**
+     * Adds a command to a device's queue.
+     *
+     * @param tenantId The tenant that the device belongs to.
+     * @param deviceId The identifier of the device.
+     * @param command The command to add.
+     * @return A future indicating the outcome of the operation.
+     *         The future will be succeeded with {@code true} if the command has been added
+     *         or {@code false} if the device's queue is full.
+     *         Otherwise the future will be failed.
+     * @throws NullPointerException if any of the parameters is {@code null}.
+     */
+    Future<Boolean> add(String tenantId, String deviceId, QueuedCommand command);
+
+    /**
+     * Puts a command back to a device's queue.
+     * <p>
+     * This method is used for commands that have been removed from the queue but
+     * that could not be published to the device. The command is put ahead of all
+     * commands that have been queued after it, i.e. usually at the head of the queue,
+     * regardless of the maximum queue size because it has been accepted already.
+     *
+     * @param tenantId The tenant that the device belongs to.
+     * @param deviceId The identifier of the device.
+     * @param command The command to put back.
+     * @return A future indicating the outcome of the operation.
+     * @throws NullPointerException if any of the parameters is {@code null}.
+     */
+    Future<Void> requeue(String tenantId, String deviceId, QueuedCommand command);
+
+    /**
+     * Removes all commands from a device's queue.
+     *
+     * @param tenantId The tenant that the device belongs to.
+     * @param deviceId The identifier of the device.
+     * @return A future indicating the outcome of the operation.
+     *         The future will be succeeded with the (non-expired) commands in the order
+     *         in which they have been added. The list will be empty if the device has no
+     *         commands queued. Otherwise the future will be failed.
+     * @throws NullPointerException if any of the parameters is {@code null}.
+     */
+    Future<List<QueuedCommand>> removeAll(String tenantId, String deviceId);
+}
@@ -1,5 +1,5 @@
 /**
- * Copyright (c) 2018 Contributors to the Eclipse Foundation
+ * Copyright (c) 2018, 2019 Contributors to the Eclipse Foundation
  *
  * See the NOTICE file(s) distributed with this work for additional
  * information regarding copyright ownership.
@@ -46,6 +46,7 @@ public class CommandSubscription {
     private String clientId;
     private String topic;
     private boolean isAuthenticated;
+    private String commandTopicPrefix;
 
     private CommandSubscription(final String topic) {
         Objects.requireNonNull(topic);
@@ -98,6 +99,14 @@ public class CommandSubscription {
                 deviceId = authenticatedDevice.getDeviceId();
             }
         }
+        // no need to include tenant and device ID in topic
+        // if device is authenticated,
+        // i.e. publish to control///req/xyz/light
+        commandTopicPrefix = new StringBuilder(endpoint).append('/')
+                .append(isAuthenticated ? "" : tenant).append('/')
+                .append(isAuthenticated ? "" : deviceId).append('/')
+                .append(req).append('/')
+                .toString();
     }
 
     private CommandSubscription(final String topic, final Device authenticatedDevice, final MqttQoS qos, final String clientId) {
@@ -169,6 +178,27 @@ public class CommandSubscription {
         return req;
     }
 
+    /**
+     * Gets the topic that a command is published to.
+     * <p>
+     * The topic consists of the prefix determined when this subscription has been
+     * created, the request ID and the command name,
+     * e.g. {@code control/DEFAULT_TENANT/4711/req/xyz/light}.
+     *
+     * @param requestId The command's request ID or {@code null} for a one-way command.
+     * @param commandName The name of the command.
+     * @return The topic.
+     */
+    public String getCommandPublishTopic(final String requestId, final String commandName) {
+        final StringBuilder topic = new StringBuilder(commandTopicPrefix.length()
+                + (requestId == null ? 0 : requestId.length()) + commandName.length() + 1)
+                .append(commandTopicPrefix);
+        if (requestId != null) {
+            topic.append(requestId);
+        }
+        return topic.append('/').append(commandName).toString();
+    }
+
     /**
      * Gets the authentication status, which indicates the need to publish on tenant/device-id for unauthenticated
      * devices.
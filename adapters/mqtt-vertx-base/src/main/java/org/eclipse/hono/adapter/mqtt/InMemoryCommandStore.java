@@ -0,0 +1,117 @@
+/*******************************************************************************
+ * Copyright (c) 2019 Contributors to the Eclipse Foundation
+ *
+ * See the NOTICE file(s) distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *******************************************************************************/
+
+package org.eclipse.hono.adapter.mqtt;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.eclipse.hono.auth.Device;
+
+import io.vertx.core.Future;
+
+/**
+ * A command store that keeps the queued commands in memory.
+ * <p>
+ * The commands are available to all adapter instances sharing the store within
+ * the same process.
+ */
+public final class InMemoryCommandStore implements CommandStore {
+
+    // <device address, commands>
+    private final Map<String, Deque<QueuedCommand>> queues = new ConcurrentHashMap<>();
+    private final int maxQueueSize;
+
+    /**
+     * Creates a new store.
+     *
+     * @param maxQueueSize The maximum number of commands to queue per device.
+     *                     If 0, no commands are added to the store.
+     * @throws IllegalArgumentException if the queue size is &lt; 0.
+     */
+    public InMemoryCommandStore(final int maxQueueSize) {
+        if (maxQueueSize < 0) {
+            throw new IllegalArgumentException("queue size must be >= 0");
+        }
+        this.maxQueueSize = maxQueueSize;
+    }
+
+    @Override
+    public Future<Boolean> add(final String tenantId, final String deviceId, final QueuedCommand command) {
+
+        Objects.requireNonNull(tenantId);
+        Objects.requireNonNull(deviceId);
+        Objects.requireNonNull(command);
+
+        final AtomicBoolean added = new AtomicBoolean(false);
+        queues.compute(Device.asAddress(tenantId, deviceId), (key, queue) -> {
+            final Deque<QueuedCommand> result = queue == null ? new ArrayDeque<>() : queue;
+            result.removeIf(QueuedCommand::isExpired);
+            if (result.size() < maxQueueSize) {
+                result.addLast(command);
+                added.set(true);
+            }
+            return result.isEmpty() ? null : result;
+        });
+        return Future.succeededFuture(added.get());
+    }
+
+    @Override
+    public Future<Void> requeue(final String tenantId, final String deviceId, final QueuedCommand command) {
+
+        Objects.requireNonNull(tenantId);
+        Objects.requireNonNull(deviceId);
+        Objects.requireNonNull(command);
+
+        queues.compute(Device.asAddress(tenantId, deviceId), (key, queue) -> {
+            final Deque<QueuedCommand> result = queue == null ? new ArrayDeque<>() : queue;
+            // skip commands that have been queued before the given one
+            final Deque<QueuedCommand> predecessors = new ArrayDeque<>();
+            while (!result.isEmpty() && result.peekFirst().getSequenceNumber() < command.getSequenceNumber()) {
+                predecessors.addLast(result.pollFirst());
+            }
+            result.addFirst(command);
+            while (!predecessors.isEmpty()) {
+                result.addFirst(predecessors.pollLast());
+            }
+            return result;
+        });
+        return Future.succeededFuture();
+    }
+
+    @Override
+    public Future<List<QueuedCommand>> removeAll(final String tenantId, final String deviceId) {
+
+        Objects.requireNonNull(tenantId);
+        Objects.requireNonNull(deviceId);
+
+        final Deque<QueuedCommand> queue = queues.remove(Device.asAddress(tenantId, deviceId));
+        if (queue == null) {
+            return Future.succeededFuture(Collections.emptyList());
+        }
+        final List<QueuedCommand> result = new ArrayList<>(queue.size());
+        queue.forEach(command -> {
+            if (!command.isExpired()) {
+                result.add(command);
+            }
+        });
+        return Future.succeededFuture(result);
+    }
+}
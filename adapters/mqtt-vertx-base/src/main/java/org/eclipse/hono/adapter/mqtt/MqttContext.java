@@ -36,6 +36,7 @@ public final class MqttContext extends MapBasedExecutionContext {
     private MqttEndpoint deviceEndpoint;
     private Device authenticatedDevice;
     private ResourceIdentifier topic;
+    private boolean topicParsed;
     private String contentType;
     private Sample timer;
     private MetricsTags.EndpointType endpoint;
@@ -61,6 +62,9 @@ public final class MqttContext extends MapBasedExecutionContext {
 
     /**
      * Creates a new context for a published message.
+     * <p>
+     * The message's topic name is parsed into a resource identifier
+     * on first access only.
      * 
      * @param publishedMessage The published MQTT message.
      * @param deviceEndpoint The endpoint representing the device
@@ -74,6 +78,27 @@ public final class MqttContext extends MapBasedExecutionContext {
             final MqttEndpoint deviceEndpoint,
             final Device authenticatedDevice) {
 
+        return fromPublishPacket(publishedMessage, deviceEndpoint, authenticatedDevice, null);
+    }
+
+    /**
+     * Creates a new context for a published message.
+     * 
+     * @param publishedMessage The published MQTT message.
+     * @param deviceEndpoint The endpoint representing the device
+     *                       that has published the message.
+     * @param authenticatedDevice The authenticated device identity.
+     * @param topic The message's topic name parsed into a resource identifier or {@code null}
+     *              if the topic name should be parsed on first access.
+     * @return The context.
+     * @throws NullPointerException if message or endpoint are {@code null}.
+     */
+    public static MqttContext fromPublishPacket(
+            final MqttPublishMessage publishedMessage,
+            final MqttEndpoint deviceEndpoint,
+            final Device authenticatedDevice,
+            final ResourceIdentifier topic) {
+
         Objects.requireNonNull(publishedMessage);
         Objects.requireNonNull(deviceEndpoint);
 
@@ -81,13 +106,8 @@ public final class MqttContext extends MapBasedExecutionContext {
         result.message = publishedMessage;
         result.deviceEndpoint = deviceEndpoint;
         result.authenticatedDevice = authenticatedDevice;
-        if (publishedMessage.topicName() != null) {
-            try {
-                result.topic = ResourceIdentifier.fromString(publishedMessage.topicName());
-                result.endpoint = MetricsTags.EndpointType.fromString(result.topic.getEndpoint());
-            } catch (final IllegalArgumentException e) {
-                // malformed topic
-            }
+        if (topic != null) {
+            result.setTopic(topic);
         }
         return result;
     }
@@ -160,9 +180,27 @@ public final class MqttContext extends MapBasedExecutionContext {
      *         parsed into a resource identifier.
      */
     public ResourceIdentifier topic() {
+
+        if (!topicParsed) {
+            ResourceIdentifier parsedTopic = null;
+            if (message != null && message.topicName() != null) {
+                try {
+                    parsedTopic = ResourceIdentifier.fromString(message.topicName());
+                } catch (final IllegalArgumentException e) {
+                    // malformed topic
+                }
+            }
+            setTopic(parsedTopic);
+        }
         return topic;
     }
 
+    private void setTopic(final ResourceIdentifier topic) {
+        this.topic = topic;
+        this.endpoint = topic == null ? null : MetricsTags.EndpointType.fromString(topic.getEndpoint());
+        this.topicParsed = true;
+    }
+
     /**
      * Gets the tenant that the device belongs to that published
      * the message.
@@ -175,7 +213,7 @@ public final class MqttContext extends MapBasedExecutionContext {
 
         if (authenticatedDevice != null) {
             return authenticatedDevice.getTenantId();
-        } else if (topic != null) {
+        } else if (topic() != null) {
             return topic.getTenantId();
         } else {
             return null;
@@ -192,7 +230,7 @@ public final class MqttContext extends MapBasedExecutionContext {
      *         contain a topic.
      */
     public MetricsTags.EndpointType endpoint() {
-        return endpoint;
+        return topic() == null ? null : endpoint;
     }
 
     /**
@@ -25,7 +25,19 @@ public class MqttProtocolAdapterProperties extends ProtocolAdapterProperties {
      * The default number of milliseconds to wait for PUBACK.
      */
     protected static final int DEFAULT_COMMAND_ACK_TIMEOUT = 100;
+    /**
+     * The default number of seconds that commands are queued for a disconnected device.
+     */
+    protected static final int DEFAULT_OFFLINE_COMMAND_TTL = 600;
+    /**
+     * The default maximum number of commands published with QoS 1 that may be waiting for a PUBACK.
+     */
+    protected static final int DEFAULT_MAX_IN_FLIGHT_COMMANDS = 10;
+
     private int commandAckTimeout = DEFAULT_COMMAND_ACK_TIMEOUT;
+    private int offlineCommandQueueSize = 0;
+    private int offlineCommandTtl = DEFAULT_OFFLINE_COMMAND_TTL;
+    private int maxInFlightCommands = DEFAULT_MAX_IN_FLIGHT_COMMANDS;
 
     /**
      * Gets the waiting for acknowledgement time out in milliseconds for commands published with QoS 1.
@@ -58,4 +70,108 @@ public class MqttProtocolAdapterProperties extends ProtocolAdapterProperties {
         }
         this.commandAckTimeout = timeout;
     }
+
+    /**
+     * Gets the maximum number of commands published to a device with QoS 1 that
+     * may be waiting for the device's acknowledgement.
+     * <p>
+     * Further commands for the device are queued until the device has acknowledged
+     * a previously published command or the acknowledgement has timed out.
+     * <p>
+     * The default value is {@link #DEFAULT_MAX_IN_FLIGHT_COMMANDS}.
+     *
+     * @return The number of commands.
+     */
+    public final int getMaxInFlightCommands() {
+        return maxInFlightCommands;
+    }
+
+    /**
+     * Sets the maximum number of commands published to a device with QoS 1 that
+     * may be waiting for the device's acknowledgement.
+     * <p>
+     * Further commands for the device are queued until the device has acknowledged
+     * a previously published command or the acknowledgement has timed out.
+     * <p>
+     * The default value is {@link #DEFAULT_MAX_IN_FLIGHT_COMMANDS}.
+     *
+     * @param maxInFlightCommands The number of commands.
+     * @throws IllegalArgumentException if the number is &lt; 1.
+     */
+    public final void setMaxInFlightCommands(final int maxInFlightCommands) {
+        if (maxInFlightCommands < 1) {
+            throw new IllegalArgumentException("number of in-flight commands must be > 0");
+        }
+        this.maxInFlightCommands = maxInFlightCommands;
+    }
+
+    /**
+     * Gets the maximum number of commands to queue for a disconnected device.
+     * <p>
+     * Commands are only queued for devices that have connected with the <em>clean session</em>
+     * flag set to {@code false}. The queued commands are published to the device once it has
+     * re-connected and subscribed to commands again.
+     * <p>
+     * The default value is 0 which means that commands are not queued.
+     *
+     * @return The number of commands.
+     */
+    public final int getOfflineCommandQueueSize() {
+        return offlineCommandQueueSize;
+    }
+
+    /**
+     * Sets the maximum number of commands to queue for a disconnected device.
+     * <p>
+     * Commands are only queued for devices that have connected with the <em>clean session</em>
+     * flag set to {@code false}. The queued commands are published to the device once it has
+     * re-connected and subscribed to commands again.
+     * <p>
+     * The default value is 0 which means that commands are not queued.
+     *
+     * @param size The number of commands.
+     * @throws IllegalArgumentException if the size is negative.
+     */
+    public final void setOfflineCommandQueueSize(final int size) {
+        if (size < 0) {
+            throw new IllegalArgumentException("size must not be negative");
+        }
+        this.offlineCommandQueueSize = size;
+    }
+
+    /**
+     * Gets the number of seconds that commands are queued for a disconnected device.
+     * <p>
+     * The adapter stops receiving commands for a device once the device has been
+     * disconnected for this period of time and discards all commands queued for the device.
+     * Commands that have been queued for longer than this period are not published
+     * to the device.
+     * <p>
+     * The default value is {@link #DEFAULT_OFFLINE_COMMAND_TTL}.
+     *
+     * @return The number of seconds.
+     */
+    public final int getOfflineCommandTtl() {
+        return offlineCommandTtl;
+    }
+
+    /**
+     * Sets the number of seconds that commands are queued for a disconnected device.
+     * <p>
+     * The adapter stops receiving commands for a device once the device has been
+     * disconnected for this period of time and discards all commands queued for the device.
+     * Commands that have been queued for longer than this period are not published
+     * to the device.
+     * <p>
+     * The default value is {@link #DEFAULT_OFFLINE_COMMAND_TTL}.
+     *
+     * @param ttl The number of seconds.
+     * @throws IllegalArgumentException if the ttl is &lt; 1.
+     */
+    public final void setOfflineCommandTtl(final int ttl) {
+        if (ttl < 1) {
+            throw new IllegalArgumentException("ttl must be > 0");
+        }
+        this.offlineCommandTtl = ttl;
+    }
 }
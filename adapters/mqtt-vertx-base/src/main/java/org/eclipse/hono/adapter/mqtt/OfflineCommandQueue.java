@@ -0,0 +1,202 @@
+/*******************************************************************************
+ * Copyright (c) 2019 Contributors to the Eclipse Foundation
+ *
+ * See the NOTICE file(s) distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *******************************************************************************/
+
+package org.eclipse.hono.adapter.mqtt;
+
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.eclipse.hono.auth.Device;
+import org.eclipse.hono.client.MessageConsumer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import io.vertx.core.Context;
+import io.vertx.core.Future;
+import io.vertx.core.Vertx;
+
+/**
+ * The commands queued for devices that have connected with the <em>clean session</em> flag
+ * set to {@code false} and that have lost their connection.
+ * <p>
+ * A single instance is supposed to be shared by all instances of the MQTT adapter running
+ * in the same process, so that a device retrieves its queued commands regardless of the
+ * adapter instance it re-connects to. Besides the store containing the commands, the queue
+ * also keeps track of the command consumers that are kept open for disconnected devices.
+ * There is at most one such consumer per device. A consumer is always closed on the vert.x
+ * context that it has been created on.
+ */
+public final class OfflineCommandQueue {
+
+    private static final Logger LOG = LoggerFactory.getLogger(OfflineCommandQueue.class);
+
+    // <device address, command consumer kept open for a disconnected device>
+    private final Map<String, OfflineConsumer> consumers = new ConcurrentHashMap<>();
+    private final CommandStore store;
+
+    /**
+     * Creates a new queue.
+     *
+     * @param store The store to keep the queued commands in.
+     * @throws NullPointerException if store is {@code null}.
+     */
+    public OfflineCommandQueue(final CommandStore store) {
+        this.store = Objects.requireNonNull(store);
+    }
+
+    /**
+     * Gets the store that the queued commands are kept in.
+     *
+     * @return The store.
+     */
+    public CommandStore getStore() {
+        return store;
+    }
+
+    /**
+     * Keeps a command consumer open for a device that has disconnected.
+     * <p>
+     * A consumer that has been kept open for the device before is closed.
+     * <p>
+     * This method must be invoked on the vert.x context that the consumer has been created on.
+     *
+     * @param subscription The device's command subscription.
+     * @param consumer The consumer to keep open.
+     * @throws NullPointerException if any of the parameters is {@code null}.
+     */
+    public void keepConsumer(final CommandSubscription subscription, final MessageConsumer consumer) {
+
+        Objects.requireNonNull(subscription);
+        Objects.requireNonNull(consumer);
+
+        final OfflineConsumer offlineConsumer = new OfflineConsumer(subscription, consumer, Vertx.currentContext());
+        final OfflineConsumer existingConsumer = consumers.put(getKey(subscription), offlineConsumer);
+        if (existingConsumer != null && existingConsumer.consumer != consumer) {
+            existingConsumer.close();
+        }
+    }
+
+    /**
+     * Checks if commands received for a subscription are to be queued.
+     *
+     * @param subscription The device's command subscription.
+     * @return {@code true} if the consumer created for the subscription is being
+     *         kept open for the (disconnected) device.
+     * @throws NullPointerException if subscription is {@code null}.
+     */
+    public boolean isKept(final CommandSubscription subscription) {
+
+        Objects.requireNonNull(subscription);
+        final OfflineConsumer offlineConsumer = consumers.get(getKey(subscription));
+        return offlineConsumer != null && offlineConsumer.subscription == subscription;
+    }
+
+    /**
+     * Stops keeping open the consumer created for a subscription.
+     * <p>
+     * The consumer is not closed by this method.
+     *
+     * @param subscription The device's command subscription.
+     * @return {@code true} if the consumer created for the subscription has been
+     *         kept open for the device until now.
+     * @throws NullPointerException if subscription is {@code null}.
+     */
+    public boolean release(final CommandSubscription subscription) {
+
+        Objects.requireNonNull(subscription);
+        final String key = getKey(subscription);
+        final OfflineConsumer offlineConsumer = consumers.get(key);
+        return offlineConsumer != null && offlineConsumer.subscription == subscription
+                && consumers.remove(key, offlineConsumer);
+    }
+
+    /**
+     * Closes the consumer that is kept open for a device.
+     *
+     * @param tenantId The tenant that the device belongs to.
+     * @param deviceId The identifier of the device.
+     * @return A future indicating the outcome of the operation.
+     *         The future will be completed on the caller's vert.x context once the
+     *         consumer has been closed or immediately if no consumer is kept open
+     *         for the device. The future will never be failed.
+     * @throws NullPointerException if any of the parameters is {@code null}.
+     */
+    public Future<Void> closeConsumer(final String tenantId, final String deviceId) {
+
+        final OfflineConsumer offlineConsumer = consumers.remove(Device.asAddress(
+                Objects.requireNonNull(tenantId), Objects.requireNonNull(deviceId)));
+        if (offlineConsumer == null) {
+            return Future.succeededFuture();
+        }
+        LOG.debug("closing command consumer kept for disconnected device [tenant-id: {}, device-id: {}]",
+                tenantId, deviceId);
+        // a new consumer can be created even if closing the old one has failed
+        return offlineConsumer.close().otherwiseEmpty();
+    }
+
+    /**
+     * Closes all consumers that have been created on a vert.x context.
+     * <p>
+     * This method is invoked when the adapter instance running on the context is stopped.
+     * The commands already queued for the devices are kept.
+     *
+     * @param context The context.
+     */
+    public void closeConsumers(final Context context) {
+
+        consumers.forEach((key, offlineConsumer) -> {
+            if (offlineConsumer.context == context && consumers.remove(key, offlineConsumer)) {
+                offlineConsumer.close();
+            }
+        });
+    }
+
+    private static String getKey(final CommandSubscription subscription) {
+        return Device.asAddress(subscription.getTenant(), subscription.getDeviceId());
+    }
+
+    /**
+     * A command consumer kept open for a disconnected device.
+     */
+    private static final class OfflineConsumer {
+
+        private final CommandSubscription subscription;
+        private final MessageConsumer consumer;
+        private final Context context;
+
+        OfflineConsumer(final CommandSubscription subscription, final MessageConsumer consumer, final Context context) {
+            this.subscription = subscription;
+            this.consumer = consumer;
+            this.context = context;
+        }
+
+        Future<Void> close() {
+
+            final Context currentContext = Vertx.currentContext();
+            final Future<Void> result = Future.future();
+            if (context == null || context == currentContext) {
+                consumer.close(result.completer());
+            } else {
+                context.runOnContext(go -> consumer.close(closeAttempt -> {
+                    if (currentContext == null) {
+                        result.handle(closeAttempt);
+                    } else {
+                        currentContext.runOnContext(back -> result.handle(closeAttempt));
+                    }
+                }));
+            }
+            return result;
+        }
+    }
+}
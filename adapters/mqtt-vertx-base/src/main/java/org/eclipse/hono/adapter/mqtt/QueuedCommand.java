@@ -0,0 +1,143 @@
+/*******************************************************************************
+ * Copyright (c) 2019 Contributors to the Eclipse Foundation
+ *
+ * See the NOTICE file(s) distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *******************************************************************************/
+
+package org.eclipse.hono.adapter.mqtt;
+
+import java.time.Instant;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.eclipse.hono.client.Command;
+
+import io.vertx.core.buffer.Buffer;
+
+/**
+ * A command that has been queued for a device which is not connected.
+ * <p>
+ * Only the information required for publishing the command to the device is kept.
+ */
+public final class QueuedCommand {
+
+    private static final AtomicLong SEQUENCE = new AtomicLong();
+
+    private final long sequenceNumber = SEQUENCE.incrementAndGet();
+    private final String name;
+    private final String requestId;
+    private final byte[] payload;
+    private final Instant expirationTime;
+
+    private QueuedCommand(final String name, final String requestId, final byte[] payload, final Instant expirationTime) {
+        this.name = name;
+        this.requestId = requestId;
+        this.payload = payload;
+        this.expirationTime = expirationTime;
+    }
+
+    /**
+     * Creates a queued command.
+     *
+     * @param name The name of the command.
+     * @param requestId The request ID to include in the topic the command is published to
+     *                  or {@code null} for a one-way command.
+     * @param payload The payload of the command or {@code null} if the command has no payload.
+     * @param expirationTime The point in time after which the command must no longer be published.
+     * @return The queued command.
+     * @throws NullPointerException if name or expiration time are {@code null}.
+     */
+    public static QueuedCommand from(
+            final String name,
+            final String requestId,
+            final Buffer payload,
+            final Instant expirationTime) {
+
+        Objects.requireNonNull(name);
+        Objects.requireNonNull(expirationTime);
+        return new QueuedCommand(
+                name,
+                requestId == null ? "" : requestId,
+                payload == null ? null : payload.getBytes(),
+                expirationTime);
+    }
+
+    /**
+     * Creates a queued command for a command received from an application.
+     *
+     * @param command The command.
+     * @param expirationTime The point in time after which the command must no longer be published.
+     * @return The queued command.
+     * @throws NullPointerException if any of the parameters is {@code null}.
+     */
+    public static QueuedCommand from(final Command command, final Instant expirationTime) {
+
+        Objects.requireNonNull(command);
+        return from(
+                command.getName(),
+                command.isOneWay() ? null : command.getRequestId(),
+                command.getPayload(),
+                expirationTime);
+    }
+
+    /**
+     * Gets the number reflecting the order in which commands have been queued.
+     *
+     * @return The sequence number. Commands queued later have a greater number.
+     */
+    public long getSequenceNumber() {
+        return sequenceNumber;
+    }
+
+    /**
+     * Gets the name of the command.
+     *
+     * @return The name.
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Gets the request ID to include in the topic the command is published to.
+     *
+     * @return The request ID or an empty string for a one-way command.
+     */
+    public String getRequestId() {
+        return requestId;
+    }
+
+    /**
+     * Gets the payload of the command.
+     *
+     * @return The payload or {@code null} if the command has no payload.
+     */
+    public Buffer getPayload() {
+        return payload == null ? null : Buffer.buffer(payload);
+    }
+
+    /**
+     * Gets the point in time after which the command must no longer be published.
+     *
+     * @return The expiration time.
+     */
+    public Instant getExpirationTime() {
+        return expirationTime;
+    }
+
+    /**
+     * Checks if the command has expired.
+     *
+     * @return {@code true} if the command must no longer be published.
+     */
+    public boolean isExpired() {
+        return !Instant.now().isBefore(expirationTime);
+    }
+}
@@ -19,6 +19,7 @@ import static java.net.HttpURLConnection.HTTP_NOT_FOUND;
 import static org.hamcrest.CoreMatchers.is;
 import static org.junit.Assert.assertThat;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
 import static org.mockito.ArgumentMatchers.anyInt;
 import static org.mockito.ArgumentMatchers.anyLong;
 import static org.mockito.ArgumentMatchers.anyString;
@@ -26,6 +27,7 @@ import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
@@ -37,9 +39,15 @@ import java.util.List;
 import java.util.concurrent.TimeUnit;
 import java.util.function.BiConsumer;
 
+import org.apache.qpid.proton.amqp.messaging.Accepted;
+import org.apache.qpid.proton.amqp.messaging.Rejected;
+import org.apache.qpid.proton.amqp.transport.AmqpError;
+import org.apache.qpid.proton.amqp.transport.DeliveryState;
 import org.apache.qpid.proton.message.Message;
 import org.eclipse.hono.auth.Device;
 import org.eclipse.hono.client.ClientErrorException;
+import org.eclipse.hono.client.Command;
+import org.eclipse.hono.client.CommandContext;
 import org.eclipse.hono.client.CommandConsumerFactory;
 import org.eclipse.hono.client.HonoClient;
 import org.eclipse.hono.client.MessageConsumer;
@@ -49,9 +57,11 @@ import org.eclipse.hono.client.ServerErrorException;
 import org.eclipse.hono.client.TenantClient;
 import org.eclipse.hono.service.auth.DeviceUser;
 import org.eclipse.hono.service.auth.device.AuthHandler;
+import org.eclipse.hono.service.limiting.ConnectionAdmissionController;
 import org.eclipse.hono.service.metric.MetricsTags;
 import org.eclipse.hono.service.metric.MetricsTags.EndpointType;
 import org.eclipse.hono.service.plan.ResourceLimitChecks;
+import org.eclipse.hono.util.CommandConstants;
 import org.eclipse.hono.util.EventConstants;
 import org.eclipse.hono.util.MessageHelper;
 import org.eclipse.hono.util.RegistrationConstants;
@@ -70,6 +80,7 @@ import org.mockito.ArgumentCaptor;
 import io.netty.handler.codec.mqtt.MqttConnectReturnCode;
 import io.netty.handler.codec.mqtt.MqttQoS;
 import io.opentracing.SpanContext;
+import io.opentracing.noop.NoopSpan;
 import io.vertx.core.AsyncResult;
 import io.vertx.core.Context;
 import io.vertx.core.Future;
@@ -87,6 +98,8 @@ import io.vertx.mqtt.MqttTopicSubscription;
 import io.vertx.mqtt.messages.MqttPublishMessage;
 import io.vertx.mqtt.messages.MqttSubscribeMessage;
 import io.vertx.proton.ProtonDelivery;
+import io.vertx.proton.ProtonHelper;
+import io.vertx.proton.ProtonReceiver;
 
 /**
  * Verifies behavior of {@link AbstractVertxBasedMqttProtocolAdapter}.
@@ -349,6 +362,52 @@ public class AbstractVertxBasedMqttProtocolAdapterTest {
         verify(authHandler).authenticateDevice(any(MqttContext.class));
     }
 
+    /**
+     * Verifies that the adapter processes a queued connection request once the preceding
+     * request has completed and discards the queued request of a device that has closed
+     * its connection in the meantime.
+     */
+    @SuppressWarnings("unchecked")
+    @Test
+    public void testEndpointHandlerProcessesQueuedConnectionRequests() {
+
+        // GIVEN an adapter that processes a single connection request at a time
+        final MqttServer server = getMqttServer(false);
+        final AbstractVertxBasedMqttProtocolAdapter<MqttProtocolAdapterProperties> adapter = getAdapter(server);
+        adapter.setConnectionAdmissionController(new ConnectionAdmissionController(1, 10));
+        forceClientMocksToConnected();
+        final Future<DeviceUser> firstAuthentication = Future.future();
+        when(authHandler.authenticateDevice(any(MqttContext.class)))
+            .thenReturn(firstAuthentication)
+            .thenReturn(Future.succeededFuture(new DeviceUser("DEFAULT_TENANT", "4712")));
+
+        // and a device whose connection request is being processed
+        final MqttEndpoint firstEndpoint = getMqttEndpointAuthenticated();
+        adapter.handleEndpointConnection(firstEndpoint);
+
+        // WHEN two more devices try to connect
+        final MqttEndpoint closedEndpoint = getMqttEndpointAuthenticated();
+        adapter.handleEndpointConnection(closedEndpoint);
+        final MqttEndpoint queuedEndpoint = getMqttEndpointAuthenticated();
+        adapter.handleEndpointConnection(queuedEndpoint);
+
+        // THEN their connection requests are queued
+        verify(authHandler).authenticateDevice(any(MqttContext.class));
+
+        // WHEN one of the devices closes its connection
+        final ArgumentCaptor<Handler<Void>> closeHandler = ArgumentCaptor.forClass(Handler.class);
+        verify(closedEndpoint).closeHandler(closeHandler.capture());
+        closeHandler.getValue().handle(null);
+        // and the first device has been authenticated
+        firstAuthentication.complete(new DeviceUser("DEFAULT_TENANT", "4711"));
+
+        // THEN the connection request of the device that has closed its connection is discarded
+        verify(closedEndpoint, never()).accept(anyBoolean());
+        // and the other device's connection request is processed
+        verify(authHandler, times(2)).authenticateDevice(any(MqttContext.class));
+        verify(queuedEndpoint).accept(false);
+    }
+
     /**
      * Verifies that an adapter rejects connections when the connection limit is exceeded.
      * 
@@ -824,6 +883,303 @@ public class AbstractVertxBasedMqttProtocolAdapterTest {
         assertThat(MessageHelper.getTimeUntilDisconnect(msgCaptor.getValue()), is(0));
     }
 
+    /**
+     * Verifies that the adapter keeps the command consumer of a device that has connected
+     * with the clean session flag set to {@code false} open after the device has disconnected,
+     * queues the commands received for the device and publishes them once the device has
+     * re-connected and subscribed to commands again.
+     *
+     * @param ctx The vert.x test context.
+     */
+    @SuppressWarnings("unchecked")
+    @Test
+    public void testCommandsAreQueuedForDisconnectedDevice(final TestContext ctx) {
+
+        // GIVEN an adapter that queues commands for disconnected devices
+        givenAnEventSenderForOutcome(Future.succeededFuture(mock(ProtonDelivery.class)));
+        final AbstractVertxBasedMqttProtocolAdapter<MqttProtocolAdapterProperties> adapter = getAdapter(getMqttServer(false));
+        adapter.setOfflineCommandQueue(new OfflineCommandQueue(new InMemoryCommandStore(10)));
+        final MessageConsumer commandConsumer = mock(MessageConsumer.class);
+
+        // WHEN a device that has subscribed to commands using a persistent session disconnects
+        final Handler<CommandContext> commandHandler = givenADisconnectedDeviceWithPersistentSession(adapter, commandConsumer);
+        // THEN the command consumer is kept open
+        verify(commandConsumer, never()).close(any());
+
+        // and a command received for the device is queued
+        final Command command = newCommand("on");
+        final ProtonDelivery delivery = mock(ProtonDelivery.class);
+        final ProtonReceiver receiver = mock(ProtonReceiver.class);
+        commandHandler.handle(CommandContext.from(command, delivery, receiver, NoopSpan.INSTANCE));
+        verify(delivery).disposition(any(Accepted.class), eq(true));
+        verify(receiver).flow(1);
+
+        // WHEN the device re-connects and subscribes to commands again
+        final MqttEndpoint newEndpoint = mockEndpoint();
+        when(newEndpoint.isConnected()).thenReturn(Boolean.TRUE);
+        doAnswer(invocation -> {
+            final Handler<AsyncResult<Integer>> sentHandler = invocation.getArgument(5);
+            sentHandler.handle(Future.succeededFuture(5));
+            return newEndpoint;
+        }).when(newEndpoint).publish(anyString(), any(Buffer.class), any(MqttQoS.class), anyBoolean(), anyBoolean(), any(Handler.class));
+        final CommandHandler<MqttProtocolAdapterProperties> newCmdHandler = new CommandHandler<>(vertx, config);
+        adapter.onSubscribe(newEndpoint, null, newCommandSubscribeMessage(), newCmdHandler);
+
+        // THEN the command consumer kept for the disconnected device is closed
+        verify(commandConsumer).close(any());
+        // and the queued command is published to the device
+        final ArgumentCaptor<Buffer> payload = ArgumentCaptor.forClass(Buffer.class);
+        verify(newEndpoint).publish(
+                eq(String.format("control/tenant/deviceId/req/%s/light", command.getRequestId())),
+                payload.capture(),
+                eq(MqttQoS.AT_LEAST_ONCE),
+                eq(false),
+                eq(false),
+                any(Handler.class));
+        assertThat(payload.getValue().toString(), is("on"));
+        // and is reported as forwarded once the device has acknowledged it
+        verify(metrics, never()).reportCommand(any(), anyString(), any(), anyInt(), any());
+        newCmdHandler.handlePubAck(5, null);
+        verify(metrics).reportCommand(
+                eq(MetricsTags.Direction.REQUEST),
+                eq("tenant"),
+                eq(MetricsTags.ProcessingOutcome.FORWARDED),
+                eq(2),
+                any());
+    }
+
+    /**
+     * Verifies that the adapter rejects a command for a disconnected device without
+     * issuing credit if the device's command queue is full.
+     */
+    @Test
+    public void testCommandIsRejectedIfQueueIsFull() {
+
+        // GIVEN an adapter that queues a single command for disconnected devices
+        givenAnEventSenderForOutcome(Future.succeededFuture(mock(ProtonDelivery.class)));
+        final AbstractVertxBasedMqttProtocolAdapter<MqttProtocolAdapterProperties> adapter = getAdapter(getMqttServer(false));
+        adapter.setOfflineCommandQueue(new OfflineCommandQueue(new InMemoryCommandStore(1)));
+        final Handler<CommandContext> commandHandler = givenADisconnectedDeviceWithPersistentSession(
+                adapter, mock(MessageConsumer.class));
+        commandHandler.handle(CommandContext.from(newCommand("on"), mock(ProtonDelivery.class),
+                mock(ProtonReceiver.class), NoopSpan.INSTANCE));
+
+        // WHEN another command is received for the device
+        final ProtonDelivery delivery = mock(ProtonDelivery.class);
+        final ProtonReceiver receiver = mock(ProtonReceiver.class);
+        commandHandler.handle(CommandContext.from(newCommand("off"), delivery, receiver, NoopSpan.INSTANCE));
+
+        // THEN the command is rejected
+        final ArgumentCaptor<DeliveryState> deliveryState = ArgumentCaptor.forClass(DeliveryState.class);
+        verify(delivery).disposition(deliveryState.capture(), eq(true));
+        assertThat(deliveryState.getValue() instanceof Rejected, is(true));
+        assertThat(((Rejected) deliveryState.getValue()).getError().getCondition(), is(AmqpError.RESOURCE_LIMIT_EXCEEDED));
+        // and no credit is issued
+        verify(receiver, never()).flow(anyInt());
+        verify(metrics).reportCommand(
+                eq(MetricsTags.Direction.REQUEST),
+                eq("tenant"),
+                eq(MetricsTags.ProcessingOutcome.UNDELIVERABLE),
+                anyInt(),
+                any());
+    }
+
+    /**
+     * Verifies that queued commands are put back to the command store if the device
+     * disconnects again before they could be published.
+     *
+     * @param ctx The vert.x test context.
+     */
+    @SuppressWarnings("unchecked")
+    @Test
+    public void testQueuedCommandsAreQueuedAgainIfDeviceHasDisconnected(final TestContext ctx) {
+
+        // GIVEN an adapter that has queued a command for a disconnected device
+        givenAnEventSenderForOutcome(Future.succeededFuture(mock(ProtonDelivery.class)));
+        final AbstractVertxBasedMqttProtocolAdapter<MqttProtocolAdapterProperties> adapter = getAdapter(getMqttServer(false));
+        final InMemoryCommandStore commandStore = new InMemoryCommandStore(10);
+        adapter.setOfflineCommandQueue(new OfflineCommandQueue(commandStore));
+        final Handler<CommandContext> commandHandler = givenADisconnectedDeviceWithPersistentSession(
+                adapter, mock(MessageConsumer.class));
+        commandHandler.handle(CommandContext.from(newCommand("on"), mock(ProtonDelivery.class),
+                mock(ProtonReceiver.class), NoopSpan.INSTANCE));
+
+        // WHEN the device subscribes to commands again but disconnects before the command is published
+        final MqttEndpoint newEndpoint = mockEndpoint();
+        when(newEndpoint.isConnected()).thenReturn(Boolean.FALSE);
+        adapter.onSubscribe(newEndpoint, null, newCommandSubscribeMessage(), new CommandHandler<>(vertx, config));
+
+        // THEN the command is not published
+        verify(newEndpoint, never()).publish(anyString(), any(Buffer.class), any(MqttQoS.class), anyBoolean(), anyBoolean(), any(Handler.class));
+        // but has been put back to the command store
+        commandStore.removeAll("tenant", "deviceId").setHandler(ctx.asyncAssertSuccess(commands -> {
+            ctx.assertEquals(1, commands.size());
+            ctx.assertEquals("on", commands.get(0).getPayload().toString());
+        }));
+    }
+
+    /**
+     * Verifies that commands queued by one adapter instance are published by another
+     * instance sharing the same queue that the device re-connects to.
+     */
+    @SuppressWarnings("unchecked")
+    @Test
+    public void testQueuedCommandsArePublishedByOtherAdapterInstance() {
+
+        // GIVEN two adapter instances sharing the queue for commands for disconnected devices
+        givenAnEventSenderForOutcome(Future.succeededFuture(mock(ProtonDelivery.class)));
+        final OfflineCommandQueue offlineCommandQueue = new OfflineCommandQueue(new InMemoryCommandStore(10));
+        final AbstractVertxBasedMqttProtocolAdapter<MqttProtocolAdapterProperties> adapter = getAdapter(getMqttServer(false));
+        adapter.setOfflineCommandQueue(offlineCommandQueue);
+        final AbstractVertxBasedMqttProtocolAdapter<MqttProtocolAdapterProperties> otherAdapter = getAdapter(getMqttServer(false));
+        otherAdapter.setOfflineCommandQueue(offlineCommandQueue);
+
+        // and a command that the first instance has queued for a disconnected device
+        final MessageConsumer commandConsumer = mock(MessageConsumer.class);
+        final Handler<CommandContext> commandHandler = givenADisconnectedDeviceWithPersistentSession(adapter, commandConsumer);
+        commandHandler.handle(CommandContext.from(newCommand("on"), mock(ProtonDelivery.class),
+                mock(ProtonReceiver.class), NoopSpan.INSTANCE));
+
+        // WHEN the device re-connects to the other instance and subscribes to commands again
+        final MqttEndpoint newEndpoint = mockEndpoint();
+        when(newEndpoint.isConnected()).thenReturn(Boolean.TRUE);
+        otherAdapter.onSubscribe(newEndpoint, null, newCommandSubscribeMessage(), new CommandHandler<>(vertx, config));
+
+        // THEN the command consumer kept open by the first instance is closed
+        verify(commandConsumer).close(any());
+        // and the queued command is published to the device by the other instance
+        verify(newEndpoint).publish(
+                anyString(),
+                any(Buffer.class),
+                eq(MqttQoS.AT_LEAST_ONCE),
+                eq(false),
+                eq(false),
+                any(Handler.class));
+    }
+
+    /**
+     * Verifies that commands queued for a device are discarded instead of being published
+     * if the device re-connects using a clean session.
+     *
+     * @param ctx The vert.x test context.
+     */
+    @SuppressWarnings("unchecked")
+    @Test
+    public void testQueuedCommandsAreDiscardedForCleanSession(final TestContext ctx) {
+
+        // GIVEN an adapter that has queued a command for a disconnected device
+        givenAnEventSenderForOutcome(Future.succeededFuture(mock(ProtonDelivery.class)));
+        final AbstractVertxBasedMqttProtocolAdapter<MqttProtocolAdapterProperties> adapter = getAdapter(getMqttServer(false));
+        final InMemoryCommandStore commandStore = new InMemoryCommandStore(10);
+        adapter.setOfflineCommandQueue(new OfflineCommandQueue(commandStore));
+        final Handler<CommandContext> commandHandler = givenADisconnectedDeviceWithPersistentSession(
+                adapter, mock(MessageConsumer.class));
+        commandHandler.handle(CommandContext.from(newCommand("on"), mock(ProtonDelivery.class),
+                mock(ProtonReceiver.class), NoopSpan.INSTANCE));
+
+        // WHEN the device re-connects using a clean session and subscribes to commands again
+        final MqttEndpoint newEndpoint = mockEndpoint();
+        when(newEndpoint.isConnected()).thenReturn(Boolean.TRUE);
+        when(newEndpoint.isCleanSession()).thenReturn(Boolean.TRUE);
+        adapter.onSubscribe(newEndpoint, null, newCommandSubscribeMessage(), new CommandHandler<>(vertx, config));
+
+        // THEN the queued command is not published
+        verify(newEndpoint, never()).publish(anyString(), any(Buffer.class), any(MqttQoS.class), anyBoolean(), anyBoolean(), any(Handler.class));
+        // but has been discarded
+        commandStore.removeAll("tenant", "deviceId").setHandler(ctx.asyncAssertSuccess(commands -> {
+            ctx.assertTrue(commands.isEmpty());
+        }));
+    }
+
+    /**
+     * Verifies that a queued command which could not be published to a connected device
+     * is published again after a delay.
+     */
+    @SuppressWarnings("unchecked")
+    @Test
+    public void testQueuedCommandIsPublishedAgainWhileDeviceIsConnected() {
+
+        // GIVEN an adapter that has queued a command for a disconnected device
+        givenAnEventSenderForOutcome(Future.succeededFuture(mock(ProtonDelivery.class)));
+        final AbstractVertxBasedMqttProtocolAdapter<MqttProtocolAdapterProperties> adapter = getAdapter(getMqttServer(false));
+        adapter.setOfflineCommandQueue(new OfflineCommandQueue(new InMemoryCommandStore(10)));
+        final Handler<CommandContext> commandHandler = givenADisconnectedDeviceWithPersistentSession(
+                adapter, mock(MessageConsumer.class));
+        commandHandler.handle(CommandContext.from(newCommand("on"), mock(ProtonDelivery.class),
+                mock(ProtonReceiver.class), NoopSpan.INSTANCE));
+
+        // WHEN the device re-connects but publishing the queued command fails at first
+        final MqttEndpoint newEndpoint = mockEndpoint();
+        when(newEndpoint.isConnected()).thenReturn(Boolean.TRUE);
+        doAnswer(invocation -> {
+            final Handler<AsyncResult<Integer>> sentHandler = invocation.getArgument(5);
+            sentHandler.handle(Future.failedFuture(new IllegalStateException("cannot send")));
+            return newEndpoint;
+        }).doAnswer(invocation -> {
+            final Handler<AsyncResult<Integer>> sentHandler = invocation.getArgument(5);
+            sentHandler.handle(Future.succeededFuture(5));
+            return newEndpoint;
+        }).when(newEndpoint).publish(anyString(), any(Buffer.class), any(MqttQoS.class), anyBoolean(), anyBoolean(), any(Handler.class));
+        adapter.onSubscribe(newEndpoint, null, newCommandSubscribeMessage(), new CommandHandler<>(vertx, config));
+
+        // THEN the command is published again while the device is still connected
+        verify(newEndpoint, timeout(3000).times(2)).publish(
+                anyString(),
+                any(Buffer.class),
+                eq(MqttQoS.AT_LEAST_ONCE),
+                eq(false),
+                eq(false),
+                any(Handler.class));
+    }
+
+    private static Command newCommand(final String payload) {
+
+        final Message commandMessage = ProtonHelper.message(payload);
+        commandMessage.setSubject("light");
+        commandMessage.setCorrelationId("the-correlation-id");
+        commandMessage.setReplyTo(String.format("%s/tenant/reply-id", CommandConstants.COMMAND_ENDPOINT));
+        final Command command = Command.from(commandMessage, "tenant", "deviceId");
+        assertThat(command.isValid(), is(true));
+        return command;
+    }
+
+    private static MqttSubscribeMessage newCommandSubscribeMessage() {
+
+        final List<MqttTopicSubscription> subscriptions = Collections.singletonList(
+                newMockTopicSubscription("control/tenant/deviceId/req/#", MqttQoS.AT_LEAST_ONCE));
+        final MqttSubscribeMessage msg = mock(MqttSubscribeMessage.class);
+        when(msg.messageId()).thenReturn(15);
+        when(msg.topicSubscriptions()).thenReturn(subscriptions);
+        return msg;
+    }
+
+    /**
+     * Lets a device subscribe to commands using a persistent session and disconnect afterwards.
+     *
+     * @return The handler that the adapter has registered for commands received for the device.
+     */
+    @SuppressWarnings("unchecked")
+    private Handler<CommandContext> givenADisconnectedDeviceWithPersistentSession(
+            final AbstractVertxBasedMqttProtocolAdapter<MqttProtocolAdapterProperties> adapter,
+            final MessageConsumer commandConsumer) {
+
+        doAnswer(invocation -> {
+            final Handler<AsyncResult<Void>> closeHandler = invocation.getArgument(0);
+            closeHandler.handle(Future.succeededFuture());
+            return null;
+        }).when(commandConsumer).close(any(Handler.class));
+        final ArgumentCaptor<Handler<CommandContext>> commandHandler = ArgumentCaptor.forClass(Handler.class);
+        when(commandConsumerFactory.createCommandConsumer(eq("tenant"), eq("deviceId"), commandHandler.capture(), any(Handler.class), anyLong()))
+            .thenReturn(Future.succeededFuture(commandConsumer));
+
+        final MqttEndpoint endpoint = mockEndpoint();
+        when(endpoint.isCleanSession()).thenReturn(Boolean.FALSE);
+        final CommandHandler<MqttProtocolAdapterProperties> cmdHandler = new CommandHandler<>(vertx, config);
+        adapter.onSubscribe(endpoint, null, newCommandSubscribeMessage(), cmdHandler);
+        adapter.close(endpoint, null, cmdHandler);
+        return commandHandler.getValue();
+    }
+
     /**
      * Verifies that the adapter includes a status code for each topic filter
      * in its SUBACK packet.
@@ -0,0 +1,172 @@
+/*******************************************************************************
+ * Copyright (c) 2019 Contributors to the Eclipse Foundation
+ *
+ * See the NOTICE file(s) distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *******************************************************************************/
+
+package org.eclipse.hono.adapter.mqtt;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.qpid.proton.amqp.messaging.Released;
+import org.apache.qpid.proton.message.Message;
+import org.eclipse.hono.client.Command;
+import org.eclipse.hono.client.CommandContext;
+import org.eclipse.hono.util.CommandConstants;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import io.netty.handler.codec.mqtt.MqttQoS;
+import io.opentracing.noop.NoopSpan;
+import io.vertx.core.Vertx;
+import io.vertx.mqtt.MqttTopicSubscription;
+import io.vertx.proton.ProtonDelivery;
+import io.vertx.proton.ProtonHelper;
+import io.vertx.proton.ProtonReceiver;
+
+/**
+ * Tests verifying behavior of {@link CommandHandler}.
+ *
+ */
+public class CommandHandlerTest {
+
+    private static Vertx vertx;
+
+    private MqttProtocolAdapterProperties config;
+    private CommandSubscription subscription;
+
+    /**
+     * Sets up vert.x.
+     */
+    @BeforeClass
+    public static void init() {
+        vertx = Vertx.vertx();
+    }
+
+    /**
+     * Closes vert.x.
+     */
+    @AfterClass
+    public static void shutDown() {
+        vertx.close();
+    }
+
+    /**
+     * Sets up the fixture.
+     */
+    @Before
+    public void setUp() {
+        config = new MqttProtocolAdapterProperties();
+        final MqttTopicSubscription topicSubscription = mock(MqttTopicSubscription.class);
+        when(topicSubscription.topicName()).thenReturn("control/tenant/device/req/#");
+        when(topicSubscription.qualityOfService()).thenReturn(MqttQoS.AT_LEAST_ONCE);
+        subscription = CommandSubscription.fromTopic(topicSubscription, null, "client");
+    }
+
+    private static CommandContext newCommandContext(final ProtonDelivery delivery, final ProtonReceiver receiver) {
+        final Message message = ProtonHelper.message("on");
+        message.setSubject("light");
+        message.setCorrelationId("the-correlation-id");
+        message.setReplyTo(String.format("%s/tenant/reply-id", CommandConstants.COMMAND_ENDPOINT));
+        return CommandContext.from(Command.from(message, "tenant", "device"), delivery, receiver, NoopSpan.INSTANCE);
+    }
+
+    /**
+     * Verifies that commands exceeding the window of in-flight commands are
+     * published in the order of their arrival once the device has acknowledged
+     * previously published commands.
+     */
+    @Test
+    public void testReserveInFlightSlotQueuesCommandsExceedingWindow() {
+
+        config.setMaxInFlightCommands(2);
+        config.setCommandAckTimeout(10000);
+        final CommandHandler<MqttProtocolAdapterProperties> handler = new CommandHandler<>(vertx, config);
+        final List<Integer> published = new ArrayList<>();
+
+        for (int i = 1; i <= 4; i++) {
+            final int msgId = i;
+            final CommandContext ctx = newCommandContext(mock(ProtonDelivery.class), mock(ProtonReceiver.class));
+            handler.reserveInFlightSlot(ctx, slot -> {
+                published.add(msgId);
+                handler.addToWaitingForAcknowledgement(msgId, subscription, ctx);
+            });
+        }
+        assertThat(published.toString(), is("[1, 2]"));
+
+        handler.handlePubAck(1, null);
+        assertThat(published.toString(), is("[1, 2, 3]"));
+        // an unknown message ID does not release a slot
+        handler.handlePubAck(42, null);
+        assertThat(published.toString(), is("[1, 2, 3]"));
+        handler.handlePubAck(2, null);
+        handler.handlePubAck(3, null);
+        assertThat(published.toString(), is("[1, 2, 3, 4]"));
+        handler.handlePubAck(4, null);
+    }
+
+    /**
+     * Verifies that commands which have not been acknowledged in time are released
+     * and that their slots are handed over to queued commands.
+     */
+    @Test
+    public void testTimedOutCommandsAreReleased() {
+
+        config.setMaxInFlightCommands(1);
+        config.setCommandAckTimeout(50);
+        final CommandHandler<MqttProtocolAdapterProperties> handler = new CommandHandler<>(vertx, config);
+        final ProtonDelivery delivery = mock(ProtonDelivery.class);
+        final ProtonReceiver receiver = mock(ProtonReceiver.class);
+        final CommandContext ctx = newCommandContext(delivery, receiver);
+        final List<Integer> published = new ArrayList<>();
+
+        handler.reserveInFlightSlot(ctx, slot -> {
+            published.add(1);
+            handler.addToWaitingForAcknowledgement(1, subscription, ctx);
+        });
+        handler.reserveInFlightSlot(newCommandContext(mock(ProtonDelivery.class), mock(ProtonReceiver.class)),
+                slot -> published.add(2));
+
+        verify(delivery, timeout(2000)).disposition(any(Released.class), eq(true));
+        verify(receiver).flow(1);
+        assertThat(published.toString(), is("[1, 2]"));
+    }
+
+    /**
+     * Verifies that commands waiting for a slot are released when the connection is closed.
+     */
+    @Test
+    public void testReleasePendingCommandsReleasesQueuedCommands() {
+
+        config.setMaxInFlightCommands(1);
+        final CommandHandler<MqttProtocolAdapterProperties> handler = new CommandHandler<>(vertx, config);
+        final ProtonDelivery delivery = mock(ProtonDelivery.class);
+        final ProtonReceiver receiver = mock(ProtonReceiver.class);
+
+        handler.reserveInFlightSlot(newCommandContext(mock(ProtonDelivery.class), mock(ProtonReceiver.class)), slot -> {});
+        handler.reserveInFlightSlot(newCommandContext(delivery, receiver), slot -> {});
+        handler.releasePendingCommands();
+
+        verify(delivery).disposition(any(Released.class), eq(true));
+        verify(receiver).flow(1);
+    }
+}
@@ -1,5 +1,5 @@
 /**
- * Copyright (c) 2018 Contributors to the Eclipse Foundation
+ * Copyright (c) 2018, 2019 Contributors to the Eclipse Foundation
  *
  * See the NOTICE file(s) distributed with this work for additional
  * information regarding copyright ownership.
@@ -161,4 +161,19 @@ public class CommandSubscriptionTest {
         assertNull(subscription2);
     }
 
+    /**
+     * Verifies that the topic for publishing a command contains the tenant and device ID
+     * for unauthenticated devices only.
+     */
+    @Test
+    public void testGetCommandPublishTopic() {
+
+        assertThat(CommandSubscription.fromTopic("control/tenant/device/req/#", null)
+                .getCommandPublishTopic("xyz", "light"), is("control/tenant/device/req/xyz/light"));
+        assertThat(CommandSubscription.fromTopic("c/+/+/q/#", device)
+                .getCommandPublishTopic("xyz", "light"), is("c///q/xyz/light"));
+        // one-way commands have an empty request ID
+        assertThat(CommandSubscription.fromTopic("control/+/+/req/#", device)
+                .getCommandPublishTopic(null, "light"), is("control///req//light"));
+    }
 }
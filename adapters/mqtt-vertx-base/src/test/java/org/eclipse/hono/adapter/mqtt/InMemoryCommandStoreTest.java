@@ -0,0 +1,98 @@
+/*******************************************************************************
+ * Copyright (c) 2019 Contributors to the Eclipse Foundation
+ *
+ * See the NOTICE file(s) distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *******************************************************************************/
+
+package org.eclipse.hono.adapter.mqtt;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.junit.Test;
+
+import io.vertx.core.buffer.Buffer;
+
+/**
+ * Tests verifying behavior of {@link InMemoryCommandStore}.
+ *
+ */
+public class InMemoryCommandStoreTest {
+
+    private static QueuedCommand newCommand(final String name, final Instant expirationTime) {
+        return QueuedCommand.from(name, "req-" + name, Buffer.buffer(name), expirationTime);
+    }
+
+    /**
+     * Verifies that the store returns a device's commands in the order in which
+     * they have been added and rejects commands exceeding the queue size.
+     */
+    @Test
+    public void testAddRejectsCommandsIfQueueIsFull() {
+
+        final Instant expirationTime = Instant.now().plusSeconds(60);
+        final InMemoryCommandStore store = new InMemoryCommandStore(2);
+        assertTrue(store.add("tenant", "device", newCommand("one", expirationTime)).result());
+        assertTrue(store.add("tenant", "device", newCommand("two", expirationTime)).result());
+        assertThat(store.add("tenant", "device", newCommand("three", expirationTime)).result(), is(false));
+        // the queue size is tracked per device
+        assertTrue(store.add("tenant", "other-device", newCommand("four", expirationTime)).result());
+
+        final List<QueuedCommand> commands = store.removeAll("tenant", "device").result();
+        assertThat(commands.stream().map(QueuedCommand::getName).collect(Collectors.toList()).toString(), is("[one, two]"));
+        assertThat(commands.get(0).getRequestId(), is("req-one"));
+        assertThat(commands.get(0).getPayload().toString(), is("one"));
+        // and the queue is empty afterwards
+        assertTrue(store.removeAll("tenant", "device").result().isEmpty());
+    }
+
+    /**
+     * Verifies that expired commands are neither returned nor count towards the
+     * queue size.
+     */
+    @Test
+    public void testExpiredCommandsAreDiscarded() {
+
+        final InMemoryCommandStore store = new InMemoryCommandStore(1);
+        assertTrue(store.add("tenant", "device", newCommand("expired", Instant.now().minusSeconds(1))).result());
+        assertTrue(store.add("tenant", "device", newCommand("valid", Instant.now().plusSeconds(60))).result());
+
+        final List<QueuedCommand> commands = store.removeAll("tenant", "device").result();
+        assertThat(commands.size(), is(1));
+        assertThat(commands.get(0).getName(), is("valid"));
+    }
+
+    /**
+     * Verifies that commands put back to a device's queue are returned ahead of
+     * the commands that have been added after them, regardless of the queue size.
+     */
+    @Test
+    public void testRequeuedCommandsKeepTheirOrder() {
+
+        final Instant expirationTime = Instant.now().plusSeconds(60);
+        final InMemoryCommandStore store = new InMemoryCommandStore(2);
+        store.add("tenant", "device", newCommand("one", expirationTime));
+        store.add("tenant", "device", newCommand("two", expirationTime));
+        final List<QueuedCommand> removedCommands = store.removeAll("tenant", "device").result();
+        assertTrue(store.add("tenant", "device", newCommand("three", expirationTime)).result());
+
+        // the commands are put back in reverse order
+        assertTrue(store.requeue("tenant", "device", removedCommands.get(1)).succeeded());
+        assertTrue(store.requeue("tenant", "device", removedCommands.get(0)).succeeded());
+
+        final List<QueuedCommand> commands = store.removeAll("tenant", "device").result();
+        assertThat(commands.stream().map(QueuedCommand::getName).collect(Collectors.toList()).toString(), is("[one, two, three]"));
+    }
+}
@@ -15,14 +15,18 @@
 package org.eclipse.hono.adapter.mqtt;
 
 import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.sameInstance;
 import static org.junit.Assert.assertThat;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 import org.eclipse.hono.auth.Device;
 import org.eclipse.hono.service.metric.MetricsTags;
 import org.eclipse.hono.util.CommandConstants;
 import org.eclipse.hono.util.EventConstants;
+import org.eclipse.hono.util.ResourceIdentifier;
 import org.eclipse.hono.util.TelemetryConstants;
 import org.junit.Test;
 
@@ -76,6 +80,22 @@ public class MqttContextTest {
                 MetricsTags.EndpointType.CONTROL);
     }
 
+    /**
+     * Verifies that a topic which has already been parsed is used as is.
+     */
+    @Test
+    public void testFactoryMethodUsesParsedTopic() {
+
+        final MqttPublishMessage msg = newMessage(TelemetryConstants.TELEMETRY_ENDPOINT_SHORT, "tenant", "device");
+        final ResourceIdentifier topic = ResourceIdentifier.from(EventConstants.EVENT_ENDPOINT, "other-tenant", "device");
+        final MqttContext context = MqttContext.fromPublishPacket(msg, mock(MqttEndpoint.class), null, topic);
+
+        assertThat(context.topic(), sameInstance(topic));
+        assertThat(context.tenant(), is("other-tenant"));
+        assertThat(context.endpoint(), is(MetricsTags.EndpointType.EVENT));
+        verify(msg, never()).topicName();
+    }
+
     private static void assertEndpoint(final MqttPublishMessage msg, final MetricsTags.EndpointType expectedEndpoint) {
         final MqttContext context = MqttContext.fromPublishPacket(msg, mock(MqttEndpoint.class));
         assertThat(context.endpoint(), is(expectedEndpoint));
@@ -13,7 +13,9 @@
 
 package org.eclipse.hono.adapter.mqtt.impl;
 
+import org.eclipse.hono.adapter.mqtt.InMemoryCommandStore;
 import org.eclipse.hono.adapter.mqtt.MqttProtocolAdapterProperties;
+import org.eclipse.hono.adapter.mqtt.OfflineCommandQueue;
 import org.eclipse.hono.client.RequestResponseClientConfigProperties;
 import org.eclipse.hono.config.ClientConfigProperties;
 import org.eclipse.hono.service.AbstractAdapterConfig;
@@ -84,6 +86,19 @@ public class Config extends AbstractAdapterConfig {
         return new MqttProtocolAdapterProperties();
     }
 
+    /**
+     * Exposes the queue for commands for disconnected devices as a Spring bean.
+     * <p>
+     * The queue is shared by all MQTT adapter instances so that devices
+     * can retrieve their queued commands from any of them.
+     *
+     * @return The queue.
+     */
+    @Bean
+    public OfflineCommandQueue offlineCommandQueue() {
+        return new OfflineCommandQueue(new InMemoryCommandStore(adapterProperties().getOfflineCommandQueueSize()));
+    }
+
     /**
      * Customizer for meter registry.
      * 
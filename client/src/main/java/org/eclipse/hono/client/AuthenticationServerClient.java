@@ -14,14 +14,23 @@
 package org.eclipse.hono.client;
 
 import java.net.HttpURLConnection;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Objects;
+import java.util.Optional;
 
 import javax.security.sasl.AuthenticationException;
 
 import org.eclipse.hono.auth.HonoUser;
 import org.eclipse.hono.auth.HonoUserAdapter;
+import org.eclipse.hono.auth.HonoUserCache;
 import org.eclipse.hono.connection.ConnectionFactory;
 import org.eclipse.hono.util.AuthenticationConstants;
+import org.eclipse.hono.util.JwtHelper;
 import org.eclipse.hono.util.MessageHelper;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -38,16 +47,27 @@ import io.vertx.proton.sasl.SaslSystemException;
 
 /**
  * A client for retrieving a token from an authentication service via AMQP 1.0.
- *
+ * <p>
+ * The client can be configured to cache the tokens retrieved for username/password credentials.
+ * Subsequent requests for the same credentials are then served from the cache until the token's
+ * remaining lifetime drops below half of the lifetime it had when it was retrieved. The cache
+ * keys are salted hashes of the credentials so that no plain text passwords are kept in memory.
+ * Concurrent requests for the same credentials are served by a single connection to the server.
  */
 public final class AuthenticationServerClient {
 
     private static final Logger LOG = LoggerFactory.getLogger(AuthenticationServerClient.class);
+
     private final ConnectionFactory factory;
     private final Vertx vertx;
+    private final HonoUserCache tokenCache;
+    // <hashed credentials, handlers waiting for the token>
+    private final Map<String, List<Handler<AsyncResult<HonoUser>>>> pendingRequests = new HashMap<>();
 
     /**
      * Creates a client for a remote authentication server.
+     * <p>
+     * The client does not cache any tokens.
      * 
      * @param vertx The Vert.x instance to run on.
      * @param connectionFactory The factory.
@@ -57,8 +77,26 @@ public final class AuthenticationServerClient {
             final Vertx vertx,
             final ConnectionFactory connectionFactory) {
 
+        this(vertx, connectionFactory, 0);
+    }
+
+    /**
+     * Creates a client for a remote authentication server.
+     * 
+     * @param vertx The Vert.x instance to run on.
+     * @param connectionFactory The factory.
+     * @param tokenCacheMaxSize The maximum number of tokens to cache. If 0, no tokens are cached.
+     * @throws NullPointerException if any of the parameters is {@code null}.
+     * @throws IllegalArgumentException if the cache size is negative.
+     */
+    public AuthenticationServerClient(
+            final Vertx vertx,
+            final ConnectionFactory connectionFactory,
+            final int tokenCacheMaxSize) {
+
         this.vertx = Objects.requireNonNull(vertx);
         this.factory = Objects.requireNonNull(connectionFactory);
+        this.tokenCache = new HonoUserCache(tokenCacheMaxSize);
     }
 
     /**
@@ -80,6 +118,9 @@ public final class AuthenticationServerClient {
 
     /**
      * Verifies username/password credentials with a remote authentication server using SASL PLAIN.
+     * <p>
+     * If token caching is enabled, a token that has been retrieved for the same credentials
+     * before is returned without contacting the server.
      * 
      * @param authzid The identity to act as.
      * @param authcid The username.
@@ -90,6 +131,54 @@ public final class AuthenticationServerClient {
     public void verifyPlain(final String authzid, final String authcid, final String password,
             final Handler<AsyncResult<HonoUser>> authenticationResultHandler) {
 
+        if (!tokenCache.isEnabled()) {
+            retrieveToken(authzid, authcid, password, authenticationResultHandler);
+            return;
+        }
+
+        final String key = tokenCache.getKey(authzid, authcid, password);
+        final HonoUser cachedToken = tokenCache.get(key);
+        if (cachedToken != null) {
+            LOG.trace("using cached token");
+            authenticationResultHandler.handle(Future.succeededFuture(cachedToken));
+            return;
+        }
+
+        final boolean isFirstRequest;
+        synchronized (pendingRequests) {
+            final List<Handler<AsyncResult<HonoUser>>> handlers = pendingRequests.computeIfAbsent(key, k -> new ArrayList<>());
+            isFirstRequest = handlers.isEmpty();
+            handlers.add(authenticationResultHandler);
+        }
+        if (isFirstRequest) {
+            retrieveToken(authzid, authcid, password, result -> {
+                if (result.succeeded()) {
+                    putToCache(key, result.result());
+                }
+                final List<Handler<AsyncResult<HonoUser>>> handlers;
+                synchronized (pendingRequests) {
+                    handlers = pendingRequests.remove(key);
+                }
+                handlers.forEach(handler -> handler.handle(result));
+            });
+        } else {
+            LOG.trace("token for credentials is already being retrieved");
+        }
+    }
+
+    private void putToCache(final String key, final HonoUser user) {
+
+        final Instant now = Instant.now();
+        // make sure that a cached token is never handed out when it is about to expire
+        final Duration halfOfRemainingLifetime = Duration.between(now, user.getExpirationTime()).dividedBy(2);
+        if (!tokenCache.put(key, user, now.plus(halfOfRemainingLifetime))) {
+            LOG.debug("cannot cache token");
+        }
+    }
+
+    private void retrieveToken(final String authzid, final String authcid, final String password,
+            final Handler<AsyncResult<HonoUser>> authenticationResultHandler) {
+
         final ProtonClientOptions options = new ProtonClientOptions();
         options.setReconnectAttempts(3).setReconnectInterval(50);
         options.addEnabledSaslMechanism(AuthenticationConstants.MECHANISM_PLAIN);
@@ -157,11 +246,17 @@ public final class AuthenticationServerClient {
 
                 final String payload = MessageHelper.getPayloadAsString(message);
                 if (payload != null) {
+                    final Instant expirationTime = getExpirationTime(payload);
                     final HonoUser user = new HonoUserAdapter() {
                         @Override
                         public String getToken() {
                             return payload;
                         }
+
+                        @Override
+                        public Instant getExpirationTime() {
+                            return Optional.ofNullable(expirationTime).orElseGet(super::getExpirationTime);
+                        }
                     };
                     LOG.debug("successfully retrieved token from Authentication service");
                     authResult.complete(user);
@@ -181,6 +276,15 @@ public final class AuthenticationServerClient {
         }, authResult);
     }
 
+    private static Instant getExpirationTime(final String token) {
+        try {
+            return JwtHelper.getExpiration(token).toInstant();
+        } catch (final IllegalArgumentException e) {
+            // token contains no exp claim
+            return null;
+        }
+    }
+
     private static Future<ProtonReceiver> openReceiver(final ProtonConnection openConnection, final ProtonMessageHandler messageHandler) {
         final Future<ProtonReceiver> result = Future.future();
         openConnection.createReceiver(AuthenticationConstants.ENDPOINT_NAME_AUTHENTICATION).openHandler(result.completer()).handler(messageHandler).open();
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2016, 2018 Contributors to the Eclipse Foundation
+ * Copyright (c) 2016, 2019 Contributors to the Eclipse Foundation
  *
  * See the NOTICE file(s) distributed with this work for additional
  * information regarding copyright ownership.
@@ -39,6 +39,7 @@ import io.opentracing.References;
 import io.opentracing.Span;
 import io.opentracing.SpanContext;
 import io.opentracing.Tracer;
+import io.opentracing.noop.NoopSpan;
 import io.opentracing.noop.NoopTracerFactory;
 import io.opentracing.tag.Tags;
 import io.vertx.core.Context;
@@ -164,7 +165,8 @@ public abstract class AbstractHonoClient {
      * @param parent The existing span. If not {@code null} then the new span will have a
      *                     {@link References#CHILD_OF} reference to the existing span.
      * @param operationName The operation name that the span should be created for.
-     * @return The new span.
+     * @return The new span or a no-op span if the existing span is a no-op span
+     *         (see {@link TracingHelper#isNoop(SpanContext)}).
      */
     protected final Span newChildSpan(final SpanContext parent, final String operationName) {
 
@@ -184,7 +186,8 @@ public abstract class AbstractHonoClient {
      * @param parent The existing span. If not {@code null} then the new span will have a
      *                     {@link References#FOLLOWS_FROM} reference to the existing span.
      * @param operationName The operation name that the span should be created for.
-     * @return The new span.
+     * @return The new span or a no-op span if the existing span is a no-op span
+     *         (see {@link TracingHelper#isNoop(SpanContext)}).
      */
     protected final Span newFollowingSpan(final SpanContext parent, final String operationName) {
 
@@ -193,6 +196,10 @@ public abstract class AbstractHonoClient {
 
     private Span newSpan(final SpanContext parent, final String referenceType, final String operationName) {
 
+        if (TracingHelper.isNoop(parent)) {
+            // the operation is executed on behalf of a message that is not traced
+            return NoopSpan.INSTANCE;
+        }
         return tracer.buildSpan(operationName)
                     .addReference(referenceType, parent)
                     .withTag(Tags.COMPONENT.getKey(), "hono-client")
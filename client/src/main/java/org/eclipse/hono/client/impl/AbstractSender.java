@@ -163,10 +163,12 @@ public abstract class AbstractSender extends AbstractHonoClient implements Messa
         Objects.requireNonNull(rawMessage);
 
         final Span span = startSpan(parent, rawMessage);
-        Tags.MESSAGE_BUS_DESTINATION.set(span, targetAddress);
-        span.setTag(MessageHelper.APP_PROPERTY_TENANT_ID, tenantId);
-        span.setTag(MessageHelper.APP_PROPERTY_DEVICE_ID, MessageHelper.getDeviceId(rawMessage));
-        TracingHelper.injectSpanContext(tracer, span.context(), rawMessage);
+        if (!TracingHelper.isNoop(span.context())) {
+            Tags.MESSAGE_BUS_DESTINATION.set(span, targetAddress);
+            span.setTag(MessageHelper.APP_PROPERTY_TENANT_ID, tenantId);
+            span.setTag(MessageHelper.APP_PROPERTY_DEVICE_ID, MessageHelper.getDeviceId(rawMessage));
+            TracingHelper.injectSpanContext(tracer, span.context(), rawMessage);
+        }
 
         return executeOrRunOnContext(result -> {
             if (sender.sendQueueFull()) {
@@ -308,11 +310,13 @@ public abstract class AbstractSender extends AbstractHonoClient implements Messa
         final Future<ProtonDelivery> result = Future.future();
         final String messageId = String.format("%s-%d", getClass().getSimpleName(), MESSAGE_COUNTER.getAndIncrement());
         message.setMessageId(messageId);
-        final Map<String, Object> details = new HashMap<>(2);
-        details.put(TracingHelper.TAG_MESSAGE_ID.getKey(), messageId);
-        details.put(TracingHelper.TAG_CREDIT.getKey(), sender.getCredit());
-        details.put(TracingHelper.TAG_QOS.getKey(), sender.getQoS().toString());
-        currentSpan.log(details);
+        if (!TracingHelper.isNoop(currentSpan.context())) {
+            final Map<String, Object> details = new HashMap<>(3);
+            details.put(TracingHelper.TAG_MESSAGE_ID.getKey(), messageId);
+            details.put(TracingHelper.TAG_CREDIT.getKey(), sender.getCredit());
+            details.put(TracingHelper.TAG_QOS.getKey(), sender.getQoS().toString());
+            currentSpan.log(details);
+        }
 
         final Long timerId = config.getSendMessageTimeout() > 0
                 ? context.owner().setTimer(config.getSendMessageTimeout(), id -> {
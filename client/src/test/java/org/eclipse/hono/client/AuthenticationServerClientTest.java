@@ -0,0 +1,190 @@
+/*******************************************************************************
+ * Copyright (c) 2019 Contributors to the Eclipse Foundation
+ *
+ * See the NOTICE file(s) distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *******************************************************************************/
+
+package org.eclipse.hono.client;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+
+import javax.security.sasl.AuthenticationException;
+
+import org.apache.qpid.proton.message.Message;
+import org.eclipse.hono.auth.HonoUser;
+import org.eclipse.hono.connection.ConnectionFactory;
+import org.eclipse.hono.util.AuthenticationConstants;
+import org.eclipse.hono.util.MessageHelper;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Answers;
+
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.SignatureAlgorithm;
+import io.vertx.core.AsyncResult;
+import io.vertx.core.Future;
+import io.vertx.core.Handler;
+import io.vertx.core.Vertx;
+import io.vertx.proton.ProtonClientOptions;
+import io.vertx.proton.ProtonConnection;
+import io.vertx.proton.ProtonHelper;
+import io.vertx.proton.ProtonMessageHandler;
+import io.vertx.proton.ProtonReceiver;
+
+/**
+ * Tests verifying behavior of {@link AuthenticationServerClient}.
+ *
+ */
+public class AuthenticationServerClientTest {
+
+    private Vertx vertx;
+    private ConnectionFactory factory;
+    private String token;
+
+    /**
+     * Sets up the fixture.
+     */
+    @Before
+    public void setUp() {
+
+        vertx = mock(Vertx.class);
+        factory = mock(ConnectionFactory.class);
+        token = Jwts.builder()
+                .signWith(SignatureAlgorithm.HS256, "asecretkeywithatleastthirtytwobytes")
+                .setExpiration(Date.from(Instant.now().plusSeconds(60)))
+                .setSubject("user")
+                .compact();
+    }
+
+    /**
+     * Verifies that a token retrieved for credentials is served from the cache
+     * for subsequent requests using the same credentials.
+     */
+    @Test
+    public void testVerifyPlainUsesCachedToken() {
+
+        givenAnAuthenticationServerIssuingTokens();
+        final AuthenticationServerClient client = new AuthenticationServerClient(vertx, factory, 10);
+
+        final List<AsyncResult<HonoUser>> results = new ArrayList<>();
+        client.verifyPlain(null, "user", "pwd", results::add);
+        client.verifyPlain(null, "user", "pwd", results::add);
+        // a different password must not match the cached token
+        client.verifyPlain(null, "user", "other", results::add);
+
+        assertThat(results.size(), is(3));
+        results.forEach(result -> assertThat(result.result().getToken(), is(token)));
+        verify(factory, times(1)).connect(any(ProtonClientOptions.class), eq("user"), eq("pwd"), any(), any(), any());
+        verify(factory, times(1)).connect(any(ProtonClientOptions.class), eq("user"), eq("other"), any(), any(), any());
+    }
+
+    /**
+     * Verifies that failed authentication attempts are not cached.
+     */
+    @Test
+    public void testVerifyPlainDoesNotCacheFailures() {
+
+        doAnswer(invocation -> {
+            final Handler<AsyncResult<ProtonConnection>> resultHandler = invocation.getArgument(5);
+            resultHandler.handle(Future.failedFuture(new AuthenticationException("invalid credentials")));
+            return null;
+        }).when(factory).connect(any(ProtonClientOptions.class), anyString(), anyString(), any(), any(), any());
+        final AuthenticationServerClient client = new AuthenticationServerClient(vertx, factory, 10);
+
+        final List<AsyncResult<HonoUser>> results = new ArrayList<>();
+        client.verifyPlain(null, "user", "wrong", results::add);
+        client.verifyPlain(null, "user", "wrong", results::add);
+
+        assertThat(results.size(), is(2));
+        results.forEach(result -> {
+            assertTrue(result.failed());
+            assertThat(((ServiceInvocationException) result.cause()).getErrorCode(), is(401));
+        });
+        verify(factory, times(2)).connect(any(ProtonClientOptions.class), anyString(), anyString(), any(), any(), any());
+    }
+
+    /**
+     * Verifies that concurrent requests for the same credentials are served
+     * by a single connection to the Authentication server.
+     */
+    @Test
+    public void testVerifyPlainSharesPendingRequest() {
+
+        final AtomicReference<Handler<AsyncResult<ProtonConnection>>> pendingConnect = new AtomicReference<>();
+        doAnswer(invocation -> {
+            pendingConnect.set(invocation.getArgument(5));
+            return null;
+        }).when(factory).connect(any(ProtonClientOptions.class), anyString(), anyString(), any(), any(), any());
+        final AuthenticationServerClient client = new AuthenticationServerClient(vertx, factory, 10);
+
+        final List<AsyncResult<HonoUser>> results = new ArrayList<>();
+        client.verifyPlain(null, "user", "pwd", results::add);
+        client.verifyPlain(null, "user", "pwd", results::add);
+        assertTrue(results.isEmpty());
+
+        pendingConnect.get().handle(Future.succeededFuture(newConnectionIssuingToken()));
+
+        assertThat(results.size(), is(2));
+        results.forEach(result -> assertThat(result.result().getToken(), is(token)));
+        verify(factory, times(1)).connect(any(ProtonClientOptions.class), anyString(), anyString(), any(), any(), any());
+    }
+
+    private void givenAnAuthenticationServerIssuingTokens() {
+
+        doAnswer(invocation -> {
+            final Handler<AsyncResult<ProtonConnection>> resultHandler = invocation.getArgument(5);
+            resultHandler.handle(Future.succeededFuture(newConnectionIssuingToken()));
+            return null;
+        }).when(factory).connect(any(ProtonClientOptions.class), anyString(), anyString(), any(), any(), any());
+    }
+
+    @SuppressWarnings("unchecked")
+    private ProtonConnection newConnectionIssuingToken() {
+
+        final AtomicReference<Handler<AsyncResult<ProtonReceiver>>> openHandler = new AtomicReference<>();
+        final AtomicReference<ProtonMessageHandler> messageHandler = new AtomicReference<>();
+        final ProtonReceiver receiver = mock(ProtonReceiver.class, Answers.RETURNS_SELF);
+        when(receiver.openHandler(any(Handler.class))).thenAnswer(invocation -> {
+            openHandler.set(invocation.getArgument(0));
+            return receiver;
+        });
+        when(receiver.handler(any(ProtonMessageHandler.class))).thenAnswer(invocation -> {
+            messageHandler.set(invocation.getArgument(0));
+            return receiver;
+        });
+        when(receiver.open()).thenAnswer(invocation -> {
+            openHandler.get().handle(Future.succeededFuture(receiver));
+            final Message message = ProtonHelper.message(token);
+            MessageHelper.addProperty(message, AuthenticationConstants.APPLICATION_PROPERTY_TYPE,
+                    AuthenticationConstants.TYPE_AMQP_JWT);
+            messageHandler.get().handle(null, message);
+            return receiver;
+        });
+        final ProtonConnection con = mock(ProtonConnection.class);
+        when(con.createReceiver(anyString())).thenReturn(receiver);
+        return con;
+    }
+}
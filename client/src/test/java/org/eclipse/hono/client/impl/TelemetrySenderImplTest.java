@@ -27,6 +27,8 @@ import org.junit.Test;
 import org.junit.runner.RunWith;
 
 import io.opentracing.Span;
+import io.opentracing.Tracer;
+import io.opentracing.noop.NoopSpan;
 import io.vertx.core.Context;
 import io.vertx.core.Future;
 import io.vertx.core.Handler;
@@ -143,4 +145,30 @@ public class TelemetrySenderImplTest {
         // THEN the given Span will nonetheless be finished.
         verify(span).finish();
     }
+
+    /**
+     * Verifies that the sender does not create a span for a message that
+     * is sent in a no-op context.
+     */
+    @SuppressWarnings("unchecked")
+    @Test
+    public void testSendMessageDoesNotCreateSpanForUnsampledContext() {
+
+        // GIVEN a sender that has credit
+        when(sender.sendQueueFull()).thenReturn(Boolean.FALSE);
+        when(sender.send(any(Message.class), any(Handler.class))).thenReturn(mock(ProtonDelivery.class));
+        final Tracer tracer = mock(Tracer.class);
+        final MessageSender messageSender = new TelemetrySenderImpl(config, sender, "tenant", "telemetry/tenant", context, tracer);
+
+        // WHEN sending a message in the context of an upload that is not traced
+        final Message message = ProtonHelper.message("telemetry/tenant", "hello");
+        messageSender.send(message, NoopSpan.INSTANCE.context());
+
+        // THEN the message has been sent
+        verify(sender).send(any(Message.class), any(Handler.class));
+        // without creating a span
+        verify(tracer, never()).buildSpan(anyString());
+        // or injecting the context into the message
+        verify(tracer, never()).inject(any(), any(), any());
+    }
 }
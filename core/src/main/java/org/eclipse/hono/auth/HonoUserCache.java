@@ -0,0 +1,151 @@
+/*******************************************************************************
+ * Copyright (c) 2019 Contributors to the Eclipse Foundation
+ *
+ * See the NOTICE file(s) distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *******************************************************************************/
+
+package org.eclipse.hono.auth;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.time.Instant;
+import java.util.Base64;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.eclipse.hono.cache.BasicExpiringValue;
+import org.eclipse.hono.cache.ExpiringValue;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A cache for users that have been authenticated by means of secrets like
+ * passwords or tokens.
+ * <p>
+ * The users are cached under a salted SHA-256 digest of the secrets so that no
+ * secrets are kept in memory in plain text. The number of cached users is limited.
+ * If the cache is full, expired users are purged before a new user is added.
+ * Users that do not fit into the cache are not cached at all.
+ */
+public final class HonoUserCache {
+
+    private static final Logger LOG = LoggerFactory.getLogger(HonoUserCache.class);
+    private static final String HASH_ALGORITHM = "SHA-256";
+
+    private final int maxSize;
+    private final byte[] salt = new byte[16];
+    // <digest of secrets, user>
+    private final Map<String, ExpiringValue<HonoUser>> users = new ConcurrentHashMap<>();
+
+    /**
+     * Creates a new cache.
+     *
+     * @param maxSize The maximum number of users to cache. If 0, no users are cached.
+     * @throws IllegalArgumentException if the size is negative.
+     */
+    public HonoUserCache(final int maxSize) {
+        if (maxSize < 0) {
+            throw new IllegalArgumentException("cache size must be >= 0");
+        }
+        this.maxSize = maxSize;
+        new SecureRandom().nextBytes(salt);
+    }
+
+    /**
+     * Checks if this cache caches any users at all.
+     *
+     * @return {@code true} if the maximum size of this cache is &gt; 0.
+     */
+    public boolean isEnabled() {
+        return maxSize > 0;
+    }
+
+    /**
+     * Gets the key to cache a user under that has been authenticated by means of
+     * the given secrets.
+     *
+     * @param secrets The secrets. {@code null} values are permitted.
+     * @return The salted digest of the secrets.
+     */
+    public String getKey(final String... secrets) {
+
+        try {
+            final MessageDigest digest = MessageDigest.getInstance(HASH_ALGORITHM);
+            digest.update(salt);
+            for (final String value : secrets) {
+                if (value != null) {
+                    digest.update(value.getBytes(StandardCharsets.UTF_8));
+                }
+                // separate the values so that different combinations of values cannot result in the same input
+                digest.update((byte) 0);
+            }
+            return Base64.getEncoder().encodeToString(digest.digest());
+        } catch (final NoSuchAlgorithmException e) {
+            // every JRE is required to support SHA-256
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Gets a cached user.
+     *
+     * @param key The key that the user has been cached under.
+     * @return The user or {@code null} if no user is cached under the key
+     *         or if the user has expired.
+     * @throws NullPointerException if key is {@code null}.
+     */
+    public HonoUser get(final String key) {
+
+        Objects.requireNonNull(key);
+        final ExpiringValue<HonoUser> user = users.get(key);
+        if (user == null || user.isExpired()) {
+            return null;
+        } else {
+            return user.getValue();
+        }
+    }
+
+    /**
+     * Puts a user to the cache.
+     * <p>
+     * Users that expire before now are not cached.
+     *
+     * @param key The key to cache the user under.
+     * @param user The user.
+     * @param expirationTime The point in time after which the user should no longer
+     *                       be served from the cache.
+     * @return {@code true} if the user has been cached.
+     * @throws NullPointerException if any of the parameters is {@code null}.
+     */
+    public boolean put(final String key, final HonoUser user, final Instant expirationTime) {
+
+        Objects.requireNonNull(key);
+        Objects.requireNonNull(user);
+        Objects.requireNonNull(expirationTime);
+
+        final Instant now = Instant.now();
+        if (!isEnabled() || !expirationTime.isAfter(now)) {
+            return false;
+        }
+        if (users.size() >= maxSize) {
+            users.values().removeIf(value -> value.isExpired(now));
+        }
+        if (users.size() < maxSize) {
+            users.put(key, new BasicExpiringValue<>(user, expirationTime));
+            return true;
+        } else {
+            LOG.debug("cache is full, cannot cache user");
+            return false;
+        }
+    }
+}
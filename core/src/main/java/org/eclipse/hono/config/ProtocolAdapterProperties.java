@@ -13,17 +13,30 @@
 
 package org.eclipse.hono.config;
 
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+
 /**
  * Common configuration properties for protocol adapters of Hono.
  *
  */
 public class ProtocolAdapterProperties extends ServiceConfigProperties {
 
+    /**
+     * The default maximum number of connection requests to queue if the maximum number
+     * of concurrently processed connection requests has been reached.
+     */
+    public static final int DEFAULT_MAX_QUEUED_CONNECTION_REQUESTS = 1000;
+
     private boolean authenticationRequired = true;
     private boolean jmsVendorPropsEnabled = false;
     private boolean defaultsEnabled = true;
     private long eventLoopBlockedCheckTimeout = 5000L;
     private int maxConnections = 0;
+    private int maxConcurrentConnectionRequests = 0;
+    private int maxQueuedConnectionRequests = DEFAULT_MAX_QUEUED_CONNECTION_REQUESTS;
+    private List<String> processingStageTimers = Collections.emptyList();
 
     /**
      * Checks whether the protocol adapter always authenticates devices using their provided credentials as defined
@@ -194,4 +207,116 @@ public class ProtocolAdapterProperties extends ServiceConfigProperties {
     public final boolean isConnectionLimitConfigured() {
         return maxConnections > 0;
     }
+
+    /**
+     * Gets the maximum number of connection requests that the protocol adapter
+     * processes concurrently.
+     * <p>
+     * Processing a connection request includes authenticating the device and
+     * retrieving the tenant and device information required for accepting the connection.
+     * Further requests are queued per tenant. Once a request has been processed, a queued
+     * request of the tenant having the fewest requests in process is started.
+     * Requests of devices authenticating by means of a client certificate are treated
+     * as requests of a common tenant.
+     * <p>
+     * The limit applies to each instance (verticle) of the protocol adapter separately.
+     * <p>
+     * The default value of this property is 0 which means that the number of
+     * concurrently processed requests is not limited.
+     * 
+     * @return The number of requests.
+     */
+    public final int getMaxConcurrentConnectionRequests() {
+        return maxConcurrentConnectionRequests;
+    }
+
+    /**
+     * Sets the maximum number of connection requests that the protocol adapter
+     * processes concurrently.
+     * <p>
+     * Processing a connection request includes authenticating the device and
+     * retrieving the tenant and device information required for accepting the connection.
+     * Further requests are queued per tenant. Once a request has been processed, a queued
+     * request of the tenant having the fewest requests in process is started.
+     * Requests of devices authenticating by means of a client certificate are treated
+     * as requests of a common tenant.
+     * <p>
+     * The limit applies to each instance (verticle) of the protocol adapter separately.
+     * <p>
+     * The default value of this property is 0 which means that the number of
+     * concurrently processed requests is not limited.
+     * 
+     * @param maxRequests The number of requests.
+     * @throws IllegalArgumentException if the number is &lt; 0.
+     */
+    public final void setMaxConcurrentConnectionRequests(final int maxRequests) {
+        if (maxRequests < 0) {
+            throw new IllegalArgumentException("number of requests must not be negative");
+        }
+        this.maxConcurrentConnectionRequests = maxRequests;
+    }
+
+    /**
+     * Gets the maximum number of connection requests per tenant that the protocol adapter
+     * queues when the maximum number of concurrently processed requests has been reached.
+     * <p>
+     * Requests are rejected if the queue is full.
+     * <p>
+     * The default value of this property is {@link #DEFAULT_MAX_QUEUED_CONNECTION_REQUESTS}.
+     * 
+     * @return The number of requests.
+     */
+    public final int getMaxQueuedConnectionRequests() {
+        return maxQueuedConnectionRequests;
+    }
+
+    /**
+     * Sets the maximum number of connection requests per tenant that the protocol adapter
+     * queues when the maximum number of concurrently processed requests has been reached.
+     * <p>
+     * Requests are rejected if the queue is full.
+     * <p>
+     * The default value of this property is {@link #DEFAULT_MAX_QUEUED_CONNECTION_REQUESTS}.
+     * 
+     * @param maxRequests The number of requests.
+     * @throws IllegalArgumentException if the number is &lt; 0.
+     */
+    public final void setMaxQueuedConnectionRequests(final int maxRequests) {
+        if (maxRequests < 0) {
+            throw new IllegalArgumentException("number of requests must not be negative");
+        }
+        this.maxQueuedConnectionRequests = maxRequests;
+    }
+
+    /**
+     * Gets the stages of processing messages and connection requests
+     * that the protocol adapter records the duration of.
+     * <p>
+     * Supported values are <em>authentication</em>, <em>tenant-lookup</em>, <em>assertion</em>,
+     * <em>sender-acquisition</em>, <em>downstream-send</em> and <em>ttd-wait</em>.
+     * <p>
+     * By default, the durations of all stages are not recorded.
+     * 
+     * @return The names of the stages.
+     */
+    public final List<String> getProcessingStageTimers() {
+        return Collections.unmodifiableList(processingStageTimers);
+    }
+
+    /**
+     * Sets the stages of processing messages and connection requests
+     * that the protocol adapter records the duration of.
+     * <p>
+     * Supported values are <em>authentication</em>, <em>tenant-lookup</em>, <em>assertion</em>,
+     * <em>sender-acquisition</em>, <em>downstream-send</em> and <em>ttd-wait</em>.
+     * <p>
+     * By default, the durations of all stages are not recorded.
+     * 
+     * @param stages The names of the stages.
+     * @throws NullPointerException if stages is {@code null}.
+     */
+    public final void setProcessingStageTimers(final List<String> stages) {
+        Objects.requireNonNull(stages);
+        this.processingStageTimers = stages;
+    }
 }
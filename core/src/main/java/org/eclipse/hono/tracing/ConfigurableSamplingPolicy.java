@@ -0,0 +1,192 @@
+/*******************************************************************************
+ * Copyright (c) 2019 Contributors to the Eclipse Foundation
+ *
+ * See the NOTICE file(s) distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *******************************************************************************/
+
+package org.eclipse.hono.tracing;
+
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A sampling policy that is based on explicitly configured decisions for
+ * devices, tenants, endpoints and QoS levels.
+ * <p>
+ * The decision for a message is determined by the first of the following rules that applies:
+ * <ol>
+ * <li>the decision configured for the device,</li>
+ * <li>the decision configured for the tenant,</li>
+ * <li>the decision configured for the endpoint,</li>
+ * <li>the decision configured for the QoS level,</li>
+ * <li>the default decision.</li>
+ * </ol>
+ * <p>
+ * The decisions are usually configured on startup. They can also be changed programmatically
+ * at runtime by means of the setters and the maps returned by the getters. Instances are thread
+ * safe and can thus be shared by all protocol adapter instances.
+ */
+public class ConfigurableSamplingPolicy implements SamplingPolicy {
+
+    private final Map<String, Boolean> devices = new ConcurrentHashMap<>();
+    private final Map<String, Boolean> tenants = new ConcurrentHashMap<>();
+    private final Map<String, Boolean> endpoints = new ConcurrentHashMap<>();
+    private final Map<Integer, Boolean> qos = new ConcurrentHashMap<>();
+    private volatile boolean sampled = true;
+
+    /**
+     * Checks if messages are traced for which no other decision has been configured.
+     * <p>
+     * The default value of this property is {@code true}.
+     *
+     * @return {@code true} if the messages are traced.
+     */
+    public final boolean isSampled() {
+        return sampled;
+    }
+
+    /**
+     * Sets whether messages are traced for which no other decision has been configured.
+     * <p>
+     * The default value of this property is {@code true}.
+     *
+     * @param sampled {@code true} if the messages should be traced.
+     */
+    public final void setSampled(final boolean sampled) {
+        this.sampled = sampled;
+    }
+
+    /**
+     * Gets the decisions configured for devices.
+     * <p>
+     * The keys of the returned map have the form <em>tenant/device</em>.
+     * The map can be modified in order to change the configured decisions.
+     *
+     * @return The decisions.
+     */
+    public final Map<String, Boolean> getDevices() {
+        return devices;
+    }
+
+    /**
+     * Gets the decisions configured for tenants, keyed by tenant identifier.
+     * <p>
+     * The map can be modified in order to change the configured decisions.
+     *
+     * @return The decisions.
+     */
+    public final Map<String, Boolean> getTenants() {
+        return tenants;
+    }
+
+    /**
+     * Gets the decisions configured for endpoints, keyed by endpoint name.
+     * <p>
+     * The map can be modified in order to change the configured decisions.
+     *
+     * @return The decisions.
+     */
+    public final Map<String, Boolean> getEndpoints() {
+        return endpoints;
+    }
+
+    /**
+     * Gets the decisions configured for QoS levels, keyed by level.
+     * <p>
+     * The map can be modified in order to change the configured decisions.
+     *
+     * @return The decisions.
+     */
+    public final Map<Integer, Boolean> getQos() {
+        return qos;
+    }
+
+    /**
+     * Sets the decision for a device.
+     *
+     * @param tenantId The tenant that the device belongs to.
+     * @param deviceId The device.
+     * @param sampled {@code true} if messages of the device should be traced or
+     *                {@code null} to remove the decision.
+     * @throws NullPointerException if tenant or device ID are {@code null}.
+     */
+    public final void setDeviceSampled(final String tenantId, final String deviceId, final Boolean sampled) {
+        put(devices, getDeviceKey(Objects.requireNonNull(tenantId), Objects.requireNonNull(deviceId)), sampled);
+    }
+
+    /**
+     * Sets the decision for a tenant.
+     *
+     * @param tenantId The tenant.
+     * @param sampled {@code true} if messages of the tenant's devices should be traced or
+     *                {@code null} to remove the decision.
+     * @throws NullPointerException if tenant ID is {@code null}.
+     */
+    public final void setTenantSampled(final String tenantId, final Boolean sampled) {
+        put(tenants, Objects.requireNonNull(tenantId), sampled);
+    }
+
+    /**
+     * Sets the decision for an endpoint.
+     *
+     * @param endpoint The name of the endpoint.
+     * @param sampled {@code true} if messages uploaded to the endpoint should be traced or
+     *                {@code null} to remove the decision.
+     * @throws NullPointerException if endpoint is {@code null}.
+     */
+    public final void setEndpointSampled(final String endpoint, final Boolean sampled) {
+        put(endpoints, Objects.requireNonNull(endpoint), sampled);
+    }
+
+    /**
+     * Sets the decision for a QoS level.
+     *
+     * @param level The QoS level.
+     * @param sampled {@code true} if messages uploaded with the QoS level should be traced or
+     *                {@code null} to remove the decision.
+     */
+    public final void setQoSSampled(final int level, final Boolean sampled) {
+        put(qos, level, sampled);
+    }
+
+    @Override
+    public boolean isSampled(final String tenantId, final String deviceId, final String endpoint, final Integer qos) {
+
+        Boolean decision = null;
+        if (tenantId != null) {
+            if (deviceId != null && !devices.isEmpty()) {
+                decision = devices.get(getDeviceKey(tenantId, deviceId));
+            }
+            if (decision == null) {
+                decision = tenants.get(tenantId);
+            }
+        }
+        if (decision == null && endpoint != null) {
+            decision = endpoints.get(endpoint);
+        }
+        if (decision == null && qos != null) {
+            decision = this.qos.get(qos);
+        }
+        return decision == null ? sampled : decision;
+    }
+
+    private static String getDeviceKey(final String tenantId, final String deviceId) {
+        return tenantId + "/" + deviceId;
+    }
+
+    private static <K> void put(final Map<K, Boolean> decisions, final K key, final Boolean sampled) {
+        if (sampled == null) {
+            decisions.remove(key);
+        } else {
+            decisions.put(key, sampled);
+        }
+    }
+}
@@ -0,0 +1,44 @@
+/*******************************************************************************
+ * Copyright (c) 2019 Contributors to the Eclipse Foundation
+ *
+ * See the NOTICE file(s) distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *******************************************************************************/
+
+package org.eclipse.hono.tracing;
+
+/**
+ * A policy deciding whether the processing of a message uploaded by a device
+ * should be traced.
+ * <p>
+ * Protocol adapters consult the policy once per uploaded message. If the policy decides
+ * that the message should not be traced, the adapter uses a no-op span for processing
+ * the message so that neither the adapter nor the Hono clients invoked on behalf of
+ * the message create any spans, tags or log items for it.
+ */
+@FunctionalInterface
+public interface SamplingPolicy {
+
+    /**
+     * A policy that decides to trace all messages.
+     */
+    SamplingPolicy ALWAYS = (tenantId, deviceId, endpoint, qos) -> true;
+
+    /**
+     * Checks if the processing of a message should be traced.
+     *
+     * @param tenantId The tenant that the device belongs to or {@code null} if unknown.
+     * @param deviceId The device that the message originates from or {@code null} if unknown.
+     * @param endpoint The name of the endpoint that the message is uploaded to, e.g. <em>telemetry</em>,
+     *                 or {@code null} if unknown.
+     * @param qos The QoS level that the message has been uploaded with or {@code null} if unknown.
+     * @return {@code true} if the processing of the message should be traced.
+     */
+    boolean isSampled(String tenantId, String deviceId, String endpoint, Integer qos);
+}
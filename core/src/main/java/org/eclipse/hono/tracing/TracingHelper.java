@@ -102,6 +102,24 @@ public final class TracingHelper {
         // prevent instantiation
     }
 
+    /**
+     * Checks if a context is the context of a no-op span.
+     * <p>
+     * Protocol adapters use a no-op span for processing messages that a {@link SamplingPolicy}
+     * has decided not to be traced. Code creating spans on behalf of such a message
+     * should use this method in order to determine if it needs to create a span,
+     * add tags or log items at all.
+     * <p>
+     * Note that this method does not reflect the sampling decision of the tracer
+     * for contexts of spans which are not no-op spans.
+     *
+     * @param spanContext The context or {@code null} if the operation is not part of a trace (yet).
+     * @return {@code true} if the context is a no-op context, {@code false} otherwise.
+     */
+    public static boolean isNoop(final SpanContext spanContext) {
+        return spanContext instanceof NoopSpanContext;
+    }
+
     /**
      * Marks an <em>OpenTracing</em> span as erroneous and logs an exception.
      * <p>
@@ -112,7 +130,7 @@ public final class TracingHelper {
      * @throws NullPointerException if error is {@code null}.
      */
     public static void logError(final Span span, final Throwable error) {
-        if (span != null) {
+        if (span != null && !isNoop(span.context())) {
             logError(span, getErrorLogItems(error));
         }
     }
@@ -224,6 +242,7 @@ public final class TracingHelper {
      * Injects a {@code SpanContext} into an AMQP {@code Message}.
      * <p>
      * The span context will be written to the message annotations of the given message.
+     * A no-op context is not injected at all.
      *
      * @param tracer The Tracer to use for injecting the context.
      * @param spanContext The context to inject.
@@ -236,6 +255,9 @@ public final class TracingHelper {
         Objects.requireNonNull(spanContext);
         Objects.requireNonNull(message);
 
+        if (isNoop(spanContext)) {
+            return;
+        }
         tracer.inject(spanContext, Format.Builtin.TEXT_MAP,
                 new MessageAnnotationsInjectAdapter(message, AMQP_ANNOTATION_NAME_TRACE_CONTEXT));
     }
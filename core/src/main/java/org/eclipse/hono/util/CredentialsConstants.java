@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2016, 2018 Contributors to the Eclipse Foundation
+ * Copyright (c) 2016, 2019 Contributors to the Eclipse Foundation
  *
  * See the NOTICE file(s) distributed with this work for additional
  * information regarding copyright ownership.
@@ -78,7 +78,7 @@ public final class CredentialsConstants extends RequestResponseApiConstants {
      * Request actions that belong to the Credentials API.
      */
     public enum CredentialsAction {
-        get, add, update, remove, unknown;
+        get, add, update, remove, find, unknown;
 
         /**
          * Construct a CredentialsAction from a subject.
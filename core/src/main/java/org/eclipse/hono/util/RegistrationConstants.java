@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2016, 2018 Contributors to the Eclipse Foundation
+ * Copyright (c) 2016, 2019 Contributors to the Eclipse Foundation
  *
  * See the NOTICE file(s) distributed with this work for additional
  * information regarding copyright ownership.
@@ -40,6 +40,10 @@ public final class RegistrationConstants extends RequestResponseApiConstants {
      * The AMQP 1.0 <em>subject</em> to use for the <em>update device registration</em> operation.
      */
     public static final String ACTION_UPDATE     = "update";
+    /**
+     * The AMQP 1.0 <em>subject</em> to use for the <em>find devices</em> operation.
+     */
+    public static final String ACTION_FIND       = "find";
 
     /**
      * The name of the field in a response to the <em>assert device registration</em> operation
@@ -57,6 +61,11 @@ public final class RegistrationConstants extends RequestResponseApiConstants {
      * by the device.
      */
     public static final String FIELD_DEFAULTS     = "defaults";
+    /**
+     * The name of the field in a response to the <em>find devices</em> operation
+     * that contains the registration information of the matching devices.
+     */
+    public static final String FIELD_DEVICES      = "devices";
 
     /**
      * The name of the Device Registration API endpoint.
@@ -69,7 +78,7 @@ public final class RegistrationConstants extends RequestResponseApiConstants {
     public static final String EVENT_BUS_ADDRESS_REGISTRATION_IN = "registration.in";
 
     private static final List<String> ACTIONS = Arrays.asList(ACTION_ASSERT, ACTION_REGISTER,
-            ACTION_GET, ACTION_DEREGISTER, ACTION_UPDATE);
+            ACTION_GET, ACTION_DEREGISTER, ACTION_UPDATE, ACTION_FIND);
 
     private RegistrationConstants() {
         // prevent instantiation
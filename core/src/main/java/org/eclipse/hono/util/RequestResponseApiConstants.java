@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2016, 2018 Contributors to the Eclipse Foundation
+ * Copyright (c) 2016, 2019 Contributors to the Eclipse Foundation
  *
  * See the NOTICE file(s) distributed with this work for additional
  * information regarding copyright ownership.
@@ -49,6 +49,33 @@ public abstract class RequestResponseApiConstants {
     public static final String FIELD_ERROR     = "error";
     public static final String FIELD_PAYLOAD   = "payload";
 
+    /**
+     * The name of the field in a request to a <em>find</em> operation that contains
+     * the position after which the requested page starts. The same field contains the
+     * position of the next page in the response, if there are more matching entries.
+     */
+    public static final String FIELD_CURSOR    = "cursor";
+    /**
+     * The name of the field in a request to a <em>find</em> operation that contains
+     * the criteria the returned entries need to match.
+     */
+    public static final String FIELD_FILTER    = "filter";
+    /**
+     * The name of the field in a request to a <em>find</em> operation that contains
+     * the maximum number of entries to return.
+     */
+    public static final String FIELD_PAGE_SIZE = "page-size";
+
+    /**
+     * The number of entries returned by a <em>find</em> operation if the request
+     * does not specify a page size.
+     */
+    public static final int DEFAULT_PAGE_SIZE = 100;
+    /**
+     * The maximum number of entries returned by a single invocation of a <em>find</em> operation.
+     */
+    public static final int MAX_PAGE_SIZE = 1000;
+
     /**
      * Empty default constructor.
      */
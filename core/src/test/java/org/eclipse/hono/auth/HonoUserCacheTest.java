@@ -0,0 +1,91 @@
+/*******************************************************************************
+ * Copyright (c) 2019 Contributors to the Eclipse Foundation
+ *
+ * See the NOTICE file(s) distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *******************************************************************************/
+
+package org.eclipse.hono.auth;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.not;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+import java.time.Instant;
+
+import org.junit.Test;
+
+
+/**
+ * Verifies behavior of {@link HonoUserCache}.
+ *
+ */
+public class HonoUserCacheTest {
+
+    private final HonoUser user = new HonoUserAdapter() {
+    };
+
+    /**
+     * Verifies that the key depends on the order of the secrets and does not
+     * contain the secrets in plain text.
+     */
+    @Test
+    public void testGetKeyDistinguishesSecrets() {
+
+        final HonoUserCache cache = new HonoUserCache(10);
+        assertThat(cache.getKey("user", "password"), is(cache.getKey("user", "password")));
+        assertThat(cache.getKey("user", "password"), not(cache.getKey("userp", "assword")));
+        assertThat(cache.getKey(null, "password"), not(cache.getKey("password", null)));
+        assertFalse(cache.getKey("user", "password").contains("password"));
+        // keys are salted per cache instance
+        assertThat(cache.getKey("user", "password"), not(new HonoUserCache(10).getKey("user", "password")));
+    }
+
+    /**
+     * Verifies that a cached user is returned until it expires.
+     */
+    @Test
+    public void testGetReturnsNonExpiredUsersOnly() {
+
+        final HonoUserCache cache = new HonoUserCache(10);
+        assertTrue(cache.put("valid", user, Instant.now().plusSeconds(60)));
+        assertFalse(cache.put("expired", user, Instant.now().minusSeconds(1)));
+
+        assertThat(cache.get("valid"), is(user));
+        assertThat(cache.get("expired"), nullValue());
+        assertThat(cache.get("unknown"), nullValue());
+    }
+
+    /**
+     * Verifies that users are not cached if the cache is full of non-expired users.
+     */
+    @Test
+    public void testPutRejectsUsersIfCacheIsFull() {
+
+        final HonoUserCache cache = new HonoUserCache(1);
+        assertTrue(cache.put("first", user, Instant.now().plusSeconds(60)));
+
+        assertFalse(cache.put("second", user, Instant.now().plusSeconds(60)));
+        assertThat(cache.get("second"), nullValue());
+    }
+
+    /**
+     * Verifies that no users are cached if the maximum size is 0.
+     */
+    @Test
+    public void testPutDoesNotCacheUsersIfDisabled() {
+
+        final HonoUserCache cache = new HonoUserCache(0);
+        assertFalse(cache.isEnabled());
+        assertFalse(cache.put("key", user, Instant.now().plusSeconds(60)));
+    }
+}
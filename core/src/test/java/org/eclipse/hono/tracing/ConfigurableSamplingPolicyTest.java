@@ -0,0 +1,108 @@
+/*******************************************************************************
+ * Copyright (c) 2019 Contributors to the Eclipse Foundation
+ *
+ * See the NOTICE file(s) distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *******************************************************************************/
+
+package org.eclipse.hono.tracing;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests verifying the behavior of {@link ConfigurableSamplingPolicy}.
+ *
+ */
+public class ConfigurableSamplingPolicyTest {
+
+    private ConfigurableSamplingPolicy policy;
+
+    /**
+     * Sets up the fixture.
+     */
+    @Before
+    public void setUp() {
+        policy = new ConfigurableSamplingPolicy();
+    }
+
+    /**
+     * Verifies that all messages are traced by default.
+     */
+    @Test
+    public void testIsSampledReturnsDefaultDecision() {
+
+        assertTrue(policy.isSampled("tenant", "device", "telemetry", 0));
+        assertTrue(policy.isSampled(null, null, null, null));
+        policy.setSampled(false);
+        assertFalse(policy.isSampled("tenant", "device", "telemetry", 0));
+    }
+
+    /**
+     * Verifies that the decision configured for a device takes precedence over the
+     * decisions configured for the device's tenant, the endpoint and QoS.
+     */
+    @Test
+    public void testIsSampledPrefersDeviceDecision() {
+
+        policy.setSampled(false);
+        policy.setTenantSampled("tenant", Boolean.FALSE);
+        policy.setEndpointSampled("telemetry", Boolean.FALSE);
+        policy.setQoSSampled(0, Boolean.FALSE);
+        policy.setDeviceSampled("tenant", "device", Boolean.TRUE);
+
+        assertTrue(policy.isSampled("tenant", "device", "telemetry", 0));
+        assertFalse(policy.isSampled("tenant", "other-device", "telemetry", 0));
+    }
+
+    /**
+     * Verifies that the decision configured for a tenant takes precedence over the
+     * decisions configured for the endpoint and QoS.
+     */
+    @Test
+    public void testIsSampledPrefersTenantDecision() {
+
+        policy.setEndpointSampled("telemetry", Boolean.FALSE);
+        policy.setTenantSampled("tenant", Boolean.TRUE);
+
+        assertTrue(policy.isSampled("tenant", "device", "telemetry", 0));
+        assertFalse(policy.isSampled("other-tenant", "device", "telemetry", 0));
+        assertTrue(policy.isSampled("other-tenant", "device", "event", 1));
+    }
+
+    /**
+     * Verifies that the decision configured for a QoS level is applied if no other
+     * decision has been configured.
+     */
+    @Test
+    public void testIsSampledUsesQoSDecision() {
+
+        policy.setQoSSampled(0, Boolean.FALSE);
+
+        assertFalse(policy.isSampled("tenant", "device", "telemetry", 0));
+        assertTrue(policy.isSampled("tenant", "device", "telemetry", 1));
+        assertTrue(policy.isSampled("tenant", "device", "telemetry", null));
+    }
+
+    /**
+     * Verifies that decisions can be removed at runtime.
+     */
+    @Test
+    public void testIsSampledReflectsRemovedDecision() {
+
+        policy.setTenantSampled("tenant", Boolean.FALSE);
+        assertFalse(policy.isSampled("tenant", "device", "telemetry", 0));
+
+        policy.setTenantSampled("tenant", null);
+        assertTrue(policy.isSampled("tenant", "device", "telemetry", 0));
+    }
+}
@@ -27,6 +27,7 @@ import org.eclipse.hono.config.VertxProperties;
 import org.eclipse.hono.service.cache.SpringCacheProvider;
 import org.eclipse.hono.service.plan.ResourceLimitChecks;
 import org.eclipse.hono.service.plan.PrometheusBasedResourceLimitChecks;
+import org.eclipse.hono.tracing.ConfigurableSamplingPolicy;
 import org.eclipse.hono.util.CommandConstants;
 import org.eclipse.hono.util.Constants;
 import org.eclipse.hono.util.CredentialsConstants;
@@ -367,6 +368,19 @@ public abstract class AbstractAdapterConfig {
         return new VertxBasedHealthCheckServer(vertx(), applicationConfigProperties());
     }
 
+    /**
+     * Exposes the policy deciding which of the messages uploaded by devices are traced.
+     * <p>
+     * The decisions can be configured using properties with prefix <em>hono.tracing.sampling</em>.
+     *
+     * @return The policy.
+     */
+    @Bean
+    @ConfigurationProperties(prefix = "hono.tracing.sampling")
+    public ConfigurableSamplingPolicy samplingPolicy() {
+        return new ConfigurableSamplingPolicy();
+    }
+
     /**
      * Creates a new instance of {@link ResourceLimitChecks} based on prometheus metrics data.
      * 
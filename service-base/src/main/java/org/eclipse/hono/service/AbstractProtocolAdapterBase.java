@@ -16,10 +16,14 @@ import java.net.HttpURLConnection;
 import java.util.Objects;
 import java.util.Optional;
 import java.util.function.BiConsumer;
+import java.util.function.BooleanSupplier;
+import java.util.function.Supplier;
 
+import org.apache.qpid.proton.amqp.transport.ErrorCondition;
 import org.apache.qpid.proton.message.Message;
 import org.eclipse.hono.auth.Device;
 import org.eclipse.hono.client.ClientErrorException;
+import org.eclipse.hono.client.Command;
 import org.eclipse.hono.client.CommandConsumer;
 import org.eclipse.hono.client.CommandConsumerFactory;
 import org.eclipse.hono.client.CommandContext;
@@ -30,16 +34,25 @@ import org.eclipse.hono.client.HonoClient;
 import org.eclipse.hono.client.MessageConsumer;
 import org.eclipse.hono.client.MessageSender;
 import org.eclipse.hono.client.RegistrationClient;
+import org.eclipse.hono.client.ResourceConflictException;
 import org.eclipse.hono.client.ServerErrorException;
 import org.eclipse.hono.client.ServiceInvocationException;
 import org.eclipse.hono.client.TenantClient;
 import org.eclipse.hono.config.AbstractConfig;
 import org.eclipse.hono.config.ProtocolAdapterProperties;
 import org.eclipse.hono.service.auth.ValidityBasedTrustOptions;
+import org.eclipse.hono.service.limiting.ConnectionAdmissionController;
 import org.eclipse.hono.service.limiting.ConnectionLimitManager;
+import org.eclipse.hono.service.metric.Metrics;
+import org.eclipse.hono.service.metric.MetricsTags;
+import org.eclipse.hono.service.metric.MetricsTags.Direction;
+import org.eclipse.hono.service.metric.MetricsTags.ProcessingOutcome;
+import org.eclipse.hono.service.metric.MetricsTags.ProcessingStage;
+import org.eclipse.hono.service.metric.NoopBasedMetrics;
 import org.eclipse.hono.service.monitoring.ConnectionEventProducer;
 import org.eclipse.hono.service.plan.NoopResourceLimitChecks;
 import org.eclipse.hono.service.plan.ResourceLimitChecks;
+import org.eclipse.hono.tracing.SamplingPolicy;
 import org.eclipse.hono.util.Constants;
 import org.eclipse.hono.util.CredentialsConstants;
 import org.eclipse.hono.util.EventConstants;
@@ -88,15 +101,20 @@ public abstract class AbstractProtocolAdapterBase<T extends ProtocolAdapterPrope
      */
     protected static final String KEY_MICROMETER_SAMPLE = "micrometer.sample";
 
+    private static final Metrics NOOP_METRICS = new NoopBasedMetrics() {
+    };
+
     private HonoClient messagingClient;
     private HonoClient registrationServiceClient;
     private HonoClient tenantServiceClient;
     private HonoClient credentialsServiceClient;
     private CommandConsumerFactory commandConsumerFactory;
     private ConnectionLimitManager connectionLimitManager;
+    private ConnectionAdmissionController connectionAdmissionController;
 
     private ConnectionEventProducer connectionEventProducer;
     private ResourceLimitChecks resourceLimitChecks = new NoopResourceLimitChecks();
+    private SamplingPolicy samplingPolicy = SamplingPolicy.ALWAYS;
     private final ConnectionEventProducer.Context connectionEventProducerContext = new ConnectionEventProducer.Context() {
 
         @Override
@@ -338,6 +356,69 @@ public abstract class AbstractProtocolAdapterBase<T extends ProtocolAdapterPrope
         return this.resourceLimitChecks;
     }
 
+    /**
+     * Sets the policy deciding which of the messages uploaded by devices are traced.
+     * <p>
+     * If not set, the processing of all messages is traced.
+     *
+     * @param samplingPolicy The policy.
+     * @throws NullPointerException if policy is {@code null}.
+     */
+    @Autowired(required = false)
+    public final void setSamplingPolicy(final SamplingPolicy samplingPolicy) {
+        this.samplingPolicy = Objects.requireNonNull(samplingPolicy);
+    }
+
+    /**
+     * Gets the policy deciding which of the messages uploaded by devices are traced.
+     *
+     * @return The policy.
+     */
+    public final SamplingPolicy getSamplingPolicy() {
+        return samplingPolicy;
+    }
+
+    /**
+     * Checks if the processing of a message uploaded by a device should be traced.
+     * <p>
+     * Subclasses should invoke this method once for each uploaded message and use
+     * a no-op span (and span context) for processing the message if this method
+     * returns {@code false}.
+     *
+     * @param tenantId The tenant that the device belongs to or {@code null} if unknown.
+     * @param deviceId The device that the message originates from or {@code null} if unknown.
+     * @param endpoint The endpoint that the message is uploaded to.
+     * @param qos The QoS level that the message has been uploaded with.
+     * @return {@code true} if the processing of the message should be traced.
+     * @throws NullPointerException if endpoint or QoS are {@code null}.
+     */
+    protected final boolean isSampled(
+            final String tenantId,
+            final String deviceId,
+            final MetricsTags.EndpointType endpoint,
+            final MetricsTags.QoS qos) {
+
+        Objects.requireNonNull(endpoint);
+        Objects.requireNonNull(qos);
+
+        final Integer level;
+        switch (qos) {
+        case AT_MOST_ONCE:
+            level = 0;
+            break;
+        case AT_LEAST_ONCE:
+            level = 1;
+            break;
+        default:
+            level = null;
+        }
+        return samplingPolicy.isSampled(
+                tenantId,
+                deviceId,
+                endpoint == MetricsTags.EndpointType.UNKNOWN ? null : endpoint.getCanonicalName(),
+                level);
+    }
+
     /**
      * Establishes the connections to the services this adapter depends on.
      * <p>
@@ -378,11 +459,31 @@ public abstract class AbstractProtocolAdapterBase<T extends ProtocolAdapterPrope
             });
             commandConsumerFactory.addDisconnectListener(this::onCommandConnectionLost);
             commandConsumerFactory.addReconnectListener(this::onCommandConnectionEstablished);
+            if (connectionAdmissionController == null && getConfig().getMaxConcurrentConnectionRequests() > 0) {
+                LOG.info("limiting number of concurrently processed connection requests to {} [max queued: {}]",
+                        getConfig().getMaxConcurrentConnectionRequests(), getConfig().getMaxQueuedConnectionRequests());
+                connectionAdmissionController = new ConnectionAdmissionController(
+                        getConfig().getMaxConcurrentConnectionRequests(),
+                        getConfig().getMaxQueuedConnectionRequests());
+            }
+            enableProcessingStageTimers();
             doStart(result);
         }
         return result;
     }
 
+    private void enableProcessingStageTimers() {
+        for (final String name : getConfig().getProcessingStageTimers()) {
+            final ProcessingStage stage = ProcessingStage.fromString(name);
+            if (stage == null) {
+                LOG.warn("ignoring unknown processing stage [{}]", name);
+            } else {
+                LOG.info("recording duration of processing stage [{}]", name);
+                getMetrics().setProcessingStageTimerEnabled(stage, true);
+            }
+        }
+    }
+
     /**
      * Invoked after the adapter has started up.
      * <p>
@@ -734,6 +835,176 @@ public abstract class AbstractProtocolAdapterBase<T extends ProtocolAdapterPrope
         });
     }
 
+    /**
+     * Creates a handler for commands destined to a device which is waiting for a command
+     * in the context of a request containing a <em>time until disconnect</em>.
+     * <p>
+     * A valid command is passed to the given command handler if the response to the device's
+     * request has not been sent yet. In this case the time spent waiting for the command is
+     * recorded and the response ready future is completed after the command handler has returned.
+     * Otherwise the command is released and reported as undeliverable. An invalid command is
+     * rejected and reported as unprocessable.
+     * <p>
+     * The processing of a command is measured using the sample contained in the command context.
+     * If the context does not contain a sample, a new sample is started and added to the context.
+     *
+     * @param tenantId The tenant that the device belongs to.
+     * @param responseReady The future to complete once a command has been passed to the handler.
+     * @param ttdWaitTimer The timer to stop once a command has been received or {@code null}
+     *                     if the time spent waiting for a command is not being recorded.
+     * @param commandHandler The handler to invoke with a command to be sent to the device.
+     * @return The handler for commands.
+     * @throws NullPointerException if any of the parameters other than the timer are {@code null}.
+     */
+    protected final Handler<CommandContext> createTtdCommandHandler(
+            final String tenantId,
+            final Future<Void> responseReady,
+            final Sample ttdWaitTimer,
+            final Handler<CommandContext> commandHandler) {
+
+        Objects.requireNonNull(tenantId);
+        Objects.requireNonNull(responseReady);
+        Objects.requireNonNull(commandHandler);
+
+        return commandContext -> {
+
+            Tags.COMPONENT.set(commandContext.getCurrentSpan(), getTypeName());
+            final Command command = commandContext.getCommand();
+            final Sample commandSample = Optional.ofNullable(getMicrometerSample(commandContext))
+                    .orElseGet(() -> {
+                        final Sample sample = getMetrics().startTimer();
+                        addMicrometerSample(commandContext, sample);
+                        return sample;
+                    });
+            if (command.isValid()) {
+                if (responseReady.isComplete()) {
+                    // the timer has already fired, release the command
+                    getMetrics().reportCommand(
+                            command.isOneWay() ? Direction.ONE_WAY : Direction.REQUEST,
+                            tenantId,
+                            ProcessingOutcome.UNDELIVERABLE,
+                            command.getPayloadSize(),
+                            commandSample);
+                    commandContext.release();
+                } else {
+                    commandHandler.handle(commandContext);
+                    getMetrics().reportProcessingStage(ProcessingStage.TTD_WAIT, ttdWaitTimer);
+                    responseReady.tryComplete();
+                }
+            } else {
+                getMetrics().reportCommand(
+                        command.isOneWay() ? Direction.ONE_WAY : Direction.REQUEST,
+                        tenantId,
+                        ProcessingOutcome.UNPROCESSABLE,
+                        command.getPayloadSize(),
+                        commandSample);
+                commandContext.reject(new ErrorCondition(Constants.AMQP_BAD_REQUEST, "malformed command message"));
+            }
+        };
+    }
+
+    /**
+     * Handles the failure to create a consumer for commands destined to a device
+     * which sent a request containing a <em>time until disconnect</em>.
+     * <p>
+     * If the consumer is already in use by another request of the device, that request
+     * will handle the command (if any). The response to the current request can
+     * then be sent without waiting for a command.
+     *
+     * @param error The cause of the failure.
+     * @param emptyNotification {@code true} if the request does not contain any payload.
+     * @param responseReady The future to complete if the response can be sent without waiting
+     *                      for a command.
+     * @return A future indicating the outcome of the operation.
+     *         <p>
+     *         The future will be succeeded with {@code null} if the consumer is already in use
+     *         and the request needs to be forwarded downstream.
+     *         <p>
+     *         The future will be failed with a {@code ResourceConflictException} if the consumer is
+     *         already in use and the request contains an empty notification (which does not need to
+     *         be forwarded downstream). Otherwise the future will be failed with the given error.
+     */
+    protected static final Future<MessageConsumer> recoverFromCommandConsumerConflict(
+            final Throwable error,
+            final boolean emptyNotification,
+            final Future<Void> responseReady) {
+
+        if (error instanceof ResourceConflictException) {
+            // another request from the same device that contains
+            // a TTD value is already being processed
+            if (emptyNotification) {
+                // no need to forward message downstream
+                return Future.failedFuture(error);
+            } else {
+                // let the other request handle the command (if any)
+                responseReady.tryComplete();
+                return Future.succeededFuture();
+            }
+        } else {
+            return Future.failedFuture(error);
+        }
+    }
+
+    /**
+     * Sets a timer to trigger the sending of a (empty) response to a device
+     * if no command has been received from an application within a
+     * given amount of time.
+     *
+     * @param delaySecs The number of seconds to wait for a command.
+     * @param responseReady The future to complete when the time has expired.
+     * @param ttdWaitTimer The timer to stop when the time has expired or {@code null}
+     *                     if the time spent waiting for a command is not being recorded.
+     * @param expirationHandler The handler to invoke before the future is completed because
+     *                          the time has expired.
+     * @return The timer's ID.
+     * @throws NullPointerException if response ready future or expiration handler are {@code null}.
+     */
+    protected final long addCommandReceptionTimer(
+            final long delaySecs,
+            final Future<Void> responseReady,
+            final Sample ttdWaitTimer,
+            final Handler<Void> expirationHandler) {
+
+        Objects.requireNonNull(responseReady);
+        Objects.requireNonNull(expirationHandler);
+
+        final long timerId = vertx.setTimer(delaySecs * 1000L, id -> {
+
+            LOG.trace("time to wait [{}s] for command expired [timer id: {}]", delaySecs, id);
+
+            if (responseReady.isComplete()) {
+                // a command has been sent to the device already
+                LOG.trace("response already sent, nothing to do ...");
+            } else {
+                // no command to be sent,
+                // send empty response
+                expirationHandler.handle(null);
+                getMetrics().reportProcessingStage(ProcessingStage.TTD_WAIT, ttdWaitTimer);
+                responseReady.complete();
+            }
+        });
+
+        LOG.trace("adding command reception timer [id: {}]", timerId);
+        return timerId;
+    }
+
+    /**
+     * Cancels a timer that has been set by means of
+     * {@link #addCommandReceptionTimer(long, Future, Sample, Handler)}.
+     *
+     * @param timerId The timer's ID or {@code null} if no timer has been set.
+     */
+    protected final void cancelCommandReceptionTimer(final Long timerId) {
+
+        if (timerId != null && timerId >= 0) {
+            if (vertx.cancelTimer(timerId)) {
+                LOG.trace("Cancelled timer id {}", timerId);
+            } else {
+                LOG.debug("Could not cancel timer id {}", timerId);
+            }
+        }
+    }
+
     /**
      * Creates a link for sending a command response downstream.
      *
@@ -793,7 +1064,8 @@ public abstract class AbstractProtocolAdapterBase<T extends ProtocolAdapterPrope
      * @return The client.
      */
     protected final Future<MessageSender> getTelemetrySender(final String tenantId) {
-        return getHonoMessagingClient().getOrCreateTelemetrySender(tenantId);
+        return recordProcessingStage(ProcessingStage.SENDER_ACQUISITION,
+                () -> getHonoMessagingClient().getOrCreateTelemetrySender(tenantId));
     }
 
     /**
@@ -803,7 +1075,8 @@ public abstract class AbstractProtocolAdapterBase<T extends ProtocolAdapterPrope
      * @return The client.
      */
     protected final Future<MessageSender> getEventSender(final String tenantId) {
-        return getHonoMessagingClient().getOrCreateEventSender(tenantId);
+        return recordProcessingStage(ProcessingStage.SENDER_ACQUISITION,
+                () -> getHonoMessagingClient().getOrCreateEventSender(tenantId));
     }
 
     /**
@@ -850,9 +1123,9 @@ public abstract class AbstractProtocolAdapterBase<T extends ProtocolAdapterPrope
 
         final Future<String> gatewayId = getGatewayId(tenantId, deviceId, authenticatedDevice);
 
-        return gatewayId
+        return recordProcessingStage(ProcessingStage.ASSERTION, () -> gatewayId
                 .compose(gwId -> getRegistrationClient(tenantId))
-                .compose(client -> client.assertRegistration(deviceId, gatewayId.result()));
+                .compose(client -> client.assertRegistration(deviceId, gatewayId.result())));
     }
 
     /**
@@ -888,9 +1161,9 @@ public abstract class AbstractProtocolAdapterBase<T extends ProtocolAdapterPrope
 
         final Future<String> gatewayId = getGatewayId(tenantId, deviceId, authenticatedDevice);
 
-        return gatewayId
+        return recordProcessingStage(ProcessingStage.ASSERTION, () -> gatewayId
                 .compose(gwId -> getRegistrationClient(tenantId))
-                .compose(client -> client.assertRegistration(deviceId, gatewayId.result(), context));
+                .compose(client -> client.assertRegistration(deviceId, gatewayId.result(), context)));
     }
 
     private Future<String> getGatewayId(final String tenantId, final String deviceId,
@@ -931,7 +1204,8 @@ public abstract class AbstractProtocolAdapterBase<T extends ProtocolAdapterPrope
     @Deprecated
     protected final Future<TenantObject> getTenantConfiguration(final String tenantId) {
         Objects.requireNonNull(tenantId);
-        return getTenantClient().compose(client -> client.get(tenantId));
+        return recordProcessingStage(ProcessingStage.TENANT_LOOKUP,
+                () -> getTenantClient().compose(client -> client.get(tenantId)));
     }
 
     /**
@@ -954,7 +1228,8 @@ public abstract class AbstractProtocolAdapterBase<T extends ProtocolAdapterPrope
     protected final Future<TenantObject> getTenantConfiguration(final String tenantId, final SpanContext context) {
 
         Objects.requireNonNull(tenantId);
-        return getTenantClient().compose(client -> client.get(tenantId, context));
+        return recordProcessingStage(ProcessingStage.TENANT_LOOKUP,
+                () -> getTenantClient().compose(client -> client.get(tenantId, context)));
     }
 
     /**
@@ -1463,4 +1738,105 @@ public abstract class AbstractProtocolAdapterBase<T extends ProtocolAdapterPrope
     public final void setConnectionLimitManager(final ConnectionLimitManager connectionLimitManager) {
         this.connectionLimitManager = connectionLimitManager;
     }
+
+    /**
+     * Gets the controller to use for limiting the number of concurrently processed connection requests.
+     * <p>
+     * If not set explicitly, a controller is created during start-up if the
+     * <em>maxConcurrentConnectionRequests</em> configuration property is &gt; 0.
+     * Each adapter instance uses a controller of its own, i.e. the limits apply
+     * to each instance separately.
+     *
+     * @return The controller or {@code null} if the number of requests is not limited.
+     */
+    public final ConnectionAdmissionController getConnectionAdmissionController() {
+        return connectionAdmissionController;
+    }
+
+    /**
+     * Sets the controller to use for limiting the number of concurrently processed connection requests.
+     * <p>
+     * The controller must not be shared with other adapter instances.
+     *
+     * @param connectionAdmissionController The controller.
+     */
+    public final void setConnectionAdmissionController(final ConnectionAdmissionController connectionAdmissionController) {
+        this.connectionAdmissionController = connectionAdmissionController;
+    }
+
+    /**
+     * Processes a device's connection request using the connection admission controller.
+     * <p>
+     * Protocol adapters should use this method for authenticating devices and retrieving the
+     * information required for accepting a connection.
+     *
+     * @param <R> The type of the request's outcome.
+     * @param tenantId The tenant that the connecting device claims to belong to or {@code null}
+     *                 if the tenant is not known before the device has been authenticated.
+     * @param connectionOpen The supplier to invoke for checking if the connection to the device is
+     *                       still open before a queued request is processed.
+     * @param request The supplier to invoke for processing the request.
+     * @return A future indicating the outcome of the request.
+     *         The future will be failed with a {@link ServerErrorException} having status 503
+     *         if the request has been rejected because too many requests are pending.
+     * @throws NullPointerException if connection check or request are {@code null}.
+     * @see ConnectionAdmissionController#admit(String, BooleanSupplier, Supplier)
+     */
+    protected final <R> Future<R> admitConnectionRequest(
+            final String tenantId,
+            final BooleanSupplier connectionOpen,
+            final Supplier<Future<R>> request) {
+
+        Objects.requireNonNull(connectionOpen);
+        Objects.requireNonNull(request);
+        if (connectionAdmissionController == null) {
+            return request.get();
+        } else {
+            return connectionAdmissionController.admit(tenantId, connectionOpen, request);
+        }
+    }
+
+    /**
+     * Gets the metrics that this adapter reports to.
+     * <p>
+     * This default implementation returns metrics that do not record anything.
+     * Subclasses should override this method in order to return the
+     * adapter specific metrics.
+     *
+     * @return The metrics.
+     */
+    protected Metrics getMetrics() {
+        return NOOP_METRICS;
+    }
+
+    /**
+     * Records the duration of a stage of processing a message or connection request.
+     * <p>
+     * The duration is only recorded if recording has been enabled for the stage,
+     * e.g. by means of the <em>processingStageTimers</em> configuration property.
+     *
+     * @param <R> The type of the stage's outcome.
+     * @param stage The processing stage.
+     * @param operation The supplier to invoke for executing the stage.
+     * @return The future returned by the operation or a future that completes
+     *         with the operation's outcome after the duration has been recorded.
+     * @throws NullPointerException if any of the parameters are {@code null}.
+     */
+    protected final <R> Future<R> recordProcessingStage(final ProcessingStage stage, final Supplier<Future<R>> operation) {
+
+        Objects.requireNonNull(stage);
+        Objects.requireNonNull(operation);
+
+        final Sample timer = getMetrics().startProcessingStageTimer(stage);
+        if (timer == null) {
+            return operation.get();
+        } else {
+            final Future<R> result = Future.future();
+            operation.get().setHandler(outcome -> {
+                getMetrics().reportProcessingStage(stage, timer);
+                result.handle(outcome);
+            });
+            return result;
+        }
+    }
 }
@@ -30,7 +30,9 @@ import io.opentracing.SpanContext;
 import io.opentracing.Tracer;
 import io.opentracing.noop.NoopTracerFactory;
 import io.opentracing.tag.Tags;
+import io.vertx.core.AbstractVerticle;
 import io.vertx.core.Future;
+import io.vertx.core.Verticle;
 import io.vertx.core.eventbus.Message;
 import io.vertx.core.eventbus.MessageConsumer;
 import io.vertx.core.json.JsonObject;
@@ -148,6 +150,60 @@ public abstract class EventBusService<C> extends ConfigurationSupportingVerticle
         log.info("listening on event bus [address: {}] for requests", getEventBusAddress());
     }
 
+    /**
+     * Checks if this service supports processing requests concurrently on multiple threads.
+     * <p>
+     * Subclasses should override this method if all of their operations (and the state they
+     * are based on) are thread safe.
+     * <p>
+     * This default implementation returns {@code false}.
+     *
+     * @return {@code true} if additional request consumers may be created for this service
+     *         using {@link #newRequestConsumer()}.
+     */
+    public boolean isThreadSafe() {
+        return false;
+    }
+
+    /**
+     * Creates a verticle that processes requests on behalf of this service.
+     * <p>
+     * The verticle registers an additional consumer for {@linkplain #getEventBusAddress()
+     * the service's event bus request address} when it is started. Deploying multiple
+     * instances of this verticle therefore spreads the processing of requests over multiple
+     * event loop threads, because the vert.x event bus delivers requests sent to the address
+     * to all of its consumers in a round-robin fashion.
+     * <p>
+     * The verticle should only be deployed after this service has been started.
+     *
+     * @return The verticle.
+     * @throws IllegalStateException if this service is not {@linkplain #isThreadSafe() thread safe}.
+     */
+    public final Verticle newRequestConsumer() {
+
+        if (!isThreadSafe()) {
+            throw new IllegalStateException("service does not support concurrent processing of requests");
+        }
+        return new AbstractVerticle() {
+
+            private MessageConsumer<JsonObject> consumer;
+
+            @Override
+            public void start() {
+                consumer = vertx.eventBus().consumer(getEventBusAddress());
+                consumer.handler(EventBusService.this::processRequestMessage);
+                log.debug("added request consumer [address: {}]", getEventBusAddress());
+            }
+
+            @Override
+            public void stop() {
+                if (consumer != null) {
+                    consumer.unregister();
+                }
+            }
+        };
+    }
+
     private void processRequestMessage(final Message<JsonObject> msg) {
 
         if (log.isTraceEnabled()) {
@@ -21,6 +21,7 @@ import java.util.Objects;
 import org.eclipse.hono.auth.Authorities;
 import org.eclipse.hono.auth.AuthoritiesImpl;
 import org.eclipse.hono.auth.HonoUser;
+import org.eclipse.hono.auth.HonoUserCache;
 import org.eclipse.hono.client.ServerErrorException;
 import org.eclipse.hono.client.ServiceInvocationException;
 import org.eclipse.hono.client.StatusCodeMapper;
@@ -43,26 +44,51 @@ import io.vertx.core.json.JsonObject;
  * An authentication service that verifies credentials by means of sending authentication
  * requests to address {@link AuthenticationConstants#EVENT_BUS_ADDRESS_AUTHENTICATION_IN}
  * on the Vert.x Event Bus.
- *
+ * <p>
+ * The users created from the tokens contained in the responses are cached until the
+ * tokens expire. Clients presenting the same token therefore share the same user
+ * (and authorities) instance and the token's signature is verified only once.
  */
 public final class EventBusAuthenticationService implements AuthenticationService {
 
+    /**
+     * The default maximum number of verified tokens to cache.
+     */
+    public static final int DEFAULT_TOKEN_CACHE_MAX_SIZE = 1000;
+
     private static final int AUTH_REQUEST_TIMEOUT_MILLIS = 3000;
 
     private final Logger log = LoggerFactory.getLogger(EventBusAuthenticationService.class);
     private final Vertx vertx;
     private final AuthTokenHelper tokenValidator;
+    private final HonoUserCache verifiedTokens;
 
     /**
      * Creates a new auth service for a Vertx environment.
+     * <p>
+     * The service caches up to {@link #DEFAULT_TOKEN_CACHE_MAX_SIZE} verified tokens.
      *
      * @param vertx the Vertx environment to run the factory in.
      * @param validator The object to use for validating auth tokens.
      * @throws NullPointerException if any of the parameters is {@code null}.
      */
     public EventBusAuthenticationService(final Vertx vertx, final AuthTokenHelper validator) {
+        this(vertx, validator, DEFAULT_TOKEN_CACHE_MAX_SIZE);
+    }
+
+    /**
+     * Creates a new auth service for a Vertx environment.
+     *
+     * @param vertx the Vertx environment to run the factory in.
+     * @param validator The object to use for validating auth tokens.
+     * @param tokenCacheMaxSize The maximum number of verified tokens to cache. If 0, no tokens are cached.
+     * @throws NullPointerException if any of the parameters is {@code null}.
+     * @throws IllegalArgumentException if the cache size is negative.
+     */
+    public EventBusAuthenticationService(final Vertx vertx, final AuthTokenHelper validator, final int tokenCacheMaxSize) {
         this.vertx = Objects.requireNonNull(vertx);
         this.tokenValidator = Objects.requireNonNull(validator);
+        this.verifiedTokens = new HonoUserCache(tokenCacheMaxSize);
     }
 
     @Override
@@ -75,8 +101,7 @@ public final class EventBusAuthenticationService implements AuthenticationServic
                 final String token = result.getString(AuthenticationConstants.FIELD_TOKEN);
                 log.debug("received token [length: {}] in response to authentication request", token.length());
                 try {
-                    final Jws<Claims> expandedToken = tokenValidator.expand(result.getString(AuthenticationConstants.FIELD_TOKEN));
-                    authenticationResultHandler.handle(Future.succeededFuture(new HonoUserImpl(expandedToken, token)));
+                    authenticationResultHandler.handle(Future.succeededFuture(getUser(token)));
                 } catch (final JwtException e) {
                     authenticationResultHandler.handle(Future.failedFuture(new ServerErrorException(HttpURLConnection.HTTP_INTERNAL_ERROR, e)));
                 }
@@ -113,6 +138,28 @@ public final class EventBusAuthenticationService implements AuthenticationServic
 
     }
 
+    private HonoUser getUser(final String token) {
+
+        if (!verifiedTokens.isEnabled()) {
+            return new HonoUserImpl(tokenValidator.expand(token), token);
+        }
+
+        final String key = verifiedTokens.getKey(token);
+        final HonoUser cachedUser = verifiedTokens.get(key);
+        if (cachedUser != null) {
+            log.trace("using cached user for token");
+            return cachedUser;
+        }
+
+        final Jws<Claims> expandedToken = tokenValidator.expand(token);
+        final HonoUserImpl user = new HonoUserImpl(expandedToken, token);
+        // tokens without expiration time are not cached
+        if (expandedToken.getBody().getExpiration() != null) {
+            verifiedTokens.put(key, user, user.getExpirationTime());
+        }
+        return user;
+    }
+
     /**
      * A Hono user wrapping a JSON Web Token.
      *
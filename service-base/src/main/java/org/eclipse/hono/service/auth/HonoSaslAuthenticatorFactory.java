@@ -13,8 +13,11 @@
 package org.eclipse.hono.service.auth;
 
 import java.util.Objects;
+import java.util.Optional;
 
+import org.eclipse.hono.service.auth.delegating.AuthenticationServerClientConfigProperties;
 import org.eclipse.hono.util.AuthenticationConstants;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.stereotype.Component;
@@ -42,11 +45,40 @@ public final class HonoSaslAuthenticatorFactory implements ProtonSaslAuthenticat
      * @param validator The object to use for validating auth tokens.
      * @throws NullPointerException if any of the parameters is {@code null}.
      */
-    @Autowired
-    public HonoSaslAuthenticatorFactory(final Vertx vertx, @Qualifier(AuthenticationConstants.QUALIFIER_AUTHENTICATION) final AuthTokenHelper validator) {
+    public HonoSaslAuthenticatorFactory(final Vertx vertx, final AuthTokenHelper validator) {
         this(new EventBusAuthenticationService(vertx, validator));
     }
 
+    /**
+     * Creates a new factory for a Vertx environment.
+     * <p>
+     * Verifies credentials by means of sending authentication requests to address
+     * {@link AuthenticationConstants#EVENT_BUS_ADDRESS_AUTHENTICATION_IN} on the Vert.x
+     * Event Bus.
+     * <p>
+     * The maximum number of verified tokens to cache is taken from the configuration
+     * properties for the Authentication service client, if available.
+     * Otherwise, the service caches up to {@link EventBusAuthenticationService#DEFAULT_TOKEN_CACHE_MAX_SIZE}
+     * verified tokens.
+     * 
+     * @param vertx the Vertx environment to run the factory in.
+     * @param validator The object to use for validating auth tokens.
+     * @param authServerClientConfig The configuration properties for the Authentication service client.
+     * @throws NullPointerException if any of the parameters is {@code null}.
+     */
+    @Autowired
+    public HonoSaslAuthenticatorFactory(
+            final Vertx vertx,
+            @Qualifier(AuthenticationConstants.QUALIFIER_AUTHENTICATION) final AuthTokenHelper validator,
+            @Qualifier(AuthenticationConstants.QUALIFIER_AUTHENTICATION) final ObjectProvider<AuthenticationServerClientConfigProperties> authServerClientConfig) {
+        this(new EventBusAuthenticationService(
+                vertx,
+                validator,
+                Optional.ofNullable(authServerClientConfig.getIfAvailable())
+                    .map(AuthenticationServerClientConfigProperties::getVerifiedTokenCacheMaxSize)
+                    .orElse(EventBusAuthenticationService.DEFAULT_TOKEN_CACHE_MAX_SIZE)));
+    }
+
     /**
      * Creates a new factory using a specific authentication service instance.
      * 
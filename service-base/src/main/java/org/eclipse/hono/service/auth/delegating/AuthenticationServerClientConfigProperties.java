@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2016, 2017 Contributors to the Eclipse Foundation
+ * Copyright (c) 2016, 2019 Contributors to the Eclipse Foundation
  *
  * See the NOTICE file(s) distributed with this work for additional
  * information regarding copyright ownership.
@@ -15,6 +15,7 @@ package org.eclipse.hono.service.auth.delegating;
 
 import org.eclipse.hono.config.ClientConfigProperties;
 import org.eclipse.hono.config.SignatureSupportingConfigProperties;
+import org.eclipse.hono.service.auth.EventBusAuthenticationService;
 
 
 /**
@@ -23,7 +24,14 @@ import org.eclipse.hono.config.SignatureSupportingConfigProperties;
  */
 public class AuthenticationServerClientConfigProperties extends ClientConfigProperties {
 
+    /**
+     * The default maximum number of tokens to cache.
+     */
+    public static final int DEFAULT_TOKEN_CACHE_MAX_SIZE = 1000;
+
     private final SignatureSupportingConfigProperties validation = new SignatureSupportingConfigProperties();
+    private int tokenCacheMaxSize = DEFAULT_TOKEN_CACHE_MAX_SIZE;
+    private int verifiedTokenCacheMaxSize = EventBusAuthenticationService.DEFAULT_TOKEN_CACHE_MAX_SIZE;
 
     /**
      * Gets the properties for determining key material for validating user tokens.
@@ -33,4 +41,62 @@ public class AuthenticationServerClientConfigProperties extends ClientConfigProp
     public final SignatureSupportingConfigProperties getValidation() {
         return validation;
     }
+
+    /**
+     * Gets the maximum number of tokens retrieved from the Authentication server
+     * that should be cached.
+     * <p>
+     * The default value of this property is {@link #DEFAULT_TOKEN_CACHE_MAX_SIZE}.
+     * 
+     * @return The maximum number of tokens. A value of 0 indicates that tokens are not cached.
+     */
+    public final int getTokenCacheMaxSize() {
+        return tokenCacheMaxSize;
+    }
+
+    /**
+     * Sets the maximum number of tokens retrieved from the Authentication server
+     * that should be cached.
+     * <p>
+     * The default value of this property is {@link #DEFAULT_TOKEN_CACHE_MAX_SIZE}.
+     * 
+     * @param tokenCacheMaxSize The maximum number of tokens. A value of 0 disables caching.
+     * @throws IllegalArgumentException if the size is negative.
+     */
+    public final void setTokenCacheMaxSize(final int tokenCacheMaxSize) {
+        if (tokenCacheMaxSize < 0) {
+            throw new IllegalArgumentException("token cache size must be >= 0");
+        }
+        this.tokenCacheMaxSize = tokenCacheMaxSize;
+    }
+
+    /**
+     * Gets the maximum number of verified tokens that should be cached.
+     * <p>
+     * The tokens are verified when clients authenticate to this service's AMQP endpoint.
+     * <p>
+     * The default value of this property is {@link EventBusAuthenticationService#DEFAULT_TOKEN_CACHE_MAX_SIZE}.
+     * 
+     * @return The maximum number of tokens. A value of 0 indicates that tokens are not cached.
+     */
+    public final int getVerifiedTokenCacheMaxSize() {
+        return verifiedTokenCacheMaxSize;
+    }
+
+    /**
+     * Sets the maximum number of verified tokens that should be cached.
+     * <p>
+     * The tokens are verified when clients authenticate to this service's AMQP endpoint.
+     * <p>
+     * The default value of this property is {@link EventBusAuthenticationService#DEFAULT_TOKEN_CACHE_MAX_SIZE}.
+     * 
+     * @param verifiedTokenCacheMaxSize The maximum number of tokens. A value of 0 disables caching.
+     * @throws IllegalArgumentException if the size is negative.
+     */
+    public final void setVerifiedTokenCacheMaxSize(final int verifiedTokenCacheMaxSize) {
+        if (verifiedTokenCacheMaxSize < 0) {
+            throw new IllegalArgumentException("token cache size must be >= 0");
+        }
+        this.verifiedTokenCacheMaxSize = verifiedTokenCacheMaxSize;
+    }
 }
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2016, 2018 Contributors to the Eclipse Foundation
+ * Copyright (c) 2016, 2019 Contributors to the Eclipse Foundation
  *
  * See the NOTICE file(s) distributed with this work for additional
  * information regarding copyright ownership.
@@ -132,7 +132,7 @@ public class DelegatingAuthenticationService extends AbstractHonoAuthenticationS
         if (factory == null) {
             startFuture.fail("no connection factory for Authentication service set");
         } else {
-            client = new AuthenticationServerClient(vertx, factory);
+            client = new AuthenticationServerClient(vertx, factory, getConfig().getTokenCacheMaxSize());
             startFuture.complete();
         }
     }
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2016, 2018 Contributors to the Eclipse Foundation
+ * Copyright (c) 2016, 2019 Contributors to the Eclipse Foundation
  *
  * See the NOTICE file(s) distributed with this work for additional
  * information regarding copyright ownership.
@@ -94,4 +94,18 @@ public class SpringBasedExpiringValueCache<K, V> implements ExpiringValueCache<K
         }
     }
 
+    /**
+     * Removes a value from the cache.
+     * <p>
+     * This method does nothing if the cache does not contain a value for the key.
+     *
+     * @param key The key to remove the value for.
+     */
+    public void remove(final K key) {
+
+        if (key != null) {
+            LOG.trace("removing value from cache [key: {}]", key);
+            cache.evict(key);
+        }
+    }
 }
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2016, 2018 Contributors to the Eclipse Foundation
+ * Copyright (c) 2016, 2019 Contributors to the Eclipse Foundation
  *
  * See the NOTICE file(s) distributed with this work for additional
  * information regarding copyright ownership.
@@ -82,6 +82,8 @@ public abstract class CompleteBaseCredentialsService<T> extends BaseCredentialsS
                 return processUpdateRequest(request);
             case remove:
                 return processRemoveRequest(request);
+            case find:
+                return processFindRequest(request);
             default:
                 return processCustomCredentialsMessage(request);
         }
@@ -206,6 +208,39 @@ public abstract class CompleteBaseCredentialsService<T> extends BaseCredentialsS
         }
     }
 
+    private Future<EventBusMessage> processFindRequest(final EventBusMessage request) {
+
+        final String tenantId = request.getTenant();
+        final JsonObject payload = Optional.ofNullable(request.getJsonPayload()).orElseGet(JsonObject::new);
+        final Object filter = payload.getValue(CredentialsConstants.FIELD_FILTER, new JsonObject());
+        final Object cursor = payload.getValue(CredentialsConstants.FIELD_CURSOR);
+        final Object pageSize = payload.getValue(CredentialsConstants.FIELD_PAGE_SIZE, CredentialsConstants.DEFAULT_PAGE_SIZE);
+
+        if (tenantId == null) {
+            return Future.failedFuture(new ClientErrorException(
+                    HttpURLConnection.HTTP_BAD_REQUEST,
+                    "missing tenant ID"));
+        } else if (!(filter instanceof JsonObject) || (cursor != null && !(cursor instanceof String))) {
+            return Future.failedFuture(new ClientErrorException(
+                    HttpURLConnection.HTTP_BAD_REQUEST,
+                    "malformed filter or cursor"));
+        } else if (!(pageSize instanceof Integer) || ((Integer) pageSize) < 1) {
+            return Future.failedFuture(new ClientErrorException(
+                    HttpURLConnection.HTTP_BAD_REQUEST,
+                    "page size must be a positive integer"));
+        } else {
+            log.debug("finding credentials of tenant [{}] [filter: {}, cursor: {}]", tenantId, filter, cursor);
+            final Future<CredentialsResult<JsonObject>> result = Future.future();
+            find(tenantId, (JsonObject) filter, (String) cursor,
+                    Math.min((Integer) pageSize, CredentialsConstants.MAX_PAGE_SIZE), result.completer());
+            return result.map(res -> {
+                return request.getResponse(res.getStatus())
+                        .setJsonPayload(res.getPayload())
+                        .setCacheDirective(res.getCacheDirective());
+            });
+        }
+    }
+
     @Override
     public final void getAll(final String tenantId, final String deviceId,
                              final Handler<AsyncResult<CredentialsResult<JsonObject>>> resultHandler) {
@@ -256,6 +291,18 @@ public abstract class CompleteBaseCredentialsService<T> extends BaseCredentialsS
         handleUnimplementedOperation(resultHandler);
     }
 
+    /**
+     * {@inheritDoc}
+     *
+     * This default implementation simply returns an empty result with status code 501 (Not Implemented).
+     * Subclasses should override this method in order to provide a reasonable implementation.
+     */
+    @Override
+    public void find(final String tenantId, final JsonObject filter, final String cursor, final int pageSize,
+            final Handler<AsyncResult<CredentialsResult<JsonObject>>> resultHandler) {
+        handleUnimplementedOperation(resultHandler);
+    }
+
     private void checkSecret(final String type, final JsonObject secret) {
         switch(type) {
         case CredentialsConstants.SECRETS_TYPE_HASHED_PASSWORD:
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2016, 2018 Contributors to the Eclipse Foundation
+ * Copyright (c) 2016, 2019 Contributors to the Eclipse Foundation
  *
  * See the NOTICE file(s) distributed with this work for additional
  * information regarding copyright ownership.
@@ -147,4 +147,33 @@ public interface CompleteCredentialsService extends CredentialsService {
      *      Credentials API - Remove Credentials</a>
      */
     void removeAll(String tenantId, String deviceId, Handler<AsyncResult<CredentialsResult<JsonObject>>> resultHandler);
+
+    /**
+     * Finds credentials of a tenant.
+     * <p>
+     * The matching credentials are returned in pages which are ordered by authentication identifier.
+     * Clients can iterate over all matching credentials by repeatedly invoking this method
+     * with the cursor returned in the previous page.
+     *
+     * @param tenantId The tenant the credentials belong to.
+     * @param filter The criteria the credentials need to match, e.g. their <em>type</em> or
+     *               <em>device-id</em>. Each property of the filter needs to be equal to the
+     *               corresponding property of the credentials. An empty filter matches all credentials.
+     * @param cursor The authentication identifier after which the page starts or {@code null}
+     *               to start with the first authentication identifier.
+     * @param pageSize The maximum number of credentials to return. A page always contains all
+     *                 matching credentials of an authentication identifier, so it may exceed this
+     *                 number if a single authentication identifier has more matching credentials.
+     * @param resultHandler The handler to invoke with the result of the operation.
+     *         The <em>status</em> will be
+     *         <ul>
+     *         <li><em>200 OK</em> if the credentials have been looked up. The <em>payload</em>
+     *         will contain the matching credentials in the <em>credentials</em> array. If there are
+     *         more matching credentials than fit on the page, the payload also contains the
+     *         <em>cursor</em> to use for retrieving the next page.</li>
+     *         </ul>
+     * @throws NullPointerException if any of tenant, filter or result handler is {@code null}.
+     */
+    void find(String tenantId, JsonObject filter, String cursor, int pageSize,
+            Handler<AsyncResult<CredentialsResult<JsonObject>>> resultHandler);
 }
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2016, 2018 Contributors to the Eclipse Foundation
+ * Copyright (c) 2016, 2019 Contributors to the Eclipse Foundation
  *
  * See the NOTICE file(s) distributed with this work for additional
  * information regarding copyright ownership.
@@ -17,9 +17,11 @@ import java.net.HttpURLConnection;
 import java.util.Objects;
 
 import io.vertx.core.http.HttpHeaders;
+import io.vertx.core.http.HttpMethod;
 import org.eclipse.hono.client.ClientErrorException;
 import org.eclipse.hono.config.ServiceConfigProperties;
 import org.eclipse.hono.service.http.AbstractHttpEndpoint;
+import org.eclipse.hono.service.http.HttpUtils;
 import org.eclipse.hono.util.CredentialsConstants;
 import org.eclipse.hono.util.EventBusMessage;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -36,6 +38,15 @@ import io.vertx.ext.web.handler.BodyHandler;
  * This endpoint implements Hono's <a href="https://www.eclipse.org/hono/api/Credentials-API//">Credentials API</a>.
  * It receives HTTP requests representing operation invocations and sends them to the address {@link CredentialsConstants#CREDENTIALS_ENDPOINT} on the vertx
  * event bus for processing. The outcome is then returned to the client in the HTTP response.
+ * <p>
+ * Credentials can also be added, updated and removed in bulk by means of POST, PUT and DELETE requests
+ * to the tenant's resource, containing a stream of JSON objects separated by line feeds
+ * ({@value HttpUtils#CONTENT_TYPE_NDJSON}). For removal, each object contains either the
+ * <em>auth-id</em> and <em>type</em> of the credentials or the <em>device-id</em> of the device
+ * whose credentials should be removed.
+ * <p>
+ * The credentials of a tenant can be listed by means of a GET request to the tenant's resource.
+ * The credentials can be filtered by the <em>type</em> and <em>device-id</em> query parameters.
  */
 public final class CredentialsHttpEndpoint extends AbstractHttpEndpoint<ServiceConfigProperties> {
 
@@ -71,11 +82,18 @@ public final class CredentialsHttpEndpoint extends AbstractHttpEndpoint<ServiceC
         final BodyHandler bodyHandler = BodyHandler.create();
         bodyHandler.setBodyLimit(config.getMaxPayloadSize());
 
+        // bulk operations
+        addBulkRoute(router, HttpMethod.POST, pathWithTenant, ctx -> doBulkOperation(ctx, CredentialsConstants.CredentialsAction.add));
+        addBulkRoute(router, HttpMethod.PUT, pathWithTenant, ctx -> doBulkOperation(ctx, CredentialsConstants.CredentialsAction.update));
+        addBulkRoute(router, HttpMethod.DELETE, pathWithTenant, ctx -> doBulkOperation(ctx, CredentialsConstants.CredentialsAction.remove));
+
         // add credentials
         router.post(pathWithTenant).handler(bodyHandler);
         router.post(pathWithTenant).handler(this::extractRequiredJsonPayload);
         router.post(pathWithTenant).handler(this::addCredentials);
 
+        // find credentials
+        router.get(pathWithTenant).handler(this::findCredentials);
         // get credentials by auth-id and type
         router.get(pathWithTenantAndAuthIdAndType).handler(this::getCredentials);
         // get all credentials for a given device
@@ -203,6 +221,60 @@ public final class CredentialsHttpEndpoint extends AbstractHttpEndpoint<ServiceC
                 null));
     }
 
+    private void findCredentials(final RoutingContext ctx) {
+
+        final String tenantId = getTenantParam(ctx);
+        final JsonObject filter = new JsonObject();
+        for (final String field : new String[] { CredentialsConstants.FIELD_TYPE, CredentialsConstants.FIELD_PAYLOAD_DEVICE_ID }) {
+            final String value = ctx.request().getParam(field);
+            if (value != null) {
+                filter.put(field, value);
+            }
+        }
+
+        logger.debug("finding credentials [tenant: {}, filter: {}]", tenantId, filter);
+        sendPagedQuery(ctx, CredentialsConstants.CREDENTIALS_ENDPOINT, (cursor, pageSize) -> EventBusMessage
+                .forOperation(CredentialsConstants.CredentialsAction.find.toString())
+                .setTenant(tenantId)
+                .setJsonPayload(new JsonObject()
+                        .put(CredentialsConstants.FIELD_FILTER, filter)
+                        .put(CredentialsConstants.FIELD_CURSOR, cursor)
+                        .put(CredentialsConstants.FIELD_PAGE_SIZE, pageSize))
+                .toJson());
+    }
+
+    private void doBulkOperation(final RoutingContext ctx, final CredentialsConstants.CredentialsAction action) {
+
+        final String tenantId = getTenantParam(ctx);
+        logger.debug("processing bulk request [tenant: {}, operation: {}]", tenantId, action);
+        sendBulkActions(ctx, config.getMaxPayloadSize(), payload -> {
+            final String deviceId = payload.getString(CredentialsConstants.FIELD_PAYLOAD_DEVICE_ID);
+            final EventBusMessage request = EventBusMessage.forOperation(action.toString())
+                    .setTenant(tenantId)
+                    .setDeviceId(deviceId);
+            if (action == CredentialsConstants.CredentialsAction.remove) {
+                final JsonObject removeRequest = new JsonObject();
+                if (payload.containsKey(CredentialsConstants.FIELD_AUTH_ID)) {
+                    // remove credentials by auth-id and type
+                    removeRequest.put(CredentialsConstants.FIELD_AUTH_ID, payload.getString(CredentialsConstants.FIELD_AUTH_ID));
+                    removeRequest.put(CredentialsConstants.FIELD_TYPE, payload.getString(CredentialsConstants.FIELD_TYPE));
+                } else if (deviceId != null) {
+                    // remove all credentials of the device
+                    removeRequest.put(CredentialsConstants.FIELD_PAYLOAD_DEVICE_ID, deviceId);
+                    removeRequest.put(CredentialsConstants.FIELD_TYPE, CredentialsConstants.SPECIFIER_WILDCARD);
+                } else {
+                    throw new ClientErrorException(HttpURLConnection.HTTP_BAD_REQUEST, String.format(
+                            "either '%s' or '%s' is required", CredentialsConstants.FIELD_AUTH_ID,
+                            CredentialsConstants.FIELD_PAYLOAD_DEVICE_ID));
+                }
+                request.setJsonPayload(removeRequest);
+            } else {
+                request.setJsonPayload(payload);
+            }
+            return request.toJson();
+        });
+    }
+
     /**
      * Gets credentials by auth-id and type.
      * 
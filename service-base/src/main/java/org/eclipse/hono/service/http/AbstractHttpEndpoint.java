@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2016, 2018 Contributors to the Eclipse Foundation
+ * Copyright (c) 2016, 2019 Contributors to the Eclipse Foundation
  *
  * See the NOTICE file(s) distributed with this work for additional
  * information regarding copyright ownership.
@@ -14,8 +14,13 @@
 package org.eclipse.hono.service.http;
 
 import java.net.HttpURLConnection;
+import java.util.ArrayDeque;
+import java.util.Deque;
 import java.util.Objects;
+import java.util.Optional;
 import java.util.function.BiConsumer;
+import java.util.function.BiFunction;
+import java.util.function.Function;
 import java.util.function.Predicate;
 
 import org.eclipse.hono.client.ClientErrorException;
@@ -29,11 +34,20 @@ import org.springframework.beans.factory.annotation.Qualifier;
 import io.opentracing.contrib.vertx.ext.web.TracingHandler;
 import io.vertx.core.Handler;
 import io.vertx.core.Vertx;
+import io.vertx.core.buffer.Buffer;
 import io.vertx.core.eventbus.DeliveryOptions;
+import io.vertx.core.http.HttpHeaders;
+import io.vertx.core.http.HttpMethod;
+import io.vertx.core.http.HttpServerRequest;
 import io.vertx.core.http.HttpServerResponse;
 import io.vertx.core.json.DecodeException;
+import io.vertx.core.json.Json;
+import io.vertx.core.json.JsonArray;
 import io.vertx.core.json.JsonObject;
+import io.vertx.core.parsetools.RecordParser;
+import io.vertx.core.streams.ReadStream;
 import io.vertx.ext.web.MIMEHeader;
+import io.vertx.ext.web.Router;
 import io.vertx.ext.web.RoutingContext;
 
 
@@ -57,6 +71,35 @@ public abstract class AbstractHttpEndpoint<T> extends AbstractEndpoint implement
      */
     protected static final String PARAM_DEVICE_ID = "device_id";
 
+    /**
+     * The number of operations of a bulk request that are processed concurrently.
+     */
+    protected static final int BULK_WINDOW_SIZE = 100;
+    /**
+     * The name of the field containing the number of the line of a bulk request
+     * that an item of a bulk response refers to.
+     */
+    protected static final String FIELD_BULK_LINE = "line";
+    /**
+     * The name of the field containing the status code of an item of a bulk response.
+     */
+    protected static final String FIELD_BULK_STATUS = "status";
+    /**
+     * The name of the field containing the payload of a failed item of a bulk response.
+     */
+    protected static final String FIELD_BULK_PAYLOAD = "payload";
+
+    /**
+     * The key under which a flag is put to the routing context of a request
+     * whose body is streamed to a bulk route instead of being read by a body handler.
+     */
+    static final String KEY_STREAMED_BODY = "streamedBody";
+    /**
+     * The order of the routes that mark requests to bulk routes. These routes
+     * are executed before the body handler of {@link HttpServiceBase}.
+     */
+    private static final int BULK_MARKER_ROUTE_ORDER = -2;
+
     /**
      * The configuration properties for this endpoint.
      */
@@ -227,4 +270,486 @@ public abstract class AbstractHttpEndpoint<T> extends AbstractEndpoint implement
         return ctx.request().getParam(PARAM_DEVICE_ID);
     }
 
+    /**
+     * Checks if the body of a request is streamed to a bulk route.
+     *
+     * @param ctx The routing context of the request.
+     * @return {@code true} if the request has been matched by a route added by means of
+     *         {@link #addBulkRoute(Router, HttpMethod, String, Handler)}.
+     */
+    static boolean isStreamedBody(final RoutingContext ctx) {
+        return Boolean.TRUE.equals(ctx.get(KEY_STREAMED_BODY));
+    }
+
+    /**
+     * Adds a route for processing bulk requests (<em>application/x-ndjson</em>).
+     * <p>
+     * The body of a request matching the route is not read by the body handler of
+     * {@link HttpServiceBase} but is streamed to the given handler which is supposed to
+     * process it by means of {@link #sendBulkActions(RoutingContext, int, Function)}.
+     * Reading from the request is paused until the handler has been invoked.
+     *
+     * @param router The router to add the route to.
+     * @param method The HTTP method to match.
+     * @param path The path to match.
+     * @param handler The handler to invoke for a matching request.
+     * @throws NullPointerException if any of the parameters are {@code null}.
+     */
+    protected final void addBulkRoute(
+            final Router router,
+            final HttpMethod method,
+            final String path,
+            final Handler<RoutingContext> handler) {
+
+        Objects.requireNonNull(router);
+        Objects.requireNonNull(method);
+        Objects.requireNonNull(path);
+        Objects.requireNonNull(handler);
+
+        router.route(method, path).order(BULK_MARKER_ROUTE_ORDER).consumes(HttpUtils.CONTENT_TYPE_NDJSON)
+                .handler(ctx -> {
+                    // buffer the body until the bulk handler reads it
+                    ctx.request().pause();
+                    ctx.put(KEY_STREAMED_BODY, Boolean.TRUE);
+                    ctx.next();
+                });
+        router.route(method, path).consumes(HttpUtils.CONTENT_TYPE_NDJSON).handler(handler);
+    }
+
+    /**
+     * Processes a bulk request consisting of a stream of JSON objects separated by line feeds
+     * (<em>application/x-ndjson</em>).
+     * <p>
+     * The request body is parsed line by line and each line is mapped to a request message
+     * which is sent via the vert.x event bus by means of {@link #getEventBusAddress()}.
+     * Up to {@link #BULK_WINDOW_SIZE} request messages are processed concurrently. Reading
+     * from the request is paused while the window is full or while the response's write
+     * queue is full. This way the whole body never needs to be held in memory.
+     * <p>
+     * The response has status code 200 and contains one JSON object per (non-empty) line of
+     * the request, each separated by a line feed. The objects are written in the order in which
+     * the operations complete. Each object contains the number of the corresponding request
+     * line ({@link #FIELD_BULK_LINE}, starting at 1), the status code of the operation
+     * ({@link #FIELD_BULK_STATUS}) and, if the operation has failed, the payload of the
+     * error response ({@link #FIELD_BULK_PAYLOAD}).
+     * <p>
+     * A line that exceeds the maximum size is reported with a status code of 413 without being read
+     * into memory completely. The last line does not need to be terminated by a line feed.
+     *
+     * @param ctx The routing context of the request.
+     * @param maxRecordSize The maximum number of bytes a single line may contain.
+     * @param requestMessageFactory The function to invoke for mapping a line's JSON object
+     *                              to the request message to send via the event bus. The function
+     *                              may throw a {@link ClientErrorException} to indicate that the
+     *                              object is invalid.
+     * @throws NullPointerException if context or factory are {@code null}.
+     */
+    protected final void sendBulkActions(
+            final RoutingContext ctx,
+            final int maxRecordSize,
+            final Function<JsonObject, JsonObject> requestMessageFactory) {
+
+        Objects.requireNonNull(ctx);
+        Objects.requireNonNull(requestMessageFactory);
+
+        final HttpServerResponse response = ctx.response();
+        final DeliveryOptions options = createEventBusMessageDeliveryOptions(TracingHandler.serverSpanContext(ctx));
+        final BulkRequest bulkRequest = new BulkRequest(ctx.request(), response);
+        final RecordParser parser = RecordParser.newDelimited("\n", new BoundedLineStream(ctx.request(), maxRecordSize));
+
+        response.setStatusCode(HttpURLConnection.HTTP_OK);
+        response.setChunked(true);
+        response.putHeader(HttpHeaders.CONTENT_TYPE, HttpUtils.CONTENT_TYPE_NDJSON);
+        response.drainHandler(drained -> bulkRequest.processPendingOperations());
+        response.closeHandler(closed -> {
+            logger.debug("client has closed connection, discarding remaining lines of bulk request");
+            bulkRequest.failed = true;
+            bulkRequest.processPendingOperations();
+        });
+
+        parser.exceptionHandler(t -> {
+            logger.debug("cannot read bulk request: {}", t.getMessage());
+            bulkRequest.failed = true;
+            bulkRequest.processPendingOperations();
+        });
+        parser.endHandler(end -> {
+            bulkRequest.ended = true;
+            bulkRequest.processPendingOperations();
+        });
+        parser.handler(record -> {
+
+            if (bulkRequest.failed) {
+                // discard remaining lines
+                return;
+            }
+            final int line = ++bulkRequest.lines;
+            if (record.length() == 0 || record.toString().trim().isEmpty()) {
+                return;
+            } else if (record.length() > maxRecordSize) {
+                bulkRequest.writeResult(line, HttpURLConnection.HTTP_ENTITY_TOO_LARGE,
+                        new JsonObject().put(RequestResponseApiConstants.FIELD_ERROR, "line exceeds maximum size"));
+                bulkRequest.processPendingOperations();
+                return;
+            }
+
+            final JsonObject requestMsg;
+            try {
+                requestMsg = requestMessageFactory.apply(new JsonObject(record));
+            } catch (final DecodeException | ClassCastException e) {
+                bulkRequest.writeResult(line, HttpURLConnection.HTTP_BAD_REQUEST,
+                        new JsonObject().put(RequestResponseApiConstants.FIELD_ERROR, "line does not contain a valid JSON object"));
+                bulkRequest.processPendingOperations();
+                return;
+            } catch (final ClientErrorException e) {
+                bulkRequest.writeResult(line, e.getErrorCode(),
+                        new JsonObject().put(RequestResponseApiConstants.FIELD_ERROR, e.getMessage()));
+                bulkRequest.processPendingOperations();
+                return;
+            }
+
+            bulkRequest.submit(send -> vertx.eventBus().send(getEventBusAddress(), requestMsg, options, invocation -> {
+                if (invocation.failed()) {
+                    bulkRequest.writeResult(line, HttpURLConnection.HTTP_UNAVAILABLE, null);
+                } else {
+                    final JsonObject jsonResult = (JsonObject) invocation.result().body();
+                    final Integer status = jsonResult.getInteger(MessageHelper.APP_PROPERTY_STATUS);
+                    bulkRequest.writeResult(line, status, status != null && status >= 400
+                            ? jsonResult.getJsonObject(RequestResponseApiConstants.FIELD_PAYLOAD)
+                            : null);
+                }
+                bulkRequest.inFlight--;
+                bulkRequest.processPendingOperations();
+            }));
+        });
+        // start reading the body of a request that has been paused by a bulk route
+        ctx.request().resume();
+    }
+
+    /**
+     * Processes a query for entries which are retrieved page by page and streams the
+     * matching entries to the HTTP response.
+     * <p>
+     * The query parameter {@value RequestResponseApiConstants#FIELD_PAGE_SIZE} determines the
+     * maximum number of entries to return. If the parameter is not set, all matching entries are
+     * returned. The query parameter {@value RequestResponseApiConstants#FIELD_CURSOR} determines
+     * the position after which to start.
+     * <p>
+     * The entries are retrieved in pages of up to {@link RequestResponseApiConstants#DEFAULT_PAGE_SIZE}
+     * entries by sending request messages via the vert.x event bus by means of {@link #getEventBusAddress()}.
+     * The next page is only requested once the previous page has been written to the response, so that
+     * neither the service nor this endpoint need to hold all matching entries in memory.
+     * <p>
+     * The response body contains a JSON object with an array of the matching entries and, if there
+     * are more matching entries than have been requested, the cursor to use for retrieving the
+     * next entries.
+     *
+     * @param ctx The routing context of the request.
+     * @param arrayName The name of the field in the service's response payload containing the
+     *                  entries. The same name is used for the array in the HTTP response body.
+     * @param requestMessageFactory The function to invoke for creating the request message for a page.
+     *                              The function is invoked with the cursor (may be {@code null}) and the
+     *                              page size.
+     * @throws NullPointerException if any of the parameters is {@code null}.
+     */
+    protected final void sendPagedQuery(
+            final RoutingContext ctx,
+            final String arrayName,
+            final BiFunction<String, Integer, JsonObject> requestMessageFactory) {
+
+        Objects.requireNonNull(ctx);
+        Objects.requireNonNull(arrayName);
+        Objects.requireNonNull(requestMessageFactory);
+
+        final Integer limit;
+        try {
+            limit = Optional.ofNullable(ctx.request().getParam(RequestResponseApiConstants.FIELD_PAGE_SIZE))
+                    .map(Integer::valueOf).orElse(null);
+        } catch (final NumberFormatException e) {
+            HttpUtils.badRequest(ctx, "page size must be a positive integer");
+            return;
+        }
+        if (limit != null && limit < 1) {
+            HttpUtils.badRequest(ctx, "page size must be a positive integer");
+        } else {
+            final PagedQuery query = new PagedQuery(ctx, arrayName, limit, requestMessageFactory);
+            query.fetchPage(ctx.request().getParam(RequestResponseApiConstants.FIELD_CURSOR));
+        }
+    }
+
+    /**
+     * The state of a query which is retrieved page by page.
+     */
+    private final class PagedQuery {
+
+        private final RoutingContext ctx;
+        private final HttpServerResponse response;
+        private final String arrayName;
+        private final Integer limit;
+        private final BiFunction<String, Integer, JsonObject> requestMessageFactory;
+        private final DeliveryOptions options;
+        private int entries;
+
+        private PagedQuery(
+                final RoutingContext ctx,
+                final String arrayName,
+                final Integer limit,
+                final BiFunction<String, Integer, JsonObject> requestMessageFactory) {
+
+            this.ctx = ctx;
+            this.response = ctx.response();
+            this.arrayName = arrayName;
+            this.limit = limit;
+            this.requestMessageFactory = requestMessageFactory;
+            this.options = createEventBusMessageDeliveryOptions(TracingHandler.serverSpanContext(ctx));
+        }
+
+        private void fetchPage(final String cursor) {
+
+            final int pageSize = limit == null
+                    ? RequestResponseApiConstants.DEFAULT_PAGE_SIZE
+                    : Math.min(RequestResponseApiConstants.DEFAULT_PAGE_SIZE, limit - entries);
+            vertx.eventBus().send(getEventBusAddress(), requestMessageFactory.apply(cursor, pageSize), options, invocation -> {
+
+                final JsonObject jsonResult = invocation.succeeded() ? (JsonObject) invocation.result().body() : null;
+                final Integer status = jsonResult == null ? null : jsonResult.getInteger(MessageHelper.APP_PROPERTY_STATUS);
+                final JsonObject payload = jsonResult == null ? null : jsonResult.getJsonObject(RequestResponseApiConstants.FIELD_PAYLOAD);
+
+                if (response.closed()) {
+                    logger.debug("client has closed connection, aborting query");
+                } else if (response.headWritten()) {
+                    if (status == null || status != HttpURLConnection.HTTP_OK || payload == null) {
+                        // there is no way to signal the error to the client other than not properly ending the response
+                        logger.debug("failed to retrieve page of query, closing connection");
+                        response.close();
+                    } else {
+                        writePage(payload);
+                    }
+                } else if (status == null) {
+                    HttpUtils.serviceUnavailable(ctx, 2);
+                } else if (status != HttpURLConnection.HTTP_OK || payload == null) {
+                    getDefaultResponseHandler(ctx).accept(status, payload);
+                } else {
+                    response.setStatusCode(HttpURLConnection.HTTP_OK);
+                    response.setChunked(true);
+                    response.putHeader(HttpHeaders.CONTENT_TYPE, HttpUtils.CONTENT_TYPE_JSON_UTF8);
+                    response.write(String.format("{\"%s\":[", arrayName));
+                    writePage(payload);
+                }
+            });
+        }
+
+        private void writePage(final JsonObject page) {
+
+            final JsonArray pageEntries = page.getJsonArray(arrayName, new JsonArray());
+            final Buffer chunk = Buffer.buffer();
+            for (final Object entry : pageEntries) {
+                if (entries++ > 0) {
+                    chunk.appendString(",");
+                }
+                chunk.appendString(Json.encode(entry));
+            }
+
+            final String nextCursor = page.getString(RequestResponseApiConstants.FIELD_CURSOR);
+            if (nextCursor == null || (limit != null && entries >= limit)) {
+                chunk.appendString("]");
+                if (nextCursor != null) {
+                    chunk.appendString(String.format(",\"%s\":%s", RequestResponseApiConstants.FIELD_CURSOR, Json.encode(nextCursor)));
+                }
+                response.end(chunk.appendString("}"));
+            } else {
+                response.write(chunk);
+                if (response.writeQueueFull()) {
+                    response.drainHandler(drained -> fetchPage(nextCursor));
+                } else {
+                    fetchPage(nextCursor);
+                }
+            }
+        }
+    }
+
+    /**
+     * The state of a bulk request.
+     * <p>
+     * Operations that cannot be started because the window is full are kept in a queue
+     * and reading from the request is paused until the queue has been worked off.
+     * The request is paused directly instead of pausing the record parser because
+     * the parser keeps on buffering data from the request while being paused.
+     */
+    private static final class BulkRequest {
+
+        private final Deque<Handler<Void>> pendingOperations = new ArrayDeque<>();
+        private final HttpServerRequest request;
+        private final HttpServerResponse response;
+        private int lines;
+        private int inFlight;
+        private boolean paused;
+        private boolean ended;
+        private boolean failed;
+
+        private BulkRequest(final HttpServerRequest request, final HttpServerResponse response) {
+            this.request = request;
+            this.response = response;
+        }
+
+        private void writeResult(final int line, final Integer status, final JsonObject payload) {
+            if (response.ended() || response.closed()) {
+                // no need to process the remaining lines if the client cannot receive the results
+                failed = true;
+                return;
+            }
+            final JsonObject result = new JsonObject()
+                    .put(FIELD_BULK_LINE, line)
+                    .put(FIELD_BULK_STATUS, status);
+            if (payload != null) {
+                result.put(FIELD_BULK_PAYLOAD, payload);
+            }
+            response.write(result.toBuffer().appendString("\n"));
+        }
+
+        private void submit(final Handler<Void> operation) {
+            pendingOperations.add(operation);
+            processPendingOperations();
+        }
+
+        private void processPendingOperations() {
+
+            if (response.closed()) {
+                // the response's write queue cannot be accessed anymore
+                failed = true;
+            }
+            if (failed) {
+                pendingOperations.clear();
+            }
+            while (!failed && inFlight < BULK_WINDOW_SIZE && !response.writeQueueFull() && !pendingOperations.isEmpty()) {
+                inFlight++;
+                pendingOperations.poll().handle(null);
+            }
+
+            final boolean mustPause = !failed && (!pendingOperations.isEmpty() || response.writeQueueFull());
+            if (!ended && !failed && mustPause != paused) {
+                paused = mustPause;
+                if (paused) {
+                    request.pause();
+                } else {
+                    request.resume();
+                }
+            }
+
+            if ((failed || ended) && inFlight == 0 && pendingOperations.isEmpty()
+                    && !response.ended() && !response.closed()) {
+                response.end();
+            }
+        }
+    }
+
+    /**
+     * A stream of lines which truncates lines exceeding a maximum length and which emits
+     * an additional line feed before it ends.
+     * <p>
+     * Lines are truncated to the maximum length plus one byte so that a consumer can still
+     * detect that a line has been too long. This is done on this level because a record
+     * parser fails the whole stream if a record exceeds its maximum size. The additional line
+     * feed makes sure that the parser also emits the last line of a stream which is not
+     * terminated by a line feed.
+     */
+    private static final class BoundedLineStream implements ReadStream<Buffer> {
+
+        private static final byte LINE_FEED = '\n';
+
+        private final ReadStream<Buffer> stream;
+        private final int maxLineLength;
+        private Handler<Buffer> handler;
+        private int currentLineLength;
+        private boolean truncating;
+
+        private BoundedLineStream(final ReadStream<Buffer> stream, final int maxLineLength) {
+            this.stream = stream;
+            this.maxLineLength = maxLineLength;
+        }
+
+        @Override
+        public ReadStream<Buffer> exceptionHandler(final Handler<Throwable> handler) {
+            stream.exceptionHandler(handler);
+            return this;
+        }
+
+        @Override
+        public ReadStream<Buffer> handler(final Handler<Buffer> handler) {
+            this.handler = handler;
+            if (handler == null) {
+                stream.handler(null);
+            } else {
+                stream.handler(this::handleChunk);
+            }
+            return this;
+        }
+
+        private void handleChunk(final Buffer chunk) {
+
+            Buffer lines = null;
+            int segmentStart = truncating ? -1 : 0;
+            for (int i = 0; i < chunk.length(); i++) {
+                if (chunk.getByte(i) == LINE_FEED) {
+                    if (truncating) {
+                        truncating = false;
+                        segmentStart = i;
+                    }
+                    currentLineLength = 0;
+                } else if (!truncating && ++currentLineLength > maxLineLength) {
+                    // keep the first byte exceeding the max length and drop the rest of the line
+                    lines = append(lines, chunk, segmentStart, i + 1);
+                    truncating = true;
+                    segmentStart = -1;
+                }
+            }
+            if (lines == null && segmentStart == 0) {
+                handler.handle(chunk);
+            } else {
+                if (segmentStart >= 0) {
+                    lines = append(lines, chunk, segmentStart, chunk.length());
+                }
+                if (lines != null) {
+                    handler.handle(lines);
+                }
+            }
+        }
+
+        private static Buffer append(final Buffer lines, final Buffer chunk, final int from, final int to) {
+            final Buffer result = lines == null ? Buffer.buffer(to - from) : lines;
+            return result.appendBuffer(chunk, from, to - from);
+        }
+
+        @Override
+        public ReadStream<Buffer> pause() {
+            stream.pause();
+            return this;
+        }
+
+        @Override
+        public ReadStream<Buffer> resume() {
+            stream.resume();
+            return this;
+        }
+
+        @Override
+        public ReadStream<Buffer> fetch(final long amount) {
+            stream.fetch(amount);
+            return this;
+        }
+
+        @Override
+        public ReadStream<Buffer> endHandler(final Handler<Void> endHandler) {
+            if (endHandler == null) {
+                stream.endHandler(null);
+            } else {
+                stream.endHandler(end -> {
+                    if (handler != null) {
+                        handler.handle(Buffer.buffer(1).appendByte(LINE_FEED));
+                    }
+                    endHandler.handle(end);
+                });
+            }
+            return this;
+        }
+    }
 }
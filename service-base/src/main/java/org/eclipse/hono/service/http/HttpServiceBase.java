@@ -162,7 +162,9 @@ public abstract class HttpServiceBase<T extends ServiceConfigProperties> extends
      * This method creates a router instance with
      * <ul>
      * <li>a default route limiting the body size of requests to the maximum
-     * payload size set in the <em>config</em> properties,</li>
+     * payload size set in the <em>config</em> properties (the bodies of
+     * requests matching the bulk routes of an endpoint are not read by this
+     * route but are streamed to the endpoint instead),</li>
      * <li>a default failure handler.</li>
      * </ul>
      *
@@ -172,7 +174,15 @@ public abstract class HttpServiceBase<T extends ServiceConfigProperties> extends
 
         final Router router = Router.router(vertx);
         LOG.info("limiting size of inbound request body to {} bytes", getConfig().getMaxPayloadSize());
-        router.route().handler(BodyHandler.create().setUploadsDirectory(DEFAULT_UPLOADS_DIRECTORY).setBodyLimit(getConfig().getMaxPayloadSize()));
+        final BodyHandler bodyHandler = BodyHandler.create().setUploadsDirectory(DEFAULT_UPLOADS_DIRECTORY)
+                .setBodyLimit(getConfig().getMaxPayloadSize());
+        router.route().handler(ctx -> {
+            if (AbstractHttpEndpoint.isStreamedBody(ctx)) {
+                ctx.next();
+            } else {
+                bodyHandler.handle(ctx);
+            }
+        });
         addTracingHandler(router, -5);
         // add default handler for failed routes
         router.route().order(-1).failureHandler(new DefaultFailureHandler());
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2016, 2018 Contributors to the Eclipse Foundation
+ * Copyright (c) 2016, 2019 Contributors to the Eclipse Foundation
  *
  * See the NOTICE file(s) distributed with this work for additional
  * information regarding copyright ownership.
@@ -54,6 +54,10 @@ public final class HttpUtils {
      * The <em>text/plain; charset=utf-8</em> content type.
      */
     public static final String CONTENT_TYPE_TEXT_UTF8 = "text/plain; charset=utf-8";
+    /**
+     * The <em>application/x-ndjson</em> content type for streams of JSON objects separated by line feeds.
+     */
+    public static final String CONTENT_TYPE_NDJSON = "application/x-ndjson";
 
     private HttpUtils() {
         // prevent instantiation
@@ -0,0 +1,259 @@
+/*******************************************************************************
+ * Copyright (c) 2019 Contributors to the Eclipse Foundation
+ *
+ * See the NOTICE file(s) distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *******************************************************************************/
+package org.eclipse.hono.service.limiting;
+
+import java.net.HttpURLConnection;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.BooleanSupplier;
+import java.util.function.Supplier;
+
+import org.eclipse.hono.client.ClientErrorException;
+import org.eclipse.hono.client.ServerErrorException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import io.vertx.core.Future;
+
+/**
+ * This class limits the number of connection requests that a protocol adapter processes concurrently.
+ * <p>
+ * Processing a connection request usually involves authenticating the device and looking up
+ * tenant and device information. When a large number of devices (re-)connect at the same time,
+ * e.g. after a load balancer fail-over, the adapter would otherwise issue requests to the
+ * Credentials, Tenant and Device Registration services for all of them at once.
+ * <p>
+ * The number of concurrently processed requests is limited globally. Connection requests exceeding
+ * the limit are queued per tenant. Once a request has been processed, the next queued request of
+ * the tenant having the fewest requests in process is started, taking turns between tenants
+ * with the same number of requests. In this way a large number of devices of one tenant
+ * re-connecting at the same time gets no more than a fair share of the capacity and does not
+ * delay the connection requests of other tenants' devices. Requests for which the tenant is not
+ * known before the device has been authenticated, e.g. when using a client certificate, are
+ * treated as requests of a common tenant.
+ * <p>
+ * A tenant's requests are processed in the order of their arrival. Requests are rejected if the
+ * tenant's queue is full. Queued requests are discarded if the connection to the device has been
+ * closed in the meantime.
+ * <p>
+ * A controller is not supposed to be shared by protocol adapter instances (verticles) because
+ * queued requests are started on the vert.x context of the request that has completed before.
+ * The limits therefore apply to each adapter instance separately.
+ */
+public class ConnectionAdmissionController {
+
+    private static final Logger LOG = LoggerFactory.getLogger(ConnectionAdmissionController.class);
+    private static final String GLOBAL_BUCKET = "";
+
+    private final int maxConcurrentRequests;
+    private final int maxQueuedRequests;
+    // <tenant ID, bucket>
+    private final Map<String, Bucket> buckets = new HashMap<>();
+    // <tenant ID, bucket> of tenants having queued requests, in the order in which they are served
+    private final Map<String, Bucket> waitingBuckets = new LinkedHashMap<>();
+    private int activeRequests;
+    private boolean draining;
+
+    /**
+     * Creates a new controller.
+     *
+     * @param maxConcurrentRequests The maximum number of connection requests to process concurrently.
+     * @param maxQueuedRequests The maximum number of connection requests to queue per tenant if the
+     *                          maximum number of concurrent requests is reached.
+     * @throws IllegalArgumentException if the maximum number of concurrent requests is &lt; 1 or
+     *                                  the maximum number of queued requests is &lt; 0.
+     */
+    public ConnectionAdmissionController(final int maxConcurrentRequests, final int maxQueuedRequests) {
+        if (maxConcurrentRequests < 1) {
+            throw new IllegalArgumentException("number of concurrent requests must be > 0");
+        }
+        if (maxQueuedRequests < 0) {
+            throw new IllegalArgumentException("number of queued requests must not be negative");
+        }
+        this.maxConcurrentRequests = maxConcurrentRequests;
+        this.maxQueuedRequests = maxQueuedRequests;
+    }
+
+    /**
+     * Processes a connection request for which the tenant is unknown.
+     * <p>
+     * This method simply invokes {@link #admit(String, BooleanSupplier, Supplier)}
+     * with a {@code null} tenant and a connection that is always considered open.
+     *
+     * @param <T> The type of the request's outcome.
+     * @param request The supplier to invoke for starting to process the request.
+     * @return A future indicating the outcome of the request.
+     * @throws NullPointerException if request is {@code null}.
+     */
+    public <T> Future<T> admit(final Supplier<Future<T>> request) {
+        return admit(null, () -> true, request);
+    }
+
+    /**
+     * Processes a connection request.
+     * <p>
+     * The request is started immediately if the maximum number of concurrent requests has not
+     * been reached yet. Otherwise it is added to the tenant's queue and started once it is the
+     * tenant's turn.
+     *
+     * @param <T> The type of the request's outcome.
+     * @param tenantId The tenant that the connecting device claims to belong to or {@code null}
+     *                 if the tenant is not known before the device has been authenticated.
+     * @param connectionOpen The supplier to invoke for checking if the connection to the device is
+     *                       still open before a queued request is started.
+     * @param request The supplier to invoke for starting to process the request.
+     * @return A future indicating the outcome of the request.
+     *         The future will be failed with a {@link ServerErrorException} having status 503
+     *         if the request has been rejected because the tenant's queue is full or with a
+     *         {@link ClientErrorException} if the connection has been closed before the queued
+     *         request could be started.
+     *         Otherwise the future will be completed with the outcome of the request.
+     * @throws NullPointerException if connection check or request are {@code null}.
+     */
+    public <T> Future<T> admit(
+            final String tenantId,
+            final BooleanSupplier connectionOpen,
+            final Supplier<Future<T>> request) {
+
+        Objects.requireNonNull(connectionOpen);
+        Objects.requireNonNull(request);
+
+        final String key = tenantId == null ? GLOBAL_BUCKET : tenantId;
+        final Future<T> result = Future.future();
+        final Bucket bucket;
+        final Runnable task;
+
+        synchronized (buckets) {
+            bucket = buckets.computeIfAbsent(key, k -> new Bucket(k));
+            task = () -> {
+                if (!connectionOpen.getAsBoolean()) {
+                    LOG.debug("discarding queued connection request, connection has been closed [tenant: {}]", tenantId);
+                    onRequestCompleted(bucket);
+                    result.tryFail(new ClientErrorException(HttpURLConnection.HTTP_BAD_REQUEST,
+                            "connection has been closed"));
+                    return;
+                }
+                try {
+                    request.get().setHandler(outcome -> {
+                        onRequestCompleted(bucket);
+                        result.handle(outcome);
+                    });
+                } catch (final RuntimeException e) {
+                    onRequestCompleted(bucket);
+                    result.tryFail(e);
+                }
+            };
+            // requests are only queued while all slots are in use
+            if (activeRequests < maxConcurrentRequests) {
+                activeRequests++;
+                bucket.activeRequests++;
+            } else if (bucket.queuedRequests.size() < maxQueuedRequests) {
+                bucket.queuedRequests.addLast(task);
+                waitingBuckets.putIfAbsent(key, bucket);
+                return result;
+            } else {
+                LOG.debug("rejecting connection request, queue is full [tenant: {}, max concurrent: {}, max queued: {}]",
+                        tenantId, maxConcurrentRequests, maxQueuedRequests);
+                return Future.failedFuture(new ServerErrorException(HttpURLConnection.HTTP_UNAVAILABLE,
+                        "too many pending connection requests"));
+            }
+        }
+        task.run();
+        return result;
+    }
+
+    /**
+     * Gets the number of connection requests waiting to be processed.
+     *
+     * @return The number of requests of all tenants.
+     */
+    public int getQueuedRequests() {
+        synchronized (buckets) {
+            return buckets.values().stream().mapToInt(bucket -> bucket.queuedRequests.size()).sum();
+        }
+    }
+
+    private void onRequestCompleted(final Bucket completedBucket) {
+        synchronized (buckets) {
+            activeRequests--;
+            completedBucket.activeRequests--;
+            removeIfIdle(completedBucket);
+            if (draining) {
+                // the queues are already being processed further up the stack
+                return;
+            }
+            draining = true;
+        }
+        // requests may complete synchronously, so we process the queues in a loop
+        // instead of recursively in order to not exhaust the stack
+        while (true) {
+            final Runnable next;
+            synchronized (buckets) {
+                if (activeRequests >= maxConcurrentRequests || waitingBuckets.isEmpty()) {
+                    draining = false;
+                    return;
+                }
+                final Bucket bucket = nextWaitingBucket();
+                next = bucket.queuedRequests.pollFirst();
+                activeRequests++;
+                bucket.activeRequests++;
+                // the tenant has had its turn
+                waitingBuckets.remove(bucket.tenantId);
+                if (!bucket.queuedRequests.isEmpty()) {
+                    waitingBuckets.put(bucket.tenantId, bucket);
+                }
+            }
+            next.run();
+        }
+    }
+
+    /**
+     * Gets the waiting tenant that has the fewest requests in process.
+     * <p>
+     * Of the tenants having the same number of requests in process, the one
+     * that has waited the longest for its turn is returned.
+     */
+    private Bucket nextWaitingBucket() {
+        Bucket result = null;
+        for (final Bucket bucket : waitingBuckets.values()) {
+            if (result == null || bucket.activeRequests < result.activeRequests) {
+                result = bucket;
+            }
+        }
+        return result;
+    }
+
+    private void removeIfIdle(final Bucket bucket) {
+        if (bucket.activeRequests == 0 && bucket.queuedRequests.isEmpty()) {
+            buckets.remove(bucket.tenantId, bucket);
+        }
+    }
+
+    /**
+     * The connection requests of a tenant.
+     */
+    private static final class Bucket {
+
+        private final String tenantId;
+        private final Deque<Runnable> queuedRequests = new ArrayDeque<>();
+        private int activeRequests;
+
+        Bucket(final String tenantId) {
+            this.tenantId = tenantId;
+        }
+    }
+}
@@ -60,6 +60,37 @@ public interface Metrics {
      */
     Sample startTimer();
 
+    /**
+     * Starts a new timer for a stage of processing a message or connection request.
+     * 
+     * @param stage The processing stage.
+     * @return The newly created timer or {@code null} if the duration of the given
+     *         stage is not being recorded.
+     * @throws NullPointerException if stage is {@code null}.
+     */
+    Sample startProcessingStageTimer(MetricsTags.ProcessingStage stage);
+
+    /**
+     * Reports the completion of a stage of processing a message or connection request.
+     * 
+     * @param stage The processing stage.
+     * @param timer The timer returned by {@link #startProcessingStageTimer(MetricsTags.ProcessingStage)}
+     *              when the stage was entered. No duration is recorded if the timer is {@code null}.
+     * @throws NullPointerException if stage is {@code null}.
+     */
+    void reportProcessingStage(MetricsTags.ProcessingStage stage, Sample timer);
+
+    /**
+     * Enables or disables recording of the duration of a processing stage.
+     * <p>
+     * The durations of all stages are not recorded by default.
+     * 
+     * @param stage The processing stage.
+     * @param enabled {@code true} if the duration of the stage should be recorded.
+     * @throws NullPointerException if stage is {@code null}.
+     */
+    void setProcessingStageTimerEnabled(MetricsTags.ProcessingStage stage, boolean enabled);
+
     /**
      * Reports a telemetry message or event received from a device.
      *
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2018 Contributors to the Eclipse Foundation
+ * Copyright (c) 2018, 2019 Contributors to the Eclipse Foundation
  *
  * See the NOTICE file(s) distributed with this work for additional
  * information regarding copyright ownership.
@@ -358,6 +358,81 @@ public final class MetricsTags {
         }
     }
 
+    /**
+     * A stage of processing a message or connection request received from a device.
+     *
+     */
+    public enum ProcessingStage {
+
+        /**
+         * The authentication of the device.
+         */
+        AUTHENTICATION("authentication"),
+        /**
+         * The retrieval of the tenant's configuration.
+         */
+        TENANT_LOOKUP("tenant-lookup"),
+        /**
+         * The retrieval of the device's registration assertion.
+         */
+        ASSERTION("assertion"),
+        /**
+         * The acquisition of the sender for forwarding the message downstream.
+         */
+        SENDER_ACQUISITION("sender-acquisition"),
+        /**
+         * The transfer of the message downstream including waiting for its settlement, if required.
+         */
+        DOWNSTREAM_SEND("downstream-send"),
+        /**
+         * The time that the device's request is kept open waiting for a command.
+         */
+        TTD_WAIT("ttd-wait");
+
+        static final String TAG_NAME = "stage";
+
+        private final String canonicalName;
+        private final Tag tag;
+
+        ProcessingStage(final String canonicalName) {
+            this.canonicalName = canonicalName;
+            this.tag = Tag.of(TAG_NAME, canonicalName);
+        }
+
+        /**
+         * Gets a <em>Micrometer</em> tag for the processing stage.
+         * 
+         * @return The tag.
+         */
+        public Tag asTag() {
+            return tag;
+        }
+
+        /**
+         * Gets this stage's canonical name.
+         * 
+         * @return The name.
+         */
+        public String getCanonicalName() {
+            return canonicalName;
+        }
+
+        /**
+         * Gets the processing stage for a canonical name.
+         * 
+         * @param name The canonical name of the stage.
+         * @return The stage or {@code null} if the name is unknown.
+         */
+        public static ProcessingStage fromString(final String name) {
+            for (final ProcessingStage stage : values()) {
+                if (stage.canonicalName.equals(name)) {
+                    return stage;
+                }
+            }
+            return null;
+        }
+    }
+
     /**
      * The name of the tag that holds the name of the component that reports a metric.
      */
@@ -13,8 +13,11 @@
 
 package org.eclipse.hono.service.metric;
 
+import java.time.Duration;
+import java.util.Collections;
 import java.util.Map;
 import java.util.Objects;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
@@ -22,6 +25,7 @@ import java.util.function.Supplier;
 
 import org.eclipse.hono.service.metric.MetricsTags.Direction;
 import org.eclipse.hono.service.metric.MetricsTags.ProcessingOutcome;
+import org.eclipse.hono.service.metric.MetricsTags.ProcessingStage;
 import org.springframework.beans.factory.annotation.Autowired;
 
 import io.micrometer.core.instrument.DistributionSummary;
@@ -59,6 +63,10 @@ public class MicrometerBasedMetrics implements Metrics {
      * The name of the meter for command messages.
      */
     public static final String METER_COMMANDS_RECEIVED = "hono.commands.received";
+    /**
+     * The name of the meter for recording the duration of processing stages.
+     */
+    public static final String METER_PROCESSING_STAGE = "hono.processing.stage";
 
     /**
      * The meter registry.
@@ -68,6 +76,8 @@ public class MicrometerBasedMetrics implements Metrics {
     private final Map<String, AtomicLong> authenticatedConnections = new ConcurrentHashMap<>();
     private final AtomicLong unauthenticatedConnections;
     private final AtomicInteger totalCurrentConnections = new AtomicInteger();
+    private final Set<ProcessingStage> enabledProcessingStages = Collections.newSetFromMap(new ConcurrentHashMap<>());
+    private final Map<ProcessingStage, Timer> processingStageTimers = new ConcurrentHashMap<>();
 
     private LegacyMetrics legacyMetrics;
 
@@ -137,6 +147,48 @@ public class MicrometerBasedMetrics implements Metrics {
         return Timer.start(registry);
     }
 
+    @Override
+    public final Sample startProcessingStageTimer(final ProcessingStage stage) {
+
+        Objects.requireNonNull(stage);
+        if (enabledProcessingStages.contains(stage)) {
+            return Timer.start(registry);
+        } else {
+            return null;
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * The durations are recorded by a timer per stage which publishes the
+     * 50th, 95th and 99th percentiles of the durations recorded during the last minute.
+     * The timers do not include the tenant in order to keep the overhead low.
+     */
+    @Override
+    public final void reportProcessingStage(final ProcessingStage stage, final Sample timer) {
+
+        Objects.requireNonNull(stage);
+        if (timer != null) {
+            timer.stop(processingStageTimers.computeIfAbsent(stage, s -> Timer.builder(METER_PROCESSING_STAGE)
+                    .tags(Tags.of(s.asTag()))
+                    .publishPercentiles(0.5, 0.95, 0.99)
+                    .distributionStatisticExpiry(Duration.ofMinutes(1))
+                    .register(registry)));
+        }
+    }
+
+    @Override
+    public final void setProcessingStageTimerEnabled(final ProcessingStage stage, final boolean enabled) {
+
+        Objects.requireNonNull(stage);
+        if (enabled) {
+            enabledProcessingStages.add(stage);
+        } else {
+            enabledProcessingStages.remove(stage);
+        }
+    }
+
     @Override
     public final void reportTelemetry(
             final MetricsTags.EndpointType type,
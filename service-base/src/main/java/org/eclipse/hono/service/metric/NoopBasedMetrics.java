@@ -55,6 +55,19 @@ public class NoopBasedMetrics implements Metrics {
         return null;
     }
 
+    @Override
+    public Sample startProcessingStageTimer(final MetricsTags.ProcessingStage stage) {
+        return null;
+    }
+
+    @Override
+    public void reportProcessingStage(final MetricsTags.ProcessingStage stage, final Sample timer) {
+    }
+
+    @Override
+    public void setProcessingStageTimerEnabled(final MetricsTags.ProcessingStage stage, final boolean enabled) {
+    }
+
     @Override
     public void reportTelemetry(
             final MetricsTags.EndpointType type,
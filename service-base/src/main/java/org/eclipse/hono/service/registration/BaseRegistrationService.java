@@ -304,7 +304,7 @@ public abstract class BaseRegistrationService<T> extends EventBusService<T> impl
                 final JsonObject deviceData = deviceResult.getPayload().getJsonObject(RegistrationConstants.FIELD_DATA, new JsonObject());
                 final JsonObject gatewayData = gatewayResult.getPayload().getJsonObject(RegistrationConstants.FIELD_DATA, new JsonObject());
 
-                if (isGatewayAuthorized(gatewayId, gatewayData, deviceId, deviceData)) {
+                if (isGatewayAuthorized(tenantId, gatewayId, gatewayData, deviceId, deviceData)) {
                     return updateDeviceLastViaIfNeeded(tenantId, deviceId, gatewayId, deviceData, span).map(res -> {
                         return createSuccessfulRegistrationResult(tenantId, deviceId, deviceData);
                     }).recover(t -> {
@@ -449,6 +449,31 @@ public abstract class BaseRegistrationService<T> extends EventBusService<T> impl
         }
     }
 
+    /**
+     * Checks if a gateway is authorized to act <em>on behalf of</em> a device of a tenant.
+     * <p>
+     * This method is invoked by this class' default implementation of <em>assertRegistration</em>.
+     * This default implementation simply returns the result of
+     * {@link #isGatewayAuthorized(String, JsonObject, String, JsonObject)}.
+     * <p>
+     * Subclasses may override this method in order to look up the gateway's
+     * authorization in an index of the devices that a gateway may act on behalf of.
+     *
+     * @param tenantId The tenant that the gateway and the device belong to.
+     * @param gatewayId The identifier of the gateway.
+     * @param gatewayData The data registered for the gateway.
+     * @param deviceId The identifier of the device.
+     * @param deviceData The data registered for the device.
+     * @return {@code true} if the gateway is authorized.
+     * @throws NullPointerException if any of the parameters is {@code null}.
+     */
+    protected boolean isGatewayAuthorized(final String tenantId, final String gatewayId, final JsonObject gatewayData,
+            final String deviceId, final JsonObject deviceData) {
+
+        Objects.requireNonNull(tenantId);
+        return isGatewayAuthorized(gatewayId, gatewayData, deviceId, deviceData);
+    }
+
     private boolean isDeviceEnabled(final RegistrationResult registrationResult) {
         return registrationResult.isOk() &&
                 isDeviceEnabled(registrationResult.getPayload().getJsonObject(RegistrationConstants.FIELD_DATA));
@@ -19,6 +19,7 @@ import java.time.ZoneOffset;
 import java.time.ZonedDateTime;
 import java.time.format.DateTimeFormatter;
 import java.util.Objects;
+import java.util.Optional;
 
 import org.eclipse.hono.client.ClientErrorException;
 import org.eclipse.hono.client.StatusCodeMapper;
@@ -29,6 +30,7 @@ import org.eclipse.hono.util.RegistrationResult;
 import io.vertx.core.AsyncResult;
 import io.vertx.core.Future;
 import io.vertx.core.Handler;
+import io.vertx.core.json.JsonArray;
 import io.vertx.core.json.JsonObject;
 
 /**
@@ -68,6 +70,8 @@ public abstract class CompleteBaseRegistrationService<T> extends BaseRegistratio
             return processUpdateRequest(requestMessage);
         case RegistrationConstants.ACTION_DEREGISTER:
             return processDeregisterRequest(requestMessage);
+        case RegistrationConstants.ACTION_FIND:
+            return processFindRequest(requestMessage);
         default:
             return processCustomRegistrationMessage(requestMessage);
         }
@@ -152,6 +156,68 @@ public abstract class CompleteBaseRegistrationService<T> extends BaseRegistratio
         }
     }
 
+    private Future<EventBusMessage> processFindRequest(final EventBusMessage request) {
+
+        final String tenantId = request.getTenant();
+        final JsonObject payload = Optional.ofNullable(request.getJsonPayload()).orElseGet(JsonObject::new);
+        final Object filter = payload.getValue(RegistrationConstants.FIELD_FILTER, new JsonObject());
+        final Object cursor = payload.getValue(RegistrationConstants.FIELD_CURSOR);
+        final Object pageSize = payload.getValue(RegistrationConstants.FIELD_PAGE_SIZE, RegistrationConstants.DEFAULT_PAGE_SIZE);
+
+        if (tenantId == null) {
+            return Future.failedFuture(new ClientErrorException(HttpURLConnection.HTTP_BAD_REQUEST));
+        } else if (!(filter instanceof JsonObject) || (cursor != null && !(cursor instanceof String))) {
+            return Future.failedFuture(new ClientErrorException(HttpURLConnection.HTTP_BAD_REQUEST, "malformed filter or cursor"));
+        } else if (!(pageSize instanceof Integer) || ((Integer) pageSize) < 1) {
+            return Future.failedFuture(new ClientErrorException(HttpURLConnection.HTTP_BAD_REQUEST, "page size must be a positive integer"));
+        } else {
+            log.debug("finding devices of tenant [{}] [filter: {}, cursor: {}]", tenantId, filter, cursor);
+            final Future<RegistrationResult> result = Future.future();
+            findDevices(tenantId, (JsonObject) filter, (String) cursor,
+                    Math.min((Integer) pageSize, RegistrationConstants.MAX_PAGE_SIZE), result.completer());
+            return result.map(res -> {
+                return request.getResponse(res.getStatus())
+                        .setJsonPayload(res.getPayload())
+                        .setCacheDirective(res.getCacheDirective());
+            });
+        }
+    }
+
+    /**
+     * Checks if a device's registration information matches the filter criteria
+     * of a <em>find devices</em> request.
+     * <p>
+     * Each property of the filter needs to be equal to the corresponding property
+     * of the registration information or, if the latter is a JSON array, needs to be
+     * contained in it. A device that has no <em>enabled</em> property is considered
+     * to be enabled.
+     *
+     * @param filter The filter criteria.
+     * @param registrationData The registration information of the device.
+     * @return {@code true} if the registration information matches all criteria.
+     * @throws NullPointerException if any of the parameters is {@code null}.
+     */
+    protected static final boolean matchesFilter(final JsonObject filter, final JsonObject registrationData) {
+
+        Objects.requireNonNull(filter);
+        Objects.requireNonNull(registrationData);
+
+        for (final String property : filter.fieldNames()) {
+            final Object expected = filter.getValue(property);
+            final Object actual = RegistrationConstants.FIELD_ENABLED.equals(property)
+                    ? registrationData.getValue(property, Boolean.TRUE)
+                    : registrationData.getValue(property);
+            if (actual instanceof JsonArray) {
+                if (!((JsonArray) actual).contains(expected)) {
+                    return false;
+                }
+            } else if (!Objects.equals(expected, actual)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
     @Override
     protected Future<Void> updateDeviceLastVia(final String tenantId, final String deviceId, final String gatewayId,
             final JsonObject deviceData) {
@@ -220,4 +286,17 @@ public abstract class CompleteBaseRegistrationService<T> extends BaseRegistratio
             final Handler<AsyncResult<RegistrationResult>> resultHandler) {
         handleUnimplementedOperation(resultHandler);
     }
+
+    /**
+     * {@inheritDoc}
+     *
+     * This default implementation simply invokes the given handler with a successful Future containing an empty result
+     * with status code 501 (Not Implemented).
+     * Subclasses should override this method in order to provide a reasonable implementation.
+     */
+    @Override
+    public void findDevices(final String tenantId, final JsonObject filter, final String cursor, final int pageSize,
+            final Handler<AsyncResult<RegistrationResult>> resultHandler) {
+        handleUnimplementedOperation(resultHandler);
+    }
 }
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2016, 2018 Contributors to the Eclipse Foundation
+ * Copyright (c) 2016, 2019 Contributors to the Eclipse Foundation
  *
  * See the NOTICE file(s) distributed with this work for additional
  * information regarding copyright ownership.
@@ -102,4 +102,32 @@ public interface CompleteRegistrationService extends RegistrationService {
      *      Device Registration API - Get Registration Information</a>
      */
     void getDevice(String tenantId, String deviceId, Handler<AsyncResult<RegistrationResult>> resultHandler);
+
+    /**
+     * Finds devices of a tenant.
+     * <p>
+     * The matching devices are returned in pages which are ordered by device identifier.
+     * Clients can iterate over all matching devices by repeatedly invoking this method
+     * with the cursor returned in the previous page.
+     *
+     * @param tenantId The tenant the devices belong to.
+     * @param filter The criteria the registration information of the devices needs to match.
+     *               Each property of the filter needs to be equal to the corresponding property
+     *               of a device's registration information or, if the latter is a JSON array,
+     *               needs to be contained in it. An empty filter matches all devices.
+     * @param cursor The identifier of the device after which the page starts or {@code null}
+     *               to start with the first device.
+     * @param pageSize The maximum number of devices to return.
+     * @param resultHandler The handler to invoke with the result of the operation.
+     *             The <em>status</em> will be
+     *             <ul>
+     *             <li><em>200 OK</em> if the devices have been looked up. The <em>payload</em>
+     *             will contain the registration information of the matching devices in the
+     *             <em>devices</em> array. If there are more matching devices than fit on the page,
+     *             the payload also contains the <em>cursor</em> to use for retrieving the next page.</li>
+     *             </ul>
+     * @throws NullPointerException if any of tenant, filter or result handler is {@code null}.
+     */
+    void findDevices(String tenantId, JsonObject filter, String cursor, int pageSize,
+            Handler<AsyncResult<RegistrationResult>> resultHandler);
 }
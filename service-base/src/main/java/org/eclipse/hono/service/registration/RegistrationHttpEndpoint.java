@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2016, 2018 Contributors to the Eclipse Foundation
+ * Copyright (c) 2016, 2019 Contributors to the Eclipse Foundation
  *
  * See the NOTICE file(s) distributed with this work for additional
  * information regarding copyright ownership.
@@ -16,6 +16,7 @@ package org.eclipse.hono.service.registration;
 import java.net.HttpURLConnection;
 import java.util.Objects;
 
+import org.eclipse.hono.client.ClientErrorException;
 import org.eclipse.hono.config.ServiceConfigProperties;
 import org.eclipse.hono.service.http.AbstractHttpEndpoint;
 import org.eclipse.hono.service.http.HttpUtils;
@@ -38,6 +39,14 @@ import io.vertx.ext.web.RoutingContext;
  * This endpoint implements Hono's <a href="https://www.eclipse.org/hono/api/Device-Registration-API/">Device Registration API</a>.
  * It receives HTTP requests representing operation invocations and sends them to an address on the vertx
  * event bus for processing. The outcome is then returned to the peer in the HTTP response.
+ * <p>
+ * Devices can also be registered, updated and removed in bulk by means of POST, PUT and DELETE requests
+ * to the tenant's resource, containing a stream of JSON objects separated by line feeds
+ * ({@value HttpUtils#CONTENT_TYPE_NDJSON}). Each object contains the registration information of
+ * one device, including its <em>device-id</em>.
+ * <p>
+ * The devices of a tenant can be listed by means of a GET request to the tenant's resource.
+ * The devices can be filtered by the <em>enabled</em> and <em>via</em> query parameters.
  */
 public final class RegistrationHttpEndpoint extends AbstractHttpEndpoint<ServiceConfigProperties> {
 
@@ -69,8 +78,14 @@ public final class RegistrationHttpEndpoint extends AbstractHttpEndpoint<Service
         // ADD device registration
         router.route(HttpMethod.POST, pathWithTenant).consumes(HttpUtils.CONTENT_TYPE_JSON)
                 .handler(this::doRegisterDeviceJson);
+        // bulk operations
+        addBulkRoute(router, HttpMethod.POST, pathWithTenant, ctx -> doBulkOperation(ctx, RegistrationConstants.ACTION_REGISTER));
+        addBulkRoute(router, HttpMethod.PUT, pathWithTenant, ctx -> doBulkOperation(ctx, RegistrationConstants.ACTION_UPDATE));
+        addBulkRoute(router, HttpMethod.DELETE, pathWithTenant, ctx -> doBulkOperation(ctx, RegistrationConstants.ACTION_DEREGISTER));
         router.route(HttpMethod.POST, pathWithTenant)
                 .handler(ctx -> HttpUtils.badRequest(ctx, "missing or unsupported content-type"));
+        // FIND devices
+        router.route(HttpMethod.GET, pathWithTenant).handler(this::doFindDevices);
 
         final String pathWithTenantAndDeviceId = String.format("/%s/:%s/:%s",
                 RegistrationConstants.REGISTRATION_ENDPOINT, PARAM_TENANT_ID, PARAM_DEVICE_ID);
@@ -108,6 +123,35 @@ public final class RegistrationHttpEndpoint extends AbstractHttpEndpoint<Service
         });
     }
 
+    private void doFindDevices(final RoutingContext ctx) {
+
+        final String tenantId = getTenantParam(ctx);
+        final JsonObject filter = new JsonObject();
+        final String enabled = ctx.request().getParam(RegistrationConstants.FIELD_ENABLED);
+        final String via = ctx.request().getParam(BaseRegistrationService.PROPERTY_VIA);
+
+        if (enabled != null) {
+            if (!Boolean.TRUE.toString().equals(enabled) && !Boolean.FALSE.toString().equals(enabled)) {
+                HttpUtils.badRequest(ctx, String.format("'%s' param must be a boolean", RegistrationConstants.FIELD_ENABLED));
+                return;
+            }
+            filter.put(RegistrationConstants.FIELD_ENABLED, Boolean.valueOf(enabled));
+        }
+        if (via != null) {
+            filter.put(BaseRegistrationService.PROPERTY_VIA, via);
+        }
+
+        logger.debug("finding devices [tenant: {}, filter: {}]", tenantId, filter);
+        sendPagedQuery(ctx, RegistrationConstants.FIELD_DEVICES, (cursor, pageSize) -> EventBusMessage
+                .forOperation(RegistrationConstants.ACTION_FIND)
+                .setTenant(tenantId)
+                .setJsonPayload(new JsonObject()
+                        .put(RegistrationConstants.FIELD_FILTER, filter)
+                        .put(RegistrationConstants.FIELD_CURSOR, cursor)
+                        .put(RegistrationConstants.FIELD_PAGE_SIZE, pageSize))
+                .toJson());
+    }
+
     private void doRegisterDeviceJson(final RoutingContext ctx) {
         try {
             JsonObject payload = null;
@@ -189,4 +233,23 @@ public final class RegistrationHttpEndpoint extends AbstractHttpEndpoint<Service
         sendAction(ctx, requestMsg, getDefaultResponseHandler(ctx));
     }
 
+    private void doBulkOperation(final RoutingContext ctx, final String action) {
+
+        final String tenantId = getTenantParam(ctx);
+        logger.debug("processing bulk request [tenant: {}, operation: {}]", tenantId, action);
+        sendBulkActions(ctx, config.getMaxPayloadSize(), payload -> {
+            final Object deviceId = payload.remove(RegistrationConstants.FIELD_PAYLOAD_DEVICE_ID);
+            if (!(deviceId instanceof String)) {
+                throw new ClientErrorException(HttpURLConnection.HTTP_BAD_REQUEST, String.format(
+                        "'%s' param is required and must be a string", RegistrationConstants.FIELD_PAYLOAD_DEVICE_ID));
+            }
+            final EventBusMessage request = EventBusMessage.forOperation(action)
+                    .setTenant(tenantId)
+                    .setDeviceId((String) deviceId);
+            if (!RegistrationConstants.ACTION_DEREGISTER.equals(action)) {
+                request.setJsonPayload(payload);
+            }
+            return request.toJson();
+        });
+    }
 }
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2016, 2018 Contributors to the Eclipse Foundation
+ * Copyright (c) 2016, 2019 Contributors to the Eclipse Foundation
  *
  * See the NOTICE file(s) distributed with this work for additional
  * information regarding copyright ownership.
@@ -79,6 +79,15 @@ public class EventBusServiceTest {
         assertThat(result.getBoolean("enabled"), is(Boolean.TRUE));
     }
 
+    /**
+     * Verifies that no additional request consumers can be created for
+     * a service that does not support concurrent processing of requests.
+     */
+    @Test(expected = IllegalStateException.class)
+    public void testNewRequestConsumerFailsForNonThreadSafeService() {
+        service.newRequestConsumer();
+    }
+
     /**
      * Verify that a valid type works.
      */
@@ -18,6 +18,7 @@ import static org.eclipse.hono.util.AuthenticationConstants.EVENT_BUS_ADDRESS_AU
 import java.net.HttpURLConnection;
 
 import org.eclipse.hono.auth.AuthoritiesImpl;
+import org.eclipse.hono.auth.HonoUser;
 import org.eclipse.hono.client.ClientErrorException;
 import org.eclipse.hono.client.ServerErrorException;
 import org.eclipse.hono.client.ServiceInvocationException;
@@ -28,6 +29,7 @@ import org.junit.BeforeClass;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 
+import io.vertx.core.Future;
 import io.vertx.core.Vertx;
 import io.vertx.core.eventbus.MessageConsumer;
 import io.vertx.core.json.JsonObject;
@@ -96,6 +98,33 @@ public class EventBusAuthenticationServiceTest {
         async.await();
     }
 
+    /**
+     * Verifies that the same user instance is returned for subsequent authentication
+     * requests resulting in the same token.
+     *
+     * @param ctx The vert.x test context.
+     */
+    @Test
+    public void testAuthenticateReusesUserForSameToken(final TestContext ctx) {
+        final String token = createTestToken();
+
+        authRequestConsumer = vertx.eventBus().consumer(EVENT_BUS_ADDRESS_AUTHENTICATION_IN, message -> {
+            message.reply(AuthenticationConstants.getAuthenticationReply(token));
+        });
+
+        final EventBusAuthenticationService eventBusAuthService = new EventBusAuthenticationService(vertx, authTokenHelperForValidating);
+        final Future<HonoUser> firstUser = Future.future();
+        eventBusAuthService.authenticate(new JsonObject(), firstUser);
+        firstUser.compose(user -> {
+            final Future<HonoUser> secondUser = Future.future();
+            eventBusAuthService.authenticate(new JsonObject(), secondUser);
+            return secondUser;
+        }).setHandler(ctx.asyncAssertSuccess(user -> {
+            ctx.assertTrue(user == firstUser.result());
+            ctx.assertEquals(token, user.getToken());
+        }));
+    }
+
     /**
      * Verifies that the correct exception is given to the handler of the <code>authenticate</code> method in
      * case no event bus handler is registered for handling authentication requests.
@@ -86,4 +86,16 @@ public class SpringBasedExpiringValueCacheTest {
         verify(springCache).evict("key");
     }
 
+    /**
+     * Verifies that a removed value is evicted from the underlying cache.
+     */
+    @Test
+    public void testRemoveEvictsValue() {
+
+        // WHEN removing the value for a key
+        cache.remove("key");
+
+        // THEN the value has been evicted from the underlying cache
+        verify(springCache).evict("key");
+    }
 }
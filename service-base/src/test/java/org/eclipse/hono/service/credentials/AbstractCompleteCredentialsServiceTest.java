@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2016, 2018 Contributors to the Eclipse Foundation
+ * Copyright (c) 2016, 2019 Contributors to the Eclipse Foundation
  *
  * See the NOTICE file(s) distributed with this work for additional
  * information regarding copyright ownership.
@@ -17,6 +17,7 @@ import io.vertx.core.json.JsonObject;
 import io.vertx.ext.unit.Async;
 import io.vertx.ext.unit.TestContext;
 import org.eclipse.hono.util.CredentialsConstants;
+import org.eclipse.hono.util.RequestResponseApiConstants;
 import org.junit.Test;
 
 import java.net.HttpURLConnection;
@@ -184,6 +185,45 @@ public abstract class AbstractCompleteCredentialsServiceTest {
         remove.await();
     }
 
+    /**
+     * Verifies that credentials matching a filter are returned in pages ordered by
+     * authentication identifier.
+     *
+     * @param ctx The vert.x test context.
+     */
+    @Test
+    public void testFindCredentialsReturnsMatchingCredentialsInPages(final TestContext ctx) {
+
+        register(getCompleteCredentialsService(), "tenant", "device", "auth-c", "psk", ctx);
+        register(getCompleteCredentialsService(), "tenant", "device", "auth-a", "psk", ctx);
+        register(getCompleteCredentialsService(), "tenant", "device", "auth-a", "hashed-password", ctx);
+        register(getCompleteCredentialsService(), "tenant", "device", "auth-b", "hashed-password", ctx);
+
+        final JsonObject filter = new JsonObject().put(CredentialsConstants.FIELD_TYPE, "psk");
+        final Async firstPage = ctx.async();
+        final StringBuilder cursor = new StringBuilder();
+        getCompleteCredentialsService().find("tenant", filter, null, 1, ctx.asyncAssertSuccess(s -> {
+            assertThat(s.getStatus(), is(HttpURLConnection.HTTP_OK));
+            final JsonArray credentials = s.getPayload().getJsonArray(CredentialsConstants.CREDENTIALS_ENDPOINT);
+            assertThat(credentials.size(), is(1));
+            assertThat(credentials.getJsonObject(0).getString(CredentialsConstants.FIELD_AUTH_ID), is("auth-a"));
+            cursor.append(s.getPayload().getString(RequestResponseApiConstants.FIELD_CURSOR));
+            firstPage.complete();
+        }));
+        firstPage.await();
+
+        final Async secondPage = ctx.async();
+        getCompleteCredentialsService().find("tenant", filter, cursor.toString(), 1, ctx.asyncAssertSuccess(s -> {
+            assertThat(s.getStatus(), is(HttpURLConnection.HTTP_OK));
+            final JsonArray credentials = s.getPayload().getJsonArray(CredentialsConstants.CREDENTIALS_ENDPOINT);
+            assertThat(credentials.size(), is(1));
+            assertThat(credentials.getJsonObject(0).getString(CredentialsConstants.FIELD_AUTH_ID), is("auth-c"));
+            assertThat(s.getPayload().containsKey(RequestResponseApiConstants.FIELD_CURSOR), is(false));
+            secondPage.complete();
+        }));
+        secondPage.await();
+    }
+
     protected static void assertRegistered(
             final CompleteCredentialsService svc,
             final String tenant,
@@ -0,0 +1,366 @@
+/*******************************************************************************
+ * Copyright (c) 2019 Contributors to the Eclipse Foundation
+ *
+ * See the NOTICE file(s) distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *******************************************************************************/
+
+package org.eclipse.hono.service.http;
+
+import java.net.HttpURLConnection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.eclipse.hono.client.ClientErrorException;
+import org.eclipse.hono.util.EventBusMessage;
+import org.eclipse.hono.util.MessageHelper;
+import org.eclipse.hono.util.RequestResponseApiConstants;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.Timeout;
+import org.junit.runner.RunWith;
+
+import io.vertx.core.Vertx;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.http.HttpClientRequest;
+import io.vertx.core.http.HttpHeaders;
+import io.vertx.core.http.HttpMethod;
+import io.vertx.core.http.HttpServer;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import io.vertx.ext.unit.Async;
+import io.vertx.ext.unit.TestContext;
+import io.vertx.ext.unit.junit.VertxUnitRunner;
+import io.vertx.ext.web.Router;
+import io.vertx.ext.web.handler.BodyHandler;
+
+/**
+ * Tests verifying behavior of {@link AbstractHttpEndpoint}.
+ *
+ */
+@RunWith(VertxUnitRunner.class)
+public class AbstractHttpEndpointTest {
+
+    private static final String ADDRESS = "test.bulk";
+    private static final String ARRAY_NAME = "items";
+    private static final int NO_OF_ITEMS = 250;
+
+    /**
+     * Time out each test after ten seconds.
+     */
+    @Rule
+    public final Timeout timeout = Timeout.seconds(10);
+
+    private final AtomicInteger bulkRequestsReceived = new AtomicInteger();
+    private Vertx vertx;
+    private HttpServer server;
+
+    /**
+     * Starts an HTTP server exposing a bulk endpoint.
+     *
+     * @param ctx The vert.x test context.
+     */
+    @Before
+    public void startServer(final TestContext ctx) {
+
+        vertx = Vertx.vertx();
+        // the "service" fails all requests for devices with an ID starting with "unknown",
+        // delays the replies to requests for devices with an ID starting with "slow"
+        // and serves queries for a fixed number of items identified by their index
+        vertx.eventBus().<JsonObject>consumer(ADDRESS, request -> {
+            final EventBusMessage msg = EventBusMessage.fromJson(request.body());
+            if (msg.getDeviceId() != null && msg.getDeviceId().startsWith("slow")) {
+                bulkRequestsReceived.incrementAndGet();
+                vertx.setTimer(200, tid -> request.reply(
+                        new JsonObject().put(MessageHelper.APP_PROPERTY_STATUS, HttpURLConnection.HTTP_CREATED)));
+            } else if ("find".equals(msg.getOperation())) {
+                request.reply(new JsonObject()
+                        .put(MessageHelper.APP_PROPERTY_STATUS, HttpURLConnection.HTTP_OK)
+                        .put(RequestResponseApiConstants.FIELD_PAYLOAD, getPage(msg.getJsonPayload())));
+            } else if (msg.getDeviceId().startsWith("unknown")) {
+                request.reply(new JsonObject()
+                        .put(MessageHelper.APP_PROPERTY_STATUS, HttpURLConnection.HTTP_NOT_FOUND)
+                        .put(RequestResponseApiConstants.FIELD_PAYLOAD, new JsonObject().put("error", "no such device")));
+            } else {
+                request.reply(new JsonObject().put(MessageHelper.APP_PROPERTY_STATUS, HttpURLConnection.HTTP_CREATED));
+            }
+        });
+
+        final AbstractHttpEndpoint<Object> endpoint = new AbstractHttpEndpoint<Object>(vertx) {
+
+            @Override
+            protected String getEventBusAddress() {
+                return ADDRESS;
+            }
+
+            @Override
+            public String getName() {
+                return "bulk";
+            }
+
+            @Override
+            public void addRoutes(final Router router) {
+                addBulkRoute(router, HttpMethod.POST, "/bulk", ctx -> sendBulkActions(ctx, 100, payload -> {
+                    final String deviceId = payload.getString("device-id");
+                    if (deviceId == null) {
+                        throw new ClientErrorException(HttpURLConnection.HTTP_BAD_REQUEST, "missing device-id");
+                    }
+                    return EventBusMessage.forOperation("add").setDeviceId(deviceId).toJson();
+                }));
+                router.get("/query").handler(ctx -> sendPagedQuery(ctx, ARRAY_NAME, (cursor, pageSize) -> {
+                    return EventBusMessage.forOperation("find")
+                            .setJsonPayload(new JsonObject()
+                                    .put(RequestResponseApiConstants.FIELD_CURSOR, cursor)
+                                    .put(RequestResponseApiConstants.FIELD_PAGE_SIZE, pageSize))
+                            .toJson();
+                }));
+            }
+        };
+        final Router router = Router.router(vertx);
+        // read the bodies of all requests but the bulk requests like HttpServiceBase does
+        final BodyHandler bodyHandler = BodyHandler.create();
+        router.route().handler(routingContext -> {
+            if (AbstractHttpEndpoint.isStreamedBody(routingContext)) {
+                routingContext.next();
+            } else {
+                bodyHandler.handle(routingContext);
+            }
+        });
+        router.route().order(-1).failureHandler(new DefaultFailureHandler());
+        endpoint.addRoutes(router);
+        router.post("/echo").handler(routingContext -> routingContext.response().end(routingContext.getBody()));
+        server = vertx.createHttpServer();
+        server.requestHandler(router).listen(0, "127.0.0.1", ctx.asyncAssertSuccess());
+    }
+
+    private static JsonObject getPage(final JsonObject query) {
+
+        final String cursor = query.getString(RequestResponseApiConstants.FIELD_CURSOR);
+        final int start = cursor == null ? 0 : Integer.parseInt(cursor) + 1;
+        final int end = Math.min(NO_OF_ITEMS, start + query.getInteger(RequestResponseApiConstants.FIELD_PAGE_SIZE));
+        final JsonArray items = new JsonArray();
+        for (int i = start; i < end; i++) {
+            items.add(new JsonObject().put("index", i));
+        }
+        final JsonObject page = new JsonObject().put(ARRAY_NAME, items);
+        if (end < NO_OF_ITEMS) {
+            page.put(RequestResponseApiConstants.FIELD_CURSOR, String.valueOf(end - 1));
+        }
+        return page;
+    }
+
+    /**
+     * Closes the vert.x instance.
+     *
+     * @param ctx The vert.x test context.
+     */
+    @After
+    public void shutDown(final TestContext ctx) {
+        vertx.close(ctx.asyncAssertSuccess());
+    }
+
+    /**
+     * Verifies that each line of a bulk request is processed and reported
+     * individually in the response, including lines exceeding the maximum size.
+     *
+     * @param ctx The vert.x test context.
+     */
+    @Test
+    public void testSendBulkActionsReportsResultPerLine(final TestContext ctx) {
+
+        final Buffer body = Buffer.buffer()
+                .appendString("{\"device-id\": \"4711\"}\n")
+                .appendString("\n")
+                .appendString("{\"device-id\": \"unknown\"}\n")
+                .appendString("not JSON\n")
+                .appendString("{\"no-id\": true}\n")
+                .appendString(new JsonObject().put("device-id", String.join("", Collections.nCopies(100, "x"))).encode())
+                .appendString("\n")
+                // last line is not terminated by a line feed
+                .appendString("{\"device-id\": \"4712\"}");
+
+        final Async response = ctx.async();
+        vertx.createHttpClient().post(server.actualPort(), "127.0.0.1", "/bulk", resp -> {
+            ctx.assertEquals(HttpURLConnection.HTTP_OK, resp.statusCode());
+            ctx.assertEquals(HttpUtils.CONTENT_TYPE_NDJSON, resp.getHeader(HttpHeaders.CONTENT_TYPE));
+            resp.bodyHandler(result -> {
+                final Map<Integer, JsonObject> results = new HashMap<>();
+                for (final String line : result.toString().split("\n")) {
+                    final JsonObject item = new JsonObject(line);
+                    results.put(item.getInteger(AbstractHttpEndpoint.FIELD_BULK_LINE), item);
+                }
+                ctx.assertEquals(6, results.size());
+                ctx.assertEquals(HttpURLConnection.HTTP_CREATED, results.get(1).getInteger(AbstractHttpEndpoint.FIELD_BULK_STATUS));
+                ctx.assertEquals(HttpURLConnection.HTTP_NOT_FOUND, results.get(3).getInteger(AbstractHttpEndpoint.FIELD_BULK_STATUS));
+                ctx.assertNotNull(results.get(3).getJsonObject(AbstractHttpEndpoint.FIELD_BULK_PAYLOAD));
+                ctx.assertEquals(HttpURLConnection.HTTP_BAD_REQUEST, results.get(4).getInteger(AbstractHttpEndpoint.FIELD_BULK_STATUS));
+                ctx.assertEquals(HttpURLConnection.HTTP_BAD_REQUEST, results.get(5).getInteger(AbstractHttpEndpoint.FIELD_BULK_STATUS));
+                ctx.assertEquals(HttpURLConnection.HTTP_ENTITY_TOO_LARGE, results.get(6).getInteger(AbstractHttpEndpoint.FIELD_BULK_STATUS));
+                ctx.assertEquals(HttpURLConnection.HTTP_CREATED, results.get(7).getInteger(AbstractHttpEndpoint.FIELD_BULK_STATUS));
+                response.complete();
+            });
+        }).putHeader(HttpHeaders.CONTENT_TYPE, HttpUtils.CONTENT_TYPE_NDJSON).end(body);
+    }
+
+    /**
+     * Verifies that the body of a request of type <em>application/x-ndjson</em>
+     * is read by the body handler if the request does not match a bulk route.
+     *
+     * @param ctx The vert.x test context.
+     */
+    @Test
+    public void testBodyHandlerReadsNdjsonRequestToOtherRoute(final TestContext ctx) {
+
+        final Buffer body = Buffer.buffer("{\"device-id\": \"4711\"}\n");
+        final Async response = ctx.async();
+        vertx.createHttpClient().post(server.actualPort(), "127.0.0.1", "/echo", resp -> {
+            ctx.assertEquals(HttpURLConnection.HTTP_OK, resp.statusCode());
+            resp.bodyHandler(result -> {
+                ctx.assertEquals(body, result);
+                response.complete();
+            });
+        }).putHeader(HttpHeaders.CONTENT_TYPE, HttpUtils.CONTENT_TYPE_NDJSON).end(body);
+    }
+
+    /**
+     * Verifies that a bulk request containing more lines than the window size
+     * is processed completely.
+     *
+     * @param ctx The vert.x test context.
+     */
+    @Test
+    public void testSendBulkActionsProcessesLargeRequest(final TestContext ctx) {
+
+        final int lines = AbstractHttpEndpoint.BULK_WINDOW_SIZE * 3;
+        final Buffer body = Buffer.buffer();
+        for (int i = 0; i < lines; i++) {
+            body.appendString(new JsonObject().put("device-id", "device-" + i).encode()).appendString("\n");
+        }
+
+        final Async response = ctx.async();
+        vertx.createHttpClient().post(server.actualPort(), "127.0.0.1", "/bulk", resp -> {
+            ctx.assertEquals(HttpURLConnection.HTTP_OK, resp.statusCode());
+            resp.bodyHandler(result -> {
+                ctx.assertEquals(lines, result.toString().split("\n").length);
+                response.complete();
+            });
+        }).putHeader(HttpHeaders.CONTENT_TYPE, HttpUtils.CONTENT_TYPE_NDJSON).end(body);
+    }
+
+    /**
+     * Verifies that the remaining lines of a bulk request are discarded
+     * once the client has closed the connection.
+     *
+     * @param ctx The vert.x test context.
+     */
+    @Test
+    public void testSendBulkActionsStopsProcessingWhenClientDisconnects(final TestContext ctx) {
+
+        vertx.exceptionHandler(ctx::fail);
+        final int lines = AbstractHttpEndpoint.BULK_WINDOW_SIZE * 3;
+        final Buffer body = Buffer.buffer();
+        for (int i = 0; i < lines; i++) {
+            body.appendString(new JsonObject().put("device-id", "slow-" + i).encode()).appendString("\n");
+        }
+
+        // WHEN the client closes the connection while the first lines are being processed
+        final HttpClientRequest request = vertx.createHttpClient()
+                .post(server.actualPort(), "127.0.0.1", "/bulk", resp -> {})
+                .exceptionHandler(t -> {})
+                .putHeader(HttpHeaders.CONTENT_TYPE, HttpUtils.CONTENT_TYPE_NDJSON);
+        request.end(body);
+        final Async done = ctx.async();
+        vertx.setTimer(100, close -> {
+            request.connection().close();
+            // THEN the results of the lines being processed are discarded without failure
+            // and the remaining lines are not processed
+            vertx.setTimer(500, check -> {
+                ctx.assertTrue(bulkRequestsReceived.get() <= AbstractHttpEndpoint.BULK_WINDOW_SIZE);
+                done.complete();
+            });
+        });
+    }
+
+    /**
+     * Verifies that a query without a page size returns all entries
+     * retrieved from the service in multiple pages.
+     *
+     * @param ctx The vert.x test context.
+     */
+    @Test
+    public void testSendPagedQueryReturnsAllEntries(final TestContext ctx) {
+
+        final Async response = ctx.async();
+        vertx.createHttpClient().getNow(server.actualPort(), "127.0.0.1", "/query", resp -> {
+            ctx.assertEquals(HttpURLConnection.HTTP_OK, resp.statusCode());
+            ctx.assertEquals(HttpUtils.CONTENT_TYPE_JSON_UTF8, resp.getHeader(HttpHeaders.CONTENT_TYPE));
+            resp.bodyHandler(body -> {
+                final JsonObject result = body.toJsonObject();
+                final JsonArray items = result.getJsonArray(ARRAY_NAME);
+                ctx.assertEquals(NO_OF_ITEMS, items.size());
+                ctx.assertEquals(NO_OF_ITEMS - 1, items.getJsonObject(NO_OF_ITEMS - 1).getInteger("index"));
+                ctx.assertFalse(result.containsKey(RequestResponseApiConstants.FIELD_CURSOR));
+                response.complete();
+            });
+        });
+    }
+
+    /**
+     * Verifies that a query with a page size returns no more entries than requested
+     * along with a cursor which can be used to retrieve the remaining entries.
+     *
+     * @param ctx The vert.x test context.
+     */
+    @Test
+    public void testSendPagedQueryReturnsCursorIfLimitIsReached(final TestContext ctx) {
+
+        final Async firstPage = ctx.async();
+        final StringBuilder cursor = new StringBuilder();
+        vertx.createHttpClient().getNow(server.actualPort(), "127.0.0.1", "/query?page-size=120", resp -> {
+            ctx.assertEquals(HttpURLConnection.HTTP_OK, resp.statusCode());
+            resp.bodyHandler(body -> {
+                final JsonObject result = body.toJsonObject();
+                ctx.assertEquals(120, result.getJsonArray(ARRAY_NAME).size());
+                cursor.append(result.getString(RequestResponseApiConstants.FIELD_CURSOR));
+                firstPage.complete();
+            });
+        });
+        firstPage.await();
+
+        final Async secondPage = ctx.async();
+        vertx.createHttpClient().getNow(server.actualPort(), "127.0.0.1", "/query?cursor=" + cursor, resp -> {
+            ctx.assertEquals(HttpURLConnection.HTTP_OK, resp.statusCode());
+            resp.bodyHandler(body -> {
+                final JsonArray items = body.toJsonObject().getJsonArray(ARRAY_NAME);
+                ctx.assertEquals(NO_OF_ITEMS - 120, items.size());
+                ctx.assertEquals(120, items.getJsonObject(0).getInteger("index"));
+                secondPage.complete();
+            });
+        });
+    }
+
+    /**
+     * Verifies that a query with an invalid page size is rejected.
+     *
+     * @param ctx The vert.x test context.
+     */
+    @Test
+    public void testSendPagedQueryRejectsInvalidPageSize(final TestContext ctx) {
+
+        final Async response = ctx.async();
+        vertx.createHttpClient().getNow(server.actualPort(), "127.0.0.1", "/query?page-size=0", resp -> {
+            ctx.assertEquals(HttpURLConnection.HTTP_BAD_REQUEST, resp.statusCode());
+            response.complete();
+        });
+    }
+}
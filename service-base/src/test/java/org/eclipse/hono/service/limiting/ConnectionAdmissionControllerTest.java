@@ -0,0 +1,220 @@
+/*******************************************************************************
+ * Copyright (c) 2019 Contributors to the Eclipse Foundation
+ *
+ * See the NOTICE file(s) distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *******************************************************************************/
+
+package org.eclipse.hono.service.limiting;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+import java.net.HttpURLConnection;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.BiFunction;
+
+import org.eclipse.hono.client.ClientErrorException;
+import org.eclipse.hono.client.ServerErrorException;
+import org.junit.Test;
+
+import io.vertx.core.Future;
+
+/**
+ * Verifies the behavior of {@link ConnectionAdmissionController}.
+ */
+public class ConnectionAdmissionControllerTest {
+
+    /**
+     * Verifies that requests exceeding the maximum number of concurrent requests
+     * are queued and processed in the order of their arrival.
+     */
+    @Test
+    public void testAdmitQueuesRequestsExceedingConcurrency() {
+
+        // GIVEN a controller processing a single request at a time
+        final ConnectionAdmissionController controller = new ConnectionAdmissionController(1, 10);
+        final List<String> started = new ArrayList<>();
+        final List<Future<String>> pendingRequests = new ArrayList<>();
+
+        // WHEN three requests are submitted
+        final List<Future<String>> results = new ArrayList<>();
+        for (final String id : Arrays.asList("a", "b", "c")) {
+            results.add(controller.admit(() -> {
+                started.add(id);
+                final Future<String> request = Future.future();
+                pendingRequests.add(request);
+                return request;
+            }));
+        }
+
+        // THEN only the first request is being processed
+        assertThat(started, is(Arrays.asList("a")));
+        assertThat(controller.getQueuedRequests(), is(2));
+
+        // and the queued requests are processed once the preceding request has completed
+        pendingRequests.get(0).complete("a");
+        assertTrue(results.get(0).succeeded());
+        assertThat(started, is(Arrays.asList("a", "b")));
+        pendingRequests.get(1).fail("failure");
+        assertTrue(results.get(1).failed());
+        assertThat(started, is(Arrays.asList("a", "b", "c")));
+        assertFalse(results.get(2).isComplete());
+        assertThat(controller.getQueuedRequests(), is(0));
+    }
+
+    /**
+     * Verifies that requests are rejected with a 503 error if the queue is full.
+     */
+    @Test
+    public void testAdmitRejectsRequestsIfQueueIsFull() {
+
+        // GIVEN a controller processing a single request at a time and queuing a single request
+        final ConnectionAdmissionController controller = new ConnectionAdmissionController(1, 1);
+        controller.admit(() -> Future.future());
+        controller.admit(() -> Future.future());
+
+        // WHEN another request is submitted
+        final Future<Void> result = controller.admit(() -> Future.succeededFuture());
+
+        // THEN the request is rejected
+        assertTrue(result.failed());
+        assertThat(((ServerErrorException) result.cause()).getErrorCode(), is(HttpURLConnection.HTTP_UNAVAILABLE));
+    }
+
+    /**
+     * Verifies that the number of concurrent requests is limited globally and that
+     * a tenant having many requests in process does not delay the requests of other
+     * tenants.
+     */
+    @Test
+    public void testAdmitSharesConcurrencyFairlyBetweenTenants() {
+
+        // GIVEN a controller processing two requests at a time
+        final ConnectionAdmissionController controller = new ConnectionAdmissionController(2, 10);
+        final List<String> started = new ArrayList<>();
+        final List<Future<Void>> pendingRequests = new ArrayList<>();
+        final BiFunction<String, String, Future<Void>> admit = (tenant, id) -> controller.admit(tenant, () -> true, () -> {
+            started.add(id);
+            final Future<Void> request = Future.future();
+            pendingRequests.add(request);
+            return request;
+        });
+
+        // WHEN a tenant submits more requests than can be processed concurrently
+        admit.apply("tenant-a", "a1");
+        admit.apply("tenant-a", "a2");
+        admit.apply("tenant-a", "a3");
+        admit.apply("tenant-a", "a4");
+        // and other tenants submit requests afterwards
+        admit.apply("tenant-b", "b1");
+        admit.apply(null, "n1");
+
+        // THEN only the first two requests are processed
+        assertThat(started, is(Arrays.asList("a1", "a2")));
+        assertThat(controller.getQueuedRequests(), is(4));
+
+        // and the other tenants' requests are processed first once requests complete
+        pendingRequests.get(0).complete();
+        assertThat(started, is(Arrays.asList("a1", "a2", "b1")));
+        // even if the completed request is not one of the tenant's
+        pendingRequests.get(2).complete();
+        assertThat(started, is(Arrays.asList("a1", "a2", "b1", "n1")));
+        pendingRequests.get(1).complete();
+        assertThat(started, is(Arrays.asList("a1", "a2", "b1", "n1", "a3")));
+        assertThat(controller.getQueuedRequests(), is(1));
+    }
+
+    /**
+     * Verifies that a tenant's requests are rejected if the tenant's queue is full
+     * while other tenants' requests can still be queued.
+     */
+    @Test
+    public void testAdmitLimitsQueuedRequestsPerTenant() {
+
+        // GIVEN a controller processing a single request at a time and queuing a single request per tenant
+        final ConnectionAdmissionController controller = new ConnectionAdmissionController(1, 1);
+        controller.admit("tenant-a", () -> true, () -> Future.future());
+        controller.admit("tenant-a", () -> true, () -> Future.future());
+
+        // WHEN requests for the same and for another tenant are submitted
+        final Future<Void> sameTenant = controller.admit("tenant-a", () -> true, () -> Future.succeededFuture());
+        final Future<Void> otherTenant = controller.admit("tenant-b", () -> true, () -> Future.succeededFuture());
+
+        // THEN only the request of the same tenant is rejected
+        assertTrue(sameTenant.failed());
+        assertFalse(otherTenant.isComplete());
+        assertThat(controller.getQueuedRequests(), is(2));
+    }
+
+    /**
+     * Verifies that queued requests are discarded if the connection to the device
+     * has been closed before the request could be processed.
+     */
+    @Test
+    public void testAdmitDiscardsRequestsOfClosedConnections() {
+
+        // GIVEN a controller processing a single request at a time
+        final ConnectionAdmissionController controller = new ConnectionAdmissionController(1, 10);
+        final Future<Void> first = Future.future();
+        controller.admit("tenant", () -> true, () -> first);
+        final List<String> started = new ArrayList<>();
+        final AtomicBoolean connectionOpen = new AtomicBoolean(true);
+        final Future<Void> closed = controller.admit("tenant", connectionOpen::get, () -> {
+            started.add("closed");
+            return Future.succeededFuture();
+        });
+        final Future<Void> open = controller.admit("tenant", () -> true, () -> {
+            started.add("open");
+            return Future.succeededFuture();
+        });
+
+        // WHEN the connection of a queued request is closed
+        connectionOpen.set(false);
+        // and the preceding request completes
+        first.complete();
+
+        // THEN the request of the closed connection is not processed
+        assertTrue(closed.failed());
+        assertThat(((ClientErrorException) closed.cause()).getErrorCode(), is(HttpURLConnection.HTTP_BAD_REQUEST));
+        // but the next request is
+        assertTrue(open.succeeded());
+        assertThat(started, is(Arrays.asList("open")));
+        assertThat(controller.getQueuedRequests(), is(0));
+    }
+
+    /**
+     * Verifies that a large number of queued requests that complete synchronously
+     * are processed without exhausting the stack.
+     */
+    @Test
+    public void testAdmitProcessesSynchronouslyCompletingRequests() {
+
+        // GIVEN a controller with a large number of queued requests that complete synchronously
+        final ConnectionAdmissionController controller = new ConnectionAdmissionController(1, 100000);
+        final Future<Void> first = Future.future();
+        controller.admit(() -> first);
+        final List<Future<Void>> results = new ArrayList<>();
+        for (int i = 0; i < 100000; i++) {
+            results.add(controller.admit(() -> Future.succeededFuture()));
+        }
+
+        // WHEN the first request completes
+        first.complete();
+
+        // THEN all queued requests have been processed
+        assertThat(controller.getQueuedRequests(), is(0));
+        results.forEach(result -> assertTrue(result.succeeded()));
+    }
+}
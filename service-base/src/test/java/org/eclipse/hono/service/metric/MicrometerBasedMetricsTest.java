@@ -14,11 +14,14 @@
 
 package org.eclipse.hono.service.metric;
 
+import static org.hamcrest.CoreMatchers.is;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertThat;
 import static org.mockito.Mockito.*;
 
 import org.eclipse.hono.service.metric.MetricsTags.EndpointType;
+import org.eclipse.hono.service.metric.MetricsTags.ProcessingStage;
 import org.eclipse.hono.service.metric.MetricsTags.QoS;
 import org.eclipse.hono.service.metric.MetricsTags.TtdStatus;
 import org.junit.Before;
@@ -26,6 +29,8 @@ import org.junit.Test;
 
 import io.micrometer.core.instrument.MeterRegistry;
 import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.Timer.Sample;
 import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 
 
@@ -95,4 +100,33 @@ public class MicrometerBasedMetricsTest {
 
         verify(legacyMetrics).incrementProcessedMessages(eq(EndpointType.TELEMETRY), eq("tenant"));
     }
+
+    /**
+     * Verifies that the duration of a processing stage is recorded only
+     * if recording has been enabled for the stage.
+     */
+    @Test
+    public void testReportProcessingStageRecordsEnabledStagesOnly() {
+
+        // GIVEN metrics recording the duration of the tenant lookup only
+        metrics.setProcessingStageTimerEnabled(ProcessingStage.TENANT_LOOKUP, true);
+
+        // WHEN reporting the tenant lookup and the assertion stages
+        final Sample tenantLookup = metrics.startProcessingStageTimer(ProcessingStage.TENANT_LOOKUP);
+        final Sample assertion = metrics.startProcessingStageTimer(ProcessingStage.ASSERTION);
+        metrics.reportProcessingStage(ProcessingStage.TENANT_LOOKUP, tenantLookup);
+        metrics.reportProcessingStage(ProcessingStage.ASSERTION, assertion);
+
+        // THEN only the duration of the tenant lookup has been recorded
+        assertNull(assertion);
+        final Timer timer = registry.find(MicrometerBasedMetrics.METER_PROCESSING_STAGE)
+                .tags(Tags.of(ProcessingStage.TENANT_LOOKUP.asTag())).timer();
+        assertThat(timer.count(), is(1L));
+        assertNull(registry.find(MicrometerBasedMetrics.METER_PROCESSING_STAGE)
+                .tags(Tags.of(ProcessingStage.ASSERTION.asTag())).timer());
+
+        // and no more durations are recorded once recording has been disabled
+        metrics.setProcessingStageTimerEnabled(ProcessingStage.TENANT_LOOKUP, false);
+        assertNull(metrics.startProcessingStageTimer(ProcessingStage.TENANT_LOOKUP));
+    }
 }
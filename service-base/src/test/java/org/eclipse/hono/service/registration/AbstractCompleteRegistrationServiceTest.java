@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2016, 2018 Contributors to the Eclipse Foundation
+ * Copyright (c) 2016, 2019 Contributors to the Eclipse Foundation
  *
  * See the NOTICE file(s) distributed with this work for additional
  * information regarding copyright ownership.
@@ -13,10 +13,13 @@
 package org.eclipse.hono.service.registration;
 
 import io.vertx.core.Future;
+import io.vertx.core.json.JsonArray;
 import io.vertx.core.json.JsonObject;
 import io.vertx.ext.unit.TestContext;
 import org.eclipse.hono.util.Constants;
+import org.eclipse.hono.util.RegistrationConstants;
 import org.eclipse.hono.util.RegistrationResult;
+import org.eclipse.hono.util.RequestResponseApiConstants;
 import org.junit.Test;
 
 import java.net.HttpURLConnection;
@@ -139,4 +142,55 @@ public abstract class AbstractCompleteRegistrationServiceTest {
             ctx.assertEquals(HttpURLConnection.HTTP_NOT_FOUND, response.getStatus());
         }));
     }
+
+    /**
+     * Verifies that devices matching a filter are returned in pages ordered by
+     * device identifier and that the cursor of a page can be used to retrieve
+     * the next page.
+     *
+     * @param ctx The vert.x test context.
+     */
+    @Test
+    public void testFindDevicesReturnsMatchingDevicesInPages(final TestContext ctx) {
+
+        final Future<RegistrationResult> result = Future.future();
+        final CompleteRegistrationService svc = getCompleteRegistrationService();
+        final JsonObject viaGw = new JsonObject().put(BaseRegistrationService.PROPERTY_VIA, GW);
+
+        svc.addDevice(TENANT, "device-c", viaGw.copy(), result.completer());
+        result.compose(ok -> {
+            final Future<RegistrationResult> add = Future.future();
+            svc.addDevice(TENANT, "device-a", viaGw.copy(), add.completer());
+            return add;
+        }).compose(ok -> {
+            final Future<RegistrationResult> add = Future.future();
+            svc.addDevice(TENANT, "device-b", new JsonObject(), add.completer());
+            return add;
+        }).compose(ok -> {
+            final Future<RegistrationResult> add = Future.future();
+            svc.addDevice(TENANT, "device-d", viaGw.copy(), add.completer());
+            return add;
+        }).compose(ok -> {
+            final Future<RegistrationResult> firstPage = Future.future();
+            svc.findDevices(TENANT, viaGw, null, 2, firstPage.completer());
+            return firstPage;
+        }).compose(firstPage -> {
+            ctx.assertEquals(HttpURLConnection.HTTP_OK, firstPage.getStatus());
+            final JsonArray devices = firstPage.getPayload().getJsonArray(RegistrationConstants.FIELD_DEVICES);
+            ctx.assertEquals(2, devices.size());
+            ctx.assertEquals("device-a", devices.getJsonObject(0).getString(RegistrationConstants.FIELD_PAYLOAD_DEVICE_ID));
+            ctx.assertEquals("device-c", devices.getJsonObject(1).getString(RegistrationConstants.FIELD_PAYLOAD_DEVICE_ID));
+            final String cursor = firstPage.getPayload().getString(RequestResponseApiConstants.FIELD_CURSOR);
+            ctx.assertNotNull(cursor);
+            final Future<RegistrationResult> secondPage = Future.future();
+            svc.findDevices(TENANT, viaGw, cursor, 2, secondPage.completer());
+            return secondPage;
+        }).setHandler(ctx.asyncAssertSuccess(secondPage -> {
+            ctx.assertEquals(HttpURLConnection.HTTP_OK, secondPage.getStatus());
+            final JsonArray devices = secondPage.getPayload().getJsonArray(RegistrationConstants.FIELD_DEVICES);
+            ctx.assertEquals(1, devices.size());
+            ctx.assertEquals("device-d", devices.getJsonObject(0).getString(RegistrationConstants.FIELD_PAYLOAD_DEVICE_ID));
+            ctx.assertFalse(secondPage.getPayload().containsKey(RequestResponseApiConstants.FIELD_CURSOR));
+        }));
+    }
 }
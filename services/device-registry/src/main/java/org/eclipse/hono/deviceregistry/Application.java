@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2016, 2018 Contributors to the Eclipse Foundation
+ * Copyright (c) 2016, 2019 Contributors to the Eclipse Foundation
  *
  * See the NOTICE file(s) distributed with this work for additional
  * information regarding copyright ownership.
@@ -16,9 +16,11 @@ package org.eclipse.hono.deviceregistry;
 import java.util.Objects;
 
 import io.vertx.core.CompositeFuture;
+import io.vertx.core.DeploymentOptions;
 import io.vertx.core.Verticle;
 
 import org.eclipse.hono.service.AbstractApplication;
+import org.eclipse.hono.service.EventBusService;
 import org.eclipse.hono.service.HealthCheckProvider;
 import org.eclipse.hono.service.auth.AuthenticationService;
 import org.eclipse.hono.service.credentials.CredentialsService;
@@ -99,9 +101,9 @@ public class Application extends AbstractApplication {
         final Future<Void> result = Future.future();
         CompositeFuture.all(
                 deployAuthenticationService(), // we only need 1 authentication service
-                deployTenantService(),
-                deployRegistrationService(),
-                deployCredentialsService()).setHandler(ar -> {
+                deployTenantService().compose(id -> deployRequestConsumers(tenantService, maxInstances)),
+                deployRegistrationService().compose(id -> deployRequestConsumers(registrationService, maxInstances)),
+                deployCredentialsService().compose(id -> deployRequestConsumers(credentialsService, maxInstances))).setHandler(ar -> {
             if (ar.succeeded()) {
                 result.complete();
             } else {
@@ -143,6 +145,33 @@ public class Application extends AbstractApplication {
         return result;
     }
 
+    /**
+     * Deploys additional request consumers for a service.
+     * <p>
+     * If the service supports concurrent processing of requests, <em>maxInstances - 1</em>
+     * additional request consumers are deployed so that requests are processed on
+     * (up to) <em>maxInstances</em> event loop threads.
+     *
+     * @param service The service.
+     * @param maxInstances The overall number of request consumers to use for the service.
+     * @return A future indicating the outcome of the deployment.
+     */
+    private Future<Void> deployRequestConsumers(final Object service, final int maxInstances) {
+
+        if (maxInstances > 1 && service instanceof EventBusService && ((EventBusService<?>) service).isThreadSafe()) {
+            final EventBusService<?> eventBusService = (EventBusService<?>) service;
+            final Future<String> result = Future.future();
+            log.info("deploying {} additional request consumers for {}", maxInstances - 1, service);
+            getVertx().deployVerticle(
+                    eventBusService::newRequestConsumer,
+                    new DeploymentOptions().setInstances(maxInstances - 1),
+                    result.completer());
+            return result.map(id -> null);
+        } else {
+            return Future.succeededFuture();
+        }
+    }
+
     /**
      * Registers any additional health checks that the service implementation components provide.
      * 
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2016, 2018 Contributors to the Eclipse Foundation
+ * Copyright (c) 2016, 2019 Contributors to the Eclipse Foundation
  *
  * See the NOTICE file(s) distributed with this work for additional
  * information regarding copyright ownership.
@@ -14,14 +14,19 @@
 package org.eclipse.hono.deviceregistry;
 
 import java.net.HttpURLConnection;
-import java.nio.charset.StandardCharsets;
-import java.util.HashMap;
+import java.util.ArrayList;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.NavigableMap;
 import java.util.Objects;
+import java.util.Optional;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
 
 import org.eclipse.hono.auth.HonoPasswordEncoder;
 import org.eclipse.hono.service.credentials.CompleteBaseCredentialsService;
@@ -37,7 +42,6 @@ import io.opentracing.Span;
 import io.vertx.core.AsyncResult;
 import io.vertx.core.Future;
 import io.vertx.core.Handler;
-import io.vertx.core.buffer.Buffer;
 import io.vertx.core.json.DecodeException;
 import io.vertx.core.json.JsonArray;
 import io.vertx.core.json.JsonObject;
@@ -49,6 +53,13 @@ import io.vertx.core.json.JsonObject;
  * <p>
  * On startup this adapter tries to load credentials from a file (if configured).
  * On shutdown all credentials kept in memory are written to the file (if configured).
+ * The file is parsed credentials by credentials and is written in a compact format
+ * containing one set of credentials per line.
+ * <p>
+ * The credentials are partitioned by tenant. Each tenant's credentials are guarded by a lock
+ * of their own so that requests can be processed concurrently by multiple request consumers.
+ * The credentials of a tenant are sorted by authentication identifier so that they can be
+ * retrieved page by page.
  */
 @Repository
 @ConditionalOnProperty(name = "hono.app.type", havingValue = "file", matchIfMissing = true)
@@ -64,9 +75,14 @@ public final class FileBasedCredentialsService extends CompleteBaseCredentialsSe
     public static final String FIELD_TENANT = "tenant";
 
     // <tenantId, <authId, credentialsData[]>>
-    private final Map<String, Map<String, JsonArray>> credentials = new HashMap<>();
-    private boolean running = false;
-    private boolean dirty = false;
+    private final Map<String, NavigableMap<String, JsonArray>> credentials = new ConcurrentHashMap<>();
+    private volatile boolean running = false;
+    private volatile boolean dirty = false;
+    /**
+     * The outcome of the attempt to save the data that is currently in progress
+     * or {@code null} if no attempt is in progress.
+     */
+    private volatile Future<Void> saveInProgress;
 
     /**
      * Creates a new service instance for a password encoder.
@@ -101,6 +117,16 @@ public final class FileBasedCredentialsService extends CompleteBaseCredentialsSe
         return result;
     }
 
+    /**
+     * {@inheritDoc}
+     *
+     * @return {@code true}.
+     */
+    @Override
+    public boolean isThreadSafe() {
+        return true;
+    }
+
     @Override
     protected void doStart(final Future<Void> startFuture) {
 
@@ -142,66 +168,52 @@ public final class FileBasedCredentialsService extends CompleteBaseCredentialsSe
             log.info("Either filename is null or empty start is set, won't load any credentials");
             return Future.succeededFuture();
         } else {
-            final Future<Buffer> readResult = Future.future();
             log.debug("trying to load credentials from file {}", getConfig().getFilename());
-            vertx.fileSystem().readFile(getConfig().getFilename(), readResult.completer());
-            return readResult.compose(buffer -> {
-                return addAll(buffer);
-            }).recover(t -> {
+            return addAll().recover(t -> {
                 log.debug("cannot load credentials from file [{}]: {}", getConfig().getFilename(), t.getMessage());
                 return Future.succeededFuture();
             });
         }
     }
 
-    private Future<Void> addAll(final Buffer credentials) {
-        final Future<Void> result = Future.future();
-        try {
-            int credentialsCount = 0;
-            final JsonArray allObjects = credentials.toJsonArray();
-            log.debug("trying to load credentials for {} tenants", allObjects.size());
-            for (final Object obj : allObjects) {
-                if (JsonObject.class.isInstance(obj)) {
-                    credentialsCount += addCredentialsForTenant((JsonObject) obj);
-                }
+    private Future<Void> addAll() {
+
+        final AtomicInteger credentialsCount = new AtomicInteger();
+        // the credentials are added one by one while reading the file so that the
+        // content of the file does not need to be kept in memory as a whole
+        return RegistryFileSupport.readTenantRecords(vertx, getConfig().getFilename(), ARRAY_CREDENTIALS, (tenantId, credentialsObject) -> {
+            addCredentialsFromFile(tenantId, credentialsObject);
+            credentialsCount.incrementAndGet();
+        }).map(ok -> {
+            log.info("successfully loaded {} credentials from file [{}]", credentialsCount.get(), getConfig().getFilename());
+            return (Void) null;
+        }).recover(t -> {
+            if (t instanceof DecodeException) {
+                log.warn("cannot read malformed JSON from credentials file [{}]", getConfig().getFilename());
             }
-            log.info("successfully loaded {} credentials from file [{}]", credentialsCount, getConfig().getFilename());
-            result.complete();
-        } catch (final DecodeException e) {
-            log.warn("cannot read malformed JSON from credentials file [{}]", getConfig().getFilename());
-            result.fail(e);
-        }
-        return result;
-    };
-
-    int addCredentialsForTenant(final JsonObject tenant) {
-        int count = 0;
-        final String tenantId = tenant.getString(FIELD_TENANT);
-        final Map<String, JsonArray> credentialsMap = new HashMap<>();
-        for (final Object credentialsObj : tenant.getJsonArray(ARRAY_CREDENTIALS)) {
-            final JsonObject credentials = (JsonObject) credentialsObj;
-            final JsonArray authIdCredentials;
-            if (credentialsMap.containsKey(credentials.getString(CredentialsConstants.FIELD_AUTH_ID))) {
-                authIdCredentials = credentialsMap.get(credentials.getString(CredentialsConstants.FIELD_AUTH_ID));
-            } else {
-                authIdCredentials = new JsonArray();
-            }
-            authIdCredentials.add(credentials);
-            credentialsMap.put(credentials.getString(CredentialsConstants.FIELD_AUTH_ID), authIdCredentials);
-            count++;
-        }
-        credentials.put(tenantId, credentialsMap);
-        return count;
+            // discard the credentials that have been loaded before the error has been detected
+            this.credentials.clear();
+            return Future.failedFuture(t);
+        });
+    }
+
+    private void addCredentialsFromFile(final String tenantId, final JsonObject credentialsObject) {
+
+        final String authId = credentialsObject.getString(CredentialsConstants.FIELD_AUTH_ID);
+        getCredentialsForTenant(tenantId).computeIfAbsent(authId, id -> new JsonArray()).add(credentialsObject);
     }
 
     @Override
     protected void doStop(final Future<Void> stopFuture) {
 
         if (running) {
-            saveToFile().compose(s -> {
-                running = false;
-                stopFuture.complete();
-            }, stopFuture);
+            // wait for an attempt in progress before saving the remaining modifications
+            Optional.ofNullable(saveInProgress).orElse(Future.succeededFuture())
+                .compose(ok -> saveToFile())
+                .compose(s -> {
+                    running = false;
+                    stopFuture.complete();
+                }, stopFuture);
         } else {
             stopFuture.complete();
         }
@@ -211,41 +223,67 @@ public final class FileBasedCredentialsService extends CompleteBaseCredentialsSe
 
         if (!getConfig().isSaveToFile()) {
             return Future.succeededFuture();
+        } else if (saveInProgress != null) {
+            // modifications made in the meantime will be saved by the next attempt
+            log.trace("credentials are already being saved to file");
+            return Future.succeededFuture();
         } else if (dirty) {
-            return checkFileExists(true).compose(s -> {
+            final Future<Void> result = Future.future();
+            saveInProgress = result;
+            checkFileExists(true).compose(s -> {
+                // reset flag before taking the snapshot so that concurrent modifications are not lost
+                dirty = false;
                 final AtomicInteger idCount = new AtomicInteger();
-                final JsonArray tenants = new JsonArray();
-                for (final Entry<String, Map<String, JsonArray>> entry : credentials.entrySet()) {
-                    final JsonArray credentialsArray = new JsonArray();
-                    for (final JsonArray singleAuthIdCredentials : entry.getValue().values()) {
-                        credentialsArray.addAll(singleAuthIdCredentials.copy());
-                        idCount.incrementAndGet();
-                    }
-                    tenants.add(
-                            new JsonObject()
-                                    .put(FIELD_TENANT, entry.getKey())
-                                    .put(ARRAY_CREDENTIALS, credentialsArray));
-                }
-                final Future<Void> writeHandler = Future.future();
-                vertx.fileSystem().writeFile(
+                // the credentials are encoded and written one auth-id at a time so that the
+                // content of the file does not need to be kept in memory as a whole
+                final Future<Void> writeHandler = RegistryFileSupport.writeTenantRecords(
+                        vertx,
                         getConfig().getFilename(),
-                        Buffer.buffer(tenants.encodePrettily(), StandardCharsets.UTF_8.name()),
-                        writeHandler.completer());
+                        ARRAY_CREDENTIALS,
+                        credentials,
+                        tenantCredentials -> getCredentialsToSave(tenantCredentials, idCount));
                 return writeHandler.map(ok -> {
-                    dirty = false;
                     log.trace("successfully wrote {} credentials to file {}", idCount.get(), getConfig().getFilename());
                     return (Void) null;
                 }).otherwise(t -> {
                     log.warn("could not write credentials to file {}", getConfig().getFilename(), t);
+                    dirty = true;
                     return (Void) null;
                 });
+            }).setHandler(outcome -> {
+                saveInProgress = null;
+                result.handle(outcome);
             });
+            return result;
         } else {
             log.trace("credentials registry does not need to be persisted");
             return Future.succeededFuture();
         }
     }
 
+    private Iterator<JsonObject> getCredentialsToSave(
+            final NavigableMap<String, JsonArray> tenantCredentials,
+            final AtomicInteger idCount) {
+
+        final List<String> authIds;
+        synchronized (tenantCredentials) {
+            authIds = new ArrayList<>(tenantCredentials.keySet());
+        }
+        return authIds.stream()
+                .flatMap(authId -> {
+                    // the lock is only held while copying a single auth-id's credentials
+                    synchronized (tenantCredentials) {
+                        final JsonArray singleAuthIdCredentials = tenantCredentials.get(authId);
+                        if (singleAuthIdCredentials == null) {
+                            return Stream.empty();
+                        }
+                        idCount.incrementAndGet();
+                        return singleAuthIdCredentials.copy().stream().map(JsonObject.class::cast);
+                    }
+                })
+                .iterator();
+    }
+
     /**
      * {@inheritDoc}
      * <p>
@@ -304,9 +342,11 @@ public final class FileBasedCredentialsService extends CompleteBaseCredentialsSe
             resultHandler.handle(Future.succeededFuture(CredentialsResult.from(HttpURLConnection.HTTP_NOT_FOUND)));
         } else {
             final JsonArray matchingCredentials = new JsonArray();
-            // iterate over all credentials per auth-id in order to find credentials matching the given device
-            for (final JsonArray credentialsForAuthId : credentialsForTenant.values()) {
-                findCredentialsForDevice(credentialsForAuthId, deviceId, matchingCredentials);
+            synchronized (credentialsForTenant) {
+                // iterate over all credentials per auth-id in order to find credentials matching the given device
+                for (final JsonArray credentialsForAuthId : credentialsForTenant.values()) {
+                    findCredentialsForDevice(credentialsForAuthId, deviceId, matchingCredentials);
+                }
             }
             if (matchingCredentials.isEmpty()) {
                 TracingHelper.logError(span, "no credentials found for device");
@@ -354,37 +394,39 @@ public final class FileBasedCredentialsService extends CompleteBaseCredentialsSe
 
         final Map<String, JsonArray> credentialsForTenant = credentials.get(tenantId);
         if (credentialsForTenant != null) {
-            final JsonArray authIdCredentials = credentialsForTenant.get(authId);
-            if (authIdCredentials != null) {
-                for (final Object authIdCredentialEntry : authIdCredentials) {
-                    final JsonObject authIdCredential = (JsonObject) authIdCredentialEntry;
-                    // return the first matching type entry for this authId
-                    if (type.equals(authIdCredential.getString(CredentialsConstants.FIELD_TYPE))) {
-                        if (clientContext != null) {
-                            final AtomicBoolean match = new AtomicBoolean(true);
-                            clientContext.forEach(field -> {
-                                if (authIdCredential.containsKey(field.getKey())) {
-                                    if (!authIdCredential.getString(field.getKey()).equals(field.getValue())) {
+            synchronized (credentialsForTenant) {
+                final JsonArray authIdCredentials = credentialsForTenant.get(authId);
+                if (authIdCredentials != null) {
+                    for (final Object authIdCredentialEntry : authIdCredentials) {
+                        final JsonObject authIdCredential = (JsonObject) authIdCredentialEntry;
+                        // return the first matching type entry for this authId
+                        if (type.equals(authIdCredential.getString(CredentialsConstants.FIELD_TYPE))) {
+                            if (clientContext != null) {
+                                final AtomicBoolean match = new AtomicBoolean(true);
+                                clientContext.forEach(field -> {
+                                    if (authIdCredential.containsKey(field.getKey())) {
+                                        if (!authIdCredential.getString(field.getKey()).equals(field.getValue())) {
+                                            match.set(false);
+                                        }
+                                    } else {
                                         match.set(false);
                                     }
-                                } else {
-                                    match.set(false);
+                                });
+                                if (!match.get()) {
+                                    continue;
                                 }
-                            });
-                            if (!match.get()) {
-                                continue;
                             }
+                            return authIdCredential;
                         }
-                        return authIdCredential;
                     }
-                }
-                if (clientContext != null) {
-                    TracingHelper.logError(span, "no credentials found with matching type and client context");
+                    if (clientContext != null) {
+                        TracingHelper.logError(span, "no credentials found with matching type and client context");
+                    } else {
+                        TracingHelper.logError(span, "no credentials found with matching type");
+                    }
                 } else {
-                    TracingHelper.logError(span, "no credentials found with matching type");
+                    TracingHelper.logError(span, "no credentials found for auth-id");
                 }
-            } else {
-                TracingHelper.logError(span, "no credentials found for auth-id");
             }
         } else {
             TracingHelper.logError(span, "no credentials found for tenant");
@@ -410,19 +452,21 @@ public final class FileBasedCredentialsService extends CompleteBaseCredentialsSe
 
         final Map<String, JsonArray> credentialsForTenant = getCredentialsForTenant(tenantId);
 
-        final JsonArray authIdCredentials = getAuthIdCredentials(authId, credentialsForTenant);
+        synchronized (credentialsForTenant) {
+            final JsonArray authIdCredentials = getAuthIdCredentials(authId, credentialsForTenant);
 
-        // check if credentials already exist with the type and auth-id from the payload
-        for (final Object credentialsObj: authIdCredentials) {
-            final JsonObject credentials = (JsonObject) credentialsObj;
-            if (credentials.getString(CredentialsConstants.FIELD_TYPE).equals(type)) {
-                return CredentialsResult.from(HttpURLConnection.HTTP_CONFLICT);
+            // check if credentials already exist with the type and auth-id from the payload
+            for (final Object credentialsObj: authIdCredentials) {
+                final JsonObject credentials = (JsonObject) credentialsObj;
+                if (credentials.getString(CredentialsConstants.FIELD_TYPE).equals(type)) {
+                    return CredentialsResult.from(HttpURLConnection.HTTP_CONFLICT);
+                }
             }
-        }
 
-        authIdCredentials.add(credentialsToAdd);
-        dirty = true;
-        return CredentialsResult.from(HttpURLConnection.HTTP_CREATED);
+            authIdCredentials.add(credentialsToAdd);
+            dirty = true;
+            return CredentialsResult.from(HttpURLConnection.HTTP_CREATED);
+        }
     }
 
     @Override
@@ -441,27 +485,29 @@ public final class FileBasedCredentialsService extends CompleteBaseCredentialsSe
             if (credentialsForTenant == null) {
                 resultHandler.handle(Future.succeededFuture(CredentialsResult.from(HttpURLConnection.HTTP_NOT_FOUND)));
             } else {
-                final JsonArray credentialsForAuthId = credentialsForTenant.get(authId);
-                if (credentialsForAuthId == null) {
-                    resultHandler.handle(Future.succeededFuture(CredentialsResult.from(HttpURLConnection.HTTP_NOT_FOUND)));
-                } else {
-                    // find credentials of given type
-                    boolean removed = false;
-                    final Iterator<Object> credentialsIterator = credentialsForAuthId.iterator();
-                    while (credentialsIterator.hasNext()) {
-                        final JsonObject creds = (JsonObject) credentialsIterator.next();
-                        if (creds.getString(CredentialsConstants.FIELD_TYPE).equals(type)) {
-                            credentialsIterator.remove();
-                            removed = true;
-                            break;
-                        }
-                    }
-                    if (removed) {
-                        credentialsForAuthId.add(newCredentials);
-                        dirty = true;
-                        resultHandler.handle(Future.succeededFuture(CredentialsResult.from(HttpURLConnection.HTTP_NO_CONTENT)));
-                    } else {
+                synchronized (credentialsForTenant) {
+                    final JsonArray credentialsForAuthId = credentialsForTenant.get(authId);
+                    if (credentialsForAuthId == null) {
                         resultHandler.handle(Future.succeededFuture(CredentialsResult.from(HttpURLConnection.HTTP_NOT_FOUND)));
+                    } else {
+                        // find credentials of given type
+                        boolean removed = false;
+                        final Iterator<Object> credentialsIterator = credentialsForAuthId.iterator();
+                        while (credentialsIterator.hasNext()) {
+                            final JsonObject creds = (JsonObject) credentialsIterator.next();
+                            if (creds.getString(CredentialsConstants.FIELD_TYPE).equals(type)) {
+                                credentialsIterator.remove();
+                                removed = true;
+                                break;
+                            }
+                        }
+                        if (removed) {
+                            credentialsForAuthId.add(newCredentials);
+                            dirty = true;
+                            resultHandler.handle(Future.succeededFuture(CredentialsResult.from(HttpURLConnection.HTTP_NO_CONTENT)));
+                        } else {
+                            resultHandler.handle(Future.succeededFuture(CredentialsResult.from(HttpURLConnection.HTTP_NOT_FOUND)));
+                        }
                     }
                 }
             }
@@ -483,16 +529,18 @@ public final class FileBasedCredentialsService extends CompleteBaseCredentialsSe
             if (credentialsForTenant == null) {
                 resultHandler.handle(Future.succeededFuture(CredentialsResult.from(HttpURLConnection.HTTP_NOT_FOUND)));
             } else {
-                final JsonArray credentialsForAuthId = credentialsForTenant.get(authId);
-                if (credentialsForAuthId == null) {
-                    resultHandler.handle(Future.succeededFuture(CredentialsResult.from(HttpURLConnection.HTTP_NOT_FOUND)));
-                } else if (removeCredentialsFromCredentialsArray(null, type, credentialsForAuthId)) {
-                    if (credentialsForAuthId.isEmpty()) {
-                        credentialsForTenant.remove(authId); // do not leave empty array as value
+                synchronized (credentialsForTenant) {
+                    final JsonArray credentialsForAuthId = credentialsForTenant.get(authId);
+                    if (credentialsForAuthId == null) {
+                        resultHandler.handle(Future.succeededFuture(CredentialsResult.from(HttpURLConnection.HTTP_NOT_FOUND)));
+                    } else if (removeCredentialsFromCredentialsArray(null, type, credentialsForAuthId)) {
+                        if (credentialsForAuthId.isEmpty()) {
+                            credentialsForTenant.remove(authId); // do not leave empty array as value
+                        }
+                        resultHandler.handle(Future.succeededFuture(CredentialsResult.from(HttpURLConnection.HTTP_NO_CONTENT)));
+                    } else {
+                        resultHandler.handle(Future.succeededFuture(CredentialsResult.from(HttpURLConnection.HTTP_NOT_FOUND)));
                     }
-                    resultHandler.handle(Future.succeededFuture(CredentialsResult.from(HttpURLConnection.HTTP_NO_CONTENT)));
-                } else {
-                    resultHandler.handle(Future.succeededFuture(CredentialsResult.from(HttpURLConnection.HTTP_NOT_FOUND)));
                 }
             }
         } else {
@@ -516,16 +564,18 @@ public final class FileBasedCredentialsService extends CompleteBaseCredentialsSe
 
                 boolean removedAnyElement = false;
 
-                // delete based on type (no authId provided) - this might consume more time on large data sets and is thus
-                // handled explicitly
-                for (final JsonArray credentialsForAuthId : credentialsForTenant.values()) {
-                    if (removeCredentialsFromCredentialsArray(deviceId, CredentialsConstants.SPECIFIER_WILDCARD, credentialsForAuthId)) {
-                        removedAnyElement = true;
+                synchronized (credentialsForTenant) {
+                    // delete based on type (no authId provided) - this might consume more time on large data sets and is thus
+                    // handled explicitly
+                    for (final JsonArray credentialsForAuthId : credentialsForTenant.values()) {
+                        if (removeCredentialsFromCredentialsArray(deviceId, CredentialsConstants.SPECIFIER_WILDCARD, credentialsForAuthId)) {
+                            removedAnyElement = true;
+                        }
                     }
-                }
 
-                // there might be empty credentials arrays left now, so remove them in a second run
-                cleanupEmptyCredentialsArrays(credentialsForTenant);
+                    // there might be empty credentials arrays left now, so remove them in a second run
+                    cleanupEmptyCredentialsArrays(credentialsForTenant);
+                }
 
                 if (removedAnyElement) {
                     dirty = true;
@@ -585,14 +635,73 @@ public final class FileBasedCredentialsService extends CompleteBaseCredentialsSe
         return removedElement;
     }
 
-    private Map<String, JsonArray> getCredentialsForTenant(final String tenantId) {
-        return credentials.computeIfAbsent(tenantId, id -> new HashMap<>());
+    private NavigableMap<String, JsonArray> getCredentialsForTenant(final String tenantId) {
+        return credentials.computeIfAbsent(tenantId, id -> new TreeMap<>());
     }
 
     private JsonArray getAuthIdCredentials(final String authId, final Map<String, JsonArray> credentialsForTenant) {
         return credentialsForTenant.computeIfAbsent(authId, id -> new JsonArray());
     }
 
+    /**
+     * {@inheritDoc}
+     * <p>
+     * The result object will include a <em>no-cache</em> directive.
+     */
+    @Override
+    public void find(final String tenantId, final JsonObject filter, final String cursor, final int pageSize,
+            final Handler<AsyncResult<CredentialsResult<JsonObject>>> resultHandler) {
+
+        Objects.requireNonNull(tenantId);
+        Objects.requireNonNull(filter);
+        Objects.requireNonNull(resultHandler);
+
+        final JsonArray page = new JsonArray();
+        String nextCursor = null;
+        final NavigableMap<String, JsonArray> credentialsForTenant = credentials.get(tenantId);
+        if (credentialsForTenant != null) {
+            synchronized (credentialsForTenant) {
+                final Map<String, JsonArray> candidates = cursor == null ? credentialsForTenant
+                        : credentialsForTenant.tailMap(cursor, false);
+                String lastAuthId = null;
+                for (final Entry<String, JsonArray> entry : candidates.entrySet()) {
+                    final JsonArray matchingCredentials = findMatchingCredentials(entry.getValue(), filter);
+                    if (matchingCredentials.isEmpty()) {
+                        continue;
+                    } else if (!page.isEmpty() && page.size() + matchingCredentials.size() > pageSize) {
+                        // the credentials of an auth-id are never split across pages
+                        nextCursor = lastAuthId;
+                        break;
+                    }
+                    page.addAll(matchingCredentials);
+                    lastAuthId = entry.getKey();
+                }
+            }
+        }
+
+        final JsonObject result = new JsonObject().put(CredentialsConstants.CREDENTIALS_ENDPOINT, page);
+        if (nextCursor != null) {
+            result.put(CredentialsConstants.FIELD_CURSOR, nextCursor);
+        }
+        resultHandler.handle(Future.succeededFuture(
+                CredentialsResult.from(HttpURLConnection.HTTP_OK, result, CacheDirective.noCacheDirective())));
+    }
+
+    private static JsonArray findMatchingCredentials(final JsonArray credentialsForAuthId, final JsonObject filter) {
+
+        final JsonArray result = new JsonArray();
+        for (final Object obj : credentialsForAuthId) {
+            if (obj instanceof JsonObject) {
+                final JsonObject currentCredentials = (JsonObject) obj;
+                if (filter.fieldNames().stream()
+                        .allMatch(field -> Objects.equals(filter.getValue(field), currentCredentials.getValue(field)))) {
+                    result.add(currentCredentials.copy());
+                }
+            }
+        }
+        return result;
+    }
+
     /**
      * Removes all credentials from the registry.
      */
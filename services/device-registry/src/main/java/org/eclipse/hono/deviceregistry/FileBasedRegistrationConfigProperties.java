@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2016, 2018 Contributors to the Eclipse Foundation
+ * Copyright (c) 2016, 2019 Contributors to the Eclipse Foundation
  *
  * See the NOTICE file(s) distributed with this work for additional
  * information regarding copyright ownership.
@@ -26,10 +26,16 @@ public final class FileBasedRegistrationConfigProperties extends AbstractFileBas
      * The default number of devices that can be registered for each tenant.
      */
     public static final int DEFAULT_MAX_DEVICES_PER_TENANT = 100;
+    /**
+     * The default number of seconds after which the <em>last-via</em> property
+     * of a device that keeps connecting via the same gateway is updated.
+     */
+    public static final int DEFAULT_LAST_VIA_UPDATE_INTERVAL = 60;
     private static final String DEFAULT_DEVICES_FILENAME = "/var/lib/hono/device-registry/device-identities.json";
     private final SignatureSupportingConfigProperties registrationAssertionProperties = new SignatureSupportingConfigProperties();
 
     private int maxDevicesPerTenant = DEFAULT_MAX_DEVICES_PER_TENANT;
+    private int lastViaUpdateInterval = DEFAULT_LAST_VIA_UPDATE_INTERVAL;
 
     /**
      * Gets the maximum number of devices that can be registered for each tenant.
@@ -57,6 +63,40 @@ public final class FileBasedRegistrationConfigProperties extends AbstractFileBas
         this.maxDevicesPerTenant = maxDevices;
     }
 
+    /**
+     * Gets the interval after which the <em>last-via</em> property of a device
+     * that keeps connecting via the same gateway is updated.
+     * <p>
+     * The property is updated immediately whenever the device connects via another gateway.
+     * Otherwise, updates are collected in memory and are written in a batch once the
+     * interval has elapsed.
+     * <p>
+     * The default value of this property is {@link #DEFAULT_LAST_VIA_UPDATE_INTERVAL}.
+     *
+     * @return The interval in seconds. A value of 0 indicates that the property is updated
+     *         each time a device's registration status is asserted.
+     */
+    public int getLastViaUpdateInterval() {
+        return lastViaUpdateInterval;
+    }
+
+    /**
+     * Sets the interval after which the <em>last-via</em> property of a device
+     * that keeps connecting via the same gateway is updated.
+     * <p>
+     * The default value of this property is {@link #DEFAULT_LAST_VIA_UPDATE_INTERVAL}.
+     *
+     * @param interval The interval in seconds. A value of 0 indicates that the property is updated
+     *                 each time a device's registration status is asserted.
+     * @throws IllegalArgumentException if the interval is &lt; 0.
+     */
+    public void setLastViaUpdateInterval(final int interval) {
+        if (interval < 0) {
+            throw new IllegalArgumentException("last-via update interval must be >= 0");
+        }
+        this.lastViaUpdateInterval = interval;
+    }
+
     /**
      * Gets the properties for determining key material for creating registration assertion tokens.
      *
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2016, 2018 Contributors to the Eclipse Foundation
+ * Copyright (c) 2016, 2019 Contributors to the Eclipse Foundation
  *
  * See the NOTICE file(s) distributed with this work for additional
  * information regarding copyright ownership.
@@ -14,16 +14,25 @@
 package org.eclipse.hono.deviceregistry;
 
 import static java.net.HttpURLConnection.*;
+import static org.eclipse.hono.util.RegistrationConstants.FIELD_CURSOR;
 import static org.eclipse.hono.util.RegistrationConstants.FIELD_DATA;
+import static org.eclipse.hono.util.RegistrationConstants.FIELD_DEVICES;
 import static org.eclipse.hono.util.RequestResponseApiConstants.FIELD_PAYLOAD_DEVICE_ID;
 import static org.eclipse.hono.util.RequestResponseApiConstants.FIELD_ENABLED;
 
-import java.util.HashMap;
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.Map;
+import java.util.NavigableSet;
 import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
 import java.util.Map.Entry;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
 
 import org.eclipse.hono.service.registration.CompleteBaseRegistrationService;
 import org.eclipse.hono.util.RegistrationResult;
@@ -31,10 +40,11 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.stereotype.Repository;
 
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
 import io.vertx.core.AsyncResult;
 import io.vertx.core.Future;
 import io.vertx.core.Handler;
-import io.vertx.core.buffer.Buffer;
 import io.vertx.core.json.DecodeException;
 import io.vertx.core.json.JsonArray;
 import io.vertx.core.json.JsonObject;
@@ -43,7 +53,21 @@ import io.vertx.core.json.JsonObject;
  * A registration service that keeps all data in memory but is backed by a file.
  * <p>
  * On startup this adapter loads all registered devices from a file. On shutdown all
- * devices kept in memory are written to the file.
+ * devices kept in memory are written to the file. The file is parsed device by device
+ * and is written in a compact format containing one device per line.
+ * <p>
+ * The devices are kept in thread safe maps partitioned by tenant so that requests
+ * can be processed concurrently by multiple request consumers. In addition, the IDs of
+ * each tenant's devices are kept in a sorted set so that the devices can be retrieved
+ * page by page.
+ * <p>
+ * The service also maintains an index of the devices that each gateway may act on behalf of
+ * (as defined by the devices' <em>via</em> property). The index is used for authorizing
+ * gateways and for finding the devices of a gateway without scanning all of the tenant's devices.
+ * <p>
+ * Updates of a device's <em>last-via</em> property are written immediately only if the device
+ * has connected via another gateway. Otherwise, the updates are collected in memory and are
+ * written in a batch once the configured interval has elapsed.
  */
 @Repository
 @ConditionalOnProperty(name = "hono.app.type", havingValue = "file", matchIfMissing = true)
@@ -57,11 +81,29 @@ public final class FileBasedRegistrationService extends CompleteBaseRegistration
      * The name of the JSON property containing the tenant ID.
      */
     public static final String FIELD_TENANT = "tenant";
+    /**
+     * The name of the meter counting the updates of the <em>last-via</em> property
+     * which have been deferred because the device has connected via the same gateway.
+     */
+    public static final String METER_LAST_VIA_UPDATES_DEFERRED = "hono.registration.last-via.deferred";
 
     // <tenantId, <deviceId, registrationData>>
-    private final Map<String, Map<String, JsonObject>> identities = new HashMap<>();
-    private boolean running = false;
-    private boolean dirty = false;
+    private final Map<String, Map<String, JsonObject>> identities = new ConcurrentHashMap<>();
+    // <tenantId, sorted deviceIds>
+    private final Map<String, NavigableSet<String>> deviceIds = new ConcurrentHashMap<>();
+    // <tenantId, <gatewayId, sorted deviceIds>>
+    private final Map<String, Map<String, NavigableSet<String>>> devicesByGateway = new ConcurrentHashMap<>();
+    // <tenantId, <deviceId, lastVia>>
+    private final Map<String, Map<String, JsonObject>> deferredLastViaUpdates = new ConcurrentHashMap<>();
+    private final AtomicBoolean lastViaFlushScheduled = new AtomicBoolean();
+    private Counter deferredLastViaUpdatesCounter;
+    private volatile boolean running = false;
+    private volatile boolean dirty = false;
+    /**
+     * The outcome of the attempt to save the data that is currently in progress
+     * or {@code null} if no attempt is in progress.
+     */
+    private volatile Future<Void> saveInProgress;
 
     @Autowired
     @Override
@@ -69,6 +111,28 @@ public final class FileBasedRegistrationService extends CompleteBaseRegistration
         setSpecificConfig(configuration);
     }
 
+    /**
+     * Sets the registry to report metrics to.
+     *
+     * @param meterRegistry The meter registry.
+     * @throws NullPointerException if registry is {@code null}.
+     */
+    @Autowired(required = false)
+    public void setMeterRegistry(final MeterRegistry meterRegistry) {
+        Objects.requireNonNull(meterRegistry);
+        this.deferredLastViaUpdatesCounter = meterRegistry.counter(METER_LAST_VIA_UPDATES_DEFERRED);
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @return {@code true}.
+     */
+    @Override
+    public boolean isThreadSafe() {
+        return true;
+    }
+
     @Override
     protected void doStart(final Future<Void> startFuture) {
 
@@ -109,11 +173,7 @@ public final class FileBasedRegistrationService extends CompleteBaseRegistration
             log.info("Either filename is null or empty start is set, won't load any device identities");
             return Future.succeededFuture();
         } else {
-            final Future<Buffer> readResult = Future.future();
-            vertx.fileSystem().readFile(getConfig().getFilename(), readResult.completer());
-            return readResult.compose(buffer -> {
-                return addAll(buffer);
-            }).recover(t -> {
+            return addAll().recover(t -> {
                 log.debug("cannot load device identities from file [{}]: {}", getConfig().getFilename(), t.getMessage());
                 return Future.succeededFuture();
             });
@@ -136,59 +196,58 @@ public final class FileBasedRegistrationService extends CompleteBaseRegistration
         return result;
     }
 
-    private Future<Void> addAll(final Buffer deviceIdentities) {
+    private Future<Void> addAll() {
 
-        final Future<Void> result = Future.future();
-        try {
-            int deviceCount = 0;
-            final JsonArray allObjects = deviceIdentities.toJsonArray();
-            for (final Object obj : allObjects) {
-                if (JsonObject.class.isInstance(obj)) {
-                    deviceCount += addDevicesForTenant((JsonObject) obj);
-                }
+        final AtomicInteger deviceCount = new AtomicInteger();
+        // the devices are added one by one while reading the file so that the
+        // content of the file does not need to be kept in memory as a whole
+        return RegistryFileSupport.readTenantRecords(vertx, getConfig().getFilename(), ARRAY_DEVICES, (tenantId, device) -> {
+            if (addDeviceFromFile(tenantId, device)) {
+                deviceCount.incrementAndGet();
             }
-            log.info("successfully loaded {} device identities from file [{}]", deviceCount, getConfig().getFilename());
-            result.complete();
-        } catch (final DecodeException e) {
-            log.warn("cannot read malformed JSON from device identity file [{}]", getConfig().getFilename());
-            result.fail(e);
-        }
-        return result;
+        }).map(ok -> {
+            log.info("successfully loaded {} device identities from file [{}]", deviceCount.get(), getConfig().getFilename());
+            return (Void) null;
+        }).recover(t -> {
+            if (t instanceof DecodeException) {
+                log.warn("cannot read malformed JSON from device identity file [{}]", getConfig().getFilename());
+            }
+            // discard the devices that have been loaded before the error has been detected
+            identities.clear();
+            deviceIds.clear();
+            devicesByGateway.clear();
+            return Future.failedFuture(t);
+        });
     }
 
-    private int addDevicesForTenant(final JsonObject tenant) {
-        int count = 0;
-        final String tenantId = tenant.getString(FIELD_TENANT);
-        if (tenantId != null) {
-            log.debug("loading devices for tenant [{}]", tenantId);
-            final Map<String, JsonObject> deviceMap = new HashMap<>();
-            for (final Object deviceObj : tenant.getJsonArray(ARRAY_DEVICES)) {
-                if (JsonObject.class.isInstance(deviceObj)) {
-                    final JsonObject device = (JsonObject) deviceObj;
-                    final String deviceId = device.getString(FIELD_PAYLOAD_DEVICE_ID);
-                    if (deviceId != null) {
-                        log.trace("loading device [{}]", deviceId);
-                        final JsonObject data = device.getJsonObject(FIELD_DATA,
-                                new JsonObject().put(FIELD_ENABLED, Boolean.TRUE));
-                        deviceMap.put(deviceId, data);
-                        count++;
-                    }
-                }
-            }
-            identities.put(tenantId, deviceMap);
+    private boolean addDeviceFromFile(final String tenantId, final JsonObject device) {
+
+        final String deviceId = device.getString(FIELD_PAYLOAD_DEVICE_ID);
+        if (deviceId == null) {
+            return false;
+        } else {
+            log.trace("loading device [{}] of tenant [{}]", deviceId, tenantId);
+            final JsonObject data = device.getJsonObject(FIELD_DATA,
+                    new JsonObject().put(FIELD_ENABLED, Boolean.TRUE));
+            getDevicesForTenant(tenantId).put(deviceId, data);
+            getDeviceIdsForTenant(tenantId).add(deviceId);
+            addToGatewayIndex(tenantId, deviceId, data);
+            return true;
         }
-        log.debug("Loaded {} devices for tenant {}", count, tenantId);
-        return count;
     }
 
     @Override
     protected void doStop(final Future<Void> stopFuture) {
 
         if (running) {
-            saveToFile().compose(s -> {
-                running = false;
-                stopFuture.complete();
-            }, stopFuture);
+            flushLastViaUpdates();
+            // wait for an attempt in progress before saving the remaining modifications
+            Optional.ofNullable(saveInProgress).orElse(Future.succeededFuture())
+                .compose(ok -> saveToFile())
+                .compose(s -> {
+                    running = false;
+                    stopFuture.complete();
+                }, stopFuture);
         } else {
             stopFuture.complete();
         }
@@ -198,36 +257,45 @@ public final class FileBasedRegistrationService extends CompleteBaseRegistration
 
         if (!getConfig().isSaveToFile()) {
             return Future.succeededFuture();
+        } else if (saveInProgress != null) {
+            // modifications made in the meantime will be saved by the next attempt
+            log.trace("device identities are already being saved to file");
+            return Future.succeededFuture();
         } else if (dirty) {
-            return checkFileExists(true).compose(s -> {
+            final Future<Void> result = Future.future();
+            saveInProgress = result;
+            checkFileExists(true).compose(s -> {
+                // reset flag before taking the snapshot so that concurrent modifications are not lost
+                dirty = false;
                 final AtomicInteger idCount = new AtomicInteger();
-                final JsonArray tenants = new JsonArray();
-                for (final Entry<String, Map<String, JsonObject>> entry : identities.entrySet()) {
-                    final JsonArray devices = new JsonArray();
-                    for (final Entry<String, JsonObject> deviceEntry : entry.getValue().entrySet()) {
-                        devices.add(
-                                new JsonObject()
+                // the devices are encoded and written one by one so that the
+                // content of the file does not need to be kept in memory as a whole
+                final Future<Void> writeHandler = RegistryFileSupport.writeTenantRecords(
+                        vertx,
+                        getConfig().getFilename(),
+                        ARRAY_DEVICES,
+                        identities,
+                        devices -> devices.entrySet().stream()
+                            .map(deviceEntry -> {
+                                idCount.incrementAndGet();
+                                return new JsonObject()
                                         .put(FIELD_PAYLOAD_DEVICE_ID, deviceEntry.getKey())
-                                        .put(FIELD_DATA, deviceEntry.getValue()));
-                        idCount.incrementAndGet();
-                    }
-                    tenants.add(
-                            new JsonObject()
-                                    .put(FIELD_TENANT, entry.getKey())
-                                    .put(ARRAY_DEVICES, devices));
-                }
-
-                final Future<Void> writeHandler = Future.future();
-                vertx.fileSystem().writeFile(getConfig().getFilename(), Buffer.factory.buffer(tenants.encodePrettily()), writeHandler.completer());
+                                        .put(FIELD_DATA, deviceEntry.getValue());
+                            })
+                            .iterator());
                 return writeHandler.map(ok -> {
-                    dirty = false;
                     log.trace("successfully wrote {} device identities to file {}", idCount.get(), getConfig().getFilename());
                     return (Void) null;
                 }).otherwise(t -> {
                     log.warn("could not write device identities to file {}", getConfig().getFilename(), t);
+                    dirty = true;
                     return (Void) null;
                 });
+            }).setHandler(outcome -> {
+                saveInProgress = null;
+                result.handle(outcome);
             });
+            return result;
         } else {
             log.trace("registry does not need to be persisted");
             return Future.succeededFuture();
@@ -278,7 +346,22 @@ public final class FileBasedRegistrationService extends CompleteBaseRegistration
 
         if (getConfig().isModificationEnabled()) {
             final Map<String, JsonObject> devices = identities.get(tenantId);
-            if (devices != null && devices.remove(deviceId) != null) {
+            final NavigableSet<String> sortedIds = deviceIds.get(tenantId);
+            if (sortedIds != null) {
+                // remove the ID first so that a concurrent re-registration of the device
+                // cannot add the ID before it gets removed here
+                sortedIds.remove(deviceId);
+            }
+            final AtomicReference<JsonObject> removedData = new AtomicReference<>();
+            if (devices != null) {
+                devices.computeIfPresent(deviceId, (id, data) -> {
+                    // the index is updated while holding the lock on the device's entry
+                    removeFromGatewayIndex(tenantId, id, data);
+                    removedData.set(data);
+                    return null;
+                });
+            }
+            if (removedData.get() != null) {
                 dirty = true;
                 return RegistrationResult.from(HTTP_NO_CONTENT);
             } else {
@@ -314,15 +397,23 @@ public final class FileBasedRegistrationService extends CompleteBaseRegistration
 
         final JsonObject obj = data != null ? data : new JsonObject().put(FIELD_ENABLED, Boolean.TRUE);
         final Map<String, JsonObject> devices = getDevicesForTenant(tenantId);
-        if (devices.size() < getConfig().getMaxDevicesPerTenant()) {
-            if (devices.putIfAbsent(deviceId, obj) == null) {
+        // devices of a tenant are added while holding the tenant's lock so that
+        // concurrent requests cannot exceed the maximum number of devices
+        synchronized (devices) {
+            if (devices.size() >= getConfig().getMaxDevicesPerTenant()) {
+                return RegistrationResult.from(HTTP_FORBIDDEN);
+            }
+            final JsonObject currentData = devices.computeIfAbsent(deviceId, id -> {
+                addToGatewayIndex(tenantId, id, obj);
+                return obj;
+            });
+            if (currentData == obj) {
+                getDeviceIdsForTenant(tenantId).add(deviceId);
                 dirty = true;
                 return RegistrationResult.from(HTTP_CREATED);
             } else {
                 return RegistrationResult.from(HTTP_CONFLICT);
             }
-        } else {
-            return RegistrationResult.from(HTTP_FORBIDDEN);
         }
     }
 
@@ -344,8 +435,11 @@ public final class FileBasedRegistrationService extends CompleteBaseRegistration
         if (getConfig().isModificationEnabled()) {
             final JsonObject obj = data != null ? data : new JsonObject().put(FIELD_ENABLED, Boolean.TRUE);
             final Map<String, JsonObject> devices = identities.get(tenantId);
-            if (devices != null && devices.containsKey(deviceId)) {
-                devices.put(deviceId, obj);
+            final JsonObject currentData = devices == null ? null : devices.computeIfPresent(deviceId, (id, oldData) -> {
+                updateGatewayIndex(tenantId, id, oldData, obj);
+                return obj;
+            });
+            if (currentData != null) {
                 dirty = true;
                 return RegistrationResult.from(HTTP_NO_CONTENT);
             } else {
@@ -360,12 +454,226 @@ public final class FileBasedRegistrationService extends CompleteBaseRegistration
         return identities.computeIfAbsent(tenantId, id -> new ConcurrentHashMap<>());
     }
 
+    private NavigableSet<String> getDeviceIdsForTenant(final String tenantId) {
+        return deviceIds.computeIfAbsent(tenantId, id -> new ConcurrentSkipListSet<>());
+    }
+
+    private static Set<String> getGatewayIds(final JsonObject data) {
+
+        final Object via = data.getValue(PROPERTY_VIA);
+        if (via instanceof String) {
+            return Collections.singleton((String) via);
+        } else if (via instanceof JsonArray) {
+            final Set<String> result = new HashSet<>();
+            for (final Object gatewayId : (JsonArray) via) {
+                if (gatewayId instanceof String) {
+                    result.add((String) gatewayId);
+                }
+            }
+            return result;
+        } else {
+            return Collections.emptySet();
+        }
+    }
+
+    private void addToGatewayIndex(final String tenantId, final String deviceId, final JsonObject data) {
+        addToGatewayIndex(tenantId, deviceId, getGatewayIds(data));
+    }
+
+    private void addToGatewayIndex(final String tenantId, final String deviceId, final Set<String> gatewayIds) {
+
+        if (!gatewayIds.isEmpty()) {
+            final Map<String, NavigableSet<String>> gateways = devicesByGateway.computeIfAbsent(
+                    tenantId, id -> new ConcurrentHashMap<>());
+            for (final String gatewayId : gatewayIds) {
+                gateways.computeIfAbsent(gatewayId, id -> new ConcurrentSkipListSet<>()).add(deviceId);
+            }
+        }
+    }
+
+    private void removeFromGatewayIndex(final String tenantId, final String deviceId, final JsonObject data) {
+        removeFromGatewayIndex(tenantId, deviceId, getGatewayIds(data));
+    }
+
+    private void removeFromGatewayIndex(final String tenantId, final String deviceId, final Set<String> gatewayIds) {
+
+        final Map<String, NavigableSet<String>> gateways = devicesByGateway.get(tenantId);
+        if (gateways != null) {
+            for (final String gatewayId : gatewayIds) {
+                // the (empty) set of a gateway is kept in order to not interfere with concurrent additions
+                final Set<String> devices = gateways.get(gatewayId);
+                if (devices != null) {
+                    devices.remove(deviceId);
+                }
+            }
+        }
+    }
+
+    private void updateGatewayIndex(final String tenantId, final String deviceId, final JsonObject oldData,
+            final JsonObject newData) {
+
+        final Set<String> oldGatewayIds = getGatewayIds(oldData);
+        final Set<String> newGatewayIds = getGatewayIds(newData);
+        if (!oldGatewayIds.equals(newGatewayIds)) {
+            final Set<String> removedGatewayIds = new HashSet<>(oldGatewayIds);
+            removedGatewayIds.removeAll(newGatewayIds);
+            removeFromGatewayIndex(tenantId, deviceId, removedGatewayIds);
+            addToGatewayIndex(tenantId, deviceId, newGatewayIds);
+        }
+    }
+
+    /**
+     * Gets the IDs of the devices that a gateway may act on behalf of.
+     * <p>
+     * The IDs are looked up in the index of gateways maintained by this service.
+     *
+     * @param tenantId The tenant that the gateway belongs to.
+     * @param gatewayId The ID of the gateway.
+     * @return The (unmodifiable) sorted set of device IDs. The set is empty if the gateway may
+     *         not act on behalf of any devices.
+     * @throws NullPointerException if any of the parameters is {@code null}.
+     */
+    NavigableSet<String> getDevicesForGateway(final String tenantId, final String gatewayId) {
+
+        Objects.requireNonNull(tenantId);
+        Objects.requireNonNull(gatewayId);
+
+        final Map<String, NavigableSet<String>> gateways = devicesByGateway.get(tenantId);
+        final NavigableSet<String> devices = gateways == null ? null : gateways.get(gatewayId);
+        return devices == null ? Collections.emptyNavigableSet() : Collections.unmodifiableNavigableSet(devices);
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * This implementation looks up the device in the index of devices that the gateway may act on behalf of.
+     */
+    @Override
+    protected boolean isGatewayAuthorized(final String tenantId, final String gatewayId, final JsonObject gatewayData,
+            final String deviceId, final JsonObject deviceData) {
+
+        return getDevicesForGateway(tenantId, gatewayId).contains(deviceId);
+    }
+
+    @Override
+    public void findDevices(final String tenantId, final JsonObject filter, final String cursor, final int pageSize,
+            final Handler<AsyncResult<RegistrationResult>> resultHandler) {
+
+        Objects.requireNonNull(tenantId);
+        Objects.requireNonNull(filter);
+        Objects.requireNonNull(resultHandler);
+
+        resultHandler.handle(Future.succeededFuture(findDevices(tenantId, filter, cursor, pageSize)));
+    }
+
+    RegistrationResult findDevices(final String tenantId, final JsonObject filter, final String cursor, final int pageSize) {
+
+        final JsonArray page = new JsonArray();
+        String nextCursor = null;
+        final Map<String, JsonObject> devices = identities.get(tenantId);
+        final Object via = filter.getValue(PROPERTY_VIA);
+        // use the gateway index for looking up the devices that are connected via a particular gateway
+        final NavigableSet<String> sortedIds = via instanceof String
+                ? getDevicesForGateway(tenantId, (String) via)
+                : deviceIds.get(tenantId);
+        if (devices != null && sortedIds != null) {
+            final Set<String> candidates = cursor == null ? sortedIds : sortedIds.tailSet(cursor, false);
+            for (final String deviceId : candidates) {
+                final JsonObject data = devices.get(deviceId);
+                // the device may have been removed concurrently
+                if (data != null && matchesFilter(filter, data)) {
+                    if (page.size() == pageSize) {
+                        nextCursor = page.getJsonObject(pageSize - 1).getString(FIELD_PAYLOAD_DEVICE_ID);
+                        break;
+                    }
+                    page.add(getResultPayload(deviceId, data.copy()));
+                }
+            }
+        }
+
+        final JsonObject result = new JsonObject().put(FIELD_DEVICES, page);
+        if (nextCursor != null) {
+            result.put(FIELD_CURSOR, nextCursor);
+        }
+        return RegistrationResult.from(HTTP_OK, result);
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * This implementation defers the update if the device has connected via the same gateway
+     * before. Deferred updates are written by {@link #flushLastViaUpdates()} once the configured
+     * <em>lastViaUpdateInterval</em> has elapsed.
+     */
+    @Override
+    protected Future<Void> updateDeviceLastVia(final String tenantId, final String deviceId, final String gatewayId,
+            final JsonObject deviceData) {
+
+        final JsonObject lastVia = deviceData.getJsonObject(PROPERTY_LAST_VIA);
+        if (getConfig().getLastViaUpdateInterval() > 0 && lastVia != null
+                && gatewayId.equals(lastVia.getString(FIELD_PAYLOAD_DEVICE_ID))) {
+            deferredLastViaUpdates.computeIfAbsent(tenantId, id -> new ConcurrentHashMap<>())
+                .put(deviceId, createLastViaObject(gatewayId));
+            if (deferredLastViaUpdatesCounter != null) {
+                deferredLastViaUpdatesCounter.increment();
+            }
+            if (lastViaFlushScheduled.compareAndSet(false, true)) {
+                vertx.setTimer(getConfig().getLastViaUpdateInterval() * 1000L, tid -> flushLastViaUpdates());
+            }
+            return Future.succeededFuture();
+        } else {
+            final Map<String, JsonObject> deferredUpdates = deferredLastViaUpdates.get(tenantId);
+            if (deferredUpdates != null) {
+                deferredUpdates.remove(deviceId);
+            }
+            return super.updateDeviceLastVia(tenantId, deviceId, gatewayId, deviceData);
+        }
+    }
+
+    /**
+     * Writes all deferred updates of devices' <em>last-via</em> property.
+     * <p>
+     * An update is discarded if the device has been removed or has connected via another
+     * gateway in the meantime.
+     */
+    void flushLastViaUpdates() {
+
+        lastViaFlushScheduled.set(false);
+        final AtomicInteger updateCount = new AtomicInteger();
+        for (final Entry<String, Map<String, JsonObject>> tenantEntry : deferredLastViaUpdates.entrySet()) {
+            final Map<String, JsonObject> devices = identities.get(tenantEntry.getKey());
+            final Map<String, JsonObject> deferredUpdates = tenantEntry.getValue();
+            for (final Entry<String, JsonObject> update : deferredUpdates.entrySet()) {
+                // only remove the update if it has not been replaced by a more recent one concurrently
+                if (deferredUpdates.remove(update.getKey(), update.getValue()) && devices != null) {
+                    final String gatewayId = update.getValue().getString(FIELD_PAYLOAD_DEVICE_ID);
+                    devices.computeIfPresent(update.getKey(), (id, data) -> {
+                        final JsonObject lastVia = data.getJsonObject(PROPERTY_LAST_VIA);
+                        if (lastVia != null && gatewayId.equals(lastVia.getString(FIELD_PAYLOAD_DEVICE_ID))) {
+                            updateCount.incrementAndGet();
+                            return data.copy().put(PROPERTY_LAST_VIA, update.getValue());
+                        } else {
+                            return data;
+                        }
+                    });
+                }
+            }
+        }
+        if (updateCount.get() > 0) {
+            dirty = true;
+            log.debug("wrote {} deferred last-via updates", updateCount.get());
+        }
+    }
+
     /**
      * Removes all devices from the registry.
      */
     public void clear() {
         dirty = true;
         identities.clear();
+        deviceIds.clear();
+        devicesByGateway.clear();
+        deferredLastViaUpdates.clear();
     }
 
     @Override
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2016, 2018 Contributors to the Eclipse Foundation
+ * Copyright (c) 2016, 2019 Contributors to the Eclipse Foundation
  *
  * See the NOTICE file(s) distributed with this work for additional
  * information regarding copyright ownership.
@@ -14,9 +14,11 @@
 package org.eclipse.hono.deviceregistry;
 
 import java.net.HttpURLConnection;
-import java.util.HashMap;
 import java.util.Map;
 import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import javax.security.auth.x500.X500Principal;
 
@@ -33,9 +35,7 @@ import io.opentracing.Span;
 import io.vertx.core.AsyncResult;
 import io.vertx.core.Future;
 import io.vertx.core.Handler;
-import io.vertx.core.buffer.Buffer;
 import io.vertx.core.json.DecodeException;
-import io.vertx.core.json.JsonArray;
 import io.vertx.core.json.JsonObject;
 
 /**
@@ -43,6 +43,9 @@ import io.vertx.core.json.JsonObject;
  * <p>
  * On startup this adapter loads all registered tenants from a file. On shutdown all tenants kept in memory are written
  * to the file.
+ * <p>
+ * The tenants are kept in a thread safe map so that requests can be processed concurrently
+ * by multiple request consumers.
  */
 @Repository
 @ConditionalOnProperty(name = "hono.app.type", havingValue = "file", matchIfMissing = true)
@@ -51,9 +54,14 @@ public final class FileBasedTenantService extends CompleteBaseTenantService<File
     private static final long MAX_AGE_GET_TENANT = 180L; // seconds
 
     // <ID, tenant>
-    private final Map<String, TenantObject> tenants = new HashMap<>();
-    private boolean running = false;
-    private boolean dirty = false;
+    private final Map<String, TenantObject> tenants = new ConcurrentHashMap<>();
+    private volatile boolean running = false;
+    private volatile boolean dirty = false;
+    /**
+     * The outcome of the attempt to save the data that is currently in progress
+     * or {@code null} if no attempt is in progress.
+     */
+    private volatile Future<Void> saveInProgress;
 
     @Autowired
     @Override
@@ -61,6 +69,16 @@ public final class FileBasedTenantService extends CompleteBaseTenantService<File
         setSpecificConfig(configuration);
     }
 
+    /**
+     * {@inheritDoc}
+     *
+     * @return {@code true}.
+     */
+    @Override
+    public boolean isThreadSafe() {
+        return true;
+    }
+
     @Override
     protected void doStart(final Future<Void> startFuture) {
 
@@ -101,11 +119,7 @@ public final class FileBasedTenantService extends CompleteBaseTenantService<File
             log.info("Either filename is null or empty start is set, won't load any tenants");
             return Future.succeededFuture();
         } else {
-            final Future<Buffer> readResult = Future.future();
-            vertx.fileSystem().readFile(getConfig().getFilename(), readResult.completer());
-            return readResult.compose(buffer -> {
-                return addAll(buffer);
-            }).recover(t -> {
+            return addAll().recover(t -> {
                 log.debug("cannot load tenants from file [{}]: {}", getConfig().getFilename(), t.getMessage());
                 return Future.succeededFuture();
             });
@@ -128,27 +142,25 @@ public final class FileBasedTenantService extends CompleteBaseTenantService<File
         return result;
     }
 
-    private Future<Void> addAll(final Buffer tenantsBuffer) {
-
-        final Future<Void> result = Future.future();
-        try {
-            if (tenantsBuffer.length() > 0) {
-                int tenantCount = 0;
-                final JsonArray allObjects = tenantsBuffer.toJsonArray();
-                for (final Object obj : allObjects) {
-                    if (JsonObject.class.isInstance(obj)) {
-                        tenantCount++;
-                        addTenant((JsonObject) obj);
-                    }
-                }
-                log.info("successfully loaded {} tenants from file [{}]", tenantCount, getConfig().getFilename());
+    private Future<Void> addAll() {
+
+        final AtomicInteger tenantCount = new AtomicInteger();
+        // the tenants are added one by one while reading the file so that the
+        // content of the file does not need to be kept in memory as a whole
+        return RegistryFileSupport.readRecords(vertx, getConfig().getFilename(), tenant -> {
+            tenantCount.incrementAndGet();
+            addTenant(tenant);
+        }).map(ok -> {
+            log.info("successfully loaded {} tenants from file [{}]", tenantCount.get(), getConfig().getFilename());
+            return (Void) null;
+        }).recover(t -> {
+            if (t instanceof DecodeException) {
+                log.warn("cannot read malformed JSON from tenants file [{}]", getConfig().getFilename());
             }
-            result.complete();
-        } catch (final DecodeException e) {
-            log.warn("cannot read malformed JSON from tenants file [{}]", getConfig().getFilename());
-            result.fail(e);
-        }
-        return result;
+            // discard the tenants that have been loaded before the error has been detected
+            tenants.clear();
+            return Future.failedFuture(t);
+        });
     }
 
     private void addTenant(final JsonObject tenant) {
@@ -166,10 +178,13 @@ public final class FileBasedTenantService extends CompleteBaseTenantService<File
     protected void doStop(final Future<Void> stopFuture) {
 
         if (running) {
-            saveToFile().compose(s -> {
-                running = false;
-                stopFuture.complete();
-            }, stopFuture);
+            // wait for an attempt in progress before saving the remaining modifications
+            Optional.ofNullable(saveInProgress).orElse(Future.succeededFuture())
+                .compose(ok -> saveToFile())
+                .compose(s -> {
+                    running = false;
+                    stopFuture.complete();
+                }, stopFuture);
         } else {
             stopFuture.complete();
         }
@@ -179,27 +194,43 @@ public final class FileBasedTenantService extends CompleteBaseTenantService<File
 
         if (!getConfig().isSaveToFile()) {
             return Future.succeededFuture();
+        } else if (saveInProgress != null) {
+            // modifications made in the meantime will be saved by the next attempt
+            log.trace("tenants are already being saved to file");
+            return Future.succeededFuture();
         } else if (dirty) {
-            return checkFileExists(true).compose(s -> {
-
-                final JsonArray tenantsJson = new JsonArray();
-                tenants.values().stream().forEach(tenant -> {
-                    tenantsJson.add(JsonObject.mapFrom(tenant));
-                });
-
-                final Future<Void> writeHandler = Future.future();
-                vertx.fileSystem().writeFile(getConfig().getFilename(),
-                        Buffer.factory.buffer(tenantsJson.encodePrettily()), writeHandler.completer());
+            final Future<Void> result = Future.future();
+            saveInProgress = result;
+            checkFileExists(true).compose(s -> {
+
+                // reset flag before taking the snapshot so that concurrent modifications are not lost
+                dirty = false;
+                final AtomicInteger tenantCount = new AtomicInteger();
+                // the tenants are encoded and written one by one so that the
+                // content of the file does not need to be kept in memory as a whole
+                final Future<Void> writeHandler = RegistryFileSupport.writeRecords(
+                        vertx,
+                        getConfig().getFilename(),
+                        tenants.values().stream()
+                            .map(tenant -> {
+                                tenantCount.incrementAndGet();
+                                return JsonObject.mapFrom(tenant);
+                            })
+                            .iterator());
                 return writeHandler.map(ok -> {
-                    dirty = false;
-                    log.trace("successfully wrote {} tenants to file {}", tenantsJson.size(),
+                    log.trace("successfully wrote {} tenants to file {}", tenantCount.get(),
                             getConfig().getFilename());
                     return (Void) null;
                 }).otherwise(t -> {
                     log.warn("could not write tenants to file {}", getConfig().getFilename(), t);
+                    dirty = true;
                     return (Void) null;
                 });
+            }).setHandler(outcome -> {
+                saveInProgress = null;
+                result.handle(outcome);
             });
+            return result;
         } else {
             log.trace("tenants registry does not need to be persisted");
             return Future.succeededFuture();
@@ -306,23 +337,28 @@ public final class FileBasedTenantService extends CompleteBaseTenantService<File
 
         if (tenants.containsKey(tenantId)) {
             return TenantResult.from(HttpURLConnection.HTTP_CONFLICT);
-        } else {
-            try {
-                log.debug("request: {}", tenantSpec.encodePrettily());
-                final TenantObject tenant = tenantSpec.mapTo(TenantObject.class);
-                tenant.setTenantId(tenantId);
-                final TenantObject conflictingTenant = getByCa(tenant.getTrustedCaSubjectDn());
-                if (conflictingTenant != null) {
-                    // we are trying to use the same CA as an already existing tenant
-                    return TenantResult.from(HttpURLConnection.HTTP_CONFLICT);
-                } else {
-                    tenants.put(tenantId, tenant);
-                    dirty = true;
-                    return TenantResult.from(HttpURLConnection.HTTP_CREATED);
-                }
-            } catch (final IllegalArgumentException e) {
-                log.debug("error parsing payload of add tenant request", e);
-                return TenantResult.from(HttpURLConnection.HTTP_BAD_REQUEST);
+        }
+        final TenantObject tenant;
+        try {
+            log.debug("request: {}", tenantSpec.encodePrettily());
+            tenant = tenantSpec.mapTo(TenantObject.class);
+            tenant.setTenantId(tenantId);
+        } catch (final IllegalArgumentException e) {
+            log.debug("error parsing payload of add tenant request", e);
+            return TenantResult.from(HttpURLConnection.HTTP_BAD_REQUEST);
+        }
+        // the uniqueness of the trusted CA needs to be checked and
+        // established atomically with respect to other modifications
+        synchronized (tenants) {
+            if (tenants.containsKey(tenantId)) {
+                return TenantResult.from(HttpURLConnection.HTTP_CONFLICT);
+            } else if (getByCa(tenant.getTrustedCaSubjectDn()) != null) {
+                // we are trying to use the same CA as an already existing tenant
+                return TenantResult.from(HttpURLConnection.HTTP_CONFLICT);
+            } else {
+                tenants.put(tenantId, tenant);
+                dirty = true;
+                return TenantResult.from(HttpURLConnection.HTTP_CREATED);
             }
         }
     }
@@ -359,10 +395,19 @@ public final class FileBasedTenantService extends CompleteBaseTenantService<File
         Objects.requireNonNull(tenantSpec);
 
         if (getConfig().isModificationEnabled()) {
-            if (tenants.containsKey(tenantId)) {
-                try {
-                    final TenantObject tenant = tenantSpec.mapTo(TenantObject.class);
-                    tenant.setTenantId(tenantId);
+            if (!tenants.containsKey(tenantId)) {
+                return TenantResult.from(HttpURLConnection.HTTP_NOT_FOUND);
+            }
+            final TenantObject tenant;
+            try {
+                tenant = tenantSpec.mapTo(TenantObject.class);
+                tenant.setTenantId(tenantId);
+            } catch (final IllegalArgumentException e) {
+                return TenantResult.from(HttpURLConnection.HTTP_BAD_REQUEST);
+            }
+            synchronized (tenants) {
+                // the tenant may have been removed concurrently
+                if (tenants.containsKey(tenantId)) {
                     final TenantObject conflictingTenant = getByCa(tenant.getTrustedCaSubjectDn());
                     if (conflictingTenant != null && !tenantId.equals(conflictingTenant.getTenantId())) {
                         // we are trying to use the same CA as another tenant
@@ -372,11 +417,9 @@ public final class FileBasedTenantService extends CompleteBaseTenantService<File
                         dirty = true;
                         return TenantResult.from(HttpURLConnection.HTTP_NO_CONTENT);
                     }
-                } catch (final IllegalArgumentException e) {
-                    return TenantResult.from(HttpURLConnection.HTTP_BAD_REQUEST);
+                } else {
+                    return TenantResult.from(HttpURLConnection.HTTP_NOT_FOUND);
                 }
-            } else {
-                return TenantResult.from(HttpURLConnection.HTTP_NOT_FOUND);
             }
         } else {
             return TenantResult.from(HttpURLConnection.HTTP_FORBIDDEN);
@@ -0,0 +1,556 @@
+/*******************************************************************************
+ * Copyright (c) 2019 Contributors to the Eclipse Foundation
+ *
+ * See the NOTICE file(s) distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *******************************************************************************/
+
+package org.eclipse.hono.deviceregistry;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Objects;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+import io.vertx.core.Future;
+import io.vertx.core.Vertx;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.file.AsyncFile;
+import io.vertx.core.file.CopyOptions;
+import io.vertx.core.file.OpenOptions;
+import io.vertx.core.json.DecodeException;
+import io.vertx.core.json.Json;
+import io.vertx.core.json.JsonObject;
+import io.vertx.core.parsetools.JsonEvent;
+import io.vertx.core.parsetools.JsonEventType;
+import io.vertx.core.parsetools.JsonParser;
+import io.vertx.core.streams.ReadStream;
+import io.vertx.core.streams.WriteStream;
+
+/**
+ * Helper methods for reading and writing the JSON files that the file based
+ * registry services persist their data to.
+ * <p>
+ * The files are read and parsed in a streaming fashion, i.e. the records contained in a file
+ * are passed to a handler one by one while the file is being read instead of reading the whole
+ * file into memory first. The files are written record by record in a compact format
+ * containing one record per line.
+ */
+final class RegistryFileSupport {
+
+    private RegistryFileSupport() {
+        // prevent instantiation
+    }
+
+    /**
+     * Reads a file containing a JSON array of objects.
+     *
+     * @param vertx The vert.x instance to use for accessing the file system.
+     * @param filename The name of the file.
+     * @param recordHandler The handler to invoke with each object contained in the array.
+     *                      Values of other types are ignored.
+     * @return A future indicating the outcome of the operation.
+     *         The future will be failed with a {@link DecodeException} if the file does not
+     *         contain a JSON array.
+     * @throws NullPointerException if any of the parameters is {@code null}.
+     */
+    static Future<Void> readRecords(final Vertx vertx, final String filename, final Consumer<JsonObject> recordHandler) {
+
+        Objects.requireNonNull(recordHandler);
+        return read(vertx, filename, file -> parseRecords(file, recordHandler));
+    }
+
+    /**
+     * Reads a file containing a JSON array of objects containing a tenant's records.
+     *
+     * @param vertx The vert.x instance to use for accessing the file system.
+     * @param filename The name of the file.
+     * @param arrayName The name of the property containing the tenant's records.
+     * @param recordHandler The handler to invoke with the tenant's identifier and record.
+     * @return A future indicating the outcome of the operation.
+     *         The future will be failed with a {@link DecodeException} if the file does not
+     *         contain a JSON array.
+     * @throws NullPointerException if any of the parameters is {@code null}.
+     * @see #parseTenantRecords(ReadStream, String, BiConsumer)
+     */
+    static Future<Void> readTenantRecords(final Vertx vertx, final String filename, final String arrayName,
+            final BiConsumer<String, JsonObject> recordHandler) {
+
+        Objects.requireNonNull(arrayName);
+        Objects.requireNonNull(recordHandler);
+        return read(vertx, filename, file -> parseTenantRecords(file, arrayName, recordHandler));
+    }
+
+    private static Future<Void> read(
+            final Vertx vertx,
+            final String filename,
+            final Function<AsyncFile, Future<Void>> parser) {
+
+        Objects.requireNonNull(vertx);
+        Objects.requireNonNull(filename);
+
+        final Future<AsyncFile> openResult = Future.future();
+        vertx.fileSystem().open(filename, new OpenOptions().setWrite(false).setCreate(false), openResult.completer());
+        return openResult.compose(file -> closeAfter(file, parser.apply(file)));
+    }
+
+    /**
+     * Parses a stream containing a JSON array of objects.
+     *
+     * @param file The stream to read the array from.
+     * @param recordHandler The handler to invoke with each object contained in the array.
+     *                      Values of other types are ignored.
+     * @return A future indicating the outcome of the operation.
+     *         The future will be failed with a {@link DecodeException} if the stream does not
+     *         contain a JSON array.
+     * @throws NullPointerException if any of the parameters is {@code null}.
+     */
+    static Future<Void> parseRecords(final ReadStream<Buffer> file, final Consumer<JsonObject> recordHandler) {
+
+        Objects.requireNonNull(file);
+        Objects.requireNonNull(recordHandler);
+
+        final int[] depth = new int[1];
+        return parse(file, parser -> {
+            parser.objectValueMode();
+            return event -> {
+                switch (event.type()) {
+                case START_ARRAY:
+                    depth[0]++;
+                    break;
+                case END_ARRAY:
+                    depth[0]--;
+                    break;
+                case VALUE:
+                    if (depth[0] == 1 && event.isObject()) {
+                        recordHandler.accept(event.objectValue());
+                    }
+                    break;
+                default:
+                    // objects are reported as values
+                }
+            };
+        });
+    }
+
+    /**
+     * Parses a stream containing a JSON array of objects containing a tenant's records.
+     * <p>
+     * Each object is expected to contain the tenant's identifier in the
+     * {@value FileBasedRegistrationService#FIELD_TENANT} property and the tenant's records
+     * in an array contained in the property of the given name.
+     * The objects representing the tenants are not parsed into {@code JsonObject}s as a whole.
+     * Instead, the handler is invoked for each record individually. Tenants without an identifier
+     * are ignored.
+     *
+     * @param file The stream to read the array from.
+     * @param arrayName The name of the property containing the tenant's records.
+     * @param recordHandler The handler to invoke with the tenant's identifier and record.
+     * @return A future indicating the outcome of the operation.
+     *         The future will be failed with a {@link DecodeException} if the stream does not
+     *         contain a JSON array.
+     * @throws NullPointerException if any of the parameters is {@code null}.
+     */
+    static Future<Void> parseTenantRecords(final ReadStream<Buffer> file, final String arrayName,
+            final BiConsumer<String, JsonObject> recordHandler) {
+
+        Objects.requireNonNull(file);
+        Objects.requireNonNull(arrayName);
+        Objects.requireNonNull(recordHandler);
+
+        return parse(file, parser -> new TenantRecordsHandler(parser, arrayName, recordHandler));
+    }
+
+    private static Future<Void> parse(
+            final ReadStream<Buffer> file,
+            final Function<JsonParser, Consumer<JsonEvent>> handlerFactory) {
+
+        final Future<Void> result = Future.future();
+        final JsonParser parser = JsonParser.newParser(file);
+        final Consumer<JsonEvent> eventHandler = handlerFactory.apply(parser);
+        final boolean[] first = { true };
+        parser.exceptionHandler(t -> {
+            result.tryFail(new DecodeException("cannot parse file: " + t.getMessage()));
+        });
+        parser.endHandler(end -> {
+            // an empty file does not contain any records
+            result.tryComplete();
+        });
+        // setting the handler starts reading the stream
+        parser.handler(event -> {
+            if (result.isComplete()) {
+                return;
+            }
+            if (first[0]) {
+                first[0] = false;
+                if (event.type() != JsonEventType.START_ARRAY) {
+                    result.fail(new DecodeException("file does not contain a JSON array"));
+                    return;
+                }
+            }
+            try {
+                eventHandler.accept(event);
+            } catch (final RuntimeException e) {
+                result.fail(e);
+            }
+        });
+        return result;
+    }
+
+    /**
+     * A handler for the events of a file containing records grouped by tenant.
+     */
+    private static final class TenantRecordsHandler implements Consumer<JsonEvent> {
+
+        private final JsonParser parser;
+        private final String arrayName;
+        private final BiConsumer<String, JsonObject> recordHandler;
+        private final List<JsonObject> recordsWithoutTenant = new ArrayList<>();
+        private int depth;
+        private boolean inRecords;
+        private String tenantId;
+
+        private TenantRecordsHandler(final JsonParser parser, final String arrayName,
+                final BiConsumer<String, JsonObject> recordHandler) {
+            this.parser = parser;
+            this.arrayName = arrayName;
+            this.recordHandler = recordHandler;
+        }
+
+        @Override
+        public void accept(final JsonEvent event) {
+
+            switch (event.type()) {
+            case START_OBJECT:
+                if (depth == 1) {
+                    tenantId = null;
+                    recordsWithoutTenant.clear();
+                }
+                depth++;
+                break;
+            case END_OBJECT:
+                depth--;
+                break;
+            case START_ARRAY:
+                depth++;
+                if (depth == 3 && arrayName.equals(event.fieldName())) {
+                    // the records are reported as values
+                    inRecords = true;
+                    parser.objectValueMode();
+                }
+                break;
+            case END_ARRAY:
+                if (depth == 3 && inRecords) {
+                    inRecords = false;
+                    parser.objectEventMode();
+                }
+                depth--;
+                break;
+            case VALUE:
+                if (depth == 2 && FileBasedRegistrationService.FIELD_TENANT.equals(event.fieldName()) && event.isString()) {
+                    tenantId = event.stringValue();
+                    // the tenant ID may have been preceded by the records
+                    recordsWithoutTenant.forEach(record -> recordHandler.accept(tenantId, record));
+                    recordsWithoutTenant.clear();
+                } else if (depth == 3 && inRecords && event.isObject()) {
+                    if (tenantId == null) {
+                        recordsWithoutTenant.add(event.objectValue());
+                    } else {
+                        recordHandler.accept(tenantId, event.objectValue());
+                    }
+                }
+                break;
+            default:
+                // nothing to do
+            }
+        }
+    }
+
+    /**
+     * Writes records to a file containing a JSON array with one record per line.
+     * <p>
+     * The records are encoded and written one by one so that the content of the
+     * file does not need to be kept in memory as a whole. The records are written to
+     * a temporary file first which atomically replaces an existing file once all records
+     * have been written.
+     *
+     * @param vertx The vert.x instance to use for accessing the file system.
+     * @param filename The name of the file.
+     * @param records The records to write.
+     * @return A future indicating the outcome of the operation.
+     * @throws NullPointerException if any of the parameters is {@code null}.
+     */
+    static Future<Void> writeRecords(final Vertx vertx, final String filename, final Iterator<JsonObject> records) {
+
+        Objects.requireNonNull(records);
+        return write(vertx, filename, file -> writeRecords(file, records));
+    }
+
+    /**
+     * Writes records grouped by tenant to a file.
+     * <p>
+     * The records are encoded and written one by one so that the content of the
+     * file does not need to be kept in memory as a whole. The records are written to
+     * a temporary file first which atomically replaces an existing file once all records
+     * have been written.
+     * The file can be read using
+     * {@link RegistryFileSupport#readTenantRecords(Vertx, String, String, BiConsumer)}.
+     *
+     * @param <T> The type of the tenants' records container.
+     * @param vertx The vert.x instance to use for accessing the file system.
+     * @param filename The name of the file.
+     * @param arrayName The name of the property containing a tenant's records.
+     * @param tenants The records containers by tenant identifier.
+     * @param recordsProvider A function returning the records contained in a tenant's records container.
+     *                        The function is invoked for each tenant right before its records get written.
+     * @return A future indicating the outcome of the operation.
+     * @throws NullPointerException if any of the parameters is {@code null}.
+     */
+    static <T> Future<Void> writeTenantRecords(
+            final Vertx vertx,
+            final String filename,
+            final String arrayName,
+            final Map<String, T> tenants,
+            final Function<T, Iterator<JsonObject>> recordsProvider) {
+
+        Objects.requireNonNull(arrayName);
+        Objects.requireNonNull(tenants);
+        Objects.requireNonNull(recordsProvider);
+        return write(vertx, filename, file -> writeTenantRecords(file, arrayName, tenants, recordsProvider));
+    }
+
+    /**
+     * Gets the name of the temporary file that records are written to
+     * before the file is moved to its final name.
+     *
+     * @param filename The name of the file.
+     * @return The name of the temporary file.
+     */
+    static String getTempFilename(final String filename) {
+        return filename + ".tmp";
+    }
+
+    private static Future<Void> write(
+            final Vertx vertx,
+            final String filename,
+            final Function<AsyncFile, Future<Void>> writer) {
+
+        Objects.requireNonNull(vertx);
+        Objects.requireNonNull(filename);
+
+        // the records are written to a temporary file which then replaces the
+        // existing file so that the file never contains an incomplete array
+        final String tempFilename = getTempFilename(filename);
+        final Future<AsyncFile> openResult = Future.future();
+        vertx.fileSystem().open(tempFilename, new OpenOptions().setTruncateExisting(true), openResult.completer());
+        return openResult
+                .compose(file -> closeAfter(file, writer.apply(file)))
+                .compose(ok -> {
+                    final Future<Void> moveResult = Future.future();
+                    vertx.fileSystem().move(
+                            tempFilename,
+                            filename,
+                            new CopyOptions().setReplaceExisting(true).setAtomicMove(true),
+                            moveResult.completer());
+                    return moveResult;
+                });
+    }
+
+    /**
+     * Writes records to a stream as a JSON array with one record per line.
+     *
+     * @param file The stream to write to.
+     * @param records The records to write.
+     * @return A future indicating the outcome of the operation.
+     * @throws NullPointerException if any of the parameters is {@code null}.
+     */
+    static Future<Void> writeRecords(final WriteStream<Buffer> file, final Iterator<JsonObject> records) {
+
+        Objects.requireNonNull(file);
+        Objects.requireNonNull(records);
+
+        return write(file, new RecordsEncoder(records));
+    }
+
+    /**
+     * Writes records grouped by tenant to a stream.
+     *
+     * @param <T> The type of the tenants' records container.
+     * @param file The stream to write to.
+     * @param arrayName The name of the property containing a tenant's records.
+     * @param tenants The records containers by tenant identifier.
+     * @param recordsProvider A function returning the records contained in a tenant's records container.
+     * @return A future indicating the outcome of the operation.
+     * @throws NullPointerException if any of the parameters is {@code null}.
+     */
+    static <T> Future<Void> writeTenantRecords(
+            final WriteStream<Buffer> file,
+            final String arrayName,
+            final Map<String, T> tenants,
+            final Function<T, Iterator<JsonObject>> recordsProvider) {
+
+        Objects.requireNonNull(file);
+        Objects.requireNonNull(arrayName);
+        Objects.requireNonNull(tenants);
+        Objects.requireNonNull(recordsProvider);
+
+        return write(file, new TenantRecordsEncoder<>(arrayName, tenants.entrySet().iterator(), recordsProvider));
+    }
+
+    private static Future<Void> write(final WriteStream<Buffer> file, final Supplier<Buffer> chunks) {
+
+        final Future<Void> result = Future.future();
+        file.exceptionHandler(result::tryFail);
+        writeChunks(file, chunks, result);
+        return result;
+    }
+
+    private static void writeChunks(final WriteStream<Buffer> file, final Supplier<Buffer> chunks, final Future<Void> result) {
+
+        try {
+            while (!result.isComplete()) {
+                if (file.writeQueueFull()) {
+                    // continue once the chunks written so far have been flushed
+                    file.drainHandler(drained -> writeChunks(file, chunks, result));
+                    return;
+                }
+                final Buffer chunk = chunks.get();
+                if (chunk == null) {
+                    result.tryComplete();
+                } else {
+                    file.write(chunk);
+                }
+            }
+        } catch (final RuntimeException e) {
+            result.tryFail(e);
+        }
+    }
+
+    private static Future<Void> closeAfter(final AsyncFile file, final Future<Void> operation) {
+
+        final Future<Void> result = Future.future();
+        operation.setHandler(outcome -> {
+            file.close(closeAttempt -> {
+                if (outcome.failed()) {
+                    result.fail(outcome.cause());
+                } else {
+                    result.handle(closeAttempt);
+                }
+            });
+        });
+        return result;
+    }
+
+    /**
+     * An encoder providing a JSON array containing one record per line
+     * as a sequence of chunks.
+     */
+    private static final class RecordsEncoder implements Supplier<Buffer> {
+
+        private final Iterator<JsonObject> records;
+        private boolean started;
+        private boolean firstRecord = true;
+        private boolean ended;
+
+        private RecordsEncoder(final Iterator<JsonObject> records) {
+            this.records = records;
+        }
+
+        @Override
+        public Buffer get() {
+
+            if (!started) {
+                started = true;
+                return Buffer.buffer("[");
+            } else if (records.hasNext()) {
+                final Buffer chunk = Buffer.buffer(firstRecord ? "\n" : ",\n").appendBuffer(records.next().toBuffer());
+                firstRecord = false;
+                return chunk;
+            } else if (!ended) {
+                ended = true;
+                return Buffer.buffer("\n]\n");
+            } else {
+                return null;
+            }
+        }
+    }
+
+    /**
+     * An encoder providing a JSON array containing records grouped by tenant
+     * as a sequence of chunks.
+     * <p>
+     * The array can be parsed using
+     * {@link RegistryFileSupport#parseTenantRecords(ReadStream, String, BiConsumer)}.
+     *
+     * @param <T> The type of the tenants' records container.
+     */
+    private static final class TenantRecordsEncoder<T> implements Supplier<Buffer> {
+
+        private final String arrayName;
+        private final Iterator<Entry<String, T>> tenants;
+        private final Function<T, Iterator<JsonObject>> recordsProvider;
+        private Iterator<JsonObject> records;
+        private boolean started;
+        private boolean firstTenant = true;
+        private boolean firstRecord;
+        private boolean ended;
+
+        private TenantRecordsEncoder(
+                final String arrayName,
+                final Iterator<Entry<String, T>> tenants,
+                final Function<T, Iterator<JsonObject>> recordsProvider) {
+            this.arrayName = arrayName;
+            this.tenants = tenants;
+            this.recordsProvider = recordsProvider;
+        }
+
+        @Override
+        public Buffer get() {
+
+            if (!started) {
+                started = true;
+                return Buffer.buffer("[");
+            } else if (records != null) {
+                return nextRecord();
+            } else if (tenants.hasNext()) {
+                final Entry<String, T> tenant = tenants.next();
+                final Buffer chunk = Buffer.buffer(firstTenant ? "\n" : ",\n")
+                        .appendString(String.format("{\"%s\":%s,\"%s\":[",
+                                FileBasedRegistrationService.FIELD_TENANT, Json.encode(tenant.getKey()), arrayName));
+                records = recordsProvider.apply(tenant.getValue());
+                firstTenant = false;
+                firstRecord = true;
+                return chunk;
+            } else if (!ended) {
+                ended = true;
+                return Buffer.buffer("\n]\n");
+            } else {
+                return null;
+            }
+        }
+
+        private Buffer nextRecord() {
+
+            if (records.hasNext()) {
+                final Buffer chunk = Buffer.buffer(firstRecord ? "\n" : ",\n").appendBuffer(records.next().toBuffer());
+                firstRecord = false;
+                return chunk;
+            } else {
+                records = null;
+                return Buffer.buffer(firstRecord ? "]}" : "\n]}");
+            }
+        }
+    }
+}
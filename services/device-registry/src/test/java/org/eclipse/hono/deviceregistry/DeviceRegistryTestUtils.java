@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2016, 2018 Contributors to the Eclipse Foundation
+ * Copyright (c) 2016, 2019 Contributors to the Eclipse Foundation
  *
  * See the NOTICE file(s) distributed with this work for additional
  * information regarding copyright ownership.
@@ -13,10 +13,19 @@
 
 package org.eclipse.hono.deviceregistry;
 
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.concurrent.atomic.AtomicReference;
 
+import io.vertx.core.Future;
+import io.vertx.core.Handler;
 import io.vertx.core.buffer.Buffer;
+import io.vertx.core.file.AsyncFile;
 
 /**
  * Utility methods for testing functionality around credentials and tenant management.
@@ -47,4 +56,55 @@ public final class DeviceRegistryTestUtils {
         }
         return result;
     }
+
+    /**
+     * Creates a mock file that provides the given content when being read.
+     *
+     * @param content The content of the file.
+     * @return The file.
+     */
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    public static AsyncFile newReadableFile(final Buffer content) {
+
+        final AsyncFile file = mock(AsyncFile.class);
+        final AtomicReference<Handler<Void>> endHandler = new AtomicReference<>();
+        when(file.endHandler(any(Handler.class))).thenAnswer(invocation -> {
+            endHandler.set(invocation.getArgument(0));
+            return file;
+        });
+        when(file.handler(any(Handler.class))).thenAnswer(invocation -> {
+            final Handler<Buffer> handler = invocation.getArgument(0);
+            handler.handle(content);
+            endHandler.get().handle(null);
+            return file;
+        });
+        doAnswer(invocation -> {
+            final Handler handler = invocation.getArgument(0);
+            handler.handle(Future.succeededFuture());
+            return null;
+        }).when(file).close(any(Handler.class));
+        return file;
+    }
+
+    /**
+     * Creates a mock file that appends all data written to it to a buffer.
+     *
+     * @param content The buffer to append the written data to.
+     * @return The file.
+     */
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    public static AsyncFile newWritableFile(final Buffer content) {
+
+        final AsyncFile file = mock(AsyncFile.class);
+        when(file.write(any(Buffer.class))).thenAnswer(invocation -> {
+            content.appendBuffer(invocation.getArgument(0));
+            return file;
+        });
+        doAnswer(invocation -> {
+            final Handler handler = invocation.getArgument(0);
+            handler.handle(Future.succeededFuture());
+            return null;
+        }).when(file).close(any(Handler.class));
+        return file;
+    }
 }
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2016, 2018 Contributors to the Eclipse Foundation
+ * Copyright (c) 2016, 2019 Contributors to the Eclipse Foundation
  *
  * See the NOTICE file(s) distributed with this work for additional
  * information regarding copyright ownership.
@@ -32,7 +32,6 @@ import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.Timeout;
 import org.junit.runner.RunWith;
-import org.mockito.ArgumentCaptor;
 
 import io.vertx.core.Context;
 import io.vertx.core.Future;
@@ -40,7 +39,9 @@ import io.vertx.core.Handler;
 import io.vertx.core.Vertx;
 import io.vertx.core.buffer.Buffer;
 import io.vertx.core.eventbus.EventBus;
+import io.vertx.core.file.CopyOptions;
 import io.vertx.core.file.FileSystem;
+import io.vertx.core.file.OpenOptions;
 import io.vertx.core.json.JsonObject;
 import io.vertx.ext.unit.Async;
 import io.vertx.ext.unit.TestContext;
@@ -70,6 +71,7 @@ public class FileBasedCredentialsServiceTest extends AbstractCompleteCredentials
     /**
      * Sets up fixture.
      */
+    @SuppressWarnings({ "unchecked", "rawtypes" })
     @Before
     public void setUp() {
         fileSystem = mock(FileSystem.class);
@@ -78,6 +80,11 @@ public class FileBasedCredentialsServiceTest extends AbstractCompleteCredentials
         vertx = mock(Vertx.class);
         when(vertx.eventBus()).thenReturn(eventBus);
         when(vertx.fileSystem()).thenReturn(fileSystem);
+        doAnswer(invocation -> {
+            final Handler handler = invocation.getArgument(3);
+            handler.handle(Future.succeededFuture());
+            return null;
+        }).when(fileSystem).move(anyString(), anyString(), any(CopyOptions.class), any(Handler.class));
 
         props = new FileBasedCredentialsConfigProperties();
         svc = new FileBasedCredentialsService(mock(HonoPasswordEncoder.class));
@@ -110,10 +117,10 @@ public class FileBasedCredentialsServiceTest extends AbstractCompleteCredentials
             return null;
         }).when(fileSystem).createFile(eq(props.getFilename()), any(Handler.class));
         doAnswer(invocation -> {
-            final Handler handler = invocation.getArgument(1);
+            final Handler handler = invocation.getArgument(2);
             handler.handle(Future.failedFuture("malformed file"));
             return null;
-        }).when(fileSystem).readFile(eq(props.getFilename()), any(Handler.class));
+        }).when(fileSystem).open(eq(props.getFilename()), any(OpenOptions.class), any(Handler.class));
 
         // WHEN starting the service
         final Async startup = ctx.async();
@@ -175,12 +182,11 @@ public class FileBasedCredentialsServiceTest extends AbstractCompleteCredentials
         props.setFilename(FILE_NAME);
         when(fileSystem.existsBlocking(FILE_NAME)).thenReturn(Boolean.TRUE);
         doAnswer(invocation -> {
-            final Buffer data = mock(Buffer.class);
-            when(data.getBytes()).thenReturn("NO JSON".getBytes(StandardCharsets.UTF_8));
-            final Handler handler = invocation.getArgument(1);
-            handler.handle(Future.succeededFuture(data));
+            final Buffer data = Buffer.buffer("NO JSON");
+            final Handler handler = invocation.getArgument(2);
+            handler.handle(Future.succeededFuture(DeviceRegistryTestUtils.newReadableFile(data)));
             return null;
-        }).when(fileSystem).readFile(eq(props.getFilename()), any(Handler.class));
+        }).when(fileSystem).open(eq(props.getFilename()), any(OpenOptions.class), any(Handler.class));
 
         // WHEN starting the service
         final Async startup = ctx.async();
@@ -208,10 +214,10 @@ public class FileBasedCredentialsServiceTest extends AbstractCompleteCredentials
         when(fileSystem.existsBlocking(props.getFilename())).thenReturn(Boolean.TRUE);
         doAnswer(invocation -> {
             final Buffer data = DeviceRegistryTestUtils.readFile(FILE_NAME);
-            final Handler handler = invocation.getArgument(1);
-            handler.handle(Future.succeededFuture(data));
+            final Handler handler = invocation.getArgument(2);
+            handler.handle(Future.succeededFuture(DeviceRegistryTestUtils.newReadableFile(data)));
             return null;
-        }).when(fileSystem).readFile(eq(props.getFilename()), any(Handler.class));
+        }).when(fileSystem).open(eq(props.getFilename()), any(OpenOptions.class), any(Handler.class));
 
         // WHEN the service is started
         final Async startup = ctx.async();
@@ -250,7 +256,7 @@ public class FileBasedCredentialsServiceTest extends AbstractCompleteCredentials
 
         // THEN the credentials from the file are not loaded
         startup.await();
-        verify(fileSystem, never()).readFile(anyString(), any(Handler.class));
+        verify(fileSystem, never()).open(anyString(), any(OpenOptions.class), any(Handler.class));
     }
 
 
@@ -295,29 +301,27 @@ public class FileBasedCredentialsServiceTest extends AbstractCompleteCredentials
         add.await();
 
         // WHEN saving the registry content to the file and clearing the registry
-        final Async write = ctx.async();
+        final Buffer file = Buffer.buffer();
         doAnswer(invocation -> {
             final Handler handler = invocation.getArgument(2);
-            handler.handle(Future.succeededFuture());
-            write.complete();
+            handler.handle(Future.succeededFuture(DeviceRegistryTestUtils.newWritableFile(file)));
             return null;
-        }).when(fileSystem).writeFile(eq(FILE_NAME), any(Buffer.class), any(Handler.class));
+        }).when(fileSystem).open(eq(RegistryFileSupport.getTempFilename(FILE_NAME)), any(OpenOptions.class), any(Handler.class));
 
-        svc.saveToFile();
+        final Async write = ctx.async();
+        svc.saveToFile().setHandler(ctx.asyncAssertSuccess(s -> write.complete()));
         write.await();
-        final ArgumentCaptor<Buffer> buffer = ArgumentCaptor.forClass(Buffer.class);
-        verify(fileSystem).writeFile(eq(FILE_NAME), buffer.capture(), any(Handler.class));
         svc.clear();
         assertNotRegistered(svc, Constants.DEFAULT_PATH_SEPARATOR, "sensor1", CredentialsConstants.SECRETS_TYPE_PRESHARED_KEY, ctx);
 
         // THEN the credentials can be loaded back in from the file
         final Async read = ctx.async();
         doAnswer(invocation -> {
-            final Handler handler = invocation.getArgument(1);
-            handler.handle(Future.succeededFuture(buffer.getValue()));
+            final Handler handler = invocation.getArgument(2);
+            handler.handle(Future.succeededFuture(DeviceRegistryTestUtils.newReadableFile(file)));
             read.complete();
             return null;
-        }).when(fileSystem).readFile(eq(FILE_NAME), any(Handler.class));
+        }).when(fileSystem).open(eq(FILE_NAME), any(OpenOptions.class), any(Handler.class));
         svc.loadCredentials();
         read.await();
         assertRegistered(svc, Constants.DEFAULT_TENANT, "sensor1", CredentialsConstants.SECRETS_TYPE_PRESHARED_KEY, ctx);
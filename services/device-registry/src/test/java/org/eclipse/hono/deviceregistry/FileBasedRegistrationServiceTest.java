@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2016, 2018 Contributors to the Eclipse Foundation
+ * Copyright (c) 2016, 2019 Contributors to the Eclipse Foundation
  *
  * See the NOTICE file(s) distributed with this work for additional
  * information regarding copyright ownership.
@@ -15,11 +15,19 @@ package org.eclipse.hono.deviceregistry;
 import static org.hamcrest.CoreMatchers.is;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
 import static org.mockito.ArgumentMatchers.*;
 import static org.mockito.Mockito.*;
 
 import java.net.HttpURLConnection;
-import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
 
 import io.vertx.ext.unit.junit.VertxUnitRunner;
 import org.eclipse.hono.service.registration.AbstractCompleteRegistrationServiceTest;
@@ -31,13 +39,18 @@ import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.Timeout;
 
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import io.vertx.core.Context;
 import io.vertx.core.Future;
 import io.vertx.core.Handler;
 import io.vertx.core.Vertx;
 import io.vertx.core.buffer.Buffer;
 import io.vertx.core.eventbus.EventBus;
+import io.vertx.core.file.CopyOptions;
 import io.vertx.core.file.FileSystem;
+import io.vertx.core.file.OpenOptions;
+import io.vertx.core.json.JsonArray;
 import io.vertx.core.json.JsonObject;
 import io.vertx.ext.unit.Async;
 import io.vertx.ext.unit.TestContext;
@@ -66,6 +79,7 @@ public class FileBasedRegistrationServiceTest extends AbstractCompleteRegistrati
     /**
      * Sets up the fixture.
      */
+    @SuppressWarnings({ "unchecked", "rawtypes" })
     @Before
     public void setUp() {
         fileSystem = mock(FileSystem.class);
@@ -74,6 +88,11 @@ public class FileBasedRegistrationServiceTest extends AbstractCompleteRegistrati
         vertx = mock(Vertx.class);
         when(vertx.eventBus()).thenReturn(eventBus);
         when(vertx.fileSystem()).thenReturn(fileSystem);
+        doAnswer(invocation -> {
+            final Handler handler = invocation.getArgument(3);
+            handler.handle(Future.succeededFuture());
+            return null;
+        }).when(fileSystem).move(anyString(), anyString(), any(CopyOptions.class), any(Handler.class));
 
         props = new FileBasedRegistrationConfigProperties();
         props.setFilename(FILE_NAME);
@@ -101,9 +120,9 @@ public class FileBasedRegistrationServiceTest extends AbstractCompleteRegistrati
         props.setSaveToFile(true);
         doAnswer(invocation -> {
             final Handler handler = invocation.getArgument(2);
-            handler.handle(Future.succeededFuture());
+            handler.handle(Future.succeededFuture(DeviceRegistryTestUtils.newWritableFile(Buffer.buffer())));
             return null;
-        }).when(fileSystem).writeFile(eq(props.getFilename()), any(Buffer.class), any(Handler.class));
+        }).when(fileSystem).open(eq(RegistryFileSupport.getTempFilename(props.getFilename())), any(OpenOptions.class), any(Handler.class));
         when(fileSystem.existsBlocking(props.getFilename())).thenReturn(Boolean.FALSE);
         doAnswer(invocation -> {
             final Handler handler = invocation.getArgument(1);
@@ -121,6 +140,157 @@ public class FileBasedRegistrationServiceTest extends AbstractCompleteRegistrati
         // THEN the file has been created
         saving.await();
         verify(fileSystem).createFile(eq(props.getFilename()), any(Handler.class));
+        // and has been replaced with the data written to the temporary file
+        verify(fileSystem).move(
+                eq(RegistryFileSupport.getTempFilename(props.getFilename())),
+                eq(props.getFilename()),
+                any(CopyOptions.class),
+                any(Handler.class));
+    }
+
+    /**
+     * Verifies that the registration service remains dirty if persisting its data fails.
+     *
+     * @param ctx The vert.x context.
+     */
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    @Test
+    public void testSaveToFileRetriesAfterWriteFailure(final TestContext ctx) {
+
+        // GIVEN a registration service with an existing file that cannot be written to initially
+        props.setSaveToFile(true);
+        when(fileSystem.existsBlocking(props.getFilename())).thenReturn(Boolean.TRUE);
+        doAnswer(invocation -> {
+            final Handler handler = invocation.getArgument(2);
+            handler.handle(Future.failedFuture("disk full"));
+            return null;
+        }).doAnswer(invocation -> {
+            final Handler handler = invocation.getArgument(2);
+            handler.handle(Future.succeededFuture(DeviceRegistryTestUtils.newWritableFile(Buffer.buffer())));
+            return null;
+        }).when(fileSystem).open(eq(RegistryFileSupport.getTempFilename(props.getFilename())), any(OpenOptions.class), any(Handler.class));
+
+        // WHEN persisting a dirty registry fails
+        registrationService.addDevice(TENANT, DEVICE, null);
+        registrationService.saveToFile()
+        .compose(ok -> registrationService.saveToFile())
+        .compose(ok -> registrationService.saveToFile())
+        .setHandler(ctx.asyncAssertSuccess(ok -> {
+            // THEN the data is written again on the next attempt only
+            verify(fileSystem, times(2)).open(eq(RegistryFileSupport.getTempFilename(props.getFilename())), any(OpenOptions.class), any(Handler.class));
+        }));
+    }
+
+    /**
+     * Verifies that the registration service does not start persisting its data
+     * while a previous attempt is still in progress.
+     *
+     * @param ctx The vert.x context.
+     */
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    @Test
+    public void testSaveToFileSkipsWhileSaveIsInProgress(final TestContext ctx) {
+
+        // GIVEN a registration service with an existing file that takes long to be opened
+        props.setSaveToFile(true);
+        when(fileSystem.existsBlocking(props.getFilename())).thenReturn(Boolean.TRUE);
+        final AtomicReference<Handler> openHandler = new AtomicReference<>();
+        doAnswer(invocation -> {
+            openHandler.set(invocation.getArgument(2));
+            return null;
+        }).doAnswer(invocation -> {
+            final Handler handler = invocation.getArgument(2);
+            handler.handle(Future.succeededFuture(DeviceRegistryTestUtils.newWritableFile(Buffer.buffer())));
+            return null;
+        }).when(fileSystem).open(eq(RegistryFileSupport.getTempFilename(props.getFilename())), any(OpenOptions.class), any(Handler.class));
+
+        // WHEN persisting a dirty registry
+        registrationService.addDevice(TENANT, DEVICE, null);
+        final Future<Void> firstAttempt = registrationService.saveToFile();
+        // and persisting the registry again while the first attempt has not completed yet
+        registrationService.addDevice(TENANT, "other-device", null);
+        registrationService.saveToFile().setHandler(ctx.asyncAssertSuccess(ok -> {
+            // THEN the second attempt completes without writing the file
+            verify(fileSystem, times(1)).open(anyString(), any(OpenOptions.class), any(Handler.class));
+        }));
+
+        // and the data is written again once the first attempt has completed
+        openHandler.get().handle(Future.succeededFuture(DeviceRegistryTestUtils.newWritableFile(Buffer.buffer())));
+        firstAttempt.compose(ok -> registrationService.saveToFile()).setHandler(ctx.asyncAssertSuccess(ok -> {
+            verify(fileSystem, times(2)).open(anyString(), any(OpenOptions.class), any(Handler.class));
+        }));
+    }
+
+    /**
+     * Verifies that devices can be added concurrently from multiple threads.
+     *
+     * @throws InterruptedException if the test is interrupted.
+     */
+    @Test
+    public void testAddDeviceFromMultipleThreads() throws InterruptedException {
+
+        final int threads = 4;
+        final int devicesPerThread = 250;
+        props.setMaxDevicesPerTenant(threads * devicesPerThread);
+        final ExecutorService executor = Executors.newFixedThreadPool(threads);
+        final CountDownLatch done = new CountDownLatch(threads);
+        try {
+            for (int t = 0; t < threads; t++) {
+                final int thread = t;
+                executor.execute(() -> {
+                    for (int i = 0; i < devicesPerThread; i++) {
+                        registrationService.addDevice(TENANT, String.format("device-%d-%d", thread, i), null);
+                    }
+                    done.countDown();
+                });
+            }
+            assertThat(done.await(4, TimeUnit.SECONDS), is(true));
+        } finally {
+            executor.shutdownNow();
+        }
+        for (int t = 0; t < threads; t++) {
+            for (int i = 0; i < devicesPerThread; i++) {
+                assertThat(registrationService.getDevice(TENANT, String.format("device-%d-%d", t, i)).getStatus(),
+                        is(HttpURLConnection.HTTP_OK));
+            }
+        }
+    }
+
+    /**
+     * Verifies that devices added concurrently from multiple threads do not exceed
+     * the maximum number of devices per tenant.
+     *
+     * @throws InterruptedException if the test is interrupted.
+     */
+    @Test
+    public void testAddDeviceFromMultipleThreadsRespectsDeviceLimit() throws InterruptedException {
+
+        final int threads = 4;
+        final int devicesPerThread = 250;
+        final int maxDevices = 100;
+        props.setMaxDevicesPerTenant(maxDevices);
+        final ExecutorService executor = Executors.newFixedThreadPool(threads);
+        final CountDownLatch done = new CountDownLatch(threads);
+        final AtomicInteger created = new AtomicInteger();
+        try {
+            for (int t = 0; t < threads; t++) {
+                final int thread = t;
+                executor.execute(() -> {
+                    for (int i = 0; i < devicesPerThread; i++) {
+                        final RegistrationResult result = registrationService.addDevice(
+                                TENANT, String.format("device-%d-%d", thread, i), null);
+                        if (result.getStatus() == HttpURLConnection.HTTP_CREATED) {
+                            created.incrementAndGet();
+                        }
+                    }
+                    done.countDown();
+                });
+            }
+            assertThat(done.await(4, TimeUnit.SECONDS), is(true));
+        } finally {
+            executor.shutdownNow();
+        }
+        assertThat(created.get(), is(maxDevices));
     }
 
     /**
@@ -142,10 +312,10 @@ public class FileBasedRegistrationServiceTest extends AbstractCompleteRegistrati
             return null;
         }).when(fileSystem).createFile(eq(props.getFilename()), any(Handler.class));
         doAnswer(invocation -> {
-            final Handler handler = invocation.getArgument(1);
+            final Handler handler = invocation.getArgument(2);
             handler.handle(Future.failedFuture("malformed file"));
             return null;
-        }).when(fileSystem).readFile(eq(props.getFilename()), any(Handler.class));
+        }).when(fileSystem).open(eq(props.getFilename()), any(OpenOptions.class), any(Handler.class));
 
         // WHEN starting the service
         final Async startup = ctx.async();
@@ -205,12 +375,11 @@ public class FileBasedRegistrationServiceTest extends AbstractCompleteRegistrati
         // that contains malformed JSON
         when(fileSystem.existsBlocking(props.getFilename())).thenReturn(Boolean.TRUE);
         doAnswer(invocation -> {
-            final Buffer data = mock(Buffer.class);
-            when(data.getBytes()).thenReturn("NO JSON".getBytes(StandardCharsets.UTF_8));
-            final Handler handler = invocation.getArgument(1);
-            handler.handle(Future.succeededFuture(data));
+            final Buffer data = Buffer.buffer("NO JSON");
+            final Handler handler = invocation.getArgument(2);
+            handler.handle(Future.succeededFuture(DeviceRegistryTestUtils.newReadableFile(data)));
             return null;
-        }).when(fileSystem).readFile(eq(props.getFilename()), any(Handler.class));
+        }).when(fileSystem).open(eq(props.getFilename()), any(OpenOptions.class), any(Handler.class));
 
         // WHEN starting the service
         final Async startup = ctx.async();
@@ -237,10 +406,10 @@ public class FileBasedRegistrationServiceTest extends AbstractCompleteRegistrati
         when(fileSystem.existsBlocking(props.getFilename())).thenReturn(Boolean.TRUE);
         doAnswer(invocation -> {
             final Buffer data = DeviceRegistryTestUtils.readFile(FILE_NAME);
-            final Handler handler = invocation.getArgument(1);
-            handler.handle(Future.succeededFuture(data));
+            final Handler handler = invocation.getArgument(2);
+            handler.handle(Future.succeededFuture(DeviceRegistryTestUtils.newReadableFile(data)));
             return null;
-        }).when(fileSystem).readFile(eq(props.getFilename()), any(Handler.class));
+        }).when(fileSystem).open(eq(props.getFilename()), any(OpenOptions.class), any(Handler.class));
 
         // WHEN the service is started
         final Async startup = ctx.async();
@@ -285,7 +454,7 @@ public class FileBasedRegistrationServiceTest extends AbstractCompleteRegistrati
 
         // THEN the device identities from the file are not loaded
         startup.await();
-        verify(fileSystem, never()).readFile(anyString(), any(Handler.class));
+        verify(fileSystem, never()).open(anyString(), any(OpenOptions.class), any(Handler.class));
     }
 
     /**
@@ -344,6 +513,77 @@ public class FileBasedRegistrationServiceTest extends AbstractCompleteRegistrati
         assertThat(registrationService.getDevice(TENANT, DEVICE).getStatus(), is(HttpURLConnection.HTTP_OK));
     }
 
+    /**
+     * Verifies that the index of the devices that a gateway may act on behalf of
+     * reflects the <em>via</em> property of added, updated and removed devices.
+     */
+    @Test
+    public void testGatewayIndexReflectsViaProperty() {
+
+        // GIVEN a registry containing devices connected via one or more gateways
+        registrationService.addDevice(TENANT, "device-1", new JsonObject().put(FileBasedRegistrationService.PROPERTY_VIA, GW));
+        registrationService.addDevice(TENANT, "device-2", new JsonObject().put(FileBasedRegistrationService.PROPERTY_VIA, new JsonArray().add(GW).add("gw-2")));
+        registrationService.addDevice(TENANT, "device-3", new JsonObject().put(FileBasedRegistrationService.PROPERTY_VIA, GW));
+        assertThat(new ArrayList<>(registrationService.getDevicesForGateway(TENANT, GW)), is(Arrays.asList("device-1", "device-2", "device-3")));
+
+        // WHEN updating a device to be connected via another gateway only
+        registrationService.updateDevice(TENANT, "device-1", new JsonObject().put(FileBasedRegistrationService.PROPERTY_VIA, "gw-2"));
+        // and removing another device
+        registrationService.removeDevice(TENANT, "device-3");
+
+        // THEN the index contains the devices that each gateway may act on behalf of
+        assertThat(new ArrayList<>(registrationService.getDevicesForGateway(TENANT, GW)), is(Arrays.asList("device-2")));
+        assertThat(new ArrayList<>(registrationService.getDevicesForGateway(TENANT, "gw-2")), is(Arrays.asList("device-1", "device-2")));
+        // and the gateways are authorized accordingly
+        assertTrue(registrationService.isGatewayAuthorized(TENANT, "gw-2", new JsonObject(), "device-1", new JsonObject()));
+        assertFalse(registrationService.isGatewayAuthorized(TENANT, GW, new JsonObject(), "device-1", new JsonObject()));
+    }
+
+    /**
+     * Verifies that updates of the <em>last-via</em> property are deferred as long as a device
+     * connects via the same gateway and are written immediately if the gateway changes.
+     */
+    @SuppressWarnings("unchecked")
+    @Test
+    public void testUpdateDeviceLastViaDefersUpdatesForSameGateway() {
+
+        // GIVEN a registry containing a device that has last connected via a gateway
+        final MeterRegistry meterRegistry = new SimpleMeterRegistry();
+        registrationService.setMeterRegistry(meterRegistry);
+        final JsonObject lastVia = new JsonObject()
+                .put(RegistrationConstants.FIELD_PAYLOAD_DEVICE_ID, GW)
+                .put(FileBasedRegistrationService.PROPERTY_LAST_VIA_UPDATE_DATE, "2019-01-01T00:00:00Z");
+        registrationService.addDevice(TENANT, DEVICE, new JsonObject()
+                .put(FileBasedRegistrationService.PROPERTY_VIA, new JsonArray().add(GW).add("gw-2"))
+                .put(FileBasedRegistrationService.PROPERTY_LAST_VIA, lastVia));
+
+        // WHEN the device connects via the same gateway again
+        registrationService.updateDeviceLastVia(TENANT, DEVICE, GW, getRegistrationData(DEVICE));
+
+        // THEN the update is deferred
+        assertThat(getRegistrationData(DEVICE).getJsonObject(FileBasedRegistrationService.PROPERTY_LAST_VIA), is(lastVia));
+        assertThat(meterRegistry.counter(FileBasedRegistrationService.METER_LAST_VIA_UPDATES_DEFERRED).count(), is(1.0));
+        verify(vertx).setTimer(eq(props.getLastViaUpdateInterval() * 1000L), any(Handler.class));
+
+        // and written once the deferred updates are flushed
+        registrationService.flushLastViaUpdates();
+        final JsonObject flushedLastVia = getRegistrationData(DEVICE).getJsonObject(FileBasedRegistrationService.PROPERTY_LAST_VIA);
+        assertThat(flushedLastVia.getString(RegistrationConstants.FIELD_PAYLOAD_DEVICE_ID), is(GW));
+        assertFalse(lastVia.equals(flushedLastVia));
+
+        // WHEN the device connects via another gateway
+        registrationService.updateDeviceLastVia(TENANT, DEVICE, "gw-2", getRegistrationData(DEVICE));
+
+        // THEN the update is written immediately
+        assertThat(getRegistrationData(DEVICE).getJsonObject(FileBasedRegistrationService.PROPERTY_LAST_VIA)
+                .getString(RegistrationConstants.FIELD_PAYLOAD_DEVICE_ID), is("gw-2"));
+        assertThat(meterRegistry.counter(FileBasedRegistrationService.METER_LAST_VIA_UPDATES_DEFERRED).count(), is(1.0));
+    }
+
+    private JsonObject getRegistrationData(final String deviceId) {
+        return registrationService.getDevice(TENANT, deviceId).getPayload().getJsonObject(RegistrationConstants.FIELD_DATA);
+    }
+
     /**
      * Verifies that setting the <em>saveToFile</em> configuration property to <em>false</em> prevents
      * the registration service to write its content to the file system periodically.
@@ -357,10 +597,10 @@ public class FileBasedRegistrationServiceTest extends AbstractCompleteRegistrati
         props.setSaveToFile(false);
         when(fileSystem.existsBlocking(props.getFilename())).thenReturn(Boolean.TRUE);
         doAnswer(invocation -> {
-            final Handler handler = invocation.getArgument(1);
+            final Handler handler = invocation.getArgument(2);
             handler.handle(Future.failedFuture("malformed file"));
             return null;
-        }).when(fileSystem).readFile(eq(props.getFilename()), any(Handler.class));
+        }).when(fileSystem).open(eq(props.getFilename()), any(OpenOptions.class), any(Handler.class));
 
         final Async startup = ctx.async();
         final Future<Void> startupTracker = Future.future();
@@ -387,10 +627,10 @@ public class FileBasedRegistrationServiceTest extends AbstractCompleteRegistrati
         props.setSaveToFile(false);
         when(fileSystem.existsBlocking(props.getFilename())).thenReturn(Boolean.TRUE);
         doAnswer(invocation -> {
-            final Handler handler = invocation.getArgument(1);
+            final Handler handler = invocation.getArgument(2);
             handler.handle(Future.failedFuture("malformed data"));
             return null;
-        }).when(fileSystem).readFile(eq(props.getFilename()), any(Handler.class));
+        }).when(fileSystem).open(eq(props.getFilename()), any(OpenOptions.class), any(Handler.class));
         final Async startup = ctx.async();
         final Future<Void> startupTracker = Future.future();
         startupTracker.setHandler(ctx.asyncAssertSuccess(started -> {
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2016, 2018 Contributors to the Eclipse Foundation
+ * Copyright (c) 2016, 2019 Contributors to the Eclipse Foundation
  *
  * See the NOTICE file(s) distributed with this work for additional
  * information regarding copyright ownership.
@@ -18,18 +18,17 @@ import static org.mockito.Matchers.eq;
 import static org.mockito.Mockito.*;
 
 import java.net.HttpURLConnection;
-import java.nio.charset.StandardCharsets;
 
 import io.vertx.ext.unit.junit.VertxUnitRunner;
 import org.eclipse.hono.service.tenant.AbstractCompleteTenantServiceTest;
 import org.eclipse.hono.service.tenant.CompleteBaseTenantService;
 import org.eclipse.hono.util.Constants;
+import org.eclipse.hono.util.TenantConstants;
 import org.junit.Before;
 import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.Timeout;
 import org.junit.runner.RunWith;
-import org.mockito.ArgumentCaptor;
 
 import io.vertx.core.Context;
 import io.vertx.core.Future;
@@ -37,7 +36,9 @@ import io.vertx.core.Handler;
 import io.vertx.core.Vertx;
 import io.vertx.core.buffer.Buffer;
 import io.vertx.core.eventbus.EventBus;
+import io.vertx.core.file.CopyOptions;
 import io.vertx.core.file.FileSystem;
+import io.vertx.core.file.OpenOptions;
 import io.vertx.core.json.JsonObject;
 import io.vertx.ext.unit.Async;
 import io.vertx.ext.unit.TestContext;
@@ -67,6 +68,7 @@ public class FileBasedTenantServiceTest extends AbstractCompleteTenantServiceTes
     /**
      * Sets up fixture.
      */
+    @SuppressWarnings({ "unchecked", "rawtypes" })
     @Before
     public void setUp() {
         fileSystem = mock(FileSystem.class);
@@ -75,6 +77,11 @@ public class FileBasedTenantServiceTest extends AbstractCompleteTenantServiceTes
         vertx = mock(Vertx.class);
         when(vertx.eventBus()).thenReturn(eventBus);
         when(vertx.fileSystem()).thenReturn(fileSystem);
+        doAnswer(invocation -> {
+            final Handler handler = invocation.getArgument(3);
+            handler.handle(Future.succeededFuture());
+            return null;
+        }).when(fileSystem).move(anyString(), anyString(), any(CopyOptions.class), any(Handler.class));
 
         props = new FileBasedTenantsConfigProperties();
         svc = new FileBasedTenantService();
@@ -107,10 +114,10 @@ public class FileBasedTenantServiceTest extends AbstractCompleteTenantServiceTes
             return null;
         }).when(fileSystem).createFile(eq(props.getFilename()), any(Handler.class));
         doAnswer(invocation -> {
-            final Handler handler = invocation.getArgument(1);
+            final Handler handler = invocation.getArgument(2);
             handler.handle(Future.failedFuture("malformed file"));
             return null;
-        }).when(fileSystem).readFile(eq(props.getFilename()), any(Handler.class));
+        }).when(fileSystem).open(eq(props.getFilename()), any(OpenOptions.class), any(Handler.class));
 
         // WHEN starting the service
         final Async startup = ctx.async();
@@ -166,12 +173,11 @@ public class FileBasedTenantServiceTest extends AbstractCompleteTenantServiceTes
         props.setFilename(FILE_NAME);
         when(fileSystem.existsBlocking(FILE_NAME)).thenReturn(Boolean.TRUE);
         doAnswer(invocation -> {
-            final Buffer data = mock(Buffer.class);
-            when(data.getBytes()).thenReturn("NO JSON".getBytes(StandardCharsets.UTF_8));
-            final Handler handler = invocation.getArgument(1);
-            handler.handle(Future.succeededFuture(data));
+            final Buffer data = Buffer.buffer("NO JSON");
+            final Handler handler = invocation.getArgument(2);
+            handler.handle(Future.succeededFuture(DeviceRegistryTestUtils.newReadableFile(data)));
             return null;
-        }).when(fileSystem).readFile(eq(props.getFilename()), any(Handler.class));
+        }).when(fileSystem).open(eq(props.getFilename()), any(OpenOptions.class), any(Handler.class));
 
         // WHEN starting the service
         final Future<Void> startupTracker = Future.future();
@@ -195,10 +201,10 @@ public class FileBasedTenantServiceTest extends AbstractCompleteTenantServiceTes
         when(fileSystem.existsBlocking(props.getFilename())).thenReturn(Boolean.TRUE);
         doAnswer(invocation -> {
             final Buffer data = DeviceRegistryTestUtils.readFile(FILE_NAME);
-            final Handler handler = invocation.getArgument(1);
-            handler.handle(Future.succeededFuture(data));
+            final Handler handler = invocation.getArgument(2);
+            handler.handle(Future.succeededFuture(DeviceRegistryTestUtils.newReadableFile(data)));
             return null;
-        }).when(fileSystem).readFile(eq(props.getFilename()), any(Handler.class));
+        }).when(fileSystem).open(eq(props.getFilename()), any(OpenOptions.class), any(Handler.class));
 
         // WHEN the service is started
         final Async startup = ctx.async();
@@ -237,7 +243,7 @@ public class FileBasedTenantServiceTest extends AbstractCompleteTenantServiceTes
 
         // THEN the credentials from the file are loaded
         startup.await();
-        verify(fileSystem, never()).readFile(anyString(), any(Handler.class));
+        verify(fileSystem, never()).open(anyString(), any(OpenOptions.class), any(Handler.class));
     }
 
     /**
@@ -261,29 +267,27 @@ public class FileBasedTenantServiceTest extends AbstractCompleteTenantServiceTes
         countDown.await();
 
         // WHEN saving the content to the file and clearing the tenant registry
-        final Async write = ctx.async();
+        final Buffer file = Buffer.buffer();
         doAnswer(invocation -> {
             final Handler handler = invocation.getArgument(2);
-            handler.handle(Future.succeededFuture());
-            write.complete();
+            handler.handle(Future.succeededFuture(DeviceRegistryTestUtils.newWritableFile(file)));
             return null;
-        }).when(fileSystem).writeFile(eq(FILE_NAME), any(Buffer.class), any(Handler.class));
+        }).when(fileSystem).open(eq(RegistryFileSupport.getTempFilename(FILE_NAME)), any(OpenOptions.class), any(Handler.class));
 
-        svc.saveToFile();
+        final Async write = ctx.async();
+        svc.saveToFile().setHandler(ctx.asyncAssertSuccess(s -> write.complete()));
         write.await();
-        final ArgumentCaptor<Buffer> buffer = ArgumentCaptor.forClass(Buffer.class);
-        verify(fileSystem).writeFile(eq(FILE_NAME), buffer.capture(), any(Handler.class));
         svc.clear();
         assertTenantDoesNotExist(svc, Constants.DEFAULT_TENANT, ctx);
 
         // THEN the tenants can be loaded back in from the file
         final Async read = ctx.async();
         doAnswer(invocation -> {
-            final Handler handler = invocation.getArgument(1);
-            handler.handle(Future.succeededFuture(buffer.getValue()));
+            final Handler handler = invocation.getArgument(2);
+            handler.handle(Future.succeededFuture(DeviceRegistryTestUtils.newReadableFile(file)));
             read.complete();
             return null;
-        }).when(fileSystem).readFile(eq(FILE_NAME), any(Handler.class));
+        }).when(fileSystem).open(eq(FILE_NAME), any(OpenOptions.class), any(Handler.class));
         svc.loadTenantData();
         read.await();
         assertTenantExists(svc, Constants.DEFAULT_TENANT, ctx);
@@ -348,4 +352,20 @@ public class FileBasedTenantServiceTest extends AbstractCompleteTenantServiceTes
         }));
     }
 
+    /**
+     * Verifies that updating a non-existing tenant fails with a 404 even if the
+     * new tenant data is invalid.
+     *
+     * @param ctx The vert.x test context.
+     */
+    @Test
+    public void testUpdateNonExistingTenantFailsWithNotFound(final TestContext ctx) {
+
+        // WHEN trying to update a non-existing tenant using malformed data
+        svc.update("non-existing", new JsonObject().put(TenantConstants.FIELD_ENABLED, new JsonObject()),
+                ctx.asyncAssertSuccess(s -> {
+                    // THEN the update fails with a 404
+                    ctx.assertEquals(HttpURLConnection.HTTP_NOT_FOUND, s.getStatus());
+                }));
+    }
 }
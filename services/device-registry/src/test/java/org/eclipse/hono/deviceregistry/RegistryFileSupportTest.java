@@ -0,0 +1,193 @@
+/*******************************************************************************
+ * Copyright (c) 2019 Contributors to the Eclipse Foundation
+ *
+ * See the NOTICE file(s) distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *******************************************************************************/
+
+package org.eclipse.hono.deviceregistry;
+
+import static org.hamcrest.CoreMatchers.instanceOf;
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.Test;
+
+import io.vertx.core.Future;
+import io.vertx.core.Handler;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.file.AsyncFile;
+import io.vertx.core.json.DecodeException;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+
+/**
+ * Tests verifying behavior of {@link RegistryFileSupport}.
+ *
+ */
+public class RegistryFileSupportTest {
+
+    /**
+     * Verifies that records written by {@code writeTenantRecords} are parsed
+     * into the same records.
+     */
+    @Test
+    public void testParseTenantRecordsReadsWrittenRecords() {
+
+        final Map<String, List<JsonObject>> tenants = new LinkedHashMap<>();
+        tenants.put("tenant-1", Arrays.asList(
+                new JsonObject().put("device-id", "4711").put("data", new JsonObject().put("via", new JsonArray().add("gw"))),
+                new JsonObject().put("device-id", "4712")));
+        tenants.put("empty-tenant", new ArrayList<>());
+        tenants.put("tenant-2", Arrays.asList(new JsonObject().put("device-id", "4711")));
+        final Buffer file = Buffer.buffer();
+        final Future<Void> writeResult = RegistryFileSupport.writeTenantRecords(
+                DeviceRegistryTestUtils.newWritableFile(file), "devices", tenants, List::iterator);
+        assertTrue(writeResult.succeeded());
+
+        final List<String> records = new ArrayList<>();
+        final Future<Void> parseResult = RegistryFileSupport.parseTenantRecords(
+                DeviceRegistryTestUtils.newReadableFile(file), "devices", (tenantId, record) -> {
+                    records.add(tenantId + "/" + record.getString("device-id"));
+                });
+
+        assertTrue(parseResult.succeeded());
+        assertThat(records, is(Arrays.asList("tenant-1/4711", "tenant-1/4712", "tenant-2/4711")));
+        // the file can also be parsed as a whole
+        assertThat(file.toJsonArray().size(), is(3));
+    }
+
+    /**
+     * Verifies that records are reported for the right tenant even if the tenant's
+     * identifier succeeds its records and that other properties are ignored.
+     */
+    @Test
+    public void testParseTenantRecordsSupportsArbitraryOrderOfProperties() {
+
+        final JsonArray tenants = new JsonArray()
+                .add(new JsonObject()
+                        .put("devices", new JsonArray().add(new JsonObject().put("device-id", "4711")))
+                        .put("other", new JsonObject().put("devices", new JsonArray().add(new JsonObject())))
+                        .put("tenant", "tenant-1"))
+                .add(new JsonObject()
+                        .put("devices", new JsonArray().add(new JsonObject().put("device-id", "4712"))));
+
+        final List<String> records = new ArrayList<>();
+        RegistryFileSupport.parseTenantRecords(DeviceRegistryTestUtils.newReadableFile(tenants.toBuffer()), "devices", (tenantId, record) -> {
+            records.add(tenantId + "/" + record.getString("device-id"));
+        });
+
+        assertThat(records, is(Arrays.asList("tenant-1/4711")));
+    }
+
+    /**
+     * Verifies that parsing fails for malformed content.
+     */
+    @Test
+    public void testParseTenantRecordsFailsForMalformedJson() {
+
+        final Future<Void> result = RegistryFileSupport.parseTenantRecords(
+                DeviceRegistryTestUtils.newReadableFile(Buffer.buffer("[{\"tenant\": \"tenant-1\", \"devices\": [{]}]")),
+                "devices", (tenantId, record) -> {});
+
+        assertTrue(result.failed());
+        assertThat(result.cause(), instanceOf(DecodeException.class));
+    }
+
+    /**
+     * Verifies that parsing fails for content that is not a JSON array.
+     */
+    @Test
+    public void testParseRecordsFailsForJsonObject() {
+
+        final Future<Void> result = RegistryFileSupport.parseRecords(
+                DeviceRegistryTestUtils.newReadableFile(new JsonObject().put("tenant", "tenant-1").toBuffer()), record -> {});
+
+        assertTrue(result.failed());
+        assertThat(result.cause(), instanceOf(DecodeException.class));
+    }
+
+    /**
+     * Verifies that parsing succeeds without any records for an empty file.
+     */
+    @Test
+    public void testParseRecordsSucceedsForEmptyFile() {
+
+        final List<JsonObject> parsedRecords = new ArrayList<>();
+        final Future<Void> result = RegistryFileSupport.parseRecords(
+                DeviceRegistryTestUtils.newReadableFile(Buffer.buffer()), parsedRecords::add);
+
+        assertTrue(result.succeeded());
+        assertTrue(parsedRecords.isEmpty());
+    }
+
+    /**
+     * Verifies that written records are parsed into the same records.
+     */
+    @Test
+    public void testParseRecordsReadsWrittenRecords() {
+
+        final List<JsonObject> records = Arrays.asList(
+                new JsonObject().put("tenant-id", "tenant-1").put("adapters", new JsonArray().add(new JsonObject())),
+                new JsonObject().put("tenant-id", "tenant-2"));
+        final Buffer file = Buffer.buffer();
+        RegistryFileSupport.writeRecords(DeviceRegistryTestUtils.newWritableFile(file), records.iterator());
+
+        final List<JsonObject> parsedRecords = new ArrayList<>();
+        RegistryFileSupport.parseRecords(DeviceRegistryTestUtils.newReadableFile(file), parsedRecords::add);
+
+        assertThat(parsedRecords, is(records));
+    }
+
+    /**
+     * Verifies that records are not written to a file whose write queue is full
+     * until the file has been drained.
+     */
+    @SuppressWarnings("unchecked")
+    @Test
+    public void testWriteRecordsWaitsForFileToBeDrained() {
+
+        // GIVEN a file whose write queue is full after the first chunk has been written
+        final Buffer content = Buffer.buffer();
+        final AsyncFile file = DeviceRegistryTestUtils.newWritableFile(content);
+        when(file.writeQueueFull()).thenReturn(false, true);
+        final AtomicReference<Handler<Void>> drainHandler = new AtomicReference<>();
+        when(file.drainHandler(any(Handler.class))).thenAnswer(invocation -> {
+            drainHandler.set(invocation.getArgument(0));
+            return file;
+        });
+
+        // WHEN writing records to the file
+        final List<JsonObject> records = Arrays.asList(new JsonObject().put("tenant-id", "tenant-1"));
+        final Future<Void> result = RegistryFileSupport.writeRecords(file, records.iterator());
+
+        // THEN writing stops after the first chunk
+        assertFalse(result.isComplete());
+        verify(file, times(1)).write(any(Buffer.class));
+
+        // and continues once the file has been drained
+        when(file.writeQueueFull()).thenReturn(false);
+        drainHandler.get().handle(null);
+        assertTrue(result.succeeded());
+        assertThat(content.toJsonArray(), is(new JsonArray(records)));
+    }
+}